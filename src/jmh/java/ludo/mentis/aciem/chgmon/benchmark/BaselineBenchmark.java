@@ -0,0 +1,97 @@
+package ludo.mentis.aciem.chgmon.benchmark;
+
+import ludo.mentis.aciem.chgmon.model.ChecksumBlock;
+import ludo.mentis.aciem.chgmon.service.BlockBaseline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in the packed baseline ({@link BlockBaseline}) over a whole table, in primary key order as a cycle makes
+ * them: a pass where nothing changed only decodes the blocks, while a pass where one row in a thousand changed also
+ * encodes every block again. Scores are per pass over {@code rows} rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class BaselineBenchmark {
+
+    static final String TABLE_NAME = "tb_fx_trade";
+    static final long RANGE_SIZE = 65536;
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    private long[] checksums;
+    private List<ChecksumBlock> blocks;
+
+    @Setup
+    public void setUp() {
+        var random = new SplittableRandom(rows);
+        checksums = new long[rows];
+        var baseline = new BlockBaseline(TABLE_NAME, RANGE_SIZE, List.of());
+        for (int i = 0; i < rows; i++) {
+            checksums[i] = random.nextLong() & 0xFFFFFFFFL;
+            baseline.put(FxTradeRows.key(i), checksums[i]);
+        }
+        baseline.finish();
+        blocks = baseline.getChangedBlocks();
+    }
+
+    @Benchmark
+    public List<Long> unchangedPass(Blackhole blackhole) {
+        var baseline = new BlockBaseline(TABLE_NAME, RANGE_SIZE, copy(blocks));
+        for (int i = 0; i < rows; i++) {
+            blackhole.consume(baseline.find(FxTradeRows.key(i)));
+        }
+        return baseline.finish();
+    }
+
+    @Benchmark
+    public List<ChecksumBlock> changedPass(Blackhole blackhole) {
+        var baseline = new BlockBaseline(TABLE_NAME, RANGE_SIZE, copy(blocks));
+        for (int i = 0; i < rows; i++) {
+            var primaryKey = FxTradeRows.key(i);
+            blackhole.consume(baseline.find(primaryKey));
+            if (i % 1000 == 1) {
+                baseline.put(primaryKey, checksums[i] ^ 1);
+            }
+        }
+        baseline.finish();
+        return baseline.getChangedBlocks();
+    }
+
+    /**
+     * A baseline updates the blocks it was given, so each pass starts from copies of the stored ones.
+     */
+    static List<ChecksumBlock> copy(List<ChecksumBlock> blocks) {
+        var copies = new ArrayList<ChecksumBlock>(blocks.size());
+        for (var block : blocks) {
+            var copy = new ChecksumBlock();
+            copy.setTableName(block.getTableName());
+            copy.setRangeStart(block.getRangeStart());
+            copy.setRangeEnd(block.getRangeEnd());
+            copy.setRowCount(block.getRowCount());
+            copy.setPayload(block.getPayload());
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
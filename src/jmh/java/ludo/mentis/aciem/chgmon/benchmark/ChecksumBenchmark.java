@@ -0,0 +1,59 @@
+package ludo.mentis.aciem.chgmon.benchmark;
+
+import ludo.mentis.aciem.chgmon.service.ChecksumServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row checksums of {@link ChecksumServiceImpl}, per row: the row checksum alone, and with the per-column hashes of
+ * {@code monitor.column-hashes}. Each invocation hashes a batch of {@value #BATCH} distinct rows, so that the scores
+ * and the {@code gc.alloc.rate.norm} of {@code -prof gc} read as per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ChecksumBenchmark {
+
+    static final int BATCH = 1024;
+
+    private final ChecksumServiceImpl checksumService = new ChecksumServiceImpl();
+    private final int[] columnHashes = new int[32];
+    private FxTradeRows rows;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rows = new FxTradeRows();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void calculate(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(checksumService.calculate(rows.row(next++)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void calculateWithColumnHashes(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(checksumService.calculate(rows.row(next++), columnHashes));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ludo.mentis.aciem.chgmon.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.ChecksumBlock;
+import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
+import ludo.mentis.aciem.chgmon.repos.TableChecksumRepository;
+import ludo.mentis.aciem.chgmon.service.AuditWriter;
+import ludo.mentis.aciem.chgmon.service.BlockBaseline;
+import ludo.mentis.aciem.chgmon.service.BlockBaselineService;
+import ludo.mentis.aciem.chgmon.service.ChecksumServiceImpl;
+import ludo.mentis.aciem.chgmon.service.ColumnHashes;
+import ludo.mentis.aciem.chgmon.service.CycleRunService;
+import ludo.mentis.aciem.chgmon.service.HashColumnService;
+import ludo.mentis.aciem.chgmon.service.LeaseService;
+import ludo.mentis.aciem.chgmon.service.MonitorMetrics;
+import ludo.mentis.aciem.chgmon.service.RowImageStore;
+import ludo.mentis.aciem.chgmon.service.ScanPlanner;
+import ludo.mentis.aciem.chgmon.service.ServerCostService;
+import ludo.mentis.aciem.chgmon.service.TableMetadataService;
+import ludo.mentis.aciem.chgmon.task.MonitorTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Whole cycles of {@link MonitorTask} against the packed baseline, the single-pass diff of large tables: every row
+ * of the scan is hashed, looked up in the baseline and compared, and the rows left in the baseline are deletes. In
+ * each thousand rows one was inserted, one updated and one deleted since the baseline, so every cycle finds the
+ * same changes and rewrites every block.
+ * <p>
+ * The scan comes from memory and the collaborators that would reach the database are stubs, so the score is the
+ * client-side cost of a cycle of {@code rows} rows. Divide {@code gc.alloc.rate.norm} by {@code rows} for the bytes
+ * allocated per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class DiffBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean columnHashes;
+
+    private MonitorTask monitorTask;
+
+    @Setup
+    public void setUp() {
+        var properties = new MonitorProperties();
+        properties.setTableName(BaselineBenchmark.TABLE_NAME);
+        properties.setPrimaryKeyName(FxTradeRows.PRIMARY_KEY_NAME);
+        properties.getBaseline().setStore(MonitorProperties.BaselineStore.BLOCK);
+        properties.getBaseline().setRangeSize(BaselineBenchmark.RANGE_SIZE);
+        properties.setColumnHashes(columnHashes);
+
+        var fxTradeRows = new FxTradeRows();
+        var checksumService = new ChecksumServiceImpl();
+        var blocks = baseline(fxTradeRows, checksumService);
+
+        var monitorRepository = stub(MonitorRepository.class);
+        when(monitorRepository.findAll(BaselineBenchmark.TABLE_NAME, FxTradeRows.PRIMARY_KEY_NAME)).thenReturn(fxTradeRows.table(rows));
+        var scanPlanner = stub(ScanPlanner.class);
+        when(scanPlanner.plan(anyString(), anyString())).thenReturn(null);
+        var tableMetadataService = stub(TableMetadataService.class);
+        when(tableMetadataService.getProjection(anyString())).thenReturn(null);
+        var auditWriter = stub(AuditWriter.class);
+        var blockBaselineService = new BlockBaselineService() {
+            @Override
+            public BlockBaseline load(String tableName) {
+                return new BlockBaseline(tableName, BaselineBenchmark.RANGE_SIZE, BaselineBenchmark.copy(blocks));
+            }
+
+            @Override
+            public BlockBaseline loadRanges(String tableName, List<Long> primaryKeys) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void save(BlockBaseline baseline) {
+                // Every cycle starts from the same baseline
+            }
+        };
+
+        monitorTask = new MonitorTask(properties, checksumService, auditWriter, monitorRepository,
+                stub(TableChecksumRepository.class), blockBaselineService, stub(RowImageStore.class), tableMetadataService,
+                stub(HashColumnService.class), scanPlanner, stub(LeaseService.class),
+                new MonitorMetrics(new SimpleMeterRegistry(), properties, checksumService, auditWriter),
+                stub(CycleRunService.class), stub(ServerCostService.class));
+    }
+
+    @Benchmark
+    public boolean cycle() {
+        return monitorTask.execute();
+    }
+
+    private List<ChecksumBlock> baseline(FxTradeRows fxTradeRows, ChecksumServiceImpl checksumService) {
+        var baseline = new BlockBaseline(BaselineBenchmark.TABLE_NAME, BaselineBenchmark.RANGE_SIZE, List.of());
+        var hashes = new int[32];
+        for (int i = 0; i < rows; i++) {
+            var primaryKey = FxTradeRows.key(i);
+            var row = fxTradeRows.row(primaryKey);
+            var checksum = columnHashes ? checksumService.calculate(row, hashes) : checksumService.calculate(row);
+            var vector = columnHashes ? ColumnHashes.encode(hashes, row.size()) : null;
+            switch (i % 1000) {
+                // Inserted since the baseline
+                case 2 -> { }
+                case 1 -> baseline.put(primaryKey, checksum ^ 1, vector);
+                case 3 -> {
+                    baseline.put(primaryKey, checksum, vector);
+                    // Deleted since the baseline
+                    baseline.put(primaryKey + 1, checksum, vector);
+                }
+                default -> baseline.put(primaryKey, checksum, vector);
+            }
+        }
+        baseline.finish();
+        return baseline.getChangedBlocks();
+    }
+
+    // Stubs do not record their calls, which would pile up over millions of rows
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
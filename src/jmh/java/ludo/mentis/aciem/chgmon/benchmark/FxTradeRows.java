@@ -0,0 +1,105 @@
+package ludo.mentis.aciem.chgmon.benchmark;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Rows shaped like tb_fx_trade as the SQL Server driver returns them: boxed integers, decimals of the column scale,
+ * {@link Timestamp} and {@link Date} values, short codes, free text and nulls, in column order. Every run draws the
+ * same rows from the same seed, so that results stay comparable.
+ * <p>
+ * A table of millions of rows does not fit in the heap as maps, so {@link #table(int)} serves them from a pool of
+ * {@value #TEMPLATES} distinct rows, setting the primary key of the template as each row is read. Rows must be read
+ * one at a time, in order, as a cycle does.
+ */
+final class FxTradeRows {
+
+    static final String PRIMARY_KEY_NAME = "id_fx_trade";
+    static final int TEMPLATES = 1 << 16;
+
+    private static final long SEED = 0x5EED_F00DL;
+    private static final String[] CURRENCY_PAIRS = {"EURUSD", "USDJPY", "GBPUSD", "USDCHF", "AUDUSD", "USDCAD", "EURGBP", "USDBRL"};
+    private static final String[] COUNTERPARTIES = {"Barclays Bank PLC", "BNP Paribas", "Citibank N.A.", "Deutsche Bank AG",
+            "HSBC Bank plc", "Itaú Unibanco S.A.", "JPMorgan Chase Bank", "Société Générale", "UBS AG"};
+    private static final String[] BOOKS = {"FX-SPOT-LDN", "FX-SPOT-NY", "FX-FWD-LDN", "FX-SWAP-SP"};
+    private static final String[] STATUSES = {"NEW", "CONFIRMED", "SETTLED", "AMENDED"};
+    private static final String[] COMMENTS = {"Client order via voice", "Rolled from previous value date",
+            "Amended notional after confirmation", "Booked by sales desk, see ticket FXOPS-4821"};
+
+    private final Map<String, Object>[] templates;
+
+    @SuppressWarnings("unchecked")
+    FxTradeRows() {
+        templates = new Map[TEMPLATES];
+        var random = new SplittableRandom(SEED);
+        for (int i = 0; i < TEMPLATES; i++) {
+            templates[i] = row(random, i + 1L);
+        }
+    }
+
+    /**
+     * @return the row of a primary key; the same map is handed out again for other keys
+     */
+    Map<String, Object> row(long primaryKey) {
+        var row = templates[(int) (primaryKey & (TEMPLATES - 1))];
+        row.put(PRIMARY_KEY_NAME, primaryKey);
+        return row;
+    }
+
+    /**
+     * The rows of primary keys {@link #key(int) key(0)} to {@code key(size - 1)}, as a scan returns them.
+     */
+    List<Map<String, Object>> table(int size) {
+        return new AbstractList<>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                return row(key(index));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Primary keys are even, leaving the odd ones to rows that are only in the baseline.
+     */
+    static long key(int index) {
+        return 2L * (index + 1);
+    }
+
+    private static Map<String, Object> row(SplittableRandom random, long primaryKey) {
+        var tradeDate = LocalDateTime.of(2024, 1, 2, 7, 0).plusSeconds(random.nextLong(365L * 24 * 3600)).withNano(random.nextInt(1000) * 1_000_000);
+        var notional = BigDecimal.valueOf(random.nextLong(1_000, 50_000_000) * 100L + random.nextInt(100), 2);
+        var rate = BigDecimal.valueOf(random.nextLong(500_000, 160_000_000), 6);
+        var row = new LinkedHashMap<String, Object>();
+        row.put(PRIMARY_KEY_NAME, primaryKey);
+        row.put("trade_ref", String.format("FX%010d", random.nextLong(10_000_000_000L)));
+        row.put("trade_date", Timestamp.valueOf(tradeDate));
+        row.put("value_date", Date.valueOf(LocalDate.from(tradeDate).plusDays(random.nextInt(3) == 0 ? 0 : 2)));
+        row.put("currency_pair", CURRENCY_PAIRS[random.nextInt(CURRENCY_PAIRS.length)]);
+        row.put("side", random.nextBoolean() ? "BUY" : "SELL");
+        row.put("notional", notional);
+        row.put("rate", rate);
+        row.put("counter_amount", notional.multiply(rate).setScale(2, RoundingMode.HALF_EVEN));
+        row.put("counterparty", COUNTERPARTIES[random.nextInt(COUNTERPARTIES.length)]);
+        row.put("trader_id", random.nextInt(100, 400));
+        row.put("book", BOOKS[random.nextInt(BOOKS.length)]);
+        row.put("status", STATUSES[random.nextInt(STATUSES.length)]);
+        row.put("is_cancelled", random.nextInt(50) == 0);
+        row.put("comments", random.nextInt(10) < 7 ? null : COMMENTS[random.nextInt(COMMENTS.length)]);
+        row.put("amended_at", random.nextInt(5) == 0 ? Timestamp.valueOf(tradeDate.plusMinutes(random.nextInt(1, 600))) : null);
+        return row;
+    }
+}
@@ -1,9 +1,63 @@
 package ludo.mentis.aciem.chgmon.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import javax.sql.DataSource;
+
 @Configuration
 @EnableScheduling
 public class AppConfig {
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, MonitorProperties monitorProperties) {
+        return new CycleAwareJdbcTemplate(bounded(dataSource, monitorProperties));
+    }
+
+    /**
+     * The pool of {@code monitor.central-store}. Not a default candidate, so that it neither replaces the monitored
+     * database as {@code spring.datasource} nor gets injected where a plain {@link DataSource} is asked for.
+     */
+    @Bean(destroyMethod = "close", defaultCandidate = false)
+    @ConditionalOnProperty(prefix = "monitor.central-store", name = "url")
+    public HikariDataSource centralStoreDataSource(MonitorProperties monitorProperties) {
+        var settings = monitorProperties.getCentralStore();
+        if (settings.getMaxPoolSize() < 1) {
+            throw new IllegalArgumentException("Central store max pool size must be positive");
+        }
+        var dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(settings.getUrl());
+        dataSource.setUsername(settings.getUsername());
+        dataSource.setPassword(settings.getPassword());
+        dataSource.setMaximumPoolSize(settings.getMaxPoolSize());
+        dataSource.setPoolName(monitorProperties.getSourceName() != null
+                ? "central-store-" + monitorProperties.getSourceName() : "central-store");
+        return dataSource;
+    }
+
+    /**
+     * The template of the tables chgmon keeps its own state in (audits, baselines, schemas, leases): the monitored
+     * database itself, or the central store when one is configured. Repositories ask for it by name.
+     */
+    @Bean(defaultCandidate = false)
+    public JdbcTemplate storeJdbcTemplate(JdbcTemplate jdbcTemplate, MonitorProperties monitorProperties,
+                                          @Qualifier("centralStoreDataSource") ObjectProvider<DataSource> centralStoreDataSource) {
+        var dataSource = centralStoreDataSource.getIfAvailable();
+        return dataSource != null ? new CycleAwareJdbcTemplate(bounded(dataSource, monitorProperties)) : jdbcTemplate;
+    }
+
+    /**
+     * With virtual threads, bounds the connections lent by a datasource with a semaphore of
+     * {@code monitor.virtual-threads.max-connections} permits, since threads no longer do.
+     */
+    private static DataSource bounded(DataSource dataSource, MonitorProperties monitorProperties) {
+        var settings = monitorProperties.getVirtualThreads();
+        return settings.isEnabled() ? new BoundedDataSource(dataSource, settings.getMaxConnections()) : dataSource;
+    }
 }
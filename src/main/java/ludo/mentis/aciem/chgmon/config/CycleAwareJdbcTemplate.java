@@ -0,0 +1,34 @@
+package ludo.mentis.aciem.chgmon.config;
+
+import ludo.mentis.aciem.chgmon.service.CycleContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Caps the timeout of the statements issued by a monitoring cycle with the time the cycle has left, so that a hung
+ * query fails instead of holding the cycle thread forever. Statements issued outside of a cycle, such as the audit
+ * writer's, keep the default settings. Statements of a cycle are also counted in its {@link CycleContext}.
+ */
+public class CycleAwareJdbcTemplate extends JdbcTemplate {
+
+    public CycleAwareJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        var cycle = CycleContext.current();
+        if (cycle == null) {
+            return;
+        }
+        cycle.recordStatement();
+        var timeout = cycle.queryTimeoutSeconds();
+        if (timeout > 0 && (stmt.getQueryTimeout() == 0 || timeout < stmt.getQueryTimeout())) {
+            stmt.setQueryTimeout(timeout);
+        }
+    }
+}
@@ -2,6 +2,13 @@ package ludo.mentis.aciem.chgmon.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "monitor")
@@ -10,6 +17,28 @@ public class MonitorProperties {
     private String tableName;
     private String primaryKeyName;
     private String cron;
+    private boolean columnHashes;
+    private String filter;
+    private final Columns columns = new Columns();
+    private final Baseline baseline = new Baseline();
+    private final AuditWriter auditWriter = new AuditWriter();
+    private final RowImages rowImages = new RowImages();
+    private final ChangeLog changeLog = new ChangeLog();
+    private final HashColumn hashColumn = new HashColumn();
+    private final PartialScan partialScan = new PartialScan();
+    private final Tiering tiering = new Tiering();
+    private final Watchlist watchlist = new Watchlist();
+    private final Lob lob = new Lob();
+    private final Cycle cycle = new Cycle();
+    private final Adaptive adaptive = new Adaptive();
+    private final Map<String, Profile> profiles = new LinkedHashMap<>();
+    private final Cluster cluster = new Cluster();
+    private final Map<String, Source> sources = new LinkedHashMap<>();
+    private final CentralStore centralStore = new CentralStore();
+    private final VirtualThreads virtualThreads = new VirtualThreads();
+    private final CycleHistory cycleHistory = new CycleHistory();
+    private final ServerCost serverCost = new ServerCost();
+    private String sourceName;
 
     public String getTableName() {
         return tableName;
@@ -34,4 +63,875 @@ public class MonitorProperties {
     public void setCron(String cron) {
         this.cron = cron;
     }
+
+    public boolean isColumnHashes() {
+        return columnHashes;
+    }
+
+    public void setColumnHashes(boolean columnHashes) {
+        this.columnHashes = columnHashes;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    public Columns getColumns() {
+        return columns;
+    }
+
+    public Baseline getBaseline() {
+        return baseline;
+    }
+
+    public AuditWriter getAuditWriter() {
+        return auditWriter;
+    }
+
+    public RowImages getRowImages() {
+        return rowImages;
+    }
+
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
+    public HashColumn getHashColumn() {
+        return hashColumn;
+    }
+
+    public PartialScan getPartialScan() {
+        return partialScan;
+    }
+
+    public Tiering getTiering() {
+        return tiering;
+    }
+
+    public Watchlist getWatchlist() {
+        return watchlist;
+    }
+
+    public Lob getLob() {
+        return lob;
+    }
+
+    public Cycle getCycle() {
+        return cycle;
+    }
+
+    public Adaptive getAdaptive() {
+        return adaptive;
+    }
+
+    public Map<String, Profile> getProfiles() {
+        return profiles;
+    }
+
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    public Map<String, Source> getSources() {
+        return sources;
+    }
+
+    public CentralStore getCentralStore() {
+        return centralStore;
+    }
+
+    public VirtualThreads getVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public CycleHistory getCycleHistory() {
+        return cycleHistory;
+    }
+
+    public ServerCost getServerCost() {
+        return serverCost;
+    }
+
+    /**
+     * @return the name of the source this context monitors, or null in the main context. Set when the context of a
+     * source is started, not meant to be configured.
+     */
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    public enum BaselineStore {
+        /** One tb_table_checksum row per monitored primary key. */
+        ROW,
+        /** One compressed tb_table_checksum_block row per primary key range. */
+        BLOCK
+    }
+
+    public enum OverrunPolicy {
+        /** Drop the trigger that fires while the previous cycle is still running. */
+        SKIP,
+        /** Run every trigger that fired during the previous cycle, back to back, up to max-queued of them. */
+        QUEUE,
+        /** Run one more cycle right after the previous one, however many triggers fired during it. */
+        COALESCE
+    }
+
+    public enum Strategy {
+        /** Scan the ranges picked by the scan planner, or the whole table. */
+        STANDARD,
+        /** Compare per-range aggregate checksums computed by the server, and scan only the ranges that differ. */
+        LIGHT,
+        /** Scan the whole table, check every baseline row and remove those of deleted rows. */
+        DEEP
+    }
+
+    public static class Columns {
+
+        private List<String> include = new ArrayList<>();
+        private List<String> exclude = new ArrayList<>();
+
+        public List<String> getInclude() {
+            return include;
+        }
+
+        public void setInclude(List<String> include) {
+            this.include = include;
+        }
+
+        public List<String> getExclude() {
+            return exclude;
+        }
+
+        public void setExclude(List<String> exclude) {
+            this.exclude = exclude;
+        }
+    }
+
+    public static class Baseline {
+
+        private BaselineStore store = BaselineStore.ROW;
+        private long rangeSize = 65536;
+
+        public BaselineStore getStore() {
+            return store;
+        }
+
+        public void setStore(BaselineStore store) {
+            this.store = store;
+        }
+
+        public long getRangeSize() {
+            return rangeSize;
+        }
+
+        public void setRangeSize(long rangeSize) {
+            this.rangeSize = rangeSize;
+        }
+    }
+
+    public static class AuditWriter {
+
+        private boolean async = true;
+        private int queueCapacity = 10000;
+        private int batchSize = 500;
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+    }
+
+    public static class RowImages {
+
+        private boolean enabled;
+        private String directory = "data/row-images";
+        private long rangeSize = 4096;
+        private DataSize maxDiskSize = DataSize.ofGigabytes(1);
+        private int cachedBlocks = 8;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getRangeSize() {
+            return rangeSize;
+        }
+
+        public void setRangeSize(long rangeSize) {
+            this.rangeSize = rangeSize;
+        }
+
+        public DataSize getMaxDiskSize() {
+            return maxDiskSize;
+        }
+
+        public void setMaxDiskSize(DataSize maxDiskSize) {
+            this.maxDiskSize = maxDiskSize;
+        }
+
+        public int getCachedBlocks() {
+            return cachedBlocks;
+        }
+
+        public void setCachedBlocks(int cachedBlocks) {
+            this.cachedBlocks = cachedBlocks;
+        }
+    }
+
+    public static class ChangeLog {
+
+        private boolean enabled;
+        private String directory = "data/change-log";
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        private Duration segmentAge = Duration.ofHours(1);
+        private DataSize indexInterval = DataSize.ofKilobytes(4);
+        private DataSize retentionSize = DataSize.ofGigabytes(1);
+        private Duration retentionAge = Duration.ofDays(7);
+        private final Http http = new Http();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public Duration getSegmentAge() {
+            return segmentAge;
+        }
+
+        public void setSegmentAge(Duration segmentAge) {
+            this.segmentAge = segmentAge;
+        }
+
+        public DataSize getIndexInterval() {
+            return indexInterval;
+        }
+
+        public void setIndexInterval(DataSize indexInterval) {
+            this.indexInterval = indexInterval;
+        }
+
+        public DataSize getRetentionSize() {
+            return retentionSize;
+        }
+
+        public void setRetentionSize(DataSize retentionSize) {
+            this.retentionSize = retentionSize;
+        }
+
+        public Duration getRetentionAge() {
+            return retentionAge;
+        }
+
+        public void setRetentionAge(Duration retentionAge) {
+            this.retentionAge = retentionAge;
+        }
+
+        public Http getHttp() {
+            return http;
+        }
+    }
+
+    public static class HashColumn {
+
+        private boolean enabled;
+        private String columnName = "chgmon_hash";
+        private String indexName = "ix_chgmon_hash";
+        private boolean teardown;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getColumnName() {
+            return columnName;
+        }
+
+        public void setColumnName(String columnName) {
+            this.columnName = columnName;
+        }
+
+        public String getIndexName() {
+            return indexName;
+        }
+
+        public void setIndexName(String indexName) {
+            this.indexName = indexName;
+        }
+
+        public boolean isTeardown() {
+            return teardown;
+        }
+
+        public void setTeardown(boolean teardown) {
+            this.teardown = teardown;
+        }
+    }
+
+    public static class PartialScan {
+
+        private int slices = 1;
+        private int hotBuckets = 64;
+
+        public int getSlices() {
+            return slices;
+        }
+
+        public void setSlices(int slices) {
+            this.slices = slices;
+        }
+
+        public int getHotBuckets() {
+            return hotBuckets;
+        }
+
+        public void setHotBuckets(int hotBuckets) {
+            this.hotBuckets = hotBuckets;
+        }
+    }
+
+    public static class Tiering {
+
+        private boolean enabled;
+        private String coldCron = "0 0 1 * * *";
+        private int window = 100;
+        private double coldRate = 0.01;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getColdCron() {
+            return coldCron;
+        }
+
+        public void setColdCron(String coldCron) {
+            this.coldCron = coldCron;
+        }
+
+        public int getWindow() {
+            return window;
+        }
+
+        public void setWindow(int window) {
+            this.window = window;
+        }
+
+        public double getColdRate() {
+            return coldRate;
+        }
+
+        public void setColdRate(double coldRate) {
+            this.coldRate = coldRate;
+        }
+    }
+
+    public static class Watchlist {
+
+        private boolean enabled;
+        private List<Long> keys = new ArrayList<>();
+        private String predicate;
+        private Duration interval = Duration.ofSeconds(5);
+        private Duration refreshInterval = Duration.ofMinutes(1);
+        private int batchSize = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<Long> getKeys() {
+            return keys;
+        }
+
+        public void setKeys(List<Long> keys) {
+            this.keys = keys;
+        }
+
+        public String getPredicate() {
+            return predicate;
+        }
+
+        public void setPredicate(String predicate) {
+            this.predicate = predicate;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class Lob {
+
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Cycle {
+
+        private Duration deadline;
+        private Duration queryTimeout;
+        private OverrunPolicy overrunPolicy = OverrunPolicy.SKIP;
+        private int maxQueued = 3;
+
+        public Duration getDeadline() {
+            return deadline;
+        }
+
+        public void setDeadline(Duration deadline) {
+            this.deadline = deadline;
+        }
+
+        public Duration getQueryTimeout() {
+            return queryTimeout;
+        }
+
+        public void setQueryTimeout(Duration queryTimeout) {
+            this.queryTimeout = queryTimeout;
+        }
+
+        public OverrunPolicy getOverrunPolicy() {
+            return overrunPolicy;
+        }
+
+        public void setOverrunPolicy(OverrunPolicy overrunPolicy) {
+            this.overrunPolicy = overrunPolicy;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+    }
+
+    public static class Adaptive {
+
+        private boolean enabled;
+        private Duration minInterval = Duration.ofSeconds(30);
+        private Duration maxInterval = Duration.ofMinutes(10);
+        private double maxDutyCycle = 0.25;
+        private double maxServerCpu;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getMinInterval() {
+            return minInterval;
+        }
+
+        public void setMinInterval(Duration minInterval) {
+            this.minInterval = minInterval;
+        }
+
+        public Duration getMaxInterval() {
+            return maxInterval;
+        }
+
+        public void setMaxInterval(Duration maxInterval) {
+            this.maxInterval = maxInterval;
+        }
+
+        public double getMaxDutyCycle() {
+            return maxDutyCycle;
+        }
+
+        public void setMaxDutyCycle(double maxDutyCycle) {
+            this.maxDutyCycle = maxDutyCycle;
+        }
+
+        public double getMaxServerCpu() {
+            return maxServerCpu;
+        }
+
+        public void setMaxServerCpu(double maxServerCpu) {
+            this.maxServerCpu = maxServerCpu;
+        }
+    }
+
+    public static class Profile {
+
+        private String cron;
+        private Strategy strategy = Strategy.STANDARD;
+        private int throttle;
+        private int parallelism;
+
+        public String getCron() {
+            return cron;
+        }
+
+        public void setCron(String cron) {
+            this.cron = cron;
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public void setStrategy(Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        public int getThrottle() {
+            return throttle;
+        }
+
+        public void setThrottle(int throttle) {
+            this.throttle = throttle;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    public static class Cluster {
+
+        private boolean enabled;
+        private String nodeId;
+        private int shards = 1;
+        private long shardSize;
+        private Duration leaseDuration = Duration.ofSeconds(30);
+        private Duration heartbeatInterval = Duration.ofSeconds(10);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public int getShards() {
+            return shards;
+        }
+
+        public void setShards(int shards) {
+            this.shards = shards;
+        }
+
+        public long getShardSize() {
+            return shardSize;
+        }
+
+        public void setShardSize(long shardSize) {
+            this.shardSize = shardSize;
+        }
+
+        public Duration getLeaseDuration() {
+            return leaseDuration;
+        }
+
+        public void setLeaseDuration(Duration leaseDuration) {
+            this.leaseDuration = leaseDuration;
+        }
+
+        public Duration getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(Duration heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+    }
+
+    public static class Source {
+
+        private String url;
+        private String username;
+        private String password;
+        private String tableName;
+        private int maxPoolSize = 4;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public void setTableName(String tableName) {
+            this.tableName = tableName;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+    }
+
+    public static class CentralStore {
+
+        private String url;
+        private String username;
+        private String password;
+        private int maxPoolSize = 4;
+
+        public boolean isEnabled() {
+            return url != null && !url.trim().isEmpty();
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        public void setMaxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+    }
+
+    public static class VirtualThreads {
+
+        private boolean enabled;
+        private int maxConnections = 4;
+        private Duration pinningThreshold = Duration.ofMillis(20);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Duration getPinningThreshold() {
+            return pinningThreshold;
+        }
+
+        public void setPinningThreshold(Duration pinningThreshold) {
+            this.pinningThreshold = pinningThreshold;
+        }
+    }
+
+    public static class CycleHistory {
+
+        private boolean enabled = true;
+        private Duration retention = Duration.ofDays(90);
+        private final Http http = new Http();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getRetention() {
+            return retention;
+        }
+
+        public void setRetention(Duration retention) {
+            this.retention = retention;
+        }
+
+        public Http getHttp() {
+            return http;
+        }
+    }
+
+    public static class ServerCost {
+
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Http {
+
+        private boolean enabled;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
 }
@@ -0,0 +1,104 @@
+package ludo.mentis.aciem.chgmon.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Watches for virtual threads pinned to their carrier in the JDBC path. A virtual thread that blocks inside a
+ * {@code synchronized} block or a native frame keeps its platform thread, which is what virtual threads were meant to
+ * free; a driver doing so on every statement defeats {@code monitor.virtual-threads.enabled}.
+ * <p>
+ * The {@code jdk.VirtualThreadPinned} events of Java Flight Recorder longer than
+ * {@code monitor.virtual-threads.pinning-threshold} are streamed in-process. Those whose stack goes through the
+ * driver, the pool, Spring JDBC or the repositories are counted per call site, and logged the first time each site
+ * pins; the others are only logged at debug level.
+ */
+@Component
+@ConditionalOnProperty(prefix = "monitor.virtual-threads", name = "enabled", havingValue = "true")
+public class PinningMonitor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PinningMonitor.class);
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String[] JDBC_PACKAGES = {"com.microsoft.sqlserver.", "com.zaxxer.hikari.", "java.sql.",
+            "org.springframework.jdbc.", "ludo.mentis.aciem.chgmon.repos."};
+
+    private final Map<String, AtomicLong> sites = new ConcurrentHashMap<>();
+    private final AtomicLong pinnedCount = new AtomicLong();
+    private final RecordingStream stream;
+
+    public PinningMonitor(MonitorProperties monitorProperties) {
+        if (!ThreadFactories.isVirtualAvailable()) {
+            stream = null;
+            return;
+        }
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(monitorProperties.getVirtualThreads().getPinningThreshold()).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    void onPinned(RecordedEvent event) {
+        var site = jdbcSite(event);
+        if (site == null) {
+            logger.debug("Virtual thread pinned for {} ms outside of JDBC", event.getDuration().toMillis());
+            return;
+        }
+        pinnedCount.incrementAndGet();
+        if (sites.computeIfAbsent(site, key -> new AtomicLong()).getAndIncrement() == 0) {
+            logger.warn("Virtual thread pinned to its carrier for {} ms in {}; a JDBC call pinning on every statement "
+                    + "holds as many platform threads as platform thread mode would", event.getDuration().toMillis(), site);
+        }
+    }
+
+    /**
+     * @return the innermost frame of the JDBC path in the stack of the event, or null if the stack does not go through it
+     */
+    private static String jdbcSite(RecordedEvent event) {
+        var stackTrace = event.getStackTrace();
+        if (stackTrace == null) {
+            return null;
+        }
+        for (var frame : stackTrace.getFrames()) {
+            var type = frame.getMethod().getType().getName();
+            for (var jdbcPackage : JDBC_PACKAGES) {
+                if (type.startsWith(jdbcPackage)) {
+                    return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return how many times a virtual thread was pinned in the JDBC path
+     */
+    public long getPinnedCount() {
+        return pinnedCount.get();
+    }
+
+    /**
+     * @return the pinning count of each JDBC call site seen so far
+     */
+    public Map<String, Long> getPinnedSites() {
+        var counts = new TreeMap<String, Long>();
+        sites.forEach((site, count) -> counts.put(site, count.get()));
+        return counts;
+    }
+
+    @Override
+    public void destroy() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ludo.mentis.aciem.chgmon.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.Map;
+
+/**
+ * Matches in a context that monitors a table: the only context when {@code monitor.sources} is empty, or the context
+ * of each source when it is not. With sources, the main context only starts theirs and keeps no table of its own.
+ */
+public class SourceCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        var binder = Binder.get(context.getEnvironment());
+        if (binder.bind("monitor.source-name", String.class).isBound()) {
+            return ConditionOutcome.match("monitor.source-name is set");
+        }
+        var sources = binder.bind("monitor.sources", Bindable.mapOf(String.class, Object.class)).orElse(Map.of());
+        return sources.isEmpty()
+                ? ConditionOutcome.match("no monitor.sources")
+                : ConditionOutcome.noMatch("monitor.sources are monitored by their own contexts");
+    }
+}
@@ -0,0 +1,76 @@
+package ludo.mentis.aciem.chgmon.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads chgmon starts itself: the cycle thread of each table and the audit writer. They are platform
+ * daemon threads, or virtual threads with {@code monitor.virtual-threads.enabled} on Java 21 or later. A cycle spends
+ * nearly all its time waiting on JDBC, which a virtual thread does without holding a platform thread, so a process
+ * monitoring many sources no longer pays a thread stack per table.
+ * <p>
+ * The application is built for Java 17, so virtual threads are reached through reflection. On an older runtime the
+ * setting falls back to platform threads with a warning.
+ */
+public final class ThreadFactories {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadFactories.class);
+
+    private static final Object VIRTUAL_BUILDER = virtualBuilder();
+
+    private ThreadFactories() {
+    }
+
+    /**
+     * @return true if this runtime has virtual threads
+     */
+    public static boolean isVirtualAvailable() {
+        return VIRTUAL_BUILDER != null;
+    }
+
+    /**
+     * Creates a factory of threads with the given name.
+     *
+     * @param monitorProperties the settings telling whether to use virtual threads
+     * @param name              the name of the threads
+     * @return a factory of virtual threads if enabled and available, of platform daemon threads otherwise
+     */
+    public static ThreadFactory create(MonitorProperties monitorProperties, String name) {
+        if (monitorProperties.getVirtualThreads().isEnabled()) {
+            if (isVirtualAvailable()) {
+                return virtual(name);
+            }
+            logger.warn("Virtual threads need Java 21 or later, running {} on a platform thread", name);
+        }
+        return runnable -> {
+            var thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ThreadFactory virtual(String name) {
+        try {
+            // Thread.ofVirtual().name(name).factory()
+            var builderType = Class.forName("java.lang.Thread$Builder");
+            var builder = builderType.getMethod("name", String.class).invoke(VIRTUAL_BUILDER, name);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create virtual thread factory", e);
+        }
+    }
+
+    private static Object virtualBuilder() {
+        try {
+            return Thread.class.getMethod("ofVirtual").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            // Preview builds of Java 19 and 20 have the method but refuse it without --enable-preview
+            return null;
+        }
+    }
+}
@@ -9,6 +9,9 @@ public class Audit {
     private String tableName;
     private ChangeType changeType;
     private LocalDateTime changeDate;
+    private byte[] changedColumns;
+    private byte[] oldImage;
+    private byte[] newImage;
 
     public Integer getId() {
         return id;
@@ -49,4 +52,28 @@ public class Audit {
     public void setChangeDate(LocalDateTime changeDate) {
         this.changeDate = changeDate;
     }
-}
\ No newline at end of file
+
+    public byte[] getChangedColumns() {
+        return changedColumns;
+    }
+
+    public void setChangedColumns(byte[] changedColumns) {
+        this.changedColumns = changedColumns;
+    }
+
+    public byte[] getOldImage() {
+        return oldImage;
+    }
+
+    public void setOldImage(byte[] oldImage) {
+        this.oldImage = oldImage;
+    }
+
+    public byte[] getNewImage() {
+        return newImage;
+    }
+
+    public void setNewImage(byte[] newImage) {
+        this.newImage = newImage;
+    }
+}
@@ -0,0 +1,8 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * Aggregate checksum of one primary key bucket, computed by the server: the {@code CHECKSUM_AGG} of the
+ * {@code BINARY_CHECKSUM} of its rows, and their number.
+ */
+public record BucketChecksum(long rangeStart, int checksum, long rowCount) {
+}
@@ -0,0 +1,8 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * Change statistics of one primary key bucket: the average number of changes found per scan of the bucket, and the
+ * tier it was sorted into.
+ */
+public record BucketStats(long rangeStart, double changeRate, boolean cold) {
+}
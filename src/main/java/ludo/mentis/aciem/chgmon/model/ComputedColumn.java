@@ -0,0 +1,7 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * A computed column of a monitored table, with its definition as normalized by the server.
+ */
+public record ComputedColumn(String name, String definition, boolean persisted) {
+}
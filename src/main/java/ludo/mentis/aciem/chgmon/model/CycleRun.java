@@ -0,0 +1,202 @@
+package ludo.mentis.aciem.chgmon.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * One cycle of a monitored table, as kept in tb_cycle_run: what it did, how long it took and how it ended.
+ * {@code bytesHashed} is the size of the column values hashed, which approximates the bytes read, and
+ * {@code peakHeap} the highest heap usage of the process sampled at the checkpoints of the cycle. The server cost
+ * fields are null when it was not measured (see {@link ServerCost}).
+ */
+public class CycleRun {
+
+    private Long id;
+    private String tableName;
+    private String sourceName;
+    private String profile;
+    private String strategy;
+    private String outcome;
+    private LocalDateTime startedAt;
+    private LocalDateTime endedAt;
+    private long rowsScanned;
+    private long bytesHashed;
+    private long inserts;
+    private long updates;
+    private long deletes;
+    private long statements;
+    private long peakHeap;
+    private String error;
+    private Long serverCpuMillis;
+    private Long serverScheduledMillis;
+    private Long logicalReads;
+    private Long physicalReads;
+    private Long writes;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getEndedAt() {
+        return endedAt;
+    }
+
+    public void setEndedAt(LocalDateTime endedAt) {
+        this.endedAt = endedAt;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public void setRowsScanned(long rowsScanned) {
+        this.rowsScanned = rowsScanned;
+    }
+
+    public long getBytesHashed() {
+        return bytesHashed;
+    }
+
+    public void setBytesHashed(long bytesHashed) {
+        this.bytesHashed = bytesHashed;
+    }
+
+    public long getInserts() {
+        return inserts;
+    }
+
+    public void setInserts(long inserts) {
+        this.inserts = inserts;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public void setUpdates(long updates) {
+        this.updates = updates;
+    }
+
+    public long getDeletes() {
+        return deletes;
+    }
+
+    public void setDeletes(long deletes) {
+        this.deletes = deletes;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public void setStatements(long statements) {
+        this.statements = statements;
+    }
+
+    public long getPeakHeap() {
+        return peakHeap;
+    }
+
+    public void setPeakHeap(long peakHeap) {
+        this.peakHeap = peakHeap;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Long getServerCpuMillis() {
+        return serverCpuMillis;
+    }
+
+    public void setServerCpuMillis(Long serverCpuMillis) {
+        this.serverCpuMillis = serverCpuMillis;
+    }
+
+    public Long getServerScheduledMillis() {
+        return serverScheduledMillis;
+    }
+
+    public void setServerScheduledMillis(Long serverScheduledMillis) {
+        this.serverScheduledMillis = serverScheduledMillis;
+    }
+
+    public Long getLogicalReads() {
+        return logicalReads;
+    }
+
+    public void setLogicalReads(Long logicalReads) {
+        this.logicalReads = logicalReads;
+    }
+
+    public Long getPhysicalReads() {
+        return physicalReads;
+    }
+
+    public void setPhysicalReads(Long physicalReads) {
+        this.physicalReads = physicalReads;
+    }
+
+    public Long getWrites() {
+        return writes;
+    }
+
+    public void setWrites(Long writes) {
+        this.writes = writes;
+    }
+}
@@ -0,0 +1,8 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * Counters of the cycles of one table since startup: how they ended, and what became of the triggers that fired
+ * while a cycle was still running (see {@code monitor.cycle.overrun-policy}).
+ */
+public record CycleStats(long completed, long cancelled, long failed, long skipped, long queued, long coalesced) {
+}
@@ -0,0 +1,12 @@
+package ludo.mentis.aciem.chgmon.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * The cycles of a table within one period (an hour or a day), added up for trend analysis: how many ran and how many did not complete,
+ * how long they took, and how much work they did. The server cost adds up the cycles it was measured for.
+ */
+public record CycleTrend(String tableName, LocalDateTime period, long cycles, long incomplete, long averageMillis,
+                         long maxMillis, long rowsScanned, long bytesHashed, long changes, long statements,
+                         long peakHeap, long serverCpuMillis, long logicalReads) {
+}
@@ -0,0 +1,14 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * Stands in a scanned row for a large object value, which is hashed while it is streamed from the driver instead of
+ * being materialized. Holds the CRC32 and length of the bytes the value would have been hashed with, or of its
+ * server-side SHA-256 when it is larger than {@code monitor.lob.max-size}.
+ */
+public record LobDigest(long crc32, long length, boolean serverHashed) {
+
+    @Override
+    public String toString() {
+        return String.format("<%s %d bytes, crc32 %08x>", serverHashed ? "sha-256" : "lob", length, crc32);
+    }
+}
@@ -0,0 +1,11 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * An inclusive range of primary keys.
+ */
+public record PkRange(long start, long end) {
+
+    public boolean contains(long primaryKey) {
+        return primaryKey >= start && primaryKey <= end;
+    }
+}
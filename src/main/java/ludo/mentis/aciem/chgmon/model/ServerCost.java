@@ -0,0 +1,17 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * What the queries of a cycle cost the monitored server, from the counters of its session in
+ * {@code sys.dm_exec_sessions}: CPU time, time scheduled on a scheduler (the server-side elapsed time of its
+ * requests), and pages read from the buffer pool, read from disk and written.
+ */
+public record ServerCost(long cpuMillis, long scheduledMillis, long logicalReads, long physicalReads, long writes) {
+
+    /**
+     * @return the cost incurred since an earlier reading of the same session
+     */
+    public ServerCost minus(ServerCost earlier) {
+        return new ServerCost(cpuMillis - earlier.cpuMillis, scheduledMillis - earlier.scheduledMillis,
+                logicalReads - earlier.logicalReads, physicalReads - earlier.physicalReads, writes - earlier.writes);
+    }
+}
@@ -0,0 +1,8 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * The lease of one primary key shard of a monitored table: the node holding it, if any, and whether that node
+ * stopped renewing it.
+ */
+public record ShardLease(int shard, String owner, boolean expired) {
+}
@@ -6,6 +6,7 @@ public class TableChecksum {
     private String tableName;
     private Long primaryKey;
     private Long crc32;
+    private byte[] columnHashes;
 
     public Integer getId() {
         return id;
@@ -38,4 +39,12 @@ public class TableChecksum {
     public void setCrc32(Long crc32) {
         this.crc32 = crc32;
     }
-}
\ No newline at end of file
+
+    public byte[] getColumnHashes() {
+        return columnHashes;
+    }
+
+    public void setColumnHashes(byte[] columnHashes) {
+        this.columnHashes = columnHashes;
+    }
+}
@@ -0,0 +1,8 @@
+package ludo.mentis.aciem.chgmon.model;
+
+/**
+ * A column of a monitored table as declared in the catalog, with its type rendered the way it is declared
+ * (for instance {@code decimal(18,4)} or {@code nvarchar(50)}).
+ */
+public record TableColumn(String name, String type) {
+}
@@ -0,0 +1,44 @@
+package ludo.mentis.aciem.chgmon.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class TableSchema {
+
+    private String tableName;
+    private LocalDateTime modifyDate;
+    private List<TableColumn> columns;
+
+    public TableSchema() {
+    }
+
+    public TableSchema(String tableName, LocalDateTime modifyDate, List<TableColumn> columns) {
+        this.tableName = tableName;
+        this.modifyDate = modifyDate;
+        this.columns = columns;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public LocalDateTime getModifyDate() {
+        return modifyDate;
+    }
+
+    public void setModifyDate(LocalDateTime modifyDate) {
+        this.modifyDate = modifyDate;
+    }
+
+    public List<TableColumn> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<TableColumn> columns) {
+        this.columns = columns;
+    }
+}
@@ -2,9 +2,13 @@ package ludo.mentis.aciem.chgmon.repos;
 
 import ludo.mentis.aciem.chgmon.model.Audit;
 
+import java.util.List;
+
 public interface AuditRepository {
 
     Integer insert(Audit audit);
 
+    int insertBatch(List<Audit> audits);
+
     boolean isAlreadyDeleted(String tableName, Long primaryKey);
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package ludo.mentis.aciem.chgmon.repos;
 
 import ludo.mentis.aciem.chgmon.model.Audit;
+import ludo.mentis.aciem.chgmon.service.DatabaseCallEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -10,6 +12,7 @@ import org.springframework.stereotype.Repository;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.List;
 import java.util.Objects;
 
 @Repository
@@ -18,7 +21,7 @@ public class AuditRepositoryImpl implements AuditRepository {
     private final JdbcTemplate jdbcTemplate;
 
     @Autowired
-    public AuditRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    public AuditRepositoryImpl(@Qualifier("storeJdbcTemplate") JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
     
@@ -31,50 +34,112 @@ public class AuditRepositoryImpl implements AuditRepository {
      */
     @Override
     public Integer insert(Audit audit) {
-        if (audit == null) {
-            throw new IllegalArgumentException("Audit cannot be null");
-        }
-        
-        if (audit.getTableName() == null || audit.getTableName().trim().isEmpty()) {
-            throw new IllegalArgumentException("Table name cannot be null or empty");
-        }
-        
-        if (audit.getPrimaryKey() == null) {
-            throw new IllegalArgumentException("Primary key cannot be null");
-        }
-        
-        if (audit.getChangeType() == null) {
-            throw new IllegalArgumentException("Change type cannot be null");
-        }
-        
+        validate(audit);
+
         KeyHolder keyHolder = new GeneratedKeyHolder();
         
+        var event = new DatabaseCallEvent("insertAudit", audit.getTableName());
         jdbcTemplate.update(connection -> {
             PreparedStatement ps = connection.prepareStatement(
-                    "INSERT INTO tb_audit (primary_key, table_name, change_type, change_date) VALUES (?, ?, ?, ?)",
+                    "INSERT INTO tb_audit (primary_key, table_name, change_type, change_date, changed_columns, old_image, new_image) VALUES (?, ?, ?, ?, ?, ?, ?)",
                     Statement.RETURN_GENERATED_KEYS
             );
             ps.setLong(1, audit.getPrimaryKey());
             ps.setString(2, audit.getTableName());
             ps.setString(3, audit.getChangeType().name());
             
-            // If change_date is provided, use it; otherwise, let the database use its default (GETDATE())
-            if (audit.getChangeDate() != null) {
-                ps.setTimestamp(4, Timestamp.valueOf(audit.getChangeDate()));
-            } else {
-                ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
-            }
-            
+            ps.setTimestamp(4, changeDateOf(audit));
+            ps.setBytes(5, audit.getChangedColumns());
+            ps.setBytes(6, audit.getOldImage());
+            ps.setBytes(7, audit.getNewImage());
             return ps;
         }, keyHolder);
+        event.finish(1, bytesOf(audit));
         
         return Objects.requireNonNull(keyHolder.getKey()).intValue();
     }
 
+    /**
+     * Inserts several audit records in one JDBC batch.
+     *
+     * @param audits the audits to insert
+     * @return the number of inserted records
+     * @throws IllegalArgumentException if any audit is null or has null required fields
+     */
+    @Override
+    public int insertBatch(List<Audit> audits) {
+        if (audits == null) {
+            throw new IllegalArgumentException("Audits cannot be null");
+        }
+        if (audits.isEmpty()) {
+            return 0;
+        }
+        audits.forEach(this::validate);
+
+        var sql = "INSERT INTO tb_audit (primary_key, table_name, change_type, change_date, changed_columns, old_image, new_image) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        var event = new DatabaseCallEvent("insertAudits", audits.get(0).getTableName());
+        var counts = jdbcTemplate.batchUpdate(sql, audits, audits.size(), (ps, audit) -> {
+            ps.setLong(1, audit.getPrimaryKey());
+            ps.setString(2, audit.getTableName());
+            ps.setString(3, audit.getChangeType().name());
+            ps.setTimestamp(4, changeDateOf(audit));
+            ps.setBytes(5, audit.getChangedColumns());
+            ps.setBytes(6, audit.getOldImage());
+            ps.setBytes(7, audit.getNewImage());
+        });
+
+        var inserted = 0;
+        for (var batch : counts) {
+            for (var count : batch) {
+                // Drivers may report SUCCESS_NO_INFO (-2) instead of a row count
+                inserted += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+        }
+        var bytes = 0L;
+        for (var audit : audits) {
+            bytes += bytesOf(audit);
+        }
+        event.finish(inserted, bytes);
+        return inserted;
+    }
+
     @Override
     public boolean isAlreadyDeleted(String tableName, Long primaryKey) {
         var sql = "SELECT COUNT(*) FROM tb_audit WHERE table_name = ? AND primary_key = ? AND change_type = 'DELETE'";
         var count = jdbcTemplate.queryForObject(sql, Integer.class, tableName, primaryKey);
         return count != null && count > 0;
     }
+
+    private void validate(Audit audit) {
+        if (audit == null) {
+            throw new IllegalArgumentException("Audit cannot be null");
+        }
+
+        if (audit.getTableName() == null || audit.getTableName().trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (audit.getPrimaryKey() == null) {
+            throw new IllegalArgumentException("Primary key cannot be null");
+        }
+
+        if (audit.getChangeType() == null) {
+            throw new IllegalArgumentException("Change type cannot be null");
+        }
+    }
+
+    // The primary key, table name, change type, change date, changed columns and images of an audit
+    private static long bytesOf(Audit audit) {
+        return 2L * Long.BYTES + DatabaseCallEvent.bytesOf(audit.getTableName()) + DatabaseCallEvent.bytesOf(audit.getChangeType().name())
+                + DatabaseCallEvent.bytesOf(audit.getChangedColumns()) + DatabaseCallEvent.bytesOf(audit.getOldImage())
+                + DatabaseCallEvent.bytesOf(audit.getNewImage());
+    }
+
+    private static Timestamp changeDateOf(Audit audit) {
+        // If change_date is provided, use it; otherwise, stamp the record with the current time
+        if (audit.getChangeDate() != null) {
+            return Timestamp.valueOf(audit.getChangeDate());
+        }
+        return new Timestamp(System.currentTimeMillis());
+    }
 }
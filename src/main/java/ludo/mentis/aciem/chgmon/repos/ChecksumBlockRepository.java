@@ -0,0 +1,18 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.ChecksumBlock;
+
+import java.util.List;
+
+public interface ChecksumBlockRepository {
+
+    List<ChecksumBlock> findByTableName(String tableName);
+
+    List<ChecksumBlock> findByTableNameAndRangeStarts(String tableName, List<Long> rangeStarts);
+
+    Integer insert(ChecksumBlock checksumBlock);
+
+    boolean update(ChecksumBlock checksumBlock);
+
+    boolean delete(Integer id);
+}
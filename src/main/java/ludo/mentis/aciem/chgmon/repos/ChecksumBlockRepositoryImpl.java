@@ -0,0 +1,191 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.ChecksumBlock;
+import ludo.mentis.aciem.chgmon.service.DatabaseCallEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+@Repository
+public class ChecksumBlockRepositoryImpl implements ChecksumBlockRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ChecksumBlockRepositoryImpl(@Qualifier("storeJdbcTemplate") JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Retrieves every packed checksum block of a table, ordered by the start of its primary key range.
+     *
+     * @param tableName the name of the monitored table
+     * @return the blocks of the table, possibly empty
+     * @throws IllegalArgumentException if tableName is null or empty
+     */
+    @Override
+    public List<ChecksumBlock> findByTableName(String tableName) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        var sql = "SELECT id_table_checksum_block, table_name, range_start, range_end, row_count, payload " +
+                "FROM tb_table_checksum_block WHERE table_name = ? ORDER BY range_start";
+
+        var event = new DatabaseCallEvent("findBlocks", tableName);
+        var blocks = jdbcTemplate.query(sql, ChecksumBlockRepositoryImpl::mapRow, tableName);
+        event.finish(blocks.size(), bytesOf(blocks));
+        return blocks;
+    }
+
+    /**
+     * Retrieves the packed checksum blocks of a few ranges of a table, for point lookups.
+     *
+     * @param tableName   the name of the monitored table
+     * @param rangeStarts the starts of the ranges to read, fewer than 2100
+     * @return the blocks that exist, ordered by the start of their range
+     * @throws IllegalArgumentException if tableName is null or empty, or rangeStarts is null or empty
+     */
+    @Override
+    public List<ChecksumBlock> findByTableNameAndRangeStarts(String tableName, List<Long> rangeStarts) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (rangeStarts == null || rangeStarts.isEmpty()) {
+            throw new IllegalArgumentException("Range starts cannot be null or empty");
+        }
+
+        var sql = "SELECT id_table_checksum_block, table_name, range_start, range_end, row_count, payload " +
+                "FROM tb_table_checksum_block WHERE table_name = ? AND range_start IN (" +
+                String.join(", ", Collections.nCopies(rangeStarts.size(), "?")) + ") ORDER BY range_start";
+
+        var arguments = new ArrayList<Object>(rangeStarts.size() + 1);
+        arguments.add(tableName);
+        arguments.addAll(rangeStarts);
+
+        var event = new DatabaseCallEvent("findBlocks", tableName);
+        var blocks = jdbcTemplate.query(sql, ChecksumBlockRepositoryImpl::mapRow, arguments.toArray());
+        event.finish(blocks.size(), bytesOf(blocks));
+        return blocks;
+    }
+
+    /**
+     * Writes a packed checksum block to the tb_table_checksum_block table.
+     *
+     * @param checksumBlock the ChecksumBlock object containing the data to be written
+     * @return the ID of the inserted record
+     * @throws IllegalArgumentException if checksumBlock is null or has null required fields
+     */
+    @Override
+    public Integer insert(ChecksumBlock checksumBlock) {
+        validate(checksumBlock);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO tb_table_checksum_block (table_name, range_start, range_end, row_count, payload) VALUES (?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS
+            );
+            ps.setString(1, checksumBlock.getTableName());
+            ps.setLong(2, checksumBlock.getRangeStart());
+            ps.setLong(3, checksumBlock.getRangeEnd());
+            ps.setInt(4, checksumBlock.getRowCount());
+            ps.setBytes(5, checksumBlock.getPayload());
+            return ps;
+        }, keyHolder);
+
+        return Objects.requireNonNull(keyHolder.getKey()).intValue();
+    }
+
+    /**
+     * Rewrites the payload of an existing packed checksum block.
+     *
+     * @param checksumBlock the ChecksumBlock object containing the updated data
+     * @return true if the update was successful, false otherwise
+     * @throws IllegalArgumentException if checksumBlock is null or has null required fields
+     */
+    @Override
+    public boolean update(ChecksumBlock checksumBlock) {
+        validate(checksumBlock);
+
+        if (checksumBlock.getId() == null) {
+            throw new IllegalArgumentException("ChecksumBlock ID cannot be null");
+        }
+
+        var sql = "UPDATE tb_table_checksum_block SET row_count = ?, payload = ? WHERE id_table_checksum_block = ?";
+
+        int rowsAffected = jdbcTemplate.update(sql,
+                checksumBlock.getRowCount(),
+                checksumBlock.getPayload(),
+                checksumBlock.getId()
+        );
+
+        return rowsAffected > 0;
+    }
+
+    @Override
+    public boolean delete(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ChecksumBlock ID cannot be null");
+        }
+
+        var sql = "DELETE FROM tb_table_checksum_block WHERE id_table_checksum_block = ?";
+        return jdbcTemplate.update(sql, id) > 0;
+    }
+
+    private static ChecksumBlock mapRow(ResultSet rs, int rowNum) throws SQLException {
+        var checksumBlock = new ChecksumBlock();
+        checksumBlock.setId(rs.getInt("id_table_checksum_block"));
+        checksumBlock.setTableName(rs.getString("table_name"));
+        checksumBlock.setRangeStart(rs.getLong("range_start"));
+        checksumBlock.setRangeEnd(rs.getLong("range_end"));
+        checksumBlock.setRowCount(rs.getInt("row_count"));
+        checksumBlock.setPayload(rs.getBytes("payload"));
+        return checksumBlock;
+    }
+
+    // The id, table name, range, row count and payload of each block
+    private static long bytesOf(List<ChecksumBlock> blocks) {
+        var bytes = 0L;
+        for (var block : blocks) {
+            bytes += 2L * Integer.BYTES + 2L * Long.BYTES + DatabaseCallEvent.bytesOf(block.getTableName()) + DatabaseCallEvent.bytesOf(block.getPayload());
+        }
+        return bytes;
+    }
+
+    private void validate(ChecksumBlock checksumBlock) {
+        if (checksumBlock == null) {
+            throw new IllegalArgumentException("ChecksumBlock cannot be null");
+        }
+
+        if (checksumBlock.getTableName() == null || checksumBlock.getTableName().trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (checksumBlock.getRangeStart() == null || checksumBlock.getRangeEnd() == null) {
+            throw new IllegalArgumentException("Range cannot be null");
+        }
+
+        if (checksumBlock.getRowCount() == null) {
+            throw new IllegalArgumentException("Row count cannot be null");
+        }
+
+        if (checksumBlock.getPayload() == null) {
+            throw new IllegalArgumentException("Payload cannot be null");
+        }
+    }
+}
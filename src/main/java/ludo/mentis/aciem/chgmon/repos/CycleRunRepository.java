@@ -0,0 +1,19 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import ludo.mentis.aciem.chgmon.model.CycleTrend;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+public interface CycleRunRepository {
+
+    Long insert(CycleRun cycleRun);
+
+    List<CycleRun> find(String tableName, LocalDateTime from, LocalDateTime to, int limit);
+
+    List<CycleTrend> findTrend(String tableName, LocalDateTime from, LocalDateTime to, ChronoUnit period);
+
+    int deleteBefore(LocalDateTime startedAt);
+}
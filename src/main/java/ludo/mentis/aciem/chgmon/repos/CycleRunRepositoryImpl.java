@@ -0,0 +1,246 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import ludo.mentis.aciem.chgmon.model.CycleTrend;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads and writes tb_cycle_run, the history of the cycles of every table kept in the store. Queries cover a range
+ * of start times, served by the (table_name, started_at) index when a table is given.
+ */
+@Repository
+public class CycleRunRepositoryImpl implements CycleRunRepository {
+
+    private static final String COLUMNS = "id_cycle_run, table_name, source_name, profile, strategy, outcome, " +
+            "started_at, ended_at, rows_scanned, bytes_hashed, inserts, updates, deletes, statements, peak_heap, error, " +
+            "server_cpu_ms, server_scheduled_ms, logical_reads, physical_reads, writes";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public CycleRunRepositoryImpl(@Qualifier("storeJdbcTemplate") JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the record of a cycle.
+     *
+     * @param cycleRun the cycle to record
+     * @return the ID of the inserted record
+     * @throws IllegalArgumentException if cycleRun is null or has null required fields
+     */
+    @Override
+    public Long insert(CycleRun cycleRun) {
+        validate(cycleRun);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO tb_cycle_run (table_name, source_name, profile, strategy, outcome, started_at, ended_at, " +
+                            "rows_scanned, bytes_hashed, inserts, updates, deletes, statements, peak_heap, error, " +
+                            "server_cpu_ms, server_scheduled_ms, logical_reads, physical_reads, writes) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS
+            );
+            ps.setString(1, cycleRun.getTableName());
+            ps.setString(2, cycleRun.getSourceName());
+            ps.setString(3, cycleRun.getProfile());
+            ps.setString(4, cycleRun.getStrategy());
+            ps.setString(5, cycleRun.getOutcome());
+            ps.setTimestamp(6, Timestamp.valueOf(cycleRun.getStartedAt()));
+            ps.setTimestamp(7, Timestamp.valueOf(cycleRun.getEndedAt()));
+            ps.setLong(8, cycleRun.getRowsScanned());
+            ps.setLong(9, cycleRun.getBytesHashed());
+            ps.setLong(10, cycleRun.getInserts());
+            ps.setLong(11, cycleRun.getUpdates());
+            ps.setLong(12, cycleRun.getDeletes());
+            ps.setLong(13, cycleRun.getStatements());
+            ps.setLong(14, cycleRun.getPeakHeap());
+            ps.setString(15, cycleRun.getError());
+            setLong(ps, 16, cycleRun.getServerCpuMillis());
+            setLong(ps, 17, cycleRun.getServerScheduledMillis());
+            setLong(ps, 18, cycleRun.getLogicalReads());
+            setLong(ps, 19, cycleRun.getPhysicalReads());
+            setLong(ps, 20, cycleRun.getWrites());
+            return ps;
+        }, keyHolder);
+
+        return Objects.requireNonNull(keyHolder.getKey()).longValue();
+    }
+
+    /**
+     * Retrieves the latest cycles started in a period.
+     *
+     * @param tableName the name of the monitored table, or null for every table
+     * @param from      the earliest start time, inclusive
+     * @param to        the latest start time, exclusive
+     * @param limit     the most cycles to return
+     * @return the cycles, latest first
+     * @throws IllegalArgumentException if from or to is null, or limit is not positive
+     */
+    @Override
+    public List<CycleRun> find(String tableName, LocalDateTime from, LocalDateTime to, int limit) {
+        validate(from, to);
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        var arguments = new ArrayList<Object>();
+        arguments.add(limit);
+        var sql = "SELECT TOP (?) " + COLUMNS + " FROM tb_cycle_run" + where(tableName, from, to, arguments) +
+                " ORDER BY started_at DESC";
+        return jdbcTemplate.query(sql, CycleRunRepositoryImpl::mapRow, arguments.toArray());
+    }
+
+    /**
+     * Adds up the cycles started in a period per table and per hour or day, computed by the server.
+     *
+     * @param tableName the name of the monitored table, or null for every table
+     * @param from      the earliest start time, inclusive
+     * @param to        the latest start time, exclusive
+     * @param period    {@link ChronoUnit#HOURS} or {@link ChronoUnit#DAYS}
+     * @return one trend per table and period with cycles, in table and period order
+     * @throws IllegalArgumentException if from or to is null, or period is neither hours nor days
+     */
+    @Override
+    public List<CycleTrend> findTrend(String tableName, LocalDateTime from, LocalDateTime to, ChronoUnit period) {
+        validate(from, to);
+        var datePart = switch (period == null ? ChronoUnit.FOREVER : period) {
+            case HOURS -> "hour";
+            case DAYS -> "day";
+            default -> throw new IllegalArgumentException("Period must be hours or days");
+        };
+
+        var truncated = String.format("DATEADD(%s, DATEDIFF(%s, 0, started_at), 0)", datePart, datePart);
+        var arguments = new ArrayList<Object>();
+        var sql = "SELECT table_name, " + truncated + " AS period, COUNT(*) AS cycles, " +
+                "SUM(CASE WHEN outcome = 'completed' THEN 0 ELSE 1 END) AS incomplete, " +
+                "AVG(DATEDIFF_BIG(millisecond, started_at, ended_at)) AS average_millis, " +
+                "MAX(DATEDIFF_BIG(millisecond, started_at, ended_at)) AS max_millis, " +
+                "SUM(rows_scanned) AS rows_scanned, SUM(bytes_hashed) AS bytes_hashed, " +
+                "SUM(inserts + updates + deletes) AS changes, SUM(statements) AS statements, MAX(peak_heap) AS peak_heap, " +
+                "SUM(server_cpu_ms) AS server_cpu_ms, SUM(logical_reads) AS logical_reads " +
+                "FROM tb_cycle_run" + where(tableName, from, to, arguments) +
+                " GROUP BY table_name, " + truncated + " ORDER BY table_name, period";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new CycleTrend(
+                rs.getString("table_name"),
+                rs.getTimestamp("period").toLocalDateTime(),
+                rs.getLong("cycles"),
+                rs.getLong("incomplete"),
+                rs.getLong("average_millis"),
+                rs.getLong("max_millis"),
+                rs.getLong("rows_scanned"),
+                rs.getLong("bytes_hashed"),
+                rs.getLong("changes"),
+                rs.getLong("statements"),
+                rs.getLong("peak_heap"),
+                rs.getLong("server_cpu_ms"),
+                rs.getLong("logical_reads")), arguments.toArray());
+    }
+
+    /**
+     * Deletes the cycles of every table started before a time.
+     *
+     * @param startedAt the start time before which cycles are deleted
+     * @return the number of records deleted
+     * @throws IllegalArgumentException if startedAt is null
+     */
+    @Override
+    public int deleteBefore(LocalDateTime startedAt) {
+        if (startedAt == null) {
+            throw new IllegalArgumentException("Start time cannot be null");
+        }
+        return jdbcTemplate.update("DELETE FROM tb_cycle_run WHERE started_at < ?", Timestamp.valueOf(startedAt));
+    }
+
+    private static String where(String tableName, LocalDateTime from, LocalDateTime to, List<Object> arguments) {
+        arguments.add(Timestamp.valueOf(from));
+        arguments.add(Timestamp.valueOf(to));
+        if (tableName == null) {
+            return " WHERE started_at >= ? AND started_at < ?";
+        }
+        arguments.add(tableName);
+        return " WHERE started_at >= ? AND started_at < ? AND table_name = ?";
+    }
+
+    private static CycleRun mapRow(ResultSet rs, int rowNum) throws SQLException {
+        var cycleRun = new CycleRun();
+        cycleRun.setId(rs.getLong("id_cycle_run"));
+        cycleRun.setTableName(rs.getString("table_name"));
+        cycleRun.setSourceName(rs.getString("source_name"));
+        cycleRun.setProfile(rs.getString("profile"));
+        cycleRun.setStrategy(rs.getString("strategy"));
+        cycleRun.setOutcome(rs.getString("outcome"));
+        cycleRun.setStartedAt(rs.getTimestamp("started_at").toLocalDateTime());
+        cycleRun.setEndedAt(rs.getTimestamp("ended_at").toLocalDateTime());
+        cycleRun.setRowsScanned(rs.getLong("rows_scanned"));
+        cycleRun.setBytesHashed(rs.getLong("bytes_hashed"));
+        cycleRun.setInserts(rs.getLong("inserts"));
+        cycleRun.setUpdates(rs.getLong("updates"));
+        cycleRun.setDeletes(rs.getLong("deletes"));
+        cycleRun.setStatements(rs.getLong("statements"));
+        cycleRun.setPeakHeap(rs.getLong("peak_heap"));
+        cycleRun.setError(rs.getString("error"));
+        cycleRun.setServerCpuMillis(getLong(rs, "server_cpu_ms"));
+        cycleRun.setServerScheduledMillis(getLong(rs, "server_scheduled_ms"));
+        cycleRun.setLogicalReads(getLong(rs, "logical_reads"));
+        cycleRun.setPhysicalReads(getLong(rs, "physical_reads"));
+        cycleRun.setWrites(getLong(rs, "writes"));
+        return cycleRun;
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+
+    private static Long getLong(ResultSet rs, String column) throws SQLException {
+        var value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void validate(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Period cannot be null");
+        }
+    }
+
+    private void validate(CycleRun cycleRun) {
+        if (cycleRun == null) {
+            throw new IllegalArgumentException("Cycle run cannot be null");
+        }
+
+        if (cycleRun.getTableName() == null || cycleRun.getTableName().trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (cycleRun.getProfile() == null || cycleRun.getStrategy() == null || cycleRun.getOutcome() == null) {
+            throw new IllegalArgumentException("Profile, strategy and outcome cannot be null");
+        }
+
+        if (cycleRun.getStartedAt() == null || cycleRun.getEndedAt() == null) {
+            throw new IllegalArgumentException("Start and end times cannot be null");
+        }
+    }
+}
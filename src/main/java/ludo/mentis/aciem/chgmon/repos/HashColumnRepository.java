@@ -0,0 +1,22 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.ComputedColumn;
+
+import java.util.List;
+
+public interface HashColumnRepository {
+
+    List<String> findHashableColumns(String tableName, String primaryKeyName, String hashColumnName);
+
+    ComputedColumn findComputedColumn(String tableName, String columnName);
+
+    boolean indexExists(String tableName, String indexName);
+
+    void addHashColumn(String tableName, String hashColumnName, List<String> columns);
+
+    void dropColumn(String tableName, String columnName);
+
+    void createIndex(String tableName, String indexName, String primaryKeyName, String hashColumnName);
+
+    void dropIndex(String tableName, String indexName);
+}
@@ -0,0 +1,125 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.ComputedColumn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Catalog queries and DDL for the persisted hash column that chgmon can add to a monitored table.
+ */
+@Repository
+public class HashColumnRepositoryImpl implements HashColumnRepository {
+
+    // Types that BINARY_CHECKSUM ignores or that cannot be used in a persisted computed column
+    private static final String UNHASHABLE_TYPES = "'text', 'ntext', 'image', 'xml', 'geography', 'geometry'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public HashColumnRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Lists the columns the hash column should cover: every stored column except the primary key, the hash column
+     * itself and columns of types BINARY_CHECKSUM cannot hash, in declaration order.
+     *
+     * @throws IllegalArgumentException if any name is null or empty
+     */
+    @Override
+    public List<String> findHashableColumns(String tableName, String primaryKeyName, String hashColumnName) {
+        validate(tableName, "Table name");
+        validate(primaryKeyName, "Primary key name");
+        validate(hashColumnName, "Hash column name");
+
+        var sql = "SELECT c.name FROM sys.columns c JOIN sys.types t ON t.user_type_id = c.user_type_id "
+                + "WHERE c.object_id = OBJECT_ID(?) AND c.is_computed = 0 AND c.name NOT IN (?, ?) "
+                + "AND t.name NOT IN (" + UNHASHABLE_TYPES + ") ORDER BY c.column_id";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("name"), tableName, primaryKeyName, hashColumnName);
+    }
+
+    /**
+     * @return the computed column, or null if the table has no computed column with that name
+     */
+    @Override
+    public ComputedColumn findComputedColumn(String tableName, String columnName) {
+        validate(tableName, "Table name");
+        validate(columnName, "Column name");
+
+        var sql = "SELECT name, definition, is_persisted FROM sys.computed_columns WHERE object_id = OBJECT_ID(?) AND name = ?";
+        var columns = jdbcTemplate.query(sql, (rs, rowNum) ->
+                new ComputedColumn(rs.getString("name"), rs.getString("definition"), rs.getBoolean("is_persisted")), tableName, columnName);
+        return columns.isEmpty() ? null : columns.get(0);
+    }
+
+    @Override
+    public boolean indexExists(String tableName, String indexName) {
+        validate(tableName, "Table name");
+        validate(indexName, "Index name");
+
+        var sql = "SELECT COUNT(*) FROM sys.indexes WHERE object_id = OBJECT_ID(?) AND name = ?";
+        var count = jdbcTemplate.queryForObject(sql, Integer.class, tableName, indexName);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Adds a persisted {@code BINARY_CHECKSUM} over the given columns. The server computes it for every existing
+     * row as part of the statement, so this rewrites the table once.
+     */
+    @Override
+    public void addHashColumn(String tableName, String hashColumnName, List<String> columns) {
+        validate(tableName, "Table name");
+        validate(hashColumnName, "Hash column name");
+
+        if (columns == null || columns.isEmpty()) {
+            throw new IllegalArgumentException("Hashed columns cannot be null or empty");
+        }
+
+        var arguments = columns.stream().map(HashColumnRepositoryImpl::quote).collect(Collectors.joining(", "));
+        jdbcTemplate.execute(String.format("ALTER TABLE %s ADD %s AS BINARY_CHECKSUM(%s) PERSISTED", tableName, quote(hashColumnName), arguments));
+    }
+
+    @Override
+    public void dropColumn(String tableName, String columnName) {
+        validate(tableName, "Table name");
+        validate(columnName, "Column name");
+
+        jdbcTemplate.execute(String.format("ALTER TABLE %s DROP COLUMN %s", tableName, quote(columnName)));
+    }
+
+    /**
+     * Creates the narrow index the cycle scans instead of the clustered index: primary key and hash only.
+     */
+    @Override
+    public void createIndex(String tableName, String indexName, String primaryKeyName, String hashColumnName) {
+        validate(tableName, "Table name");
+        validate(indexName, "Index name");
+        validate(primaryKeyName, "Primary key name");
+        validate(hashColumnName, "Hash column name");
+
+        jdbcTemplate.execute(String.format("CREATE NONCLUSTERED INDEX %s ON %s (%s, %s)",
+                quote(indexName), tableName, quote(primaryKeyName), quote(hashColumnName)));
+    }
+
+    @Override
+    public void dropIndex(String tableName, String indexName) {
+        validate(tableName, "Table name");
+        validate(indexName, "Index name");
+
+        jdbcTemplate.execute(String.format("DROP INDEX %s ON %s", quote(indexName), tableName));
+    }
+
+    private static void validate(String value, String name) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(name + " cannot be null or empty");
+        }
+    }
+
+    private static String quote(String name) {
+        return "[" + name.replace("]", "]]") + "]";
+    }
+}
@@ -0,0 +1,24 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.ShardLease;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface LeaseRepository {
+
+    int createMissing(String tableName, int shards);
+
+    List<ShardLease> findByTableName(String tableName);
+
+    boolean claim(String tableName, int shard, String owner, Duration duration);
+
+    boolean renew(String tableName, int shard, String owner, Duration duration);
+
+    boolean release(String tableName, int shard, String owner);
+
+    LocalDateTime findVerifiedDate(String tableName);
+
+    boolean saveVerifiedDate(String tableName, String owner, LocalDateTime verifiedDate);
+}
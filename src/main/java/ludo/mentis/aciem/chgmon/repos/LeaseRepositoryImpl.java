@@ -0,0 +1,175 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.ShardLease;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reads and writes tb_monitor_lease. Expiry times are computed with the clock of the database server, so that nodes
+ * whose clocks disagree still agree on which leases have expired.
+ */
+@Repository
+public class LeaseRepositoryImpl implements LeaseRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public LeaseRepositoryImpl(@Qualifier("storeJdbcTemplate") JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Creates the lease rows of the shards of a table that do not exist yet, free and expired. Several nodes may
+     * start at once: a row created by another node in the meantime is left as is.
+     *
+     * @param tableName the name of the monitored table
+     * @param shards    the number of shards
+     * @return the number of rows created
+     * @throws IllegalArgumentException if tableName is null or empty, or shards is not positive
+     */
+    @Override
+    public int createMissing(String tableName, int shards) {
+        validate(tableName);
+        if (shards < 1) {
+            throw new IllegalArgumentException("Shards must be positive");
+        }
+
+        var sql = "INSERT INTO tb_monitor_lease (table_name, shard, expires_at) SELECT ?, ?, SYSUTCDATETIME() " +
+                "WHERE NOT EXISTS (SELECT 1 FROM tb_monitor_lease WITH (UPDLOCK, HOLDLOCK) WHERE table_name = ? AND shard = ?)";
+        var created = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            try {
+                created += jdbcTemplate.update(sql, tableName, shard, tableName, shard);
+            } catch (DuplicateKeyException e) {
+                // Created by another node
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Reads the leases of every shard of a table.
+     *
+     * @param tableName the name of the monitored table
+     * @return the leases, in shard order
+     * @throws IllegalArgumentException if tableName is null or empty
+     */
+    @Override
+    public List<ShardLease> findByTableName(String tableName) {
+        validate(tableName);
+
+        var sql = "SELECT shard, owner, CASE WHEN expires_at > SYSUTCDATETIME() THEN 0 ELSE 1 END AS expired " +
+                "FROM tb_monitor_lease WHERE table_name = ? ORDER BY shard";
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                new ShardLease(rs.getInt("shard"), rs.getString("owner"), rs.getInt("expired") == 1), tableName);
+    }
+
+    /**
+     * Takes the lease of a shard if it is free, expired or already held by the same owner. The check and the update
+     * are one statement, so two nodes cannot both take the same lease.
+     *
+     * @param tableName the name of the monitored table
+     * @param shard     the shard to take
+     * @param owner     the ID of the node taking it
+     * @param duration  how long the lease lasts unless renewed
+     * @return true if the lease was taken
+     * @throws IllegalArgumentException if tableName or owner is null or empty
+     */
+    @Override
+    public boolean claim(String tableName, int shard, String owner, Duration duration) {
+        validate(tableName);
+        validateOwner(owner);
+
+        var sql = "UPDATE tb_monitor_lease SET owner = ?, expires_at = DATEADD(millisecond, ?, SYSUTCDATETIME()) " +
+                "WHERE table_name = ? AND shard = ? AND (owner IS NULL OR owner = ? OR expires_at <= SYSUTCDATETIME())";
+        return jdbcTemplate.update(sql, owner, duration.toMillis(), tableName, shard, owner) == 1;
+    }
+
+    /**
+     * Extends a lease held by the given owner. A lease that expired is still renewed as long as no other node took
+     * it in the meantime.
+     *
+     * @return true if the lease is still held by the owner
+     * @throws IllegalArgumentException if tableName or owner is null or empty
+     */
+    @Override
+    public boolean renew(String tableName, int shard, String owner, Duration duration) {
+        validate(tableName);
+        validateOwner(owner);
+
+        var sql = "UPDATE tb_monitor_lease SET expires_at = DATEADD(millisecond, ?, SYSUTCDATETIME()) " +
+                "WHERE table_name = ? AND shard = ? AND owner = ?";
+        return jdbcTemplate.update(sql, duration.toMillis(), tableName, shard, owner) == 1;
+    }
+
+    /**
+     * Gives up a lease held by the given owner, so that another node can take it at once.
+     *
+     * @return true if the lease was held by the owner
+     * @throws IllegalArgumentException if tableName or owner is null or empty
+     */
+    @Override
+    public boolean release(String tableName, int shard, String owner) {
+        validate(tableName);
+        validateOwner(owner);
+
+        var sql = "UPDATE tb_monitor_lease SET owner = NULL, expires_at = SYSUTCDATETIME() WHERE table_name = ? AND shard = ? AND owner = ?";
+        return jdbcTemplate.update(sql, tableName, shard, owner) == 1;
+    }
+
+    /**
+     * Reads the modify date of the table definition the baseline was last reconciled with, by the node holding
+     * shard 0.
+     *
+     * @param tableName the name of the monitored table
+     * @return the modify date, or null if the baseline was never reconciled
+     * @throws IllegalArgumentException if tableName is null or empty
+     */
+    @Override
+    public LocalDateTime findVerifiedDate(String tableName) {
+        validate(tableName);
+
+        var sql = "SELECT verified_date FROM tb_monitor_lease WHERE table_name = ? AND shard = 0";
+        var dates = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            var date = rs.getTimestamp("verified_date");
+            return date != null ? date.toLocalDateTime() : null;
+        }, tableName);
+        return dates.isEmpty() ? null : dates.get(0);
+    }
+
+    /**
+     * Records the modify date of the table definition the baseline was reconciled with. Only the node holding
+     * shard 0 can record it.
+     *
+     * @return true if the owner holds shard 0
+     * @throws IllegalArgumentException if tableName or owner is null or empty
+     */
+    @Override
+    public boolean saveVerifiedDate(String tableName, String owner, LocalDateTime verifiedDate) {
+        validate(tableName);
+        validateOwner(owner);
+
+        var sql = "UPDATE tb_monitor_lease SET verified_date = ? WHERE table_name = ? AND shard = 0 AND owner = ?";
+        return jdbcTemplate.update(sql, verifiedDate != null ? Timestamp.valueOf(verifiedDate) : null, tableName, owner) == 1;
+    }
+
+    private static void validate(String tableName) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+    }
+
+    private static void validateOwner(String owner) {
+        if (owner == null || owner.trim().isEmpty()) {
+            throw new IllegalArgumentException("Owner cannot be null or empty");
+        }
+    }
+}
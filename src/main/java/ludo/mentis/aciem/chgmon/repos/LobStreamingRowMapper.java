@@ -0,0 +1,260 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.LobDigest;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Maps rows like {@code queryForList} does, except that large object columns ({@code VARBINARY(MAX)},
+ * {@code NVARCHAR(MAX)}, {@code VARCHAR(MAX)}, {@code XML}, {@code TEXT}, {@code IMAGE}) are read through
+ * {@code getBinaryStream}/{@code getCharacterStream} in fixed-size chunks and replaced by a {@link LobDigest}. The
+ * digest covers the same bytes the checksum service would have hashed for the materialized value, so checksums do
+ * not change.
+ * <p>
+ * A value longer than the maximum size is not read further; it is hashed by the server with
+ * {@code HASHBYTES('SHA2_256', ...)} when {@link #hashOversized()} is called. That must wait until the scan is over:
+ * a query sent while the result set is still open would run on the same connection, making the driver buffer the
+ * rest of the response, and would wait forever for a second connection when the pool has a single one. Not
+ * thread-safe: create one per query.
+ */
+class LobStreamingRowMapper extends ColumnMapRowMapper {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final int MAX_INLINE_LENGTH = 8000;
+    private static final int MAX_KEYS_PER_QUERY = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+    private final String primaryKeyName;
+    private final long maxLobSize;
+    private final byte[] bytes = new byte[CHUNK_SIZE];
+    private final char[] chars = new char[CHUNK_SIZE];
+    private final CRC32 crc32 = new CRC32();
+    private final List<String> oversized = new ArrayList<>();
+    private final Map<String, String> hashExpressions = new HashMap<>();
+    private final List<Oversized> pending = new ArrayList<>();
+    private long length;
+
+    LobStreamingRowMapper(JdbcTemplate jdbcTemplate, String tableName, String primaryKeyName, long maxLobSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.primaryKeyName = primaryKeyName;
+        this.maxLobSize = maxLobSize;
+    }
+
+    @Override
+    public Map<String, Object> mapRow(ResultSet rs, int rowNum) throws SQLException {
+        oversized.clear();
+        var row = super.mapRow(rs, rowNum);
+        for (var column : oversized) {
+            pending.add(new Oversized(row, column, row.get(primaryKeyName)));
+        }
+        return row;
+    }
+
+    /**
+     * Replaces the values that were longer than the maximum size, left null in the rows mapped so far, by the digest
+     * of their server-side hash. The keys are read with one query per column and per batch of keys.
+     */
+    void hashOversized() {
+        var byColumn = new LinkedHashMap<String, List<Oversized>>();
+        for (var value : pending) {
+            byColumn.computeIfAbsent(value.column(), column -> new ArrayList<>()).add(value);
+        }
+        pending.clear();
+
+        for (var entry : byColumn.entrySet()) {
+            var values = entry.getValue();
+            for (int from = 0; from < values.size(); from += MAX_KEYS_PER_QUERY) {
+                var batch = values.subList(from, Math.min(from + MAX_KEYS_PER_QUERY, values.size()));
+                var primaryKeys = batch.stream().map(Oversized::primaryKey).toArray();
+                var sql = String.format("SELECT %s, HASHBYTES('SHA2_256', %s) FROM %s WHERE %s IN (%s)",
+                        primaryKeyName, hashExpressions.get(entry.getKey()), tableName, primaryKeyName,
+                        String.join(", ", Collections.nCopies(primaryKeys.length, "?")));
+                var hashes = new HashMap<Object, byte[]>();
+                jdbcTemplate.query(sql, (RowCallbackHandler) rs -> hashes.put(rs.getObject(1), rs.getBytes(2)), primaryKeys);
+                for (var value : batch) {
+                    value.row().put(value.column(), serverDigest(hashes.get(value.primaryKey())));
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Object getColumnValue(ResultSet rs, int index) throws SQLException {
+        var metaData = rs.getMetaData();
+        var type = metaData.getColumnType(index);
+        var precision = metaData.getPrecision(index);
+        if (isBinaryLob(type, precision)) {
+            var column = JdbcUtils.lookupColumnName(metaData, index);
+            hashExpressions.computeIfAbsent(column, name -> hashExpression(name, metaData, index));
+            return digest(rs.getBinaryStream(index), column);
+        }
+        if (isCharacterLob(type, precision)) {
+            var column = JdbcUtils.lookupColumnName(metaData, index);
+            hashExpressions.computeIfAbsent(column, name -> hashExpression(name, metaData, index));
+            return digest(rs.getCharacterStream(index), column);
+        }
+        return super.getColumnValue(rs, index);
+    }
+
+    /**
+     * The argument of {@code HASHBYTES} for a column. It only takes {@code varchar}, {@code nvarchar} and
+     * {@code varbinary}, so the other large object types are converted to the matching {@code (max)} type first.
+     */
+    static String hashExpression(String column, String typeName) {
+        var quoted = "[" + column.replace("]", "]]") + "]";
+        return switch (typeName != null ? typeName.toLowerCase(Locale.ROOT) : "") {
+            case "xml", "ntext" -> "CONVERT(nvarchar(max), " + quoted + ")";
+            case "text" -> "CONVERT(varchar(max), " + quoted + ")";
+            case "image" -> "CONVERT(varbinary(max), " + quoted + ")";
+            default -> quoted;
+        };
+    }
+
+    private static String hashExpression(String column, ResultSetMetaData metaData, int index) {
+        try {
+            return hashExpression(column, metaData.getColumnTypeName(index));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the type of column " + column, e);
+        }
+    }
+
+    static boolean isBinaryLob(int type, int precision) {
+        return switch (type) {
+            case Types.BLOB, Types.LONGVARBINARY -> true;
+            case Types.VARBINARY -> isUnbounded(precision);
+            default -> false;
+        };
+    }
+
+    static boolean isCharacterLob(int type, int precision) {
+        return switch (type) {
+            case Types.CLOB, Types.NCLOB, Types.LONGVARCHAR, Types.LONGNVARCHAR, Types.SQLXML -> true;
+            case Types.VARCHAR, Types.NVARCHAR -> isUnbounded(precision);
+            default -> false;
+        };
+    }
+
+    private static boolean isUnbounded(int precision) {
+        return precision <= 0 || precision > MAX_INLINE_LENGTH;
+    }
+
+    private LobDigest digest(InputStream stream, String column) throws SQLException {
+        if (stream == null) {
+            return null;
+        }
+        crc32.reset();
+        length = 0;
+        try (stream) {
+            int read;
+            while ((read = stream.read(bytes)) != -1) {
+                length += read;
+                if (length > maxLobSize) {
+                    oversized.add(column);
+                    return null;
+                }
+                crc32.update(bytes, 0, read);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to stream column " + column, e);
+        }
+        return new LobDigest(crc32.getValue(), length, false);
+    }
+
+    /**
+     * Encodes the text with the platform charset, as {@code String.getBytes()} does, without holding more than a
+     * chunk of it. Surrogate pairs split across two chunks are kept in the char buffer until the next read.
+     */
+    private LobDigest digest(Reader reader, String column) throws SQLException {
+        if (reader == null) {
+            return null;
+        }
+        crc32.reset();
+        length = 0;
+        var encoder = newEncoder();
+        var in = CharBuffer.wrap(chars);
+        var out = ByteBuffer.wrap(bytes);
+        try (reader) {
+            var endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = reader.read(in) == -1;
+                in.flip();
+                CoderResult result;
+                do {
+                    result = encoder.encode(in, out, endOfInput);
+                    if (!drain(out)) {
+                        oversized.add(column);
+                        return null;
+                    }
+                } while (result.isOverflow());
+                in.compact();
+            }
+            encoder.flush(out);
+            if (!drain(out)) {
+                oversized.add(column);
+                return null;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to stream column " + column, e);
+        }
+        return new LobDigest(crc32.getValue(), length, false);
+    }
+
+    /**
+     * Hashes the encoded bytes and empties the buffer.
+     *
+     * @return false if the value is now longer than the maximum size
+     */
+    private boolean drain(ByteBuffer out) {
+        length += out.position();
+        if (length > maxLobSize) {
+            return false;
+        }
+        crc32.update(bytes, 0, out.position());
+        out.clear();
+        return true;
+    }
+
+    private static CharsetEncoder newEncoder() {
+        return Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static LobDigest serverDigest(byte[] hash) {
+        if (hash == null) {
+            return null;
+        }
+        var checksum = new CRC32();
+        checksum.update(hash);
+        return new LobDigest(checksum.getValue(), hash.length, true);
+    }
+
+    private record Oversized(Map<String, Object> row, String column, Object primaryKey) {
+    }
+}
@@ -1,5 +1,8 @@
 package ludo.mentis.aciem.chgmon.repos;
 
+import ludo.mentis.aciem.chgmon.model.BucketChecksum;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import ludo.mentis.aciem.chgmon.model.ServerCost;
 import ludo.mentis.aciem.chgmon.model.TableChecksum;
 
 import java.util.List;
@@ -9,5 +12,29 @@ public interface MonitorRepository {
 
     List<Map<String, Object>> findAll(String tableName, String primaryKeyName);
 
-    TableChecksum findDeletedRows(String tableName, String primaryKeyName);
+    List<Map<String, Object>> findAll(String tableName, String primaryKeyName, List<PkRange> ranges);
+
+    List<Map<String, Object>> findAll(String tableName, String primaryKeyName, List<String> columns, String filter, List<PkRange> ranges);
+
+    List<Map<String, Object>> findHashes(String tableName, String primaryKeyName, String hashColumnName);
+
+    List<Map<String, Object>> findHashes(String tableName, String primaryKeyName, String hashColumnName, List<PkRange> ranges);
+
+    List<Map<String, Object>> findHashes(String tableName, String primaryKeyName, String hashColumnName, String filter, List<PkRange> ranges);
+
+    List<Map<String, Object>> findByPrimaryKeys(String tableName, String primaryKeyName, List<String> columns, String filter, List<Long> primaryKeys);
+
+    List<Map<String, Object>> findHashesByPrimaryKeys(String tableName, String primaryKeyName, String hashColumnName, String filter, List<Long> primaryKeys);
+
+    List<Long> findExistingKeys(String tableName, String primaryKeyName, List<Long> primaryKeys);
+
+    List<Long> findPrimaryKeys(String tableName, String primaryKeyName, String predicate);
+
+    PkRange findKeyBounds(String tableName, String primaryKeyName);
+
+    List<BucketChecksum> findBucketChecksums(String tableName, String primaryKeyName, long bucketSize, List<String> columns, String filter);
+
+    List<TableChecksum> findDeletedRows(String tableName, String primaryKeyName);
+
+    ServerCost findSessionCost();
 }
@@ -1,25 +1,51 @@
 package ludo.mentis.aciem.chgmon.repos;
 
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.BucketChecksum;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import ludo.mentis.aciem.chgmon.model.ServerCost;
 import ludo.mentis.aciem.chgmon.model.TableChecksum;
+import ludo.mentis.aciem.chgmon.service.CycleContext;
+import ludo.mentis.aciem.chgmon.service.DatabaseCallEvent;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
 @Repository
 public class MonitorRepositoryImpl implements MonitorRepository {
 
+    /**
+     * The most primary key ranges read by one statement. Each range takes two parameters and SQL Server accepts at
+     * most 2100 per statement, so longer lists of ranges are read with one statement per batch.
+     */
+    static final int MAX_RANGES_PER_QUERY = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final long maxLobSize;
 
     @Autowired
-    public MonitorRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    public MonitorRepositoryImpl(JdbcTemplate jdbcTemplate, MonitorProperties monitorProperties) {
+        this(jdbcTemplate, monitorProperties.getLob().getMaxSize().toBytes());
+    }
+
+    MonitorRepositoryImpl(JdbcTemplate jdbcTemplate, long maxLobSize) {
+        if (maxLobSize < 1) {
+            throw new IllegalArgumentException("Max LOB size must be positive");
+        }
         this.jdbcTemplate = jdbcTemplate;
+        this.maxLobSize = maxLobSize;
     }
 
     /**
-     * Retrieves all rows from a specified table.
+     * Retrieves all rows from a specified table. Large object columns come back as a
+     * {@link ludo.mentis.aciem.chgmon.model.LobDigest}, hashed while streamed, here and in the other methods that
+     * read whole rows.
      *
      * @param tableName    the name of the table to query
      * @param primaryKeyName the name of the primary key column
@@ -36,25 +62,500 @@ public class MonitorRepositoryImpl implements MonitorRepository {
             throw new IllegalArgumentException("Primary key name cannot be null or empty");
         }
 
-        var sql = String.format("SELECT * FROM %s ORDER BY %s", tableName, primaryKeyName);
+        var sql = String.format("SELECT * FROM %s ORDER BY %s%s", tableName, primaryKeyName, hint());
         
-        return jdbcTemplate.queryForList(sql);
+        var event = new DatabaseCallEvent("findAll", tableName);
+        var rowMapper = rowMapper(tableName, primaryKeyName);
+        var rows = jdbcTemplate.query(sql, rowMapper);
+        rowMapper.hashOversized();
+        event.finish(rows);
+        return rows;
     }
 
+    /**
+     * Retrieves the rows of a table whose primary key falls in one of the given ranges, for partial scans. Each
+     * range is a seek on the primary key index.
+     *
+     * @param tableName      the name of the table to query
+     * @param primaryKeyName the name of the primary key column
+     * @param ranges         the primary key ranges to read
+     * @return the rows in the ranges, in primary key order
+     * @throws IllegalArgumentException if tableName or primaryKeyName is null or empty, or ranges is null or empty
+     */
     @Override
-    public TableChecksum findDeletedRows(String tableName, String primaryKeyName) {
-        var sql = String.format("SELECT * FROM tb_table_checksum WHERE table_name = '%s' AND primary_key NOT IN (SELECT %s FROM %s)", tableName, primaryKeyName, tableName);
-        try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
-                var tableChecksum = new TableChecksum();
-                tableChecksum.setId(rs.getInt("id_table_checksum"));
-                tableChecksum.setTableName(rs.getString("table_name"));
-                tableChecksum.setPrimaryKey(rs.getLong("primary_key"));
-                tableChecksum.setCrc32(rs.getLong("crc32"));
-                return tableChecksum;
-            });
-        } catch (org.springframework.dao.EmptyResultDataAccessException e) {
-            return null; // Return null if no record is found
+    public List<Map<String, Object>> findAll(String tableName, String primaryKeyName, List<PkRange> ranges) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        var rowMapper = rowMapper(tableName, primaryKeyName);
+        var event = new DatabaseCallEvent("findAll", tableName);
+        var rows = new ArrayList<Map<String, Object>>();
+        for (var batch : rangeBatches(ranges)) {
+            var sql = String.format("SELECT * FROM %s WHERE %s ORDER BY %s%s", tableName, rangeFilter(primaryKeyName, batch), primaryKeyName, hint());
+            rows.addAll(jdbcTemplate.query(sql, rowMapper, rangeArguments(batch)));
+        }
+        rowMapper.hashOversized();
+        event.finish(rows);
+        return rows;
+    }
+
+    /**
+     * Retrieves the selected columns of the rows of a table that match a scope filter, optionally restricted to
+     * primary key ranges. The filter is pushed down as is, so the server can use partition elimination or an index
+     * on the filtered columns, and only the selected columns cross the network.
+     *
+     * @param tableName      the name of the table to query
+     * @param primaryKeyName the name of the primary key column
+     * @param columns        the columns to read, primary key included, or null for every column
+     * @param filter         the body of a WHERE clause, or null for every row
+     * @param ranges         the primary key ranges to read, or null for the whole table
+     * @return the matching rows, in primary key order
+     * @throws IllegalArgumentException if tableName or primaryKeyName is null or empty, or ranges is empty
+     */
+    @Override
+    public List<Map<String, Object>> findAll(String tableName, String primaryKeyName, List<String> columns, String filter, List<PkRange> ranges) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        var rowMapper = rowMapper(tableName, primaryKeyName);
+        var event = new DatabaseCallEvent("findAll", tableName);
+        List<Map<String, Object>> rows;
+        if (ranges == null) {
+            rows = jdbcTemplate.query(String.format("SELECT %s FROM %s%s ORDER BY %s%s", selectList(columns), tableName,
+                    where(filter, null), primaryKeyName, hint()), rowMapper);
+        } else {
+            rows = new ArrayList<>();
+            for (var batch : rangeBatches(ranges)) {
+                var sql = String.format("SELECT %s FROM %s%s ORDER BY %s%s", selectList(columns), tableName,
+                        where(filter, rangeFilter(primaryKeyName, batch)), primaryKeyName, hint());
+                rows.addAll(jdbcTemplate.query(sql, rowMapper, rangeArguments(batch)));
+            }
+        }
+        rowMapper.hashOversized();
+        event.finish(rows);
+        return rows;
+    }
+
+    /**
+     * Retrieves the primary key and the persisted hash of every row. Only these two columns are read, so the server
+     * can answer from the narrow (primary key, hash) index without touching the clustered index.
+     *
+     * @param tableName      the name of the table to query
+     * @param primaryKeyName the name of the primary key column
+     * @param hashColumnName the name of the persisted hash column
+     * @return a list of maps holding the primary key and the hash of each row, in primary key order
+     * @throws IllegalArgumentException if any name is null or empty
+     */
+    @Override
+    public List<Map<String, Object>> findHashes(String tableName, String primaryKeyName, String hashColumnName) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        if (hashColumnName == null || hashColumnName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Hash column name cannot be null or empty");
+        }
+
+        var sql = String.format("SELECT %s, %s FROM %s ORDER BY %s%s", primaryKeyName, hashColumnName, tableName, primaryKeyName, hint());
+
+        var event = new DatabaseCallEvent("findHashes", tableName);
+        var rows = jdbcTemplate.queryForList(sql);
+        event.finish(rows);
+        return rows;
+    }
+
+    /**
+     * Same as {@link #findHashes(String, String, String)}, restricted to the given primary key ranges.
+     *
+     * @throws IllegalArgumentException if any name is null or empty, or ranges is null or empty
+     */
+    @Override
+    public List<Map<String, Object>> findHashes(String tableName, String primaryKeyName, String hashColumnName, List<PkRange> ranges) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        if (hashColumnName == null || hashColumnName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Hash column name cannot be null or empty");
+        }
+
+        var event = new DatabaseCallEvent("findHashes", tableName);
+        var rows = new ArrayList<Map<String, Object>>();
+        for (var batch : rangeBatches(ranges)) {
+            var sql = String.format("SELECT %s, %s FROM %s WHERE %s ORDER BY %s%s",
+                    primaryKeyName, hashColumnName, tableName, rangeFilter(primaryKeyName, batch), primaryKeyName, hint());
+            rows.addAll(jdbcTemplate.queryForList(sql, rangeArguments(batch)));
+        }
+        event.finish(rows);
+        return rows;
+    }
+
+    /**
+     * Same as {@link #findAll(String, String, List, String, List)}, reading only the primary key and the persisted hash.
+     * Unless the filtered columns are added to the (primary key, hash) index, the filter makes the server read the
+     * rows themselves.
+     *
+     * @throws IllegalArgumentException if any name is null or empty, or ranges is empty
+     */
+    @Override
+    public List<Map<String, Object>> findHashes(String tableName, String primaryKeyName, String hashColumnName, String filter, List<PkRange> ranges) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        if (hashColumnName == null || hashColumnName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Hash column name cannot be null or empty");
+        }
+
+        var event = new DatabaseCallEvent("findHashes", tableName);
+        List<Map<String, Object>> rows;
+        if (ranges == null) {
+            rows = jdbcTemplate.queryForList(String.format("SELECT %s, %s FROM %s%s ORDER BY %s%s", primaryKeyName, hashColumnName,
+                    tableName, where(filter, null), primaryKeyName, hint()));
+        } else {
+            rows = new ArrayList<>();
+            for (var batch : rangeBatches(ranges)) {
+                var sql = String.format("SELECT %s, %s FROM %s%s ORDER BY %s%s", primaryKeyName, hashColumnName, tableName,
+                        where(filter, rangeFilter(primaryKeyName, batch)), primaryKeyName, hint());
+                rows.addAll(jdbcTemplate.queryForList(sql, rangeArguments(batch)));
+            }
+        }
+        event.finish(rows);
+        return rows;
+    }
+
+    /**
+     * Retrieves a batch of rows by primary key with a single {@code IN} list, for the watchlist. Keys that no longer
+     * exist are simply absent from the result. SQL Server accepts at most 2100 parameters per statement, so callers
+     * must keep batches below that.
+     *
+     * @param tableName      the name of the table to query
+     * @param primaryKeyName the name of the primary key column
+     * @param columns        the columns to read, primary key included, or null for every column
+     * @param filter         the scope filter the rows must also match, or null
+     * @param primaryKeys    the primary keys to read
+     * @return the rows that still exist (and match the filter), in primary key order
+     * @throws IllegalArgumentException if tableName or primaryKeyName is null or empty, or primaryKeys is null or empty
+     */
+    @Override
+    public List<Map<String, Object>> findByPrimaryKeys(String tableName, String primaryKeyName, List<String> columns, String filter, List<Long> primaryKeys) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        var sql = String.format("SELECT %s FROM %s%s ORDER BY %s", selectList(columns), tableName, where(filter, keyFilter(primaryKeyName, primaryKeys)), primaryKeyName);
+
+        var event = new DatabaseCallEvent("findByPrimaryKeys", tableName);
+        var rowMapper = rowMapper(tableName, primaryKeyName);
+        var rows = jdbcTemplate.query(sql, rowMapper, primaryKeys.toArray());
+        rowMapper.hashOversized();
+        event.finish(rows);
+        return rows;
+    }
+
+    /**
+     * Same as {@link #findByPrimaryKeys(String, String, List, String, List)}, reading only the primary key and the
+     * persisted hash.
+     *
+     * @throws IllegalArgumentException if any name is null or empty, or primaryKeys is null or empty
+     */
+    @Override
+    public List<Map<String, Object>> findHashesByPrimaryKeys(String tableName, String primaryKeyName, String hashColumnName, String filter, List<Long> primaryKeys) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
         }
+
+        if (hashColumnName == null || hashColumnName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Hash column name cannot be null or empty");
+        }
+
+        var sql = String.format("SELECT %s, %s FROM %s%s ORDER BY %s",
+                primaryKeyName, hashColumnName, tableName, where(filter, keyFilter(primaryKeyName, primaryKeys)), primaryKeyName);
+
+        var event = new DatabaseCallEvent("findHashesByPrimaryKeys", tableName);
+        var rows = jdbcTemplate.queryForList(sql, primaryKeys.toArray());
+        event.finish(rows);
+        return rows;
+    }
+
+    /**
+     * Tells which of the given primary keys still exist, regardless of any scope filter. Used to tell rows that were
+     * deleted from rows that only left the scope.
+     *
+     * @param tableName      the name of the table to query
+     * @param primaryKeyName the name of the primary key column
+     * @param primaryKeys    the primary keys to look up, fewer than 2100
+     * @return the keys that exist, in ascending order
+     * @throws IllegalArgumentException if tableName or primaryKeyName is null or empty, or primaryKeys is null or empty
+     */
+    @Override
+    public List<Long> findExistingKeys(String tableName, String primaryKeyName, List<Long> primaryKeys) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        var sql = String.format("SELECT %s FROM %s WHERE %s ORDER BY %s", primaryKeyName, tableName, keyFilter(primaryKeyName, primaryKeys), primaryKeyName);
+
+        return jdbcTemplate.queryForList(sql, Long.class, primaryKeys.toArray());
+    }
+
+    /**
+     * Retrieves the primary keys of the rows matching a SQL predicate, such as {@code status = 'OPEN'}. The predicate
+     * comes from the configuration and is inlined as is.
+     *
+     * @param tableName      the name of the table to query
+     * @param primaryKeyName the name of the primary key column
+     * @param predicate      the body of the WHERE clause
+     * @return the matching primary keys, in ascending order
+     * @throws IllegalArgumentException if any argument is null or empty
+     */
+    @Override
+    public List<Long> findPrimaryKeys(String tableName, String primaryKeyName, String predicate) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        if (predicate == null || predicate.trim().isEmpty()) {
+            throw new IllegalArgumentException("Predicate cannot be null or empty");
+        }
+
+        var sql = String.format("SELECT %s FROM %s WHERE %s ORDER BY %s", primaryKeyName, tableName, predicate, primaryKeyName);
+
+        return jdbcTemplate.queryForList(sql, Long.class);
+    }
+
+    /**
+     * Reads the cumulative counters of the session of the connection this is run on. A session can always see its own
+     * row of {@code sys.dm_exec_sessions}, without VIEW SERVER STATE.
+     *
+     * @return the CPU time, scheduled time, logical reads, physical reads and writes of the session so far
+     */
+    @Override
+    public ServerCost findSessionCost() {
+        var sql = "SELECT cpu_time, total_scheduled_time, logical_reads, reads, writes FROM sys.dm_exec_sessions WHERE session_id = @@SPID";
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> new ServerCost(rs.getLong("cpu_time"),
+                rs.getLong("total_scheduled_time"), rs.getLong("logical_reads"), rs.getLong("reads"), rs.getLong("writes")));
+    }
+
+    /**
+     * Reads the lowest and highest primary key of a table, from the two ends of the primary key index.
+     *
+     * @param tableName      the name of the table to query
+     * @param primaryKeyName the name of the primary key column
+     * @return the key bounds, or null if the table is empty
+     * @throws IllegalArgumentException if tableName or primaryKeyName is null or empty
+     */
+    @Override
+    public PkRange findKeyBounds(String tableName, String primaryKeyName) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        var sql = String.format("SELECT MIN(%s) AS min_key, MAX(%s) AS max_key FROM %s", primaryKeyName, primaryKeyName, tableName);
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
+            var min = rs.getLong("min_key");
+            return rs.wasNull() ? null : new PkRange(min, rs.getLong("max_key"));
+        });
+    }
+
+    /**
+     * Computes the aggregate checksum of every primary key bucket of a table on the server, for light cycles: only
+     * one row per bucket crosses the network. Rows are hashed with {@code BINARY_CHECKSUM}, which ignores
+     * {@code text}, {@code ntext}, {@code image} and {@code xml} columns and may collide, so an unchanged aggregate
+     * does not prove that a bucket is unchanged.
+     *
+     * @param tableName      the name of the table to query
+     * @param primaryKeyName the name of the primary key column
+     * @param bucketSize     the number of primary keys per bucket
+     * @param columns        the columns to hash, or null for every column
+     * @param filter         the body of a WHERE clause, or null for every row
+     * @return the buckets that hold at least one row, in primary key order
+     * @throws IllegalArgumentException if tableName or primaryKeyName is null or empty, or bucketSize is not positive
+     */
+    @Override
+    public List<BucketChecksum> findBucketChecksums(String tableName, String primaryKeyName, long bucketSize, List<String> columns, String filter) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeyName == null || primaryKeyName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Primary key name cannot be null or empty");
+        }
+
+        if (bucketSize < 1) {
+            throw new IllegalArgumentException("Bucket size must be positive");
+        }
+
+        // Integer division truncates towards zero: shift negative keys so that buckets are floored
+        var bucket = String.format("CASE WHEN %s >= 0 THEN %s / %d ELSE (%s + 1) / %d - 1 END",
+                primaryKeyName, primaryKeyName, bucketSize, primaryKeyName, bucketSize);
+        var sql = String.format("SELECT bucket, CHECKSUM_AGG(row_checksum) AS bucket_checksum, COUNT_BIG(*) AS row_count " +
+                        "FROM (SELECT %s AS bucket, BINARY_CHECKSUM(%s) AS row_checksum FROM %s%s) AS row_checksums " +
+                        "GROUP BY bucket ORDER BY bucket%s",
+                bucket, selectList(columns), tableName, where(filter, null), hint());
+
+        var event = new DatabaseCallEvent("findBucketChecksums", tableName);
+        var buckets = jdbcTemplate.query(sql, (rs, rowNum) ->
+                new BucketChecksum(rs.getLong("bucket") * bucketSize, rs.getInt("bucket_checksum"), rs.getLong("row_count")));
+        // A bigint bucket, an int checksum and a bigint count per bucket
+        event.finish(buckets.size(), buckets.size() * (2L * Long.BYTES + Integer.BYTES));
+        return buckets;
+    }
+
+    /**
+     * The {@code MAXDOP} hint of the cycle running on this thread, for the queries that scan the table.
+     */
+    private static String hint() {
+        var cycle = CycleContext.current();
+        return cycle != null && cycle.getParallelism() > 0 ? " OPTION (MAXDOP " + cycle.getParallelism() + ")" : "";
+    }
+
+    private LobStreamingRowMapper rowMapper(String tableName, String primaryKeyName) {
+        return new LobStreamingRowMapper(jdbcTemplate, tableName, primaryKeyName, maxLobSize);
+    }
+
+    /**
+     * Sorts the ranges, joins those that overlap or touch, and splits them in batches of at most
+     * {@link #MAX_RANGES_PER_QUERY}. Since the batches follow each other in primary key order and do not overlap, the
+     * rows of one query per batch, put end to end, are still in primary key order and hold each row once.
+     */
+    static List<List<PkRange>> rangeBatches(List<PkRange> ranges) {
+        if (ranges == null || ranges.isEmpty()) {
+            throw new IllegalArgumentException("Primary key ranges cannot be null or empty");
+        }
+
+        var sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(PkRange::start));
+        var joined = new ArrayList<PkRange>();
+        var current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            var next = sorted.get(i);
+            if (current.end() != Long.MAX_VALUE && next.start() > current.end() + 1) {
+                joined.add(current);
+                current = next;
+            } else if (next.end() > current.end()) {
+                current = new PkRange(current.start(), next.end());
+            }
+        }
+        joined.add(current);
+
+        var batches = new ArrayList<List<PkRange>>();
+        for (int from = 0; from < joined.size(); from += MAX_RANGES_PER_QUERY) {
+            batches.add(joined.subList(from, Math.min(from + MAX_RANGES_PER_QUERY, joined.size())));
+        }
+        return batches;
+    }
+
+    private static String rangeFilter(String primaryKeyName, List<PkRange> ranges) {
+        var filter = new StringBuilder();
+        for (int i = 0; i < ranges.size(); i++) {
+            if (i > 0) {
+                filter.append(" OR ");
+            }
+            filter.append('(').append(primaryKeyName).append(" BETWEEN ? AND ?)");
+        }
+        return filter.toString();
+    }
+
+    private static String selectList(List<String> columns) {
+        if (columns == null) {
+            return "*";
+        }
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("Columns cannot be empty");
+        }
+
+        var select = new StringBuilder();
+        for (var column : columns) {
+            if (!select.isEmpty()) {
+                select.append(", ");
+            }
+            select.append('[').append(column.replace("]", "]]")).append(']');
+        }
+        return select.toString();
+    }
+
+    private static String where(String filter, String keyCondition) {
+        if (filter == null) {
+            return keyCondition != null ? " WHERE " + keyCondition : "";
+        }
+        return keyCondition != null
+                ? " WHERE (" + filter + ") AND (" + keyCondition + ")"
+                : " WHERE " + filter;
+    }
+
+    private static String keyFilter(String primaryKeyName, List<Long> primaryKeys) {
+        if (primaryKeys == null || primaryKeys.isEmpty()) {
+            throw new IllegalArgumentException("Primary keys cannot be null or empty");
+        }
+
+        return primaryKeyName + " IN (" + String.join(", ", Collections.nCopies(primaryKeys.size(), "?")) + ")";
+    }
+
+    private static Object[] rangeArguments(List<PkRange> ranges) {
+        var arguments = new Object[ranges.size() * 2];
+        for (int i = 0; i < ranges.size(); i++) {
+            arguments[i * 2] = ranges.get(i).start();
+            arguments[i * 2 + 1] = ranges.get(i).end();
+        }
+        return arguments;
+    }
+
+    @Override
+    public List<TableChecksum> findDeletedRows(String tableName, String primaryKeyName) {
+        var sql = String.format("SELECT * FROM tb_table_checksum WHERE table_name = '%s' AND primary_key NOT IN (SELECT %s FROM %s)", tableName, primaryKeyName, tableName);
+        var event = new DatabaseCallEvent("findDeletedRows", tableName);
+        var deletedRows = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            var tableChecksum = new TableChecksum();
+            tableChecksum.setId(rs.getInt("id_table_checksum"));
+            tableChecksum.setTableName(rs.getString("table_name"));
+            tableChecksum.setPrimaryKey(rs.getLong("primary_key"));
+            tableChecksum.setCrc32(rs.getLong("crc32"));
+            return tableChecksum;
+        });
+        event.finish(deletedRows.size(), deletedRows.size() * TableChecksumRepositoryImpl.rowBytes(tableName));
+        return deletedRows;
     }
 }
@@ -2,11 +2,24 @@ package ludo.mentis.aciem.chgmon.repos;
 
 import ludo.mentis.aciem.chgmon.model.TableChecksum;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface TableChecksumRepository {
 
     Integer insert(TableChecksum tableChecksum);
 
     TableChecksum findByTableNameAndPrimaryKey(String tableName, Long primaryKey);
+
+    List<TableChecksum> findByTableNameAndPrimaryKeys(String tableName, List<Long> primaryKeys);
     
     boolean update(TableChecksum tableChecksum);
+
+    int updateBatch(List<TableChecksum> tableChecksums);
+
+    byte[] findColumnHashes(Integer id);
+
+    void forEachByTableName(String tableName, Consumer<TableChecksum> consumer);
+
+    int deleteByTableNameAndPrimaryKeys(String tableName, List<Long> primaryKeys);
 }
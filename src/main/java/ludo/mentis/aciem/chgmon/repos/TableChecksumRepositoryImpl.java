@@ -1,15 +1,22 @@
 package ludo.mentis.aciem.chgmon.repos;
 
 import ludo.mentis.aciem.chgmon.model.TableChecksum;
+import ludo.mentis.aciem.chgmon.service.DatabaseCallEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 @Repository
 public class TableChecksumRepositoryImpl implements TableChecksumRepository {
@@ -17,7 +24,7 @@ public class TableChecksumRepositoryImpl implements TableChecksumRepository {
     private final JdbcTemplate jdbcTemplate;
 
     @Autowired
-    public TableChecksumRepositoryImpl(JdbcTemplate jdbcTemplate) {
+    public TableChecksumRepositoryImpl(@Qualifier("storeJdbcTemplate") JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
@@ -50,12 +57,13 @@ public class TableChecksumRepositoryImpl implements TableChecksumRepository {
 
         jdbcTemplate.update(connection -> {
             PreparedStatement ps = connection.prepareStatement(
-                    "INSERT INTO tb_table_checksum (table_name, primary_key, crc32) VALUES (?, ?, ?)",
+                    "INSERT INTO tb_table_checksum (table_name, primary_key, crc32, column_hashes) VALUES (?, ?, ?, ?)",
                     Statement.RETURN_GENERATED_KEYS
             );
             ps.setString(1, tableChecksum.getTableName());
             ps.setLong(2, tableChecksum.getPrimaryKey());
             ps.setLong(3, tableChecksum.getCrc32());
+            ps.setBytes(4, tableChecksum.getColumnHashes());
             return ps;
         }, keyHolder);
 
@@ -70,8 +78,9 @@ public class TableChecksumRepositoryImpl implements TableChecksumRepository {
 
         String sql = "SELECT id_table_checksum, table_name, primary_key, crc32 FROM tb_table_checksum WHERE table_name = ? AND primary_key = ?";
         
+        var event = new DatabaseCallEvent("findByTableNameAndPrimaryKey", tableName);
         try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
+            var found = jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
                 TableChecksum tableChecksum = new TableChecksum();
                 tableChecksum.setId(rs.getInt("id_table_checksum"));
                 tableChecksum.setTableName(rs.getString("table_name"));
@@ -79,11 +88,48 @@ public class TableChecksumRepositoryImpl implements TableChecksumRepository {
                 tableChecksum.setCrc32(rs.getLong("crc32"));
                 return tableChecksum;
             }, tableName, primaryKey);
+            event.finish(1, rowBytes(tableName));
+            return found;
         } catch (org.springframework.dao.EmptyResultDataAccessException e) {
+            event.finish(0, 0);
             return null; // Return null if no record is found
         }
     }
     
+    /**
+     * Retrieves the checksum records of a batch of primary keys with a single {@code IN} list.
+     *
+     * @param tableName   the name of the monitored table
+     * @param primaryKeys the primary keys to look up, fewer than 2100
+     * @return the records found, in primary key order; keys without a record are absent
+     * @throws IllegalArgumentException if primaryKeys is null or empty
+     */
+    @Override
+    public List<TableChecksum> findByTableNameAndPrimaryKeys(String tableName, List<Long> primaryKeys) {
+        if (primaryKeys == null || primaryKeys.isEmpty()) {
+            throw new IllegalArgumentException("Primary keys cannot be null or empty");
+        }
+
+        var sql = "SELECT id_table_checksum, table_name, primary_key, crc32 FROM tb_table_checksum WHERE table_name = ? AND primary_key IN (" +
+                String.join(", ", Collections.nCopies(primaryKeys.size(), "?")) + ") ORDER BY primary_key";
+
+        var arguments = new ArrayList<Object>(primaryKeys.size() + 1);
+        arguments.add(tableName);
+        arguments.addAll(primaryKeys);
+
+        var event = new DatabaseCallEvent("findByTableNameAndPrimaryKeys", tableName);
+        var found = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            TableChecksum tableChecksum = new TableChecksum();
+            tableChecksum.setId(rs.getInt("id_table_checksum"));
+            tableChecksum.setTableName(rs.getString("table_name"));
+            tableChecksum.setPrimaryKey(rs.getLong("primary_key"));
+            tableChecksum.setCrc32(rs.getLong("crc32"));
+            return tableChecksum;
+        }, arguments.toArray());
+        event.finish(found.size(), found.size() * rowBytes(tableName));
+        return found;
+    }
+
     /**
      * Updates an existing checksum record in the tb_table_checksum table.
      *
@@ -113,6 +159,17 @@ public class TableChecksumRepositoryImpl implements TableChecksumRepository {
             throw new IllegalArgumentException("CRC32 cannot be null");
         }
 
+        if (tableChecksum.getColumnHashes() != null) {
+            var sql = "UPDATE tb_table_checksum SET table_name = ?, primary_key = ?, crc32 = ?, column_hashes = ? WHERE id_table_checksum = ?";
+            return jdbcTemplate.update(sql,
+                    tableChecksum.getTableName(),
+                    tableChecksum.getPrimaryKey(),
+                    tableChecksum.getCrc32(),
+                    tableChecksum.getColumnHashes(),
+                    tableChecksum.getId()
+            ) > 0;
+        }
+
         String sql = "UPDATE tb_table_checksum SET table_name = ?, primary_key = ?, crc32 = ? WHERE id_table_checksum = ?";
         
         int rowsAffected = jdbcTemplate.update(sql, 
@@ -124,4 +181,124 @@ public class TableChecksumRepositoryImpl implements TableChecksumRepository {
         
         return rowsAffected > 0;
     }
+
+    /**
+     * Updates the checksums and column hash vectors of many records in JDBC batches. Meant for bulk rehashing,
+     * where every vector is stale anyway: a null vector is written as null.
+     *
+     * @param tableChecksums the records to update; each must have an ID and a CRC32
+     * @return the number of records updated
+     * @throws IllegalArgumentException if the list is null or a record has null required fields
+     */
+    @Override
+    public int updateBatch(List<TableChecksum> tableChecksums) {
+        if (tableChecksums == null) {
+            throw new IllegalArgumentException("TableChecksum list cannot be null");
+        }
+
+        for (var tableChecksum : tableChecksums) {
+            if (tableChecksum.getId() == null) {
+                throw new IllegalArgumentException("TableChecksum ID cannot be null");
+            }
+
+            if (tableChecksum.getCrc32() == null) {
+                throw new IllegalArgumentException("CRC32 cannot be null");
+            }
+        }
+
+        if (tableChecksums.isEmpty()) {
+            return 0;
+        }
+
+        var sql = "UPDATE tb_table_checksum SET crc32 = ?, column_hashes = ? WHERE id_table_checksum = ?";
+        var results = jdbcTemplate.batchUpdate(sql, tableChecksums, tableChecksums.size(), (ps, tableChecksum) -> {
+            ps.setLong(1, tableChecksum.getCrc32());
+            ps.setBytes(2, tableChecksum.getColumnHashes());
+            ps.setInt(3, tableChecksum.getId());
+        });
+
+        var updated = 0;
+        for (var batch : results) {
+            for (var count : batch) {
+                updated += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Reads the column hash vector of a checksum record. Kept out of {@link #findByTableNameAndPrimaryKey} so that
+     * the per-row lookup stays narrow; the vector is only needed once the row checksum differs.
+     *
+     * @param id the ID of the checksum record
+     * @return the stored vector, or null if none was stored
+     */
+    @Override
+    public byte[] findColumnHashes(Integer id) {
+        if (id == null) {
+            throw new IllegalArgumentException("TableChecksum ID cannot be null");
+        }
+
+        var sql = "SELECT column_hashes FROM tb_table_checksum WHERE id_table_checksum = ?";
+        var vectors = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getBytes("column_hashes"), id);
+        return vectors.isEmpty() ? null : vectors.get(0);
+    }
+
+    /**
+     * Streams every checksum record of a table in primary key order, without materializing them in a list.
+     *
+     * @param tableName the name of the monitored table
+     * @param consumer  receives each record as it is read
+     */
+    @Override
+    public void forEachByTableName(String tableName, Consumer<TableChecksum> consumer) {
+        var sql = "SELECT id_table_checksum, table_name, primary_key, crc32 FROM tb_table_checksum WHERE table_name = ? ORDER BY primary_key";
+
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            TableChecksum tableChecksum = new TableChecksum();
+            tableChecksum.setId(rs.getInt("id_table_checksum"));
+            tableChecksum.setTableName(rs.getString("table_name"));
+            tableChecksum.setPrimaryKey(rs.getLong("primary_key"));
+            tableChecksum.setCrc32(rs.getLong("crc32"));
+            consumer.accept(tableChecksum);
+        }, tableName);
+    }
+
+    /**
+     * Deletes the checksum records of the given primary keys, for rows that no longer exist. SQL Server accepts at
+     * most 2100 parameters per statement, so callers must keep batches below that.
+     *
+     * @param tableName   the name of the monitored table
+     * @param primaryKeys the primary keys whose records to delete
+     * @return the number of records deleted
+     * @throws IllegalArgumentException if tableName is null or empty, or primaryKeys is null
+     */
+    @Override
+    public int deleteByTableNameAndPrimaryKeys(String tableName, List<Long> primaryKeys) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+
+        if (primaryKeys == null) {
+            throw new IllegalArgumentException("Primary keys cannot be null");
+        }
+
+        if (primaryKeys.isEmpty()) {
+            return 0;
+        }
+
+        var sql = "DELETE FROM tb_table_checksum WHERE table_name = ? AND primary_key IN ("
+                + String.join(", ", Collections.nCopies(primaryKeys.size(), "?")) + ")";
+        var arguments = new ArrayList<Object>(primaryKeys.size() + 1);
+        arguments.add(tableName);
+        arguments.addAll(primaryKeys);
+        return jdbcTemplate.update(sql, arguments.toArray());
+    }
+
+    /**
+     * The estimated bytes of a record read without its column hashes: its id, table name, primary key and crc32.
+     */
+    static long rowBytes(String tableName) {
+        return Integer.BYTES + DatabaseCallEvent.bytesOf(tableName) + 2L * Long.BYTES;
+    }
 }
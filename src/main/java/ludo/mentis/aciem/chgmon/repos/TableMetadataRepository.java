@@ -0,0 +1,18 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import ludo.mentis.aciem.chgmon.model.TableSchema;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TableMetadataRepository {
+
+    LocalDateTime findModifyDate(String tableName);
+
+    List<TableColumn> findColumns(String tableName);
+
+    TableSchema findStored(String tableName);
+
+    void save(TableSchema tableSchema);
+}
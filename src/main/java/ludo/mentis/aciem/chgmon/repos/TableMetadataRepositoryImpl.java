@@ -0,0 +1,143 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import ludo.mentis.aciem.chgmon.model.TableSchema;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class TableMetadataRepositoryImpl implements TableMetadataRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    // tb_table_schema lives with the baselines, which may be kept in a central store
+    private final JdbcTemplate storeJdbcTemplate;
+
+    public TableMetadataRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, jdbcTemplate);
+    }
+
+    @Autowired
+    public TableMetadataRepositoryImpl(JdbcTemplate jdbcTemplate, @Qualifier("storeJdbcTemplate") JdbcTemplate storeJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storeJdbcTemplate = storeJdbcTemplate;
+    }
+
+    /**
+     * Reads the last DDL change date of a table from the catalog. This is a single-row lookup, cheap enough to run
+     * on every cycle; the column list is only read when it moves.
+     *
+     * @param tableName the name of the monitored table, optionally schema-qualified
+     * @return the modify date, or null if the table does not exist
+     * @throws IllegalArgumentException if tableName is null or empty
+     */
+    @Override
+    public LocalDateTime findModifyDate(String tableName) {
+        validate(tableName);
+
+        var sql = "SELECT modify_date FROM sys.objects WHERE object_id = OBJECT_ID(?)";
+        var dates = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getTimestamp("modify_date").toLocalDateTime(), tableName);
+        return dates.isEmpty() ? null : dates.get(0);
+    }
+
+    /**
+     * Reads the columns of a table in declaration order, which is the order of {@code SELECT *}.
+     *
+     * @param tableName the name of the monitored table, optionally schema-qualified
+     * @return the columns of the table, empty if the table does not exist
+     * @throws IllegalArgumentException if tableName is null or empty
+     */
+    @Override
+    public List<TableColumn> findColumns(String tableName) {
+        validate(tableName);
+
+        var sql = "SELECT c.name, t.name AS type_name, c.max_length, c.precision, c.scale FROM sys.columns c "
+                + "JOIN sys.types t ON t.user_type_id = c.user_type_id WHERE c.object_id = OBJECT_ID(?) ORDER BY c.column_id";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new TableColumn(rs.getString("name"),
+                typeOf(rs.getString("type_name"), rs.getInt("max_length"), rs.getInt("precision"), rs.getInt("scale"))), tableName);
+    }
+
+    @Override
+    public TableSchema findStored(String tableName) {
+        validate(tableName);
+
+        var sql = "SELECT table_name, modify_date, columns FROM tb_table_schema WHERE table_name = ?";
+        var schemas = storeJdbcTemplate.query(sql, (rs, rowNum) -> new TableSchema(rs.getString("table_name"),
+                rs.getTimestamp("modify_date").toLocalDateTime(), parseColumns(rs.getString("columns"))), tableName);
+        return schemas.isEmpty() ? null : schemas.get(0);
+    }
+
+    /**
+     * Stores the schema the baseline of a table was hashed with, replacing the previous one.
+     *
+     * @param tableSchema the schema to store
+     * @throws IllegalArgumentException if tableSchema is null or has null required fields
+     */
+    @Override
+    public void save(TableSchema tableSchema) {
+        if (tableSchema == null) {
+            throw new IllegalArgumentException("TableSchema cannot be null");
+        }
+
+        validate(tableSchema.getTableName());
+
+        if (tableSchema.getModifyDate() == null) {
+            throw new IllegalArgumentException("Modify date cannot be null");
+        }
+
+        if (tableSchema.getColumns() == null) {
+            throw new IllegalArgumentException("Columns cannot be null");
+        }
+
+        var modifyDate = Timestamp.valueOf(tableSchema.getModifyDate());
+        var columns = formatColumns(tableSchema.getColumns());
+        var updated = storeJdbcTemplate.update("UPDATE tb_table_schema SET modify_date = ?, columns = ? WHERE table_name = ?",
+                modifyDate, columns, tableSchema.getTableName());
+        if (updated == 0) {
+            storeJdbcTemplate.update("INSERT INTO tb_table_schema (table_name, modify_date, columns) VALUES (?, ?, ?)",
+                    tableSchema.getTableName(), modifyDate, columns);
+        }
+    }
+
+    private static void validate(String tableName) {
+        if (tableName == null || tableName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Table name cannot be null or empty");
+        }
+    }
+
+    private static String typeOf(String typeName, int maxLength, int precision, int scale) {
+        return switch (typeName) {
+            case "decimal", "numeric" -> typeName + "(" + precision + "," + scale + ")";
+            case "datetime2", "datetimeoffset", "time" -> typeName + "(" + scale + ")";
+            case "char", "varchar", "binary", "varbinary" -> typeName + "(" + (maxLength == -1 ? "max" : maxLength) + ")";
+            case "nchar", "nvarchar" -> typeName + "(" + (maxLength == -1 ? "max" : maxLength / 2) + ")";
+            default -> typeName;
+        };
+    }
+
+    // One column per line, name and type separated by a tab
+    private static String formatColumns(List<TableColumn> columns) {
+        var text = new StringBuilder();
+        for (var column : columns) {
+            text.append(column.name()).append('\t').append(column.type()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static List<TableColumn> parseColumns(String text) {
+        var columns = new ArrayList<TableColumn>();
+        for (var line : text.split("\n")) {
+            var separator = line.lastIndexOf('\t');
+            if (separator > 0) {
+                columns.add(new TableColumn(line.substring(0, separator), line.substring(separator + 1)));
+            }
+        }
+        return columns;
+    }
+}
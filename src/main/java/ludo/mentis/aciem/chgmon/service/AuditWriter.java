@@ -0,0 +1,24 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.Audit;
+
+public interface AuditWriter {
+
+    void write(Audit audit);
+
+    void flush();
+
+    int getQueueDepth();
+
+    long getFlushCount();
+
+    long getWrittenCount();
+
+    long getFailedCount();
+
+    long getBackpressureCount();
+
+    long getLastFlushMillis();
+
+    long getMaxFlushMillis();
+}
@@ -0,0 +1,276 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import jakarta.annotation.PreDestroy;
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.config.ThreadFactories;
+import ludo.mentis.aciem.chgmon.model.Audit;
+import ludo.mentis.aciem.chgmon.repos.AuditRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes audits to tb_audit off the scan thread.
+ * <p>
+ * Audits are queued in a bounded queue and written by a single background thread in JDBC batches, as soon as a
+ * batch is full or the flush interval has elapsed. When the queue is full, {@link #write(Audit)} blocks, which
+ * slows the scan down instead of letting the heap grow. {@link #flush()} waits until everything written so far has
+ * reached the database, and on shutdown the queue is drained before the thread stops; audits submitted after that
+ * are inserted inline.
+ * <p>
+ * With {@code monitor.audit-writer.async=false} every audit is inserted inline, as before.
+ * <p>
+ * With {@code monitor.change-log.enabled=true}, audits are also appended to the {@link ChangeLog} once they are in
+ * the database, in the order they were written, and {@link #flush()} forces the log to disk.
+ */
+@Service
+public class AuditWriterImpl implements AuditWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditWriterImpl.class);
+
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AuditRepository auditRepository;
+    private final ChangeLog changeLog;
+    private final boolean async;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<Audit> queue;
+    private final Object progress = new Object();
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong backpressureCount = new AtomicLong();
+    private volatile long lastFlushMillis;
+    private volatile long maxFlushMillis;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public AuditWriterImpl(AuditRepository auditRepository, ChangeLog changeLog, MonitorProperties monitorProperties) {
+        var settings = monitorProperties.getAuditWriter();
+        this.auditRepository = auditRepository;
+        this.changeLog = changeLog;
+        this.async = settings.isAsync();
+        this.batchSize = Math.max(1, settings.getBatchSize());
+        this.flushIntervalNanos = settings.getFlushInterval().toNanos();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity()));
+
+        if (async) {
+            running = true;
+            flusher = ThreadFactories.create(monitorProperties, "audit-writer").newThread(this::run);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Queues an audit for writing, blocking while the queue is full.
+     *
+     * @param audit the audit to write
+     * @throws IllegalArgumentException if audit is null
+     */
+    @Override
+    public void write(Audit audit) {
+        if (audit == null) {
+            throw new IllegalArgumentException("Audit cannot be null");
+        }
+
+        // The read lock keeps close() from slipping in between the running check and the enqueue
+        lifecycle.readLock().lock();
+        try {
+            if (running) {
+                submittedCount.incrementAndGet();
+                if (queue.offer(audit)) {
+                    return;
+                }
+                backpressureCount.incrementAndGet();
+                try {
+                    queue.put(audit);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    submittedCount.decrementAndGet();
+                }
+            }
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+
+        auditRepository.insert(audit);
+        writtenCount.incrementAndGet();
+        log(List.of(audit));
+    }
+
+    /**
+     * Blocks until every audit submitted before the call has been written (or has failed).
+     */
+    @Override
+    public void flush() {
+        var target = submittedCount.get();
+        synchronized (progress) {
+            while (running && completedCount.get() < target) {
+                try {
+                    progress.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (changeLog.isEnabled()) {
+            try {
+                changeLog.flush();
+            } catch (RuntimeException e) {
+                logger.error("Could not flush the change log", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lifecycle.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever the flusher could not get to is written inline
+        var remaining = new ArrayList<Audit>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            writeBatch(remaining);
+        }
+        logger.info("Audit writer stopped. Written: {}, failed: {}", writtenCount.get(), failedCount.get());
+    }
+
+    private void run() {
+        var batch = new ArrayList<Audit>(batchSize);
+        while (running || !queue.isEmpty()) {
+            var deadline = System.nanoTime() + flushIntervalNanos;
+            try {
+                while (batch.size() < batchSize) {
+                    var remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running && queue.isEmpty()) {
+                        break;
+                    }
+                    // Poll in short slices so that close() does not have to wait for a whole interval
+                    var audit = queue.poll(Math.min(remaining, POLL_SLICE_NANOS), TimeUnit.NANOSECONDS);
+                    if (audit != null) {
+                        batch.add(audit);
+                        queue.drainTo(batch, batchSize - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Audit> batch) {
+        var start = System.nanoTime();
+        try {
+            auditRepository.insertBatch(batch);
+            writtenCount.addAndGet(batch.size());
+            log(batch);
+        } catch (RuntimeException e) {
+            // One bad record must not take the whole batch with it
+            logger.warn("Batch insert of {} audits failed, retrying one by one: {}", batch.size(), e.getMessage());
+            var written = new ArrayList<Audit>(batch.size());
+            for (var audit : batch) {
+                try {
+                    auditRepository.insert(audit);
+                    writtenCount.incrementAndGet();
+                    written.add(audit);
+                } catch (RuntimeException ex) {
+                    failedCount.incrementAndGet();
+                    logger.error("Table: {}. Could not write {} audit for row {}", audit.getTableName(), audit.getChangeType(), audit.getPrimaryKey(), ex);
+                }
+            }
+            log(written);
+        }
+
+        var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        lastFlushMillis = elapsedMillis;
+        maxFlushMillis = Math.max(maxFlushMillis, elapsedMillis);
+        flushCount.incrementAndGet();
+        logger.debug("Flushed {} audits in {} ms. Queue depth: {}", batch.size(), elapsedMillis, queue.size());
+
+        completedCount.addAndGet(batch.size());
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+    }
+
+    // Audits that reached the database must not be lost to a change log failure, which is only reported
+    private void log(List<Audit> audits) {
+        if (!changeLog.isEnabled() || audits.isEmpty()) {
+            return;
+        }
+        try {
+            changeLog.append(audits);
+        } catch (RuntimeException e) {
+            logger.error("Could not append {} audits to the change log", audits.size(), e);
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    @Override
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public long getBackpressureCount() {
+        return backpressureCount.get();
+    }
+
+    @Override
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    @Override
+    public long getMaxFlushMillis() {
+        return maxFlushMillis;
+    }
+}
@@ -0,0 +1,334 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.ChecksumBlock;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory view of the packed baseline of one table for the duration of a cycle.
+ * <p>
+ * Blocks stay compressed until the scan reaches their range, and only one range is decoded at a time, so rows
+ * must be visited in ascending primary key order (which is what {@code ORDER BY pk} gives us). When the scan
+ * leaves a range, every key of that range that was not visited is reported as deleted, and the block is
+ * re-encoded only if something in it changed.
+ * <p>
+ * For partial scans, {@link #setScope(List)} limits deletion detection to the ranges that were actually read.
+ * For point lookups, {@link #setRetainUnvisited(boolean)} turns it off, and deleted rows are taken out one by one
+ * with {@link #remove(long)}.
+ */
+public class BlockBaseline {
+
+    private final String tableName;
+    private final long rangeSize;
+    private final NavigableMap<Long, ChecksumBlock> blocks = new TreeMap<>();
+    private final List<ChecksumBlock> changedBlocks = new ArrayList<>();
+    private final List<Long> deletedKeys = new ArrayList<>();
+    private List<PkRange> scope;
+    private boolean retainUnvisited;
+    private OpenRange current;
+    private boolean finished;
+
+    public BlockBaseline(String tableName, long rangeSize, List<ChecksumBlock> blocks) {
+        if (rangeSize <= 0) {
+            throw new IllegalArgumentException("Range size must be positive");
+        }
+        this.tableName = tableName;
+        this.rangeSize = rangeSize;
+        for (var block : blocks) {
+            this.blocks.put(block.getRangeStart(), block);
+        }
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Restricts the cycle to the given primary key ranges, which must be aligned to the range size. Blocks outside
+     * of them are left alone instead of being reported as deleted.
+     *
+     * @param scope the ranges scanned in this cycle, or null for the whole table
+     */
+    public void setScope(List<PkRange> scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Keeps the rows that are not visited instead of reporting them as deleted, for callers that only visit a few
+     * rows of each range.
+     */
+    public void setRetainUnvisited(boolean retainUnvisited) {
+        this.retainUnvisited = retainUnvisited;
+    }
+
+    /**
+     * Returns the stored checksum of a row and marks it as seen in this cycle.
+     *
+     * @param primaryKey the primary key of the row
+     * @return the stored checksum, or null if the row is not part of the baseline
+     */
+    public Long find(long primaryKey) {
+        return open(primaryKey).find(primaryKey);
+    }
+
+    /**
+     * Returns the stored column hash vector of a row visited by {@link #find(long)}.
+     *
+     * @return the vector, or null if none was stored for the row
+     */
+    public byte[] findColumnHashes(long primaryKey) {
+        return open(primaryKey).findColumnHashes(primaryKey);
+    }
+
+    /**
+     * Stores the checksum of a row and marks it as seen in this cycle.
+     */
+    public void put(long primaryKey, long checksum) {
+        open(primaryKey).put(primaryKey, checksum, null);
+    }
+
+    /**
+     * Stores the checksum and column hash vector of a row and marks it as seen in this cycle.
+     */
+    public void put(long primaryKey, long checksum, byte[] columnHashes) {
+        open(primaryKey).put(primaryKey, checksum, columnHashes);
+    }
+
+    /**
+     * Takes a row out of the baseline.
+     *
+     * @return true if the row was part of the baseline
+     */
+    public boolean remove(long primaryKey) {
+        return open(primaryKey).remove(primaryKey);
+    }
+
+    /**
+     * Closes the remaining ranges. Blocks the scan never reached had all their rows deleted.
+     *
+     * @return the primary keys that were in the baseline but were not visited during the cycle
+     */
+    public List<Long> finish() {
+        if (!finished) {
+            if (current != null) {
+                current.close();
+                dropUnvisited(blocks.tailMap(current.start, false));
+            } else {
+                dropUnvisited(blocks);
+            }
+            current = null;
+            finished = true;
+        }
+        return deletedKeys;
+    }
+
+    /**
+     * Blocks whose content changed during the cycle. A block with a row count of zero became empty and should be
+     * removed from the store.
+     */
+    public List<ChecksumBlock> getChangedBlocks() {
+        return changedBlocks;
+    }
+
+    private OpenRange open(long primaryKey) {
+        if (finished) {
+            throw new IllegalStateException("Baseline of table " + tableName + " is already finished");
+        }
+
+        var start = Math.floorDiv(primaryKey, rangeSize) * rangeSize;
+        if (current != null && current.start == start) {
+            return current;
+        }
+
+        if (current != null) {
+            if (start < current.start) {
+                throw new IllegalStateException("Rows of table " + tableName + " must be visited in ascending primary key order");
+            }
+            current.close();
+            dropUnvisited(blocks.subMap(current.start, false, start, false));
+        } else {
+            dropUnvisited(blocks.headMap(start, false));
+        }
+
+        current = new OpenRange(start, blocks.get(start));
+        return current;
+    }
+
+    private void dropUnvisited(NavigableMap<Long, ChecksumBlock> skipped) {
+        if (retainUnvisited) {
+            return;
+        }
+        for (var block : skipped.values()) {
+            if (!inScope(block.getRangeStart())) {
+                continue;
+            }
+            var entries = ChecksumBlockCodec.decode(block.getRangeStart(), block.getPayload());
+            for (var primaryKey : entries.primaryKeys()) {
+                deletedKeys.add(primaryKey);
+            }
+            block.setRowCount(0);
+            changedBlocks.add(block);
+        }
+    }
+
+    private boolean inScope(long rangeStart) {
+        if (scope == null) {
+            return true;
+        }
+        for (var range : scope) {
+            if (range.contains(rangeStart)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class OpenRange {
+
+        private final long start;
+        private final ChecksumBlock block;
+        private long[] keys;
+        private long[] checksums;
+        private byte[][] columnHashes;
+        private boolean[] seen;
+        private int size;
+        private boolean dirty;
+        // Index of the row last found, which the scan usually reads or updates right after
+        private int last = -1;
+
+        private OpenRange(long start, ChecksumBlock block) {
+            this.start = start;
+            this.block = block;
+            if (block != null) {
+                var entries = ChecksumBlockCodec.decode(start, block.getPayload());
+                keys = entries.primaryKeys();
+                checksums = entries.checksums();
+                columnHashes = entries.columnHashes();
+                size = keys.length;
+            } else {
+                keys = new long[16];
+                checksums = new long[16];
+            }
+            seen = new boolean[keys.length];
+        }
+
+        private Long find(long primaryKey) {
+            var index = Arrays.binarySearch(keys, 0, size, primaryKey);
+            if (index < 0) {
+                return null;
+            }
+            seen[index] = true;
+            last = index;
+            return checksums[index];
+        }
+
+        private byte[] findColumnHashes(long primaryKey) {
+            var index = indexOf(primaryKey);
+            return index >= 0 && columnHashes != null ? columnHashes[index] : null;
+        }
+
+        private int indexOf(long primaryKey) {
+            return last >= 0 && last < size && keys[last] == primaryKey ? last : Arrays.binarySearch(keys, 0, size, primaryKey);
+        }
+
+        private void put(long primaryKey, long checksum, byte[] vector) {
+            if (vector != null && columnHashes == null) {
+                columnHashes = new byte[keys.length][];
+            }
+
+            var index = indexOf(primaryKey);
+            if (index >= 0) {
+                seen[index] = true;
+                if (checksums[index] != checksum) {
+                    checksums[index] = checksum;
+                    dirty = true;
+                }
+                if (vector != null && !Arrays.equals(columnHashes[index], vector)) {
+                    columnHashes[index] = vector;
+                    dirty = true;
+                }
+                return;
+            }
+
+            index = -index - 1;
+            if (size == keys.length) {
+                var capacity = Math.max(16, size + (size >> 1));
+                keys = Arrays.copyOf(keys, capacity);
+                checksums = Arrays.copyOf(checksums, capacity);
+                seen = Arrays.copyOf(seen, capacity);
+                if (columnHashes != null) {
+                    columnHashes = Arrays.copyOf(columnHashes, capacity);
+                }
+            }
+            if (index < size) {
+                System.arraycopy(keys, index, keys, index + 1, size - index);
+                System.arraycopy(checksums, index, checksums, index + 1, size - index);
+                System.arraycopy(seen, index, seen, index + 1, size - index);
+                if (columnHashes != null) {
+                    System.arraycopy(columnHashes, index, columnHashes, index + 1, size - index);
+                }
+            }
+            keys[index] = primaryKey;
+            checksums[index] = checksum;
+            if (columnHashes != null) {
+                columnHashes[index] = vector;
+            }
+            seen[index] = true;
+            size++;
+            dirty = true;
+            last = -1;
+        }
+
+        private boolean remove(long primaryKey) {
+            var index = Arrays.binarySearch(keys, 0, size, primaryKey);
+            if (index < 0) {
+                return false;
+            }
+            var moved = size - index - 1;
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(checksums, index + 1, checksums, index, moved);
+            System.arraycopy(seen, index + 1, seen, index, moved);
+            if (columnHashes != null) {
+                System.arraycopy(columnHashes, index + 1, columnHashes, index, moved);
+            }
+            size--;
+            dirty = true;
+            last = -1;
+            return true;
+        }
+
+        private void close() {
+            var kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (seen[i] || retainUnvisited) {
+                    keys[kept] = keys[i];
+                    checksums[kept] = checksums[i];
+                    if (columnHashes != null) {
+                        columnHashes[kept] = columnHashes[i];
+                    }
+                    kept++;
+                } else {
+                    deletedKeys.add(keys[i]);
+                    dirty = true;
+                }
+            }
+
+            if (!dirty) {
+                return;
+            }
+
+            var changed = block != null ? block : new ChecksumBlock();
+            changed.setTableName(tableName);
+            changed.setRangeStart(start);
+            changed.setRangeEnd(start + rangeSize - 1);
+            changed.setRowCount(kept);
+            changed.setPayload(ChecksumBlockCodec.encode(start, keys, checksums, columnHashes, kept));
+            changedBlocks.add(changed);
+        }
+    }
+}
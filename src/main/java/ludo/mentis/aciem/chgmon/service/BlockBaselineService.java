@@ -0,0 +1,12 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import java.util.List;
+
+public interface BlockBaselineService {
+
+    BlockBaseline load(String tableName);
+
+    BlockBaseline loadRanges(String tableName, List<Long> primaryKeys);
+
+    void save(BlockBaseline baseline);
+}
@@ -0,0 +1,102 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.ChecksumBlock;
+import ludo.mentis.aciem.chgmon.repos.ChecksumBlockRepository;
+import ludo.mentis.aciem.chgmon.repos.TableChecksumRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+@Service
+public class BlockBaselineServiceImpl implements BlockBaselineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockBaselineServiceImpl.class);
+
+    private final ChecksumBlockRepository checksumBlockRepository;
+    private final TableChecksumRepository tableChecksumRepository;
+    private final long rangeSize;
+
+    public BlockBaselineServiceImpl(MonitorProperties monitorProperties,
+                                    ChecksumBlockRepository checksumBlockRepository,
+                                    TableChecksumRepository tableChecksumRepository) {
+        this.checksumBlockRepository = checksumBlockRepository;
+        this.tableChecksumRepository = tableChecksumRepository;
+        this.rangeSize = monitorProperties.getBaseline().getRangeSize();
+    }
+
+    /**
+     * Loads the packed baseline of a table. The first time a table is loaded in block mode, its blocks are seeded
+     * from the per-row checksums in tb_table_checksum so that switching stores does not report every row as new.
+     *
+     * @param tableName the name of the monitored table
+     * @return the baseline of the table, ready to be visited in primary key order
+     */
+    @Override
+    public BlockBaseline load(String tableName) {
+        var blocks = checksumBlockRepository.findByTableName(tableName);
+        if (!blocks.isEmpty()) {
+            logger.debug("Table: {}. Loaded {} checksum blocks", tableName, blocks.size());
+            return new BlockBaseline(tableName, rangeSize, blocks);
+        }
+
+        var baseline = new BlockBaseline(tableName, rangeSize, blocks);
+        var seeded = new long[1];
+        tableChecksumRepository.forEachByTableName(tableName, tableChecksum -> {
+            baseline.put(tableChecksum.getPrimaryKey(), tableChecksum.getCrc32());
+            seeded[0]++;
+        });
+        if (seeded[0] > 0) {
+            baseline.finish();
+            save(baseline);
+            logger.info("Table: {}. Seeded {} checksum blocks from {} row checksums", tableName, baseline.getChangedBlocks().size(), seeded[0]);
+            return new BlockBaseline(tableName, rangeSize, baseline.getChangedBlocks());
+        }
+        return baseline;
+    }
+
+    /**
+     * Loads only the blocks holding the given primary keys, for point lookups. Rows of those blocks that are not
+     * visited are kept as they are.
+     *
+     * @param tableName   the name of the monitored table
+     * @param primaryKeys the primary keys that will be visited
+     * @return the partial baseline of the table
+     */
+    @Override
+    public BlockBaseline loadRanges(String tableName, List<Long> primaryKeys) {
+        var rangeStarts = new TreeSet<Long>();
+        for (var primaryKey : primaryKeys) {
+            rangeStarts.add(Math.floorDiv(primaryKey, rangeSize) * rangeSize);
+        }
+
+        var baseline = new BlockBaseline(tableName, rangeSize, checksumBlockRepository.findByTableNameAndRangeStarts(tableName, new ArrayList<>(rangeStarts)));
+        baseline.setRetainUnvisited(true);
+        return baseline;
+    }
+
+    /**
+     * Writes back the blocks whose ranges changed during the cycle. Untouched blocks are not rewritten.
+     *
+     * @param baseline a finished baseline
+     */
+    @Override
+    public void save(BlockBaseline baseline) {
+        for (ChecksumBlock block : baseline.getChangedBlocks()) {
+            if (block.getRowCount() == 0) {
+                if (block.getId() != null) {
+                    checksumBlockRepository.delete(block.getId());
+                }
+            } else if (block.getId() == null) {
+                block.setId(checksumBlockRepository.insert(block));
+            } else {
+                checksumBlockRepository.update(block);
+            }
+        }
+        logger.debug("Table: {}. Wrote {} checksum blocks", baseline.getTableName(), baseline.getChangedBlocks().size());
+    }
+}
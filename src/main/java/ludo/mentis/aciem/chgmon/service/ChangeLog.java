@@ -0,0 +1,26 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.Audit;
+
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+import java.util.List;
+
+public interface ChangeLog {
+
+    boolean isEnabled();
+
+    void append(List<Audit> audits);
+
+    void flush();
+
+    long getStartOffset();
+
+    long getEndOffset();
+
+    long offsetAt(Instant time);
+
+    long transferTo(long offset, long maxBytes, WritableByteChannel target);
+
+    long getDiskBytes();
+}
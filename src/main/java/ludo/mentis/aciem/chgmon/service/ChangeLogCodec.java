@@ -0,0 +1,155 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.Audit;
+import ludo.mentis.aciem.chgmon.model.ChangeType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary format of a change log record, for the log itself and for its consumers.
+ * <p>
+ * A record starts with the length of its body and the CRC32C of the body, both as big-endian ints. The body holds
+ * the time the record was appended (epoch milliseconds), the change type (one byte, its ordinal), the primary key, the
+ * change date (epoch milliseconds of the local date-time read as UTC, {@link Long#MIN_VALUE} when missing), the table
+ * name (a short length and UTF-8 bytes) and the changed columns, old image and new image of the audit (an int length,
+ * -1 when missing, and the bytes). Images are compressed, as they are in tb_audit.
+ */
+public final class ChangeLogCodec {
+
+    /**
+     * Bytes before the body: its length and checksum.
+     */
+    public static final int HEADER_SIZE = 8;
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int NO_BYTES = -1;
+
+    private ChangeLogCodec() {
+    }
+
+    /**
+     * Tells how many bytes an audit takes once encoded, header included.
+     */
+    public static int size(Audit audit) {
+        return HEADER_SIZE + 8 + 1 + 8 + 8
+                + 2 + audit.getTableName().getBytes(StandardCharsets.UTF_8).length
+                + 4 + length(audit.getChangedColumns())
+                + 4 + length(audit.getOldImage())
+                + 4 + length(audit.getNewImage());
+    }
+
+    /**
+     * Appends the record of an audit to a buffer, which must have room for {@link #size(Audit)} bytes.
+     *
+     * @param audit     the audit to encode
+     * @param timestamp the time the record is appended, in epoch milliseconds
+     * @param buffer    the buffer to write to, at its position
+     */
+    public static void encode(Audit audit, long timestamp, ByteBuffer buffer) {
+        var start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.putLong(timestamp);
+        buffer.put((byte) audit.getChangeType().ordinal());
+        buffer.putLong(audit.getPrimaryKey());
+        var changeDate = audit.getChangeDate();
+        buffer.putLong(changeDate != null ? changeDate.toInstant(ZoneOffset.UTC).toEpochMilli() : NO_DATE);
+        var tableName = audit.getTableName().getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) tableName.length);
+        buffer.put(tableName);
+        putBytes(buffer, audit.getChangedColumns());
+        putBytes(buffer, audit.getOldImage());
+        putBytes(buffer, audit.getNewImage());
+
+        var end = buffer.position();
+        var crc = new CRC32C();
+        crc.update(buffer.duplicate().position(start + HEADER_SIZE).limit(end));
+        buffer.putInt(start, end - start - HEADER_SIZE);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Reads the record at the position of a buffer and moves past it.
+     *
+     * @param buffer the buffer to read from
+     * @return the audit of the record, without an id
+     * @throws IllegalStateException if the record is truncated or does not match its checksum
+     */
+    public static Audit decode(ByteBuffer buffer) {
+        var bodySize = bodySize(buffer, buffer.position());
+        if (bodySize < 0) {
+            throw new IllegalStateException("Truncated or corrupt change log record at " + buffer.position());
+        }
+
+        try {
+            buffer.position(buffer.position() + HEADER_SIZE + 8);
+            var audit = new Audit();
+            audit.setChangeType(ChangeType.values()[buffer.get()]);
+            audit.setPrimaryKey(buffer.getLong());
+            var changeDate = buffer.getLong();
+            audit.setChangeDate(changeDate != NO_DATE ? LocalDateTime.ofEpochSecond(Math.floorDiv(changeDate, 1000),
+                    Math.floorMod(changeDate, 1000) * 1_000_000, ZoneOffset.UTC) : null);
+            var tableName = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(tableName);
+            audit.setTableName(new String(tableName, StandardCharsets.UTF_8));
+            audit.setChangedColumns(getBytes(buffer));
+            audit.setOldImage(getBytes(buffer));
+            audit.setNewImage(getBytes(buffer));
+            return audit;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Malformed change log record", e);
+        }
+    }
+
+    /**
+     * Reads the append time of the record at an index of a buffer, without moving.
+     */
+    public static long timestamp(ByteBuffer buffer, int index) {
+        return buffer.getLong(index + HEADER_SIZE);
+    }
+
+    /**
+     * Checks the record at an index of a buffer.
+     *
+     * @return the length of its body, or -1 if the buffer ends before the record does or the checksum does not match
+     */
+    static int bodySize(ByteBuffer buffer, int index) {
+        if (buffer.limit() - index < HEADER_SIZE) {
+            return -1;
+        }
+        var bodySize = buffer.getInt(index);
+        if (bodySize <= 0 || buffer.limit() - index - HEADER_SIZE < bodySize) {
+            return -1;
+        }
+        var crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(index + HEADER_SIZE + bodySize).position(index + HEADER_SIZE));
+        return (int) crc.getValue() == buffer.getInt(index + 4) ? bodySize : -1;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes != null ? bytes.length : 0;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(NO_BYTES);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        var length = buffer.getInt();
+        if (length == NO_BYTES) {
+            return null;
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,637 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import jakarta.annotation.PreDestroy;
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.Audit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Appends every audit written to tb_audit to a local, append-only log, so that consumers can follow the changes
+ * without querying the monitored database.
+ * <p>
+ * The log is a directory of segment files, each named after the byte offset of its first record, so that offsets
+ * run on from one segment to the next. Records are written through a {@link FileChannel} in the format of
+ * {@link ChangeLogCodec}. A new segment is started once the current one reaches {@code monitor.change-log.segment-size}
+ * or gets older than {@code monitor.change-log.segment-age}. Each segment has an offset index next to it: the append
+ * time and position of one record every {@code monitor.change-log.index-interval} bytes, which finds the offset of a
+ * point in time and the record boundaries of a read without going through the whole segment.
+ * <p>
+ * Consumers read from a byte offset with {@link #transferTo(long, long, WritableByteChannel)}, which hands whole
+ * records to the target with {@link FileChannel#transferTo}: zero-copy when the target is a socket or a file. Sealed
+ * segments are deleted, oldest first, while the log is over {@code monitor.change-log.retention-size} or once they
+ * are older than {@code monitor.change-log.retention-age}. On startup, the last segment is checked record by record
+ * and cut after its last complete one.
+ */
+@Service
+public class ChangeLogImpl implements ChangeLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLogImpl.class);
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long segmentAgeMillis;
+    private final long indexIntervalBytes;
+    private final long retentionBytes;
+    private final long retentionAgeMillis;
+    private final Clock clock;
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // Reads hold the read lock so that retention does not close a segment under them; appends never touch sealed ones
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final List<long[]> pendingIndex = new ArrayList<>();
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private volatile Segment active;
+    private long lastTimestamp;
+    private volatile long endOffset;
+    private volatile boolean closed;
+
+    @Autowired
+    public ChangeLogImpl(MonitorProperties monitorProperties) {
+        this(monitorProperties, Clock.systemUTC());
+    }
+
+    ChangeLogImpl(MonitorProperties monitorProperties, Clock clock) {
+        var settings = monitorProperties.getChangeLog();
+        // With sources, each source keeps its own log and the main context, which audits nothing, keeps none
+        this.enabled = settings.isEnabled() && (monitorProperties.getSourceName() != null || monitorProperties.getSources().isEmpty());
+        this.directory = Path.of(settings.getDirectory());
+        this.segmentBytes = settings.getSegmentSize().toBytes();
+        this.segmentAgeMillis = settings.getSegmentAge().toMillis();
+        this.indexIntervalBytes = settings.getIndexInterval().toBytes();
+        this.retentionBytes = settings.getRetentionSize().toBytes();
+        this.retentionAgeMillis = settings.getRetentionAge().toMillis();
+        this.clock = clock;
+
+        if (enabled) {
+            if (segmentBytes <= 0 || segmentBytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Change log segment size must be positive and below 2GB");
+            }
+            if (indexIntervalBytes <= 0) {
+                throw new IllegalArgumentException("Change log index interval must be positive");
+            }
+            open();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends the records of a batch of audits. They become visible to readers once they are all written.
+     *
+     * @param audits the audits to append, in order
+     * @throws IllegalStateException if the change log is disabled or closed
+     */
+    @Override
+    public void append(List<Audit> audits) {
+        var rolled = false;
+        synchronized (this) {
+            checkOpen();
+            // Append times never go back, so that the index stays sorted when the clock does
+            var now = Math.max(clock.millis(), lastTimestamp);
+            lastTimestamp = now;
+            try {
+                for (var audit : audits) {
+                    var size = ChangeLogCodec.size(audit);
+                    var position = active.size + buffer.position();
+                    if (position > 0 && (position + size > segmentBytes || now - active.createdMillis >= segmentAgeMillis)) {
+                        write();
+                        roll(now);
+                        rolled = true;
+                        position = 0;
+                    }
+                    if (buffer.remaining() < size) {
+                        write();
+                        if (buffer.capacity() < size) {
+                            buffer = ByteBuffer.allocate(size);
+                        }
+                    }
+                    var lastIndexed = pendingIndex.isEmpty() ? active.lastIndexedPosition() : pendingIndex.get(pendingIndex.size() - 1)[1];
+                    if (lastIndexed < 0 || position - lastIndexed >= indexIntervalBytes) {
+                        pendingIndex.add(new long[]{now, position});
+                    }
+                    ChangeLogCodec.encode(audit, now, buffer);
+                }
+                write();
+            } finally {
+                buffer.clear();
+                pendingIndex.clear();
+            }
+        }
+        if (rolled) {
+            enforceRetention();
+        }
+    }
+
+    /**
+     * Forces the records appended so far to disk and deletes the segments that are past retention.
+     */
+    @Override
+    public void flush() {
+        synchronized (this) {
+            checkOpen();
+            try {
+                active.log.force(false);
+                active.index.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        enforceRetention();
+    }
+
+    @Override
+    public long getStartOffset() {
+        checkEnabled();
+        return segments.firstKey();
+    }
+
+    @Override
+    public long getEndOffset() {
+        checkEnabled();
+        return endOffset;
+    }
+
+    /**
+     * Finds the offset of the first record appended at or after a point in time.
+     *
+     * @param time the point in time
+     * @return the offset of the record, or the end offset if every record is older
+     */
+    @Override
+    public long offsetAt(Instant time) {
+        if (time == null) {
+            throw new IllegalArgumentException("Time cannot be null");
+        }
+        checkEnabled();
+
+        var millis = time.toEpochMilli();
+        segmentsLock.readLock().lock();
+        try {
+            var end = endOffset;
+            Segment segment = null;
+            for (var candidate : segments.values()) {
+                var first = candidate.firstTimestamp();
+                if (segment != null && (first < 0 || first >= millis)) {
+                    break;
+                }
+                segment = candidate;
+            }
+            var segmentEnd = Math.min(end - segment.baseOffset, segment.size);
+            var from = segment.indexPositionBefore(millis);
+            return segment.baseOffset + scan(segment, from, segmentEnd, (position, timestamp, recordEnd) -> timestamp < millis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands the records from an offset to a channel, without going through the heap. A read never spans two
+     * segments and stops at the last whole record that fits in the given number of bytes, unless the first record is
+     * larger; the next read starts at the offset plus the bytes transferred.
+     *
+     * @param offset   where to start: the start or end offset, an offset found by {@link #offsetAt(Instant)}, or the
+     *                 end of a previous read
+     * @param maxBytes the most bytes to transfer
+     * @param target   the channel to write to
+     * @return the bytes transferred, 0 when the offset is the end of the log; fewer than planned if the target
+     * could not take them all
+     * @throws IllegalArgumentException if the offset is outside the log, which happens to consumers that fell
+     *                                  behind retention
+     */
+    @Override
+    public long transferTo(long offset, long maxBytes, WritableByteChannel target) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target cannot be null");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Max bytes must be positive");
+        }
+        checkEnabled();
+
+        segmentsLock.readLock().lock();
+        try {
+            var end = endOffset;
+            var start = segments.firstKey();
+            if (offset < start || offset > end) {
+                throw new IllegalArgumentException("Offset " + offset + " is outside the change log, which runs from " + start + " to " + end);
+            }
+            if (offset == end) {
+                return 0;
+            }
+
+            var segment = segments.floorEntry(offset).getValue();
+            var position = offset - segment.baseOffset;
+            var segmentEnd = Math.min(end - segment.baseOffset, segment.size);
+            var limit = Math.min(segmentEnd, position + maxBytes);
+            if (limit < segmentEnd) {
+                var from = Math.max(position, segment.indexPositionAtOrBefore(limit));
+                limit = scan(segment, from, segmentEnd, (recordPosition, timestamp, recordEnd) -> recordEnd <= position + maxBytes || recordPosition == position);
+            }
+
+            var transferred = 0L;
+            while (position + transferred < limit) {
+                var count = segment.log.transferTo(position + transferred, limit - position - transferred, target);
+                if (count <= 0) {
+                    break;
+                }
+                transferred += count;
+            }
+            return transferred;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getDiskBytes() {
+        var bytes = 0L;
+        for (var segment : segments.values()) {
+            bytes += segment.size + (long) segment.indexCount() * INDEX_ENTRY_SIZE;
+        }
+        return bytes;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        segmentsLock.writeLock().lock();
+        try {
+            for (var segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+        logger.info("Change log closed at offset {}", endOffset);
+    }
+
+    private void checkEnabled() {
+        if (!enabled) {
+            throw new IllegalStateException("Change log is disabled");
+        }
+    }
+
+    private void checkOpen() {
+        checkEnabled();
+        if (closed) {
+            throw new IllegalStateException("Change log is closed");
+        }
+    }
+
+    /**
+     * Opens the segments left by a previous run, or the first one.
+     */
+    private void open() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> paths;
+            try (var stream = Files.list(directory)) {
+                paths = stream.filter(path -> path.getFileName().toString().endsWith(LOG_SUFFIX)).sorted().toList();
+            }
+            for (var path : paths) {
+                var name = path.getFileName().toString();
+                var segment = new Segment(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())));
+                segment.size = segment.log.size();
+                segment.lastTimestamp = Files.getLastModifiedTime(path).toMillis();
+                segments.put(segment.baseOffset, segment);
+            }
+            if (segments.isEmpty()) {
+                active = new Segment(0);
+                active.createdMillis = clock.millis();
+                segments.put(0L, active);
+            } else {
+                active = segments.lastEntry().getValue();
+                for (var segment : segments.values()) {
+                    if (segment != active && !segment.loadIndex()) {
+                        recover(segment);
+                    }
+                }
+                // The last segment may end with a record that was being written when the process stopped
+                recover(active);
+                active.createdMillis = active.size > 0 ? active.firstTimestamp() : clock.millis();
+            }
+            endOffset = active.baseOffset + active.size;
+            lastTimestamp = Math.max(lastTimestamp, active.lastTimestamp);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("Change log opened in {}: {} segments, offsets {} to {}", directory, segments.size(), getStartOffset(), endOffset);
+        enforceRetention();
+    }
+
+    /**
+     * Rebuilds the index of a segment from its records and cuts it after the last whole one.
+     */
+    private void recover(Segment segment) throws IOException {
+        segment.clearIndex();
+        var lastIndexed = new long[]{-1};
+        var last = new long[]{-1};
+        var validSize = scan(segment, 0, segment.size, (position, timestamp, recordEnd) -> {
+            if (lastIndexed[0] < 0 || position - lastIndexed[0] >= indexIntervalBytes) {
+                segment.addIndexEntry(timestamp, position);
+                lastIndexed[0] = position;
+            }
+            last[0] = timestamp;
+            return true;
+        });
+        if (validSize < segment.size) {
+            logger.warn("Change log segment {} cut from {} to {} bytes after its last whole record", segment.logPath, segment.size, validSize);
+            segment.log.truncate(validSize);
+            segment.size = validSize;
+        }
+        if (last[0] >= 0) {
+            segment.lastTimestamp = last[0];
+        }
+        segment.writeIndex();
+    }
+
+    private void write() {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        try {
+            var position = active.size;
+            while (buffer.hasRemaining()) {
+                position += active.log.write(buffer, position);
+            }
+            for (var entry : pendingIndex) {
+                active.appendIndexEntry(entry[0], entry[1]);
+            }
+            active.size = position;
+            active.lastTimestamp = lastTimestamp;
+            endOffset = active.baseOffset + position;
+        } catch (IOException e) {
+            // Whatever got out is overwritten by the next append
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+            pendingIndex.clear();
+        }
+    }
+
+    private void roll(long now) {
+        try {
+            active.log.force(false);
+            active.index.force(false);
+            var segment = new Segment(endOffset);
+            segment.createdMillis = now;
+            segments.put(segment.baseOffset, segment);
+            active = segment;
+            logger.debug("Change log rolled to segment {}", segment.logPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void enforceRetention() {
+        var now = clock.millis();
+        segmentsLock.writeLock().lock();
+        try {
+            var bytes = getDiskBytes();
+            var iterator = segments.values().iterator();
+            while (iterator.hasNext()) {
+                var segment = iterator.next();
+                if (segment == active || bytes <= retentionBytes && now - segment.lastTimestamp <= retentionAgeMillis) {
+                    break;
+                }
+                iterator.remove();
+                bytes -= segment.size + (long) segment.indexCount() * INDEX_ENTRY_SIZE;
+                segment.close();
+                Files.deleteIfExists(segment.logPath);
+                Files.deleteIfExists(segment.indexPath);
+                logger.debug("Change log segment {} deleted by retention", segment.logPath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Walks the whole records of a segment from a position, checking each against its checksum.
+     *
+     * @return the position of the first record the visitor did not accept, or the end of the last whole record
+     */
+    private static long scan(Segment segment, long from, long to, RecordVisitor visitor) throws IOException {
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+        var bufferStart = from;
+        var position = from;
+        while (position < to) {
+            var index = (int) (position - bufferStart);
+            if (buffer.limit() - index < ChangeLogCodec.HEADER_SIZE) {
+                buffer = fill(segment, buffer, position, to, ChangeLogCodec.HEADER_SIZE);
+                bufferStart = position;
+                index = 0;
+            }
+            if (buffer.limit() < ChangeLogCodec.HEADER_SIZE) {
+                break;
+            }
+            var recordSize = ChangeLogCodec.HEADER_SIZE + (long) buffer.getInt(index);
+            if (recordSize <= ChangeLogCodec.HEADER_SIZE || position + recordSize > to) {
+                break;
+            }
+            if (buffer.limit() - index < recordSize) {
+                buffer = fill(segment, buffer, position, to, (int) recordSize);
+                bufferStart = position;
+                index = 0;
+            }
+            if (ChangeLogCodec.bodySize(buffer, index) < 0) {
+                break;
+            }
+            if (!visitor.visit(position, ChangeLogCodec.timestamp(buffer, index), position + recordSize)) {
+                break;
+            }
+            position += recordSize;
+        }
+        return position;
+    }
+
+    private static ByteBuffer fill(Segment segment, ByteBuffer buffer, long position, long to, int needed) throws IOException {
+        if (buffer.capacity() < needed) {
+            buffer = ByteBuffer.allocate(needed);
+        }
+        buffer.clear().limit((int) Math.min(buffer.capacity(), to - position));
+        read(segment.log, buffer, position);
+        return buffer.flip();
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+
+        boolean visit(long position, long timestamp, long end);
+    }
+
+    private final class Segment {
+
+        private final long baseOffset;
+        private final Path logPath;
+        private final Path indexPath;
+        private final FileChannel log;
+        private final FileChannel index;
+        private volatile long size;
+        private long createdMillis;
+        private volatile long lastTimestamp;
+        // Append time and position of the indexed records; readers search them while the appender adds to them
+        private long[] indexTimestamps = new long[64];
+        private long[] indexPositions = new long[64];
+        private int indexCount;
+
+        private Segment(long baseOffset) throws IOException {
+            this.baseOffset = baseOffset;
+            var name = String.format("%020d", baseOffset);
+            this.logPath = directory.resolve(name + LOG_SUFFIX);
+            this.indexPath = directory.resolve(name + INDEX_SUFFIX);
+            this.log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        private synchronized int indexCount() {
+            return indexCount;
+        }
+
+        private synchronized long firstTimestamp() {
+            return indexCount > 0 ? indexTimestamps[0] : -1;
+        }
+
+        private synchronized long lastIndexedPosition() {
+            return indexCount > 0 ? indexPositions[indexCount - 1] : -1;
+        }
+
+        /**
+         * The position of the last indexed record appended before a time, where a search for that time starts.
+         */
+        private synchronized long indexPositionBefore(long millis) {
+            var found = 0L;
+            for (int i = 0; i < indexCount && indexTimestamps[i] < millis; i++) {
+                found = indexPositions[i];
+            }
+            return found;
+        }
+
+        /**
+         * The position of the last indexed record that starts at or before a position.
+         */
+        private synchronized long indexPositionAtOrBefore(long position) {
+            var i = Arrays.binarySearch(indexPositions, 0, indexCount, position);
+            if (i >= 0) {
+                return indexPositions[i];
+            }
+            var insertion = -i - 1;
+            return insertion > 0 ? indexPositions[insertion - 1] : 0;
+        }
+
+        private synchronized void addIndexEntry(long timestamp, long position) {
+            if (indexCount == indexTimestamps.length) {
+                indexTimestamps = Arrays.copyOf(indexTimestamps, indexCount * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+            }
+            indexTimestamps[indexCount] = timestamp;
+            indexPositions[indexCount] = position;
+            indexCount++;
+        }
+
+        private synchronized void clearIndex() {
+            indexCount = 0;
+        }
+
+        private void appendIndexEntry(long timestamp, long position) throws IOException {
+            var entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE).putLong(timestamp).putInt((int) position).flip();
+            var at = (long) indexCount() * INDEX_ENTRY_SIZE;
+            while (entry.hasRemaining()) {
+                at += index.write(entry, at);
+            }
+            addIndexEntry(timestamp, position);
+        }
+
+        /**
+         * Reads the index file of a sealed segment.
+         *
+         * @return false if it is missing, torn or does not start at the first record
+         */
+        private boolean loadIndex() throws IOException {
+            var bytes = index.size();
+            if (bytes == 0 || bytes % INDEX_ENTRY_SIZE != 0) {
+                return size == 0;
+            }
+            var entries = ByteBuffer.allocate((int) bytes);
+            read(index, entries, 0);
+            entries.flip();
+            while (entries.hasRemaining()) {
+                addIndexEntry(entries.getLong(), entries.getInt());
+            }
+            return indexPositions[0] == 0 && lastIndexedPosition() < size;
+        }
+
+        private synchronized void writeIndex() throws IOException {
+            index.truncate(0);
+            var entries = ByteBuffer.allocate(indexCount * INDEX_ENTRY_SIZE);
+            for (int i = 0; i < indexCount; i++) {
+                entries.putLong(indexTimestamps[i]).putInt((int) indexPositions[i]);
+            }
+            entries.flip();
+            var at = 0L;
+            while (entries.hasRemaining()) {
+                at += index.write(entries, at);
+            }
+        }
+
+        private void close() {
+            try {
+                log.close();
+                index.close();
+            } catch (IOException e) {
+                logger.warn("Could not close change log segment {}: {}", logPath, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary format of a packed checksum block.
+ * <p>
+ * A block holds the sorted primary keys of one range followed by their checksums, column after column, so that
+ * the deflater sees the small key deltas together. Keys are stored as unsigned varint deltas, the first one
+ * relative to the start of the range. Checksums take four bytes each when they all fit in 32 bits (CRC32) and
+ * eight bytes otherwise. Version 2 appends the per-column hash vectors, each prefixed with its length.
+ */
+final class ChecksumBlockCodec {
+
+    private static final int VERSION = 1;
+    private static final int VERSION_WITH_COLUMN_HASHES = 2;
+
+    private ChecksumBlockCodec() {
+    }
+
+    record Entries(long[] primaryKeys, long[] checksums, byte[][] columnHashes) {
+    }
+
+    static byte[] encode(long rangeStart, long[] primaryKeys, long[] checksums, int count) {
+        return encode(rangeStart, primaryKeys, checksums, null, count);
+    }
+
+    static byte[] encode(long rangeStart, long[] primaryKeys, long[] checksums, byte[][] columnHashes, int count) {
+        var wide = false;
+        for (int i = 0; i < count; i++) {
+            if ((checksums[i] >>> 32) != 0) {
+                wide = true;
+                break;
+            }
+        }
+
+        var buffer = new ByteArrayOutputStream(Math.max(64, count * 3));
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            buffer.write(columnHashes != null ? VERSION_WITH_COLUMN_HASHES : VERSION);
+            buffer.write(wide ? 8 : 4);
+            writeVarint(buffer, count);
+
+            try (var out = new DataOutputStream(new DeflaterOutputStream(buffer, deflater, 8192))) {
+                var previous = rangeStart;
+                for (int i = 0; i < count; i++) {
+                    writeVarint(out, primaryKeys[i] - previous);
+                    previous = primaryKeys[i];
+                }
+                for (int i = 0; i < count; i++) {
+                    if (wide) {
+                        out.writeLong(checksums[i]);
+                    } else {
+                        out.writeInt((int) checksums[i]);
+                    }
+                }
+                if (columnHashes != null) {
+                    for (int i = 0; i < count; i++) {
+                        var vector = columnHashes[i];
+                        writeVarint(out, vector != null ? vector.length : 0);
+                        if (vector != null) {
+                            out.write(vector);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return buffer.toByteArray();
+    }
+
+    static Entries decode(long rangeStart, byte[] payload) {
+        var inflater = new Inflater();
+        try (var header = new ByteArrayInputStream(payload)) {
+            var version = header.read();
+            if (version != VERSION && version != VERSION_WITH_COLUMN_HASHES) {
+                throw new IllegalStateException("Unsupported checksum block version: " + version);
+            }
+            var wide = header.read() == 8;
+            var count = (int) readVarint(header);
+
+            var primaryKeys = new long[count];
+            var checksums = new long[count];
+            var columnHashes = version == VERSION_WITH_COLUMN_HASHES ? new byte[count][] : null;
+            try (var in = new DataInputStream(new InflaterInputStream(header, inflater, 8192))) {
+                var previous = rangeStart;
+                for (int i = 0; i < count; i++) {
+                    previous += readVarint(in);
+                    primaryKeys[i] = previous;
+                }
+                for (int i = 0; i < count; i++) {
+                    checksums[i] = wide ? in.readLong() : Integer.toUnsignedLong(in.readInt());
+                }
+                if (columnHashes != null) {
+                    for (int i = 0; i < count; i++) {
+                        var length = (int) readVarint(in);
+                        if (length > 0) {
+                            columnHashes[i] = new byte[length];
+                            in.readFully(columnHashes[i]);
+                        }
+                    }
+                }
+            }
+            return new Entries(primaryKeys, checksums, columnHashes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            var b = in.read();
+            if (b < 0) {
+                throw new IOException("Truncated checksum block");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in checksum block");
+    }
+}
@@ -5,4 +5,8 @@ import java.util.Map;
 public interface ChecksumService {
 
     long calculate(Map<String, Object> row);
+
+    long calculate(Map<String, Object> row, int[] columnHashes);
+
+    long getHashedBytes();
 }
@@ -1,22 +1,261 @@
 package ludo.mentis.aciem.chgmon.service;
 
+import ludo.mentis.aciem.chgmon.model.LobDigest;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.zip.CRC32;
 
+/**
+ * CRC32 over the column names and the string form of the values of a row.
+ * <p>
+ * The common value types (ASCII strings, integral numbers, booleans) are encoded into a per-thread scratch buffer
+ * instead of going through {@code toString().getBytes()}, producing the same bytes without allocating. Anything
+ * else falls back to {@code toString().getBytes()}, so checksums stay identical to the ones already stored. Binary
+ * values are hashed as their bytes.
+ * <p>
+ * Large objects arrive already hashed by the scan as a {@link LobDigest}. Their CRC32 is spliced into the row
+ * checksum with the zlib {@code crc32_combine} algorithm, giving the checksum the materialized value would have had.
+ * <p>
+ * The bytes hashed, large objects included, are counted as an estimate of the bytes fetched from the database.
+ */
 @Service
 public class ChecksumServiceImpl implements ChecksumService {
 
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private final ThreadLocal<HashState> state = ThreadLocal.withInitial(HashState::new);
+    private final LongAdder hashedBytes = new LongAdder();
+
     @Override
     public long calculate(Map<String, Object> row) {
-        var crc32 = new CRC32();
+        var hashState = state.get();
+        var crc32 = hashState.begin();
+        for (var column : row.entrySet()) {
+            hashState.update(crc32, null, column.getKey());
+            if (column.getValue() instanceof LobDigest lob) {
+                hashState.append(lob);
+            } else if (column.getValue() != null) {
+                hashState.update(crc32, null, column.getValue());
+            }
+        }
+        return finish(hashState);
+    }
+
+    /**
+     * Calculates the row checksum and, in the same pass, one CRC32 per column value into a caller-owned buffer.
+     * Column hashes are in the iteration order of the row; a null value hashes to 0 and a non-null value never has
+     * 0 in the low 16 bits that {@link ColumnHashes} keeps, so a column going from null to an empty string is still
+     * seen as a change.
+     *
+     * @param row          the row to hash
+     * @param columnHashes receives the column hashes; must hold at least {@code row.size()} entries
+     * @return the row checksum, identical to {@link #calculate(Map)}
+     * @throws IllegalArgumentException if the buffer is too small for the row
+     */
+    @Override
+    public long calculate(Map<String, Object> row, int[] columnHashes) {
+        if (columnHashes == null || columnHashes.length < row.size()) {
+            throw new IllegalArgumentException("Column hash buffer is smaller than the row");
+        }
+
+        var hashState = state.get();
+        var crc32 = hashState.begin();
+        var columnCrc32 = hashState.column;
+        var index = 0;
         for (var column : row.entrySet()) {
-            crc32.update(column.getKey().getBytes());
-            if (column.getValue() != null) {
-                crc32.update(column.getValue().toString().getBytes());
+            hashState.update(crc32, null, column.getKey());
+            if (column.getValue() instanceof LobDigest lob) {
+                hashState.append(lob);
+                columnHashes[index] = nonNull((int) lob.crc32());
+            } else if (column.getValue() != null) {
+                columnCrc32.reset();
+                hashState.update(crc32, columnCrc32, column.getValue());
+                columnHashes[index] = nonNull((int) columnCrc32.getValue());
+            } else {
+                columnHashes[index] = 0;
+            }
+            index++;
+        }
+        return finish(hashState);
+    }
+
+    // Keeps the hash of a non-null value apart from the 0 of null once truncated to 16 bits
+    private static int nonNull(int hash) {
+        return (hash & 0xFFFF) == 0 ? hash | 1 : hash;
+    }
+
+    /**
+     * @return the bytes hashed since startup, by all threads
+     */
+    @Override
+    public long getHashedBytes() {
+        return hashedBytes.sum();
+    }
+
+    private long finish(HashState hashState) {
+        hashedBytes.add(hashState.rowLength);
+        return hashState.finish();
+    }
+
+    /**
+     * Computes the CRC32 of the concatenation of two byte sequences from their CRC32s, as zlib's
+     * {@code crc32_combine}: the first CRC is carried through {@code length2} zero bytes by repeated squaring of the
+     * one-zero-bit operator, then xored with the second.
+     *
+     * @param crc1    the CRC32 of the first sequence
+     * @param crc2    the CRC32 of the second sequence
+     * @param length2 the length of the second sequence
+     * @return the CRC32 of the first sequence followed by the second
+     */
+    static long combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+
+        var even = new long[32];
+        var odd = new long[32];
+        odd[0] = 0xEDB88320L;
+        var row = 1L;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);
+        square(odd, even);
+
+        var remaining = length2;
+        do {
+            square(even, odd);
+            if ((remaining & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            remaining >>= 1;
+            if (remaining == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((remaining & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            remaining >>= 1;
+        } while (remaining != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long times(long[] matrix, long vector) {
+        var sum = 0L;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+
+    private static final class HashState {
+
+        private final CRC32 row = new CRC32();
+        private final CRC32 column = new CRC32();
+        private final byte[] scratch = new byte[512];
+        // The row CRC is kept in segments once a large object was spliced in: prefix covers everything up to the
+        // last one, and row the bytes written since, segmentLength of them.
+        private long prefix;
+        private long segmentLength;
+        private long rowLength;
+        private boolean spliced;
+
+        private CRC32 begin() {
+            row.reset();
+            prefix = 0;
+            segmentLength = 0;
+            rowLength = 0;
+            spliced = false;
+            return row;
+        }
+
+        private void append(LobDigest lob) {
+            prefix = combine(combine(prefix, row.getValue(), segmentLength), lob.crc32(), lob.length());
+            row.reset();
+            segmentLength = 0;
+            rowLength += lob.length();
+            spliced = true;
+        }
+
+        private long finish() {
+            return spliced ? combine(prefix, row.getValue(), segmentLength) : row.getValue();
+        }
+
+        private void update(CRC32 first, CRC32 second, Object value) {
+            if (value instanceof String string) {
+                updateString(first, second, string);
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                updateIntegral(first, second, ((Number) value).longValue());
+            } else if (value instanceof Boolean bool) {
+                var bytes = bool ? TRUE : FALSE;
+                write(first, second, bytes, 0, bytes.length);
+            } else if (value instanceof byte[] bytes) {
+                write(first, second, bytes, 0, bytes.length);
+            } else {
+                updateString(first, second, value.toString());
+            }
+        }
+
+        private void updateString(CRC32 first, CRC32 second, String value) {
+            var length = value.length();
+            var offset = 0;
+            while (offset < length) {
+                var chunk = Math.min(scratch.length, length - offset);
+                for (int i = 0; i < chunk; i++) {
+                    var c = value.charAt(offset + i);
+                    if (c >= 0x80) {
+                        // Non-ASCII text depends on the platform charset, so let String encode the rest.
+                        // The ASCII prefix is the same in every charset getBytes() can use.
+                        write(first, second, scratch, 0, i);
+                        var rest = value.substring(offset + i).getBytes();
+                        write(first, second, rest, 0, rest.length);
+                        return;
+                    }
+                    scratch[i] = (byte) c;
+                }
+                write(first, second, scratch, 0, chunk);
+                offset += chunk;
+            }
+        }
+
+        private void updateIntegral(CRC32 first, CRC32 second, long value) {
+            if (value == Long.MIN_VALUE) {
+                updateString(first, second, Long.toString(value));
+                return;
+            }
+            var position = scratch.length;
+            var negative = value < 0;
+            var remaining = negative ? -value : value;
+            do {
+                scratch[--position] = (byte) ('0' + remaining % 10);
+                remaining /= 10;
+            } while (remaining != 0);
+            if (negative) {
+                scratch[--position] = '-';
+            }
+            write(first, second, scratch, position, scratch.length - position);
+        }
+
+        private void write(CRC32 first, CRC32 second, byte[] bytes, int offset, int length) {
+            first.update(bytes, offset, length);
+            segmentLength += length;
+            rowLength += length;
+            if (second != null) {
+                second.update(bytes, offset, length);
             }
         }
-        return crc32.getValue();
     }
 }
@@ -0,0 +1,36 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a chunk of a cycle: the rows compared between two checkpoints, once the scan has
+ * fetched them. Its duration covers hashing, baseline lookups and audits, but not the wait of a throttled cycle.
+ */
+@Name("chgmon.Chunk")
+@Label("Cycle Chunk")
+@Category({"Chgmon"})
+@Description("Rows compared by a cycle between two checkpoints")
+public class ChunkEvent extends jdk.jfr.Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("First Row")
+    @Description("Position in the scan of the first row of the chunk")
+    public long firstRow;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Bytes Hashed")
+    @DataAmount
+    public long bytesHashed;
+
+    @Label("Statements")
+    @Description("Statements sent to the database while comparing the chunk")
+    public long statements;
+}
@@ -0,0 +1,75 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compact per-column hash vectors and the column bitmasks derived from them.
+ * <p>
+ * A vector keeps the low 16 bits of each column hash, two bytes per column in column order. It is only used to
+ * tell which columns changed once the row checksum has already said that the row changed, so a collision can at
+ * worst leave a changed column out of the mask; it can never hide the change itself. A null value is stored as 0,
+ * which the checksum service keeps out of the low 16 bits of every non-null value.
+ * <p>
+ * A bitmask has bit {@code i % 8} of byte {@code i / 8} set when the column at position {@code i} changed.
+ */
+public final class ColumnHashes {
+
+    private ColumnHashes() {
+    }
+
+    public static byte[] encode(int[] columnHashes, int count) {
+        var vector = new byte[count * 2];
+        for (int i = 0; i < count; i++) {
+            vector[i * 2] = (byte) (columnHashes[i] >>> 8);
+            vector[i * 2 + 1] = (byte) columnHashes[i];
+        }
+        return vector;
+    }
+
+    /**
+     * Compares a stored vector with freshly calculated column hashes.
+     *
+     * @param stored       the stored vector, or null if none was stored
+     * @param columnHashes the current column hashes
+     * @param count        the number of columns in the current row
+     * @return the bitmask of changed columns, or null if there is no stored vector to compare with. Columns that
+     * appear on one side only are reported as changed.
+     */
+    public static byte[] changedColumns(byte[] stored, int[] columnHashes, int count) {
+        if (stored == null) {
+            return null;
+        }
+
+        var storedCount = stored.length / 2;
+        var columns = Math.max(storedCount, count);
+        var mask = new byte[(columns + 7) / 8];
+        for (int i = 0; i < columns; i++) {
+            var changed = i >= storedCount || i >= count
+                    || (short) (((stored[i * 2] & 0xFF) << 8) | (stored[i * 2 + 1] & 0xFF)) != (short) columnHashes[i];
+            if (changed) {
+                mask[i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Resolves the names of the columns set in a bitmask, for logging.
+     */
+    public static List<String> columnNames(byte[] mask, Iterable<String> columns) {
+        var names = new ArrayList<String>();
+        if (mask == null) {
+            return names;
+        }
+        Iterator<String> iterator = columns.iterator();
+        for (int i = 0; i < mask.length * 8 && iterator.hasNext(); i++) {
+            var name = iterator.next();
+            if ((mask[i / 8] & (1 << (i % 8))) != 0) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+}
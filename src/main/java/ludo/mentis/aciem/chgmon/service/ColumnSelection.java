@@ -0,0 +1,98 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The columns of the monitored table that are read and hashed, from {@code monitor.columns.include} and
+ * {@code monitor.columns.exclude}. With neither list every column is monitored. The primary key is always kept.
+ * <p>
+ * Names are matched case-insensitively, as SQL Server does with the default collations.
+ */
+public final class ColumnSelection {
+
+    private final String primaryKeyName;
+    private final List<String> include;
+    private final List<String> exclude;
+    private final Set<String> included = new HashSet<>();
+    private final Set<String> excluded = new HashSet<>();
+
+    public ColumnSelection(String primaryKeyName, List<String> include, List<String> exclude) {
+        this.primaryKeyName = primaryKeyName;
+        this.include = include != null ? include : List.of();
+        this.exclude = exclude != null ? exclude : List.of();
+        for (var name : this.include) {
+            included.add(normalize(name));
+        }
+        for (var name : this.exclude) {
+            excluded.add(normalize(name));
+        }
+    }
+
+    public boolean isConfigured() {
+        return !included.isEmpty() || !excluded.isEmpty();
+    }
+
+    public boolean selects(String columnName) {
+        var name = normalize(columnName);
+        if (primaryKeyName != null && name.equals(normalize(primaryKeyName))) {
+            return true;
+        }
+        return (included.isEmpty() || included.contains(name)) && !excluded.contains(name);
+    }
+
+    /**
+     * Keeps the selected columns, in table order.
+     */
+    public List<TableColumn> apply(List<TableColumn> columns) {
+        if (!isConfigured()) {
+            return columns;
+        }
+        var selected = new ArrayList<TableColumn>(columns.size());
+        for (var column : columns) {
+            if (selects(column.name())) {
+                selected.add(column);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Checks the lists against the actual columns of the table.
+     *
+     * @param columns the columns of the table
+     * @throws IllegalArgumentException if a listed column does not exist, the primary key is excluded, or nothing
+     *                                  but the primary key is left to hash
+     */
+    public void validate(List<TableColumn> columns) {
+        var existing = new HashSet<String>();
+        for (var column : columns) {
+            existing.add(normalize(column.name()));
+        }
+        for (var name : include) {
+            if (!existing.contains(normalize(name))) {
+                throw new IllegalArgumentException("Unknown column in monitor.columns.include: " + name);
+            }
+        }
+        for (var name : exclude) {
+            if (!existing.contains(normalize(name))) {
+                throw new IllegalArgumentException("Unknown column in monitor.columns.exclude: " + name);
+            }
+        }
+        if (primaryKeyName != null && excluded.contains(normalize(primaryKeyName))) {
+            throw new IllegalArgumentException("Primary key cannot be excluded: " + primaryKeyName);
+        }
+        if (apply(columns).size() < 2) {
+            throw new IllegalArgumentException("Column selection leaves no column to monitor besides the primary key");
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
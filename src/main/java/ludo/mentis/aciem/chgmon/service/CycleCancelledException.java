@@ -0,0 +1,13 @@
+package ludo.mentis.aciem.chgmon.service;
+
+/**
+ * Thrown at a checkpoint of a cycle that was cancelled or ran past its deadline.
+ */
+public class CycleCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CycleCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,206 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deadline and cancellation flag of the cycle running on the current thread. The cycle checks it between chunks
+ * of work with {@link #checkpoint()}, and every JDBC statement it issues gets a query timeout no longer than the time
+ * left, so neither a slow scan nor a hung query can hold the table past its deadline.
+ * <p>
+ * A cycle run by a profile also carries its throttle, which {@link #pace(long)} enforces between chunks of rows, and
+ * its degree of parallelism, which the scan queries pass to the server as a {@code MAXDOP} hint.
+ * <p>
+ * The statements the cycle sends are counted, so that its database round trips can be reported with its metrics.
+ * The heap usage of the process is sampled at each checkpoint, and the highest sample is kept as the peak heap of
+ * the cycle. It misses peaks between two checkpoints, and with several sources it includes the heap their overlapping
+ * cycles use, but it is never reset by another cycle.
+ */
+public final class CycleContext implements AutoCloseable {
+
+    private static final ThreadLocal<CycleContext> CURRENT = new ThreadLocal<>();
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final String tableName;
+    private final long deadline;
+    private final boolean bounded;
+    private final int queryTimeout;
+    private final int throttle;
+    private final int parallelism;
+    private final long started;
+    private long statements;
+    private long peakHeap;
+    private volatile boolean cancelled;
+
+    private CycleContext(String tableName, Duration deadline, Duration queryTimeout, int throttle, int parallelism) {
+        this.tableName = tableName;
+        this.started = System.nanoTime();
+        this.bounded = deadline != null;
+        this.deadline = bounded ? started + deadline.toNanos() : 0;
+        this.queryTimeout = queryTimeout != null ? (int) Math.max(1, queryTimeout.toSeconds()) : 0;
+        this.throttle = throttle;
+        this.parallelism = parallelism;
+        sampleHeap();
+    }
+
+    /**
+     * Starts a cycle on the current thread.
+     *
+     * @param tableName    the table the cycle reads
+     * @param deadline     how long the cycle may run, or null for no limit
+     * @param queryTimeout the longest a single statement may run, or null for no limit
+     * @return the context, to be closed when the cycle ends
+     * @throws IllegalStateException if a cycle is already running on this thread
+     */
+    public static CycleContext open(String tableName, Duration deadline, Duration queryTimeout) {
+        return open(tableName, deadline, queryTimeout, 0, 0);
+    }
+
+    /**
+     * Starts a throttled cycle on the current thread.
+     *
+     * @param tableName    the table the cycle reads
+     * @param deadline     how long the cycle may run, or null for no limit
+     * @param queryTimeout the longest a single statement may run, or null for no limit
+     * @param throttle     the most rows per second the cycle may process, or 0 for no limit
+     * @param parallelism  the most processors a scan query may use, or 0 for the server setting
+     * @return the context, to be closed when the cycle ends
+     * @throws IllegalStateException if a cycle is already running on this thread
+     */
+    public static CycleContext open(String tableName, Duration deadline, Duration queryTimeout, int throttle, int parallelism) {
+        if (CURRENT.get() != null) {
+            throw new IllegalStateException("A cycle is already running on this thread");
+        }
+        var context = new CycleContext(tableName, deadline, queryTimeout, throttle, parallelism);
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * @return the cycle running on the current thread, or null
+     */
+    public static CycleContext current() {
+        return CURRENT.get();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public int getThrottle() {
+        return throttle;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Counts a statement sent to the database by the cycle, one round trip.
+     */
+    public void recordStatement() {
+        statements++;
+    }
+
+    /**
+     * @return the statements the cycle sent to the database so far
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * Samples the heap usage of the process, kept if it is the highest of the cycle so far. Checkpoints sample it, and
+     * the cycle once more when it ends.
+     */
+    public void sampleHeap() {
+        peakHeap = Math.max(peakHeap, MEMORY.getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * @return the highest heap usage of the process sampled during the cycle
+     */
+    public long getPeakHeap() {
+        return peakHeap;
+    }
+
+    /**
+     * Asks the cycle to stop at its next checkpoint. Safe to call from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Stops the cycle if it was cancelled or ran past its deadline.
+     *
+     * @throws CycleCancelledException if the cycle must stop
+     */
+    public void checkpoint() {
+        sampleHeap();
+        if (cancelled) {
+            throw new CycleCancelledException("Cycle of table " + tableName + " was cancelled");
+        }
+        if (isExpired()) {
+            throw new CycleCancelledException("Cycle of table " + tableName + " ran past its deadline");
+        }
+    }
+
+    /**
+     * Waits until processing the given number of rows since the cycle started no longer exceeds the throttle. Never
+     * waits past the deadline, so the next checkpoint still stops the cycle on time.
+     *
+     * @param rows the rows processed so far
+     * @throws CycleCancelledException if the thread is interrupted while waiting
+     */
+    public void pace(long rows) {
+        if (throttle <= 0) {
+            return;
+        }
+        var wait = started + rows * 1_000_000_000L / throttle - System.nanoTime();
+        if (bounded) {
+            wait = Math.min(wait, deadline - System.nanoTime());
+        }
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new CycleCancelledException("Cycle of table " + tableName + " was cancelled");
+        }
+    }
+
+    /**
+     * The timeout for the next statement of the cycle: the configured query timeout, shortened to the time left
+     * before the deadline, rounded up to whole seconds as JDBC wants it.
+     *
+     * @return the timeout in seconds, or 0 for no limit
+     */
+    public int queryTimeoutSeconds() {
+        if (!bounded) {
+            return queryTimeout;
+        }
+        var remaining = Math.max(1, (int) Math.min(Integer.MAX_VALUE, (deadline - System.nanoTime() + 999_999_999L) / 1_000_000_000L));
+        return queryTimeout > 0 ? Math.min(queryTimeout, remaining) : remaining;
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+}
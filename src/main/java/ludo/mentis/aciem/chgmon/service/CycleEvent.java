@@ -0,0 +1,87 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event for a cycle of a monitored table, complete or not. With the {@link ChunkEvent} and
+ * {@link DatabaseCallEvent} events it encloses, and the garbage collection events of the JVM, a recording shows where
+ * a slow cycle spent its time.
+ */
+@Name("chgmon.Cycle")
+@Label("Cycle")
+@Category({"Chgmon"})
+@Description("A monitoring cycle of a table")
+public class CycleEvent extends jdk.jfr.Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Source")
+    public String source;
+
+    @Label("Profile")
+    public String profile;
+
+    @Label("Strategy")
+    public String strategy;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Rows Scanned")
+    public long rowsScanned;
+
+    @Label("Inserts")
+    public long inserts;
+
+    @Label("Updates")
+    public long updates;
+
+    @Label("Deletes")
+    public long deletes;
+
+    @Label("Bytes Hashed")
+    @DataAmount
+    public long bytesHashed;
+
+    @Label("Statements")
+    public long statements;
+
+    @Label("Scan Time")
+    @Timespan
+    public long scanTime;
+
+    @Label("Hash Time")
+    @Timespan
+    public long hashTime;
+
+    @Label("Baseline Lookup Time")
+    @Timespan
+    public long baselineLookupTime;
+
+    @Label("Audit Write Time")
+    @Timespan
+    public long auditWriteTime;
+
+    @Label("Delete Detection Time")
+    @Timespan
+    public long deleteDetectionTime;
+
+    @Label("Server CPU Time")
+    @Description("CPU time the queries of the cycle used on the monitored server")
+    @Timespan
+    public long serverCpuTime;
+
+    @Label("Logical Reads")
+    @Description("Pages the monitored server read from its buffer pool for the cycle")
+    public long logicalReads;
+
+    @Label("Physical Reads")
+    @Description("Pages the monitored server read from disk for the cycle")
+    public long physicalReads;
+}
@@ -0,0 +1,19 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import ludo.mentis.aciem.chgmon.model.CycleTrend;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+public interface CycleRunService {
+
+    boolean isEnabled();
+
+    void record(CycleRun cycleRun);
+
+    List<CycleRun> find(String tableName, LocalDateTime from, LocalDateTime to, int limit);
+
+    List<CycleTrend> findTrend(String tableName, LocalDateTime from, LocalDateTime to, ChronoUnit period);
+}
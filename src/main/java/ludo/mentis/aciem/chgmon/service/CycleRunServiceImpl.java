@@ -0,0 +1,111 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import ludo.mentis.aciem.chgmon.model.CycleTrend;
+import ludo.mentis.aciem.chgmon.repos.CycleRunRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Keeps the history of the cycles in tb_cycle_run, one record written when each cycle ends, and answers the queries
+ * of the cycle API over it. Records older than {@code monitor.cycle-history.retention} are deleted at most once a
+ * day, after a cycle is recorded.
+ */
+@Service
+public class CycleRunServiceImpl implements CycleRunService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CycleRunServiceImpl.class);
+    private static final int MAX_ERROR_LENGTH = 2000;
+    static final int MAX_LIMIT = 1000;
+
+    private final CycleRunRepository cycleRunRepository;
+    private final boolean enabled;
+    private final Duration retention;
+    private LocalDateTime lastPurge;
+
+    public CycleRunServiceImpl(MonitorProperties monitorProperties, CycleRunRepository cycleRunRepository) {
+        var settings = monitorProperties.getCycleHistory();
+        if (settings.getRetention() == null || settings.getRetention().isNegative() || settings.getRetention().isZero()) {
+            throw new IllegalArgumentException("Cycle history retention must be positive");
+        }
+        this.cycleRunRepository = cycleRunRepository;
+        this.enabled = settings.isEnabled();
+        this.retention = settings.getRetention();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Writes the record of a cycle that just ended and deletes expired records once a day.
+     * Failures are logged, so that a missing or unreachable history table never fails monitoring.
+     *
+     * @param cycleRun the cycle to record
+     */
+    @Override
+    public void record(CycleRun cycleRun) {
+        if (!enabled) {
+            return;
+        }
+        if (cycleRun.getError() != null && cycleRun.getError().length() > MAX_ERROR_LENGTH) {
+            cycleRun.setError(cycleRun.getError().substring(0, MAX_ERROR_LENGTH));
+        }
+        try {
+            cycleRunRepository.insert(cycleRun);
+            purge(cycleRun.getEndedAt());
+        } catch (DataAccessException e) {
+            logger.warn("Table: {}. Could not record the cycle in tb_cycle_run: {}", cycleRun.getTableName(), e.getMessage());
+        }
+    }
+
+    private void purge(LocalDateTime now) {
+        if (lastPurge != null && lastPurge.plusDays(1).isAfter(now)) {
+            return;
+        }
+        lastPurge = now;
+        var deleted = cycleRunRepository.deleteBefore(now.minus(retention));
+        if (deleted > 0) {
+            logger.info("Deleted {} cycle records older than {}", deleted, retention);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the period is missing or reversed, or limit is not between 1 and 1000
+     */
+    @Override
+    public List<CycleRun> find(String tableName, LocalDateTime from, LocalDateTime to, int limit) {
+        validate(from, to);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        return cycleRunRepository.find(tableName, from, to, limit);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the period is missing or reversed, or period is neither hours nor days
+     */
+    @Override
+    public List<CycleTrend> findTrend(String tableName, LocalDateTime from, LocalDateTime to, ChronoUnit period) {
+        validate(from, to);
+        return cycleRunRepository.findTrend(tableName, from, to, period);
+    }
+
+    private static void validate(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Period cannot be null");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Start of the period must be before its end");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import ludo.mentis.aciem.chgmon.model.LobDigest;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Java Flight Recorder event for a repository call: table scans, baseline lookups and audit inserts. The duration
+ * of the event is the time the call waited on the database, fetching included, so set against {@link ChunkEvent}
+ * it tells the network and the server apart from hashing. The bytes are an estimate of the values that crossed the
+ * network, since the driver does not report them: the length of strings, binary values and streamed large objects,
+ * and the storage size of the other types.
+ * <p>
+ * Only calls longer than the threshold are recorded, 1 ms by default, since baseline lookups run once per row; a
+ * recording may lower it with {@code chgmon.DatabaseCall#threshold=0 ms}.
+ */
+@Name("chgmon.DatabaseCall")
+@Label("Database Call")
+@Category({"Chgmon", "Database"})
+@Description("A repository call of chgmon and the rows and bytes it read or wrote")
+@Threshold("1 ms")
+public class DatabaseCallEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    private final String operation;
+
+    @Label("Table")
+    private final String table;
+
+    @Label("Rows")
+    @Description("Rows read or written by the call")
+    private long rows;
+
+    @Label("Bytes")
+    @Description("Estimated bytes of the values read or written by the call")
+    @DataAmount(DataAmount.BYTES)
+    private long bytes;
+
+    /**
+     * Starts timing a call.
+     *
+     * @param operation the repository method
+     * @param table     the monitored table
+     */
+    public DatabaseCallEvent(String operation, String table) {
+        this.operation = operation;
+        this.table = table;
+        begin();
+    }
+
+    /**
+     * Ends the call and records it, if the event is enabled and the call took longer than the threshold.
+     *
+     * @param rows  the rows read or written
+     * @param bytes the estimated bytes of their values
+     */
+    public void finish(long rows, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.rows = rows;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+
+    /**
+     * Ends a call that read rows as maps and records it like {@link #finish(long, long)}. The bytes of the values are
+     * only added up when the event is recorded, so that scans do not go through their rows a second time otherwise.
+     *
+     * @param rows the rows read
+     */
+    public void finish(List<Map<String, Object>> rows) {
+        end();
+        if (shouldCommit()) {
+            this.rows = rows.size();
+            for (var row : rows) {
+                for (var value : row.values()) {
+                    this.bytes += bytesOf(value);
+                }
+            }
+            commit();
+        }
+    }
+
+    /**
+     * Estimates the bytes of a value as read from or written to the database.
+     *
+     * @param value a column value, null included
+     * @return the estimated bytes
+     */
+    public static long bytesOf(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof byte[] binary) {
+            return binary.length;
+        }
+        if (value instanceof CharSequence text) {
+            return text.length();
+        }
+        if (value instanceof LobDigest digest) {
+            return digest.length();
+        }
+        if (value instanceof Integer || value instanceof Float) {
+            return 4;
+        }
+        if (value instanceof Short) {
+            return 2;
+        }
+        if (value instanceof Byte || value instanceof Boolean) {
+            return 1;
+        }
+        return 8;
+    }
+}
@@ -0,0 +1,10 @@
+package ludo.mentis.aciem.chgmon.service;
+
+public interface HashColumnService {
+
+    boolean isEnabled();
+
+    String getColumnName();
+
+    boolean prepare(String tableName, String primaryKeyName);
+}
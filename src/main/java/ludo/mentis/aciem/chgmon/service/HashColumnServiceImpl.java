@@ -0,0 +1,138 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.ComputedColumn;
+import ludo.mentis.aciem.chgmon.repos.HashColumnRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Provisions, validates and tears down the persisted hash column and its (primary key, hash) index.
+ * <p>
+ * With the column in place the server keeps a {@code BINARY_CHECKSUM} of every row up to date as rows are written,
+ * and a cycle only scans the narrow index instead of shipping whole rows. The column lists the hashed columns
+ * explicitly, so it is rebuilt when the columns of the table change.
+ */
+@Service
+public class HashColumnServiceImpl implements HashColumnService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashColumnServiceImpl.class);
+
+    private final HashColumnRepository hashColumnRepository;
+    private final boolean enabled;
+    private final boolean teardown;
+    private final String columnName;
+    private final String indexName;
+    private final ColumnSelection columnSelection;
+
+    public HashColumnServiceImpl(MonitorProperties monitorProperties, HashColumnRepository hashColumnRepository) {
+        var settings = monitorProperties.getHashColumn();
+        this.columnSelection = new ColumnSelection(monitorProperties.getPrimaryKeyName(),
+                monitorProperties.getColumns().getInclude(), monitorProperties.getColumns().getExclude());
+        this.hashColumnRepository = hashColumnRepository;
+        this.enabled = settings.isEnabled();
+        this.teardown = settings.isTeardown();
+        this.columnName = settings.getColumnName();
+        this.indexName = settings.getIndexName();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Brings the table in line with the configuration before a cycle: provisions or repairs the hash column and its
+     * index when the mode is enabled, or drops them when the mode is disabled and teardown is requested.
+     *
+     * @param tableName      the name of the monitored table
+     * @param primaryKeyName the name of its primary key column
+     * @return true if the row hashes the cycle will see are no longer comparable with the stored baseline, because
+     * the hash column was (re)created or dropped
+     */
+    @Override
+    public boolean prepare(String tableName, String primaryKeyName) {
+        if (enabled) {
+            return provision(tableName, primaryKeyName);
+        }
+        if (teardown) {
+            return drop(tableName);
+        }
+        return false;
+    }
+
+    private boolean provision(String tableName, String primaryKeyName) {
+        var columns = new ArrayList<String>();
+        for (var column : hashColumnRepository.findHashableColumns(tableName, primaryKeyName, columnName)) {
+            if (columnSelection.selects(column)) {
+                columns.add(column);
+            }
+        }
+        var existing = hashColumnRepository.findComputedColumn(tableName, columnName);
+        if (existing != null && existing.persisted() && covers(existing, columns)) {
+            if (!hashColumnRepository.indexExists(tableName, indexName)) {
+                hashColumnRepository.createIndex(tableName, indexName, primaryKeyName, columnName);
+                logger.info("Table: {}. Recreated hash column index {}", tableName, indexName);
+            }
+            return false;
+        }
+
+        drop(tableName);
+        hashColumnRepository.addHashColumn(tableName, columnName, columns);
+        hashColumnRepository.createIndex(tableName, indexName, primaryKeyName, columnName);
+        logger.info("Table: {}. Provisioned hash column {} over {} columns", tableName, columnName, columns.size());
+        return true;
+    }
+
+    private boolean drop(String tableName) {
+        if (hashColumnRepository.indexExists(tableName, indexName)) {
+            hashColumnRepository.dropIndex(tableName, indexName);
+        }
+        if (hashColumnRepository.findComputedColumn(tableName, columnName) == null) {
+            return false;
+        }
+        hashColumnRepository.dropColumn(tableName, columnName);
+        logger.info("Table: {}. Dropped hash column {}", tableName, columnName);
+        return true;
+    }
+
+    /**
+     * Checks that a definition references exactly the given columns. The server normalizes definitions (brackets,
+     * case, spacing), so referenced names are compared rather than the text itself.
+     */
+    static boolean covers(ComputedColumn column, List<String> columns) {
+        var definition = column.definition().toLowerCase(Locale.ROOT);
+        if (!definition.contains("binary_checksum(")) {
+            return false;
+        }
+        var references = 0;
+        var open = definition.indexOf('[');
+        while (open >= 0) {
+            var close = definition.indexOf(']', open);
+            if (close < 0) {
+                return false;
+            }
+            references++;
+            open = definition.indexOf('[', close + 1);
+        }
+        if (references != columns.size()) {
+            return false;
+        }
+        for (var name : columns) {
+            if (!definition.contains("[" + name.toLowerCase(Locale.ROOT).replace("]", "]]") + "]")) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
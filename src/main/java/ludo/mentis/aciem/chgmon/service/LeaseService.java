@@ -0,0 +1,30 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.PkRange;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+public interface LeaseService {
+
+    boolean isEnabled();
+
+    String getNodeId();
+
+    void heartbeat();
+
+    Set<Integer> beginCycle();
+
+    void endCycle();
+
+    boolean holds(Set<Integer> shards);
+
+    boolean owns(long primaryKey);
+
+    List<PkRange> restrict(Set<Integer> shards, List<PkRange> ranges);
+
+    LocalDateTime getVerifiedDate();
+
+    void saveVerifiedDate(LocalDateTime verifiedDate);
+}
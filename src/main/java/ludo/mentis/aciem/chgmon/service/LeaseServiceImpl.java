@@ -0,0 +1,287 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import ludo.mentis.aciem.chgmon.repos.LeaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Coordinates several nodes monitoring the same table, through leases in tb_monitor_lease. The primary key space is
+ * cut into {@code monitor.cluster.shards} shards of {@code monitor.cluster.shard-size} keys, the first and last one
+ * open-ended. Every heartbeat renews the leases this node holds, takes free or expired shards up to its fair share
+ * (the shards divided by the live nodes, rounded up) and gives back the shards above it, so that a node that joins
+ * gets work and the shards of a node that died are taken over once its leases expire.
+ * <p>
+ * A cycle works on the shards held when it starts, and those are not given back until it ends. A lease counts as
+ * held until the time it was last renewed plus the lease duration, measured on this node before the renewal was
+ * sent: the database only lets another node take it later than that.
+ * <p>
+ * Work on the whole table (provisioning the hash column, rehashing after a schema change) is left to the node
+ * holding shard 0, which records the table definition it reconciled the baseline with. The other nodes wait until
+ * it matches the current one.
+ */
+@Service
+public class LeaseServiceImpl implements LeaseService, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaseServiceImpl.class);
+
+    private final LeaseRepository leaseRepository;
+    private final LongSupplier nanoTime;
+    private final boolean enabled;
+    private final String tableName;
+    private final String nodeId;
+    private final int shards;
+    private final long shardSize;
+    private final Duration leaseDuration;
+    // Guarded by this: the shards held and when their leases run out on this node, and the shards of the running cycle
+    private final TreeMap<Integer, Long> held = new TreeMap<>();
+    private final Set<Integer> inUse = new HashSet<>();
+    private boolean initialized;
+
+    @Autowired
+    public LeaseServiceImpl(MonitorProperties monitorProperties, LeaseRepository leaseRepository) {
+        this(monitorProperties, leaseRepository, System::nanoTime);
+    }
+
+    LeaseServiceImpl(MonitorProperties monitorProperties, LeaseRepository leaseRepository, LongSupplier nanoTime) {
+        var settings = monitorProperties.getCluster();
+        this.enabled = settings.isEnabled();
+        if (enabled) {
+            if (settings.getShards() < 1) {
+                throw new IllegalArgumentException("Cluster shards must be positive");
+            }
+            if (settings.getShards() > 1 && (settings.getShardSize() < 1 || settings.getShardSize() % monitorProperties.getBaseline().getRangeSize() != 0)) {
+                throw new IllegalArgumentException("Cluster shard size must be a positive multiple of the baseline range size");
+            }
+            if (settings.getLeaseDuration().compareTo(settings.getHeartbeatInterval().multipliedBy(2)) < 0) {
+                throw new IllegalArgumentException("Cluster lease duration must be at least twice the heartbeat interval");
+            }
+        }
+        this.leaseRepository = leaseRepository;
+        this.nanoTime = nanoTime;
+        this.tableName = monitorProperties.getTableName();
+        this.nodeId = settings.getNodeId() != null && !settings.getNodeId().isBlank() ? settings.getNodeId() : defaultNodeId();
+        this.shards = Math.max(1, settings.getShards());
+        this.shardSize = settings.getShardSize();
+        this.leaseDuration = settings.getLeaseDuration();
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Renews the leases held, then takes or gives back shards to match the fair share of this node.
+     */
+    @Override
+    public synchronized void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        if (!initialized) {
+            leaseRepository.createMissing(tableName, shards);
+            initialized = true;
+        }
+
+        for (var shard : new ArrayList<>(held.keySet())) {
+            var renewedAt = nanoTime.getAsLong();
+            if (leaseRepository.renew(tableName, shard, nodeId, leaseDuration)) {
+                held.put(shard, renewedAt + leaseDuration.toNanos());
+            } else {
+                held.remove(shard);
+                logger.warn("Table: {}. Lost the lease of shard {} to another node", tableName, shard);
+            }
+        }
+
+        var leases = leaseRepository.findByTableName(tableName);
+        var nodes = new HashSet<String>();
+        nodes.add(nodeId);
+        for (var lease : leases) {
+            if (lease.owner() != null && !lease.expired()) {
+                nodes.add(lease.owner());
+            }
+        }
+        var fairShare = (shards + nodes.size() - 1) / nodes.size();
+
+        for (var lease : leases) {
+            if (held.size() >= fairShare) {
+                break;
+            }
+            // A lease of this node that is not held any more was left by a previous run with the same node ID
+            if (held.containsKey(lease.shard()) || (lease.owner() != null && !lease.expired() && !lease.owner().equals(nodeId))) {
+                continue;
+            }
+            var claimedAt = nanoTime.getAsLong();
+            if (leaseRepository.claim(tableName, lease.shard(), nodeId, leaseDuration)) {
+                held.put(lease.shard(), claimedAt + leaseDuration.toNanos());
+                if (lease.owner() != null && !lease.owner().equals(nodeId)) {
+                    logger.info("Table: {}. Took over shard {} from node {}", tableName, lease.shard(), lease.owner());
+                } else {
+                    logger.info("Table: {}. Claimed shard {}", tableName, lease.shard());
+                }
+            }
+        }
+
+        // Shard 0 goes last, so that work on the whole table stays with the same node
+        for (var shard : new ArrayList<>(held.descendingKeySet())) {
+            if (held.size() <= fairShare) {
+                break;
+            }
+            if (!inUse.contains(shard)) {
+                leaseRepository.release(tableName, shard, nodeId);
+                held.remove(shard);
+                logger.info("Table: {}. Gave back shard {} to balance {} nodes", tableName, shard, nodes.size());
+            }
+        }
+    }
+
+    /**
+     * Picks the shards the next cycle works on and keeps them until {@link #endCycle()}.
+     *
+     * @return the shards held, possibly none
+     */
+    @Override
+    public synchronized Set<Integer> beginCycle() {
+        if (!initialized) {
+            heartbeat();
+        }
+        var now = nanoTime.getAsLong();
+        var shards = new TreeSet<Integer>();
+        for (var entry : held.entrySet()) {
+            if (entry.getValue() - now > 0) {
+                shards.add(entry.getKey());
+            }
+        }
+        inUse.clear();
+        inUse.addAll(shards);
+        return shards;
+    }
+
+    @Override
+    public synchronized void endCycle() {
+        inUse.clear();
+    }
+
+    /**
+     * @return true if every given shard is still held and its lease has not run out
+     */
+    @Override
+    public synchronized boolean holds(Set<Integer> shards) {
+        var now = nanoTime.getAsLong();
+        for (var shard : shards) {
+            var expiresAt = held.get(shard);
+            if (expiresAt == null || expiresAt - now <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean owns(long primaryKey) {
+        return !enabled || holds(Set.of(shardOf(primaryKey)));
+    }
+
+    /**
+     * Limits primary key ranges to the given shards.
+     *
+     * @param shards the shards to keep
+     * @param ranges sorted and non-overlapping ranges, or null for the whole table
+     * @return the part of the ranges within the shards, sorted, or null if that is still the whole table
+     */
+    @Override
+    public List<PkRange> restrict(Set<Integer> shards, List<PkRange> ranges) {
+        var owned = new ArrayList<PkRange>();
+        for (var shard : new TreeSet<>(shards)) {
+            var range = rangeOf(shard);
+            if (!owned.isEmpty() && owned.get(owned.size() - 1).end() + 1 == range.start()) {
+                range = new PkRange(owned.remove(owned.size() - 1).start(), range.end());
+            }
+            owned.add(range);
+        }
+        if (ranges == null) {
+            return owned.size() == 1 && owned.get(0).start() == Long.MIN_VALUE && owned.get(0).end() == Long.MAX_VALUE ? null : owned;
+        }
+
+        var result = new ArrayList<PkRange>();
+        for (var range : ranges) {
+            for (var shard : owned) {
+                var start = Math.max(range.start(), shard.start());
+                var end = Math.min(range.end(), shard.end());
+                if (start <= end) {
+                    result.add(new PkRange(start, end));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public LocalDateTime getVerifiedDate() {
+        return leaseRepository.findVerifiedDate(tableName);
+    }
+
+    @Override
+    public void saveVerifiedDate(LocalDateTime verifiedDate) {
+        if (!leaseRepository.saveVerifiedDate(tableName, nodeId, verifiedDate)) {
+            logger.warn("Table: {}. Could not record the reconciled table definition, shard 0 is held by another node", tableName);
+        }
+    }
+
+    private int shardOf(long primaryKey) {
+        if (shards == 1) {
+            return 0;
+        }
+        return (int) Math.max(0, Math.min(shards - 1, Math.floorDiv(primaryKey, shardSize)));
+    }
+
+    private PkRange rangeOf(int shard) {
+        var start = shard == 0 ? Long.MIN_VALUE : shard * shardSize;
+        var end = shard == shards - 1 ? Long.MAX_VALUE : (shard + 1) * shardSize - 1;
+        return new PkRange(start, end);
+    }
+
+    /**
+     * Gives back every lease on shutdown, so that the other nodes take the shards over at once rather than after
+     * the leases expire.
+     */
+    @Override
+    public synchronized void destroy() {
+        for (var shard : held.keySet()) {
+            leaseRepository.release(tableName, shard, nodeId);
+        }
+        held.clear();
+    }
+}
@@ -0,0 +1,192 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.ChangeType;
+import ludo.mentis.aciem.chgmon.model.CycleStats;
+import ludo.mentis.aciem.chgmon.model.ServerCost;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * The Micrometer meters of the monitored table, tagged with {@code table} and {@code source} (the name of the entry of
+ * {@code monitor.sources}, or {@code default}), and exposed by Actuator at {@code /actuator/prometheus}.
+ * <p>
+ * The hot path never touches a meter per row: the cycle adds up its phase times and counts and records them once it
+ * ends. Only changes, which are rare, are counted as they are found. Counters kept by the components themselves
+ * (bytes hashed, audit writer, cycle outcomes) are read when the registry is scraped.
+ */
+@Component
+public class MonitorMetrics {
+
+    public enum Phase {
+        /** Reading the rows of the table. */
+        SCAN,
+        /** Computing row checksums. */
+        HASH,
+        /** Reading the stored checksums the rows are compared with. */
+        BASELINE_LOOKUP,
+        /** Handing audits to the audit writer, and waiting for it at the end of the cycle. */
+        AUDIT_WRITE,
+        /** Finding the rows deleted since the baseline. */
+        DELETE_DETECTION
+    }
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final Map<Phase, Timer> phaseTimers = new EnumMap<>(Phase.class);
+    private final Map<ChangeType, Counter> changeCounters = new EnumMap<>(ChangeType.class);
+    private final Counter scannedRows;
+    private final DistributionSummary roundTrips;
+    private final Timer lag;
+
+    public MonitorMetrics(MeterRegistry registry, MonitorProperties monitorProperties, ChecksumService checksumService, AuditWriter auditWriter) {
+        this.registry = registry;
+        this.tags = Tags.of("table", String.valueOf(monitorProperties.getTableName()),
+                "source", monitorProperties.getSourceName() != null ? monitorProperties.getSourceName() : "default");
+        for (var phase : Phase.values()) {
+            phaseTimers.put(phase, Timer.builder("chgmon.cycle.phase")
+                    .description("Time spent by cycles in each phase")
+                    .tags(tags).tag("phase", phase.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        for (var changeType : ChangeType.values()) {
+            changeCounters.put(changeType, Counter.builder("chgmon.changes")
+                    .description("Changes detected")
+                    .tags(tags).tag("type", changeType.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        this.scannedRows = Counter.builder("chgmon.rows.scanned")
+                .description("Rows read by cycles")
+                .tags(tags).register(registry);
+        this.roundTrips = DistributionSummary.builder("chgmon.cycle.round.trips")
+                .description("Statements sent to the database per cycle")
+                .tags(tags).register(registry);
+        this.lag = Timer.builder("chgmon.cycle.lag")
+                .description("Time between the trigger of a cycle and its start")
+                .tags(tags).register(registry);
+        FunctionCounter.builder("chgmon.checksum.bytes", checksumService, ChecksumService::getHashedBytes)
+                .description("Bytes of column values hashed, an estimate of the bytes fetched")
+                .baseUnit("bytes").tags(tags).register(registry);
+        bindAuditWriter(auditWriter);
+    }
+
+    private void bindAuditWriter(AuditWriter auditWriter) {
+        Gauge.builder("chgmon.audit.queue.depth", auditWriter, AuditWriter::getQueueDepth)
+                .description("Audits waiting to be written")
+                .tags(tags).register(registry);
+        auditCounter(auditWriter, "written", AuditWriter::getWrittenCount);
+        auditCounter(auditWriter, "failed", AuditWriter::getFailedCount);
+        auditCounter(auditWriter, "backpressure", AuditWriter::getBackpressureCount);
+    }
+
+    private void auditCounter(AuditWriter auditWriter, String outcome, ToLongFunction<AuditWriter> count) {
+        FunctionCounter.builder("chgmon.audits", auditWriter, writer -> count.applyAsLong(writer))
+                .description("Audits by outcome; backpressure counts the writes that waited for room in the queue")
+                .tags(tags).tag("outcome", outcome).register(registry);
+    }
+
+    /**
+     * Exposes the cycle counters of the scheduler.
+     *
+     * @param cycleStats reads the counters, when the registry is scraped
+     */
+    public void bindCycleStats(Supplier<CycleStats> cycleStats) {
+        cycleCounter(cycleStats, "completed", CycleStats::completed);
+        cycleCounter(cycleStats, "cancelled", CycleStats::cancelled);
+        cycleCounter(cycleStats, "failed", CycleStats::failed);
+        cycleCounter(cycleStats, "skipped", CycleStats::skipped);
+        cycleCounter(cycleStats, "queued", CycleStats::queued);
+        cycleCounter(cycleStats, "coalesced", CycleStats::coalesced);
+    }
+
+    private void cycleCounter(Supplier<CycleStats> cycleStats, String outcome, ToLongFunction<CycleStats> count) {
+        FunctionCounter.builder("chgmon.cycles", cycleStats, stats -> count.applyAsLong(stats.get()))
+                .description("Cycles by outcome, and triggers that fired while a cycle was running")
+                .tags(tags).tag("outcome", outcome).register(registry);
+    }
+
+    /**
+     * Exposes the delay the adaptive schedule plans between two cycles.
+     *
+     * @param delay reads the delay, when the registry is scraped
+     */
+    public void bindScheduleDelay(Supplier<Duration> delay) {
+        Gauge.builder("chgmon.schedule.delay", delay, supplier -> supplier.get().toMillis() / 1000.0)
+                .description("Delay planned by the adaptive schedule until the next cycle")
+                .baseUnit("seconds").tags(tags).register(registry);
+    }
+
+    /**
+     * Records the time a triggered cycle waited before it started.
+     */
+    public void recordLag(long nanos) {
+        lag.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordChange(ChangeType changeType) {
+        changeCounters.get(changeType).increment();
+    }
+
+    /**
+     * Records the totals of a cycle, complete or not.
+     *
+     * @param outcome    how the cycle ended
+     * @param nanos      how long it ran
+     * @param phaseNanos the time spent in each phase, indexed by {@link Phase#ordinal()}
+     * @param rows       the rows it read
+     * @param statements the statements it sent to the database
+     */
+    public void recordCycle(String outcome, long nanos, long[] phaseNanos, long rows, long statements) {
+        Timer.builder("chgmon.cycle")
+                .description("Duration of cycles by outcome")
+                .tags(tags).tag("outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        for (var phase : Phase.values()) {
+            phaseTimers.get(phase).record(phaseNanos[phase.ordinal()], TimeUnit.NANOSECONDS);
+        }
+        scannedRows.increment(rows);
+        roundTrips.record(statements);
+    }
+
+    /**
+     * Records what a cycle cost the monitored server, tagged with the strategy it ran with.
+     */
+    public void recordServerCost(MonitorProperties.Strategy strategy, ServerCost serverCost) {
+        var strategyTag = strategy.name().toLowerCase(Locale.ROOT);
+        Timer.builder("chgmon.server.cpu")
+                .description("CPU time the queries of cycles used on the monitored server")
+                .tags(tags).tag("strategy", strategyTag)
+                .register(registry)
+                .record(serverCost.cpuMillis(), TimeUnit.MILLISECONDS);
+        Timer.builder("chgmon.server.scheduled")
+                .description("Time the queries of cycles were scheduled on the monitored server")
+                .tags(tags).tag("strategy", strategyTag)
+                .register(registry)
+                .record(serverCost.scheduledMillis(), TimeUnit.MILLISECONDS);
+        serverCounter("chgmon.server.logical.reads", "Pages cycles read from the buffer pool of the monitored server", strategyTag)
+                .increment(serverCost.logicalReads());
+        serverCounter("chgmon.server.physical.reads", "Pages cycles read from the disk of the monitored server", strategyTag)
+                .increment(serverCost.physicalReads());
+        serverCounter("chgmon.server.writes", "Pages cycles wrote on the monitored server", strategyTag)
+                .increment(serverCost.writes());
+    }
+
+    private Counter serverCounter(String name, String description, String strategyTag) {
+        return Counter.builder(name).description(description).tags(tags).tag("strategy", strategyTag).register(registry);
+    }
+}
@@ -0,0 +1,195 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary encoding of a row image: for each column, its name followed by a one-byte type tag and the
+ * value. Integral numbers and dates are varints, text is UTF-8, decimals keep their scale. Types without a tag of
+ * their own are stored in their string form.
+ * <p>
+ * Raw images are what the row image store keeps (it compresses whole blocks of them); images attached to audits
+ * are compressed one by one with {@link #compress(byte[])}.
+ */
+public final class RowImageCodec {
+
+    private static final int NULL = 0;
+    private static final int INTEGRAL = 1;
+    private static final int TEXT = 2;
+    private static final int DECIMAL = 3;
+    private static final int TIMESTAMP = 4;
+    private static final int DATE = 5;
+    private static final int BOOLEAN = 6;
+    private static final int FLOATING = 7;
+    private static final int BINARY = 8;
+
+    private RowImageCodec() {
+    }
+
+    public static byte[] encode(Map<String, Object> row) {
+        var buffer = new ByteArrayOutputStream(row.size() * 16);
+        try (var out = new DataOutputStream(buffer)) {
+            writeVarint(out, row.size());
+            for (var column : row.entrySet()) {
+                writeBytes(out, column.getKey().getBytes(StandardCharsets.UTF_8));
+                writeValue(out, column.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    public static Map<String, Object> decode(byte[] image) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(image))) {
+            var count = (int) readVarint(in);
+            var row = new LinkedHashMap<String, Object>(count * 2);
+            for (int i = 0; i < count; i++) {
+                var name = new String(readBytes(in), StandardCharsets.UTF_8);
+                row.put(name, readValue(in));
+            }
+            return row;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static byte[] compress(byte[] raw) {
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        var buffer = new ByteArrayOutputStream(raw.length / 2 + 16);
+        try (var out = new DeflaterOutputStream(buffer, deflater)) {
+            out.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return buffer.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] compressed) {
+        var inflater = new Inflater();
+        try (var in = new InflaterInputStream(new ByteArrayInputStream(compressed), inflater)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(INTEGRAL);
+            writeVarint(out, zigzag(((Number) value).longValue()));
+        } else if (value instanceof BigDecimal decimal) {
+            out.write(DECIMAL);
+            writeVarint(out, zigzag(decimal.scale()));
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        } else if (value instanceof Timestamp timestamp) {
+            out.write(TIMESTAMP);
+            writeVarint(out, zigzag(Math.floorDiv(timestamp.getTime(), 1000)));
+            writeVarint(out, timestamp.getNanos());
+        } else if (value instanceof Date date) {
+            out.write(DATE);
+            writeVarint(out, zigzag(date.toLocalDate().toEpochDay()));
+        } else if (value instanceof Boolean bool) {
+            out.write(BOOLEAN);
+            out.write(bool ? 1 : 0);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.write(FLOATING);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof byte[] bytes) {
+            out.write(BINARY);
+            writeBytes(out, bytes);
+        } else {
+            out.write(TEXT);
+            writeBytes(out, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        var tag = in.read();
+        return switch (tag) {
+            case NULL -> null;
+            case INTEGRAL -> unzigzag(readVarint(in));
+            case TEXT -> new String(readBytes(in), StandardCharsets.UTF_8);
+            case DECIMAL -> {
+                var scale = (int) unzigzag(readVarint(in));
+                yield new BigDecimal(new BigInteger(readBytes(in)), scale);
+            }
+            case TIMESTAMP -> {
+                var timestamp = new Timestamp(unzigzag(readVarint(in)) * 1000);
+                timestamp.setNanos((int) readVarint(in));
+                yield timestamp;
+            }
+            case DATE -> Date.valueOf(LocalDate.ofEpochDay(unzigzag(readVarint(in))));
+            case BOOLEAN -> in.read() == 1;
+            case FLOATING -> in.readDouble();
+            case BINARY -> readBytes(in);
+            default -> throw new IOException("Unknown row image value tag: " + tag);
+        };
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeBytes(OutputStream out, byte[] bytes) throws IOException {
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        var bytes = new byte[(int) readVarint(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            var b = in.read();
+            if (b < 0) {
+                throw new IOException("Truncated row image");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in row image");
+    }
+}
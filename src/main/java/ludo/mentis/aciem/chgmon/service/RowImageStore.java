@@ -0,0 +1,18 @@
+package ludo.mentis.aciem.chgmon.service;
+
+public interface RowImageStore {
+
+    boolean isEnabled();
+
+    boolean isCovered(String tableName, long primaryKey);
+
+    byte[] get(String tableName, long primaryKey);
+
+    void put(String tableName, long primaryKey, byte[] image);
+
+    byte[] remove(String tableName, long primaryKey);
+
+    void flush();
+
+    long getDiskBytes();
+}
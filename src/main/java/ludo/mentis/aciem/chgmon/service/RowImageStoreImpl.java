@@ -0,0 +1,260 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Keeps the last seen image of each row in local files, one deflated file per primary key range.
+ * <p>
+ * Only a few decoded blocks are held in memory at a time; they are written back when they fall out of that cache
+ * or on {@link #flush()}. Disk usage is bounded by {@code monitor.row-images.max-disk-size}: when it is exceeded,
+ * the blocks that changed least recently are deleted. An evicted range counts as covered, so its unchanged rows are
+ * not written again; it comes back, one row at a time, when its rows change.
+ */
+@Service
+public class RowImageStoreImpl implements RowImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowImageStoreImpl.class);
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".blk";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long rangeSize;
+    private final long maxDiskBytes;
+    private final int maxCachedBlocks;
+    private final Map<Path, Block> cache = new LinkedHashMap<>(16, 0.75f, true);
+    // Block files by least recently written first, with their size on disk
+    private final Map<Path, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<Path> evicted = new HashSet<>();
+    private final Set<String> scannedTables = new HashSet<>();
+    private long diskBytes;
+
+    public RowImageStoreImpl(MonitorProperties monitorProperties) {
+        var settings = monitorProperties.getRowImages();
+        this.enabled = settings.isEnabled();
+        this.directory = Path.of(settings.getDirectory());
+        this.rangeSize = settings.getRangeSize();
+        this.maxDiskBytes = settings.getMaxDiskSize().toBytes();
+        this.maxCachedBlocks = Math.max(1, settings.getCachedBlocks());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Tells whether the range of a row already has its images on disk (or was evicted as cold). Rows of ranges that
+     * are not covered should be put even if they did not change, so that their first update has an old image.
+     */
+    @Override
+    public synchronized boolean isCovered(String tableName, long primaryKey) {
+        var path = pathOf(tableName, primaryKey);
+        var block = cache.get(path);
+        return block != null ? block.covered : files.containsKey(path) || evicted.contains(path);
+    }
+
+    @Override
+    public synchronized byte[] get(String tableName, long primaryKey) {
+        return block(tableName, primaryKey).images.get(primaryKey);
+    }
+
+    @Override
+    public synchronized void put(String tableName, long primaryKey, byte[] image) {
+        var block = block(tableName, primaryKey);
+        block.images.put(primaryKey, image);
+        block.dirty = true;
+    }
+
+    @Override
+    public synchronized byte[] remove(String tableName, long primaryKey) {
+        var block = block(tableName, primaryKey);
+        var image = block.images.remove(primaryKey);
+        if (image != null) {
+            block.dirty = true;
+        }
+        return image;
+    }
+
+    /**
+     * Writes back every dirty block and enforces the disk budget. Blocks created since the last flush become
+     * covered.
+     */
+    @Override
+    public synchronized void flush() {
+        for (var entry : cache.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+            entry.getValue().covered = true;
+        }
+        cache.clear();
+        enforceBudget();
+    }
+
+    @Override
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    private Block block(String tableName, long primaryKey) {
+        if (!enabled) {
+            throw new IllegalStateException("Row image store is disabled");
+        }
+
+        var path = pathOf(tableName, primaryKey);
+        var block = cache.get(path);
+        if (block != null) {
+            return block;
+        }
+
+        block = new Block();
+        block.covered = files.containsKey(path) || evicted.contains(path);
+        if (files.containsKey(path)) {
+            read(path, block);
+        }
+        evicted.remove(path);
+        cache.put(path, block);
+
+        if (cache.size() > maxCachedBlocks) {
+            var eldest = cache.entrySet().iterator().next();
+            write(eldest.getKey(), eldest.getValue());
+            cache.remove(eldest.getKey());
+            enforceBudget();
+        }
+        return block;
+    }
+
+    private Path pathOf(String tableName, long primaryKey) {
+        var tableDirectory = directory.resolve(tableName.replaceAll("[^A-Za-z0-9_.-]", "_"));
+        if (scannedTables.add(tableName)) {
+            scan(tableDirectory);
+        }
+        return tableDirectory.resolve(Math.floorDiv(primaryKey, rangeSize) * rangeSize + SUFFIX);
+    }
+
+    /**
+     * Registers the block files left by a previous run, oldest first, so that eviction order survives restarts.
+     */
+    private void scan(Path tableDirectory) {
+        if (!Files.isDirectory(tableDirectory)) {
+            return;
+        }
+        try (var stream = Files.list(tableDirectory)) {
+            stream.filter(path -> path.toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(path -> path.toFile().lastModified()))
+                    .forEach(path -> {
+                        var size = path.toFile().length();
+                        files.put(path, size);
+                        diskBytes += size;
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void read(Path path, Block block) {
+        var inflater = new Inflater();
+        try (var in = new DataInputStream(new InflaterInputStream(new BufferedInputStream(Files.newInputStream(path)), inflater))) {
+            var version = in.read();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported row image block version " + version + " in " + path);
+            }
+            var count = (int) RowImageCodec.readVarint(in);
+            for (int i = 0; i < count; i++) {
+                var primaryKey = in.readLong();
+                block.images.put(primaryKey, RowImageCodec.readBytes(in));
+            }
+        } catch (IOException e) {
+            logger.warn("Discarding unreadable row image block {}: {}", path, e.getMessage());
+            block.images.clear();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void write(Path path, Block block) {
+        if (!block.dirty) {
+            return;
+        }
+
+        var previousSize = files.getOrDefault(path, 0L);
+        try {
+            if (block.images.isEmpty()) {
+                Files.deleteIfExists(path);
+                files.remove(path);
+                diskBytes -= previousSize;
+                return;
+            }
+
+            Files.createDirectories(path.getParent());
+            var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try (var out = new DataOutputStream(new DeflaterOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)), deflater, 8192))) {
+                out.write(FORMAT_VERSION);
+                RowImageCodec.writeVarint(out, block.images.size());
+                for (var image : block.images.entrySet()) {
+                    out.writeLong(image.getKey());
+                    RowImageCodec.writeBytes(out, image.getValue());
+                }
+            } finally {
+                deflater.end();
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            var size = Files.size(path);
+            files.put(path, size);
+            diskBytes += size - previousSize;
+            block.dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void enforceBudget() {
+        var iterator = files.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iterator.hasNext()) {
+            var eldest = iterator.next();
+            if (cache.containsKey(eldest.getKey())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(eldest.getKey());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            diskBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            iterator.remove();
+            logger.debug("Evicted cold row image block {}", eldest.getKey());
+        }
+    }
+
+    private static final class Block {
+
+        private final Map<Long, byte[]> images = new TreeMap<>();
+        private boolean dirty;
+        private boolean covered;
+    }
+}
@@ -0,0 +1,28 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.BucketStats;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+
+import java.time.Duration;
+import java.util.List;
+
+public interface ScanPlanner {
+
+    boolean isPartial();
+
+    List<PkRange> plan(String tableName, String primaryKeyName);
+
+    void recordChange(String tableName, long primaryKey);
+
+    void completeCycle(String tableName, List<PkRange> scanned);
+
+    List<PkRange> planChangedBuckets(String tableName, String primaryKeyName, List<String> columns, String filter);
+
+    void completeLightCycle(String tableName);
+
+    boolean isReportedClean(String tableName, long primaryKey);
+
+    List<BucketStats> getBucketStats(String tableName);
+
+    Duration getMaxDetectionLatency();
+}
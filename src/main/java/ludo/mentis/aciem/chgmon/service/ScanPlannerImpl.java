@@ -0,0 +1,422 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.BucketChecksum;
+import ludo.mentis.aciem.chgmon.model.BucketStats;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plans which primary key ranges a cycle reads. The key space is cut into buckets of
+ * {@code monitor.baseline.range-size} keys, and two independent mechanisms narrow the scan down:
+ * <ul>
+ *     <li>Rotating slices: each cycle reads the next 1/N of the buckets, sweeping from the lowest key to the highest
+ *     and wrapping around, plus the buckets where changes were seen most recently.</li>
+ *     <li>Tiering: every bucket keeps an average of the changes found per scan. Buckets whose average falls below the
+ *     cold rate are left out of regular cycles and read by the first cycle after each run of the cold cron, which
+ *     reads the whole table. A change found in a cold bucket moves it back to the hot tier at once.</li>
+ * </ul>
+ * When both are enabled, a cycle reads the hot tier plus the current slice, so cold buckets are also visited by the
+ * sweep. Sweep positions and statistics are kept in memory: after a restart every bucket starts hot and a new sweep
+ * starts from the lowest key.
+ * <p>
+ * Light cycles plan differently: the server computes an aggregate checksum per bucket, and only the buckets whose
+ * aggregate changed since the last light cycle are read. The aggregates are kept in memory too, so the first light
+ * cycle after a restart reads the whole table. Each completed light cycle reports its buckets clean until a change is
+ * recorded in them, which tells a deep cycle which of its findings the light cycles missed.
+ */
+@Service
+public class ScanPlannerImpl implements ScanPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanPlannerImpl.class);
+    private static final int MAX_FIRE_TIMES = 100_000;
+
+    private final MonitorRepository monitorRepository;
+    private final Clock clock;
+    private final int slices;
+    private final int hotBuckets;
+    private final long bucketSize;
+    private final boolean tiering;
+    private final CronExpression coldCron;
+    private final double smoothing;
+    private final double coldRate;
+    private final Duration maxDetectionLatency;
+    private final Map<String, TableState> tables = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ScanPlannerImpl(MonitorProperties monitorProperties, MonitorRepository monitorRepository) {
+        this(monitorProperties, monitorRepository, Clock.systemDefaultZone());
+    }
+
+    ScanPlannerImpl(MonitorProperties monitorProperties, MonitorRepository monitorRepository, Clock clock) {
+        var settings = monitorProperties.getTiering();
+        this.monitorRepository = monitorRepository;
+        this.clock = clock;
+        this.slices = Math.max(1, monitorProperties.getPartialScan().getSlices());
+        this.hotBuckets = Math.max(0, monitorProperties.getPartialScan().getHotBuckets());
+        this.bucketSize = monitorProperties.getBaseline().getRangeSize();
+        this.tiering = settings.isEnabled();
+        this.coldCron = tiering ? CronExpression.parse(settings.getColdCron()) : null;
+        this.smoothing = 1.0 / Math.max(1, settings.getWindow());
+        this.coldRate = settings.getColdRate();
+
+        var now = LocalDateTime.now(clock);
+        // In adaptive mode cycles are at most max-interval apart, unless their cost stretches the delay
+        var adaptive = monitorProperties.getAdaptive();
+        var latency = adaptive.isEnabled()
+                ? adaptive.getMaxInterval().multipliedBy(slices)
+                : maxDetectionLatency(monitorProperties.getCron(), slices, now);
+        if (tiering && latency != null) {
+            var cycleLatency = adaptive.isEnabled() ? adaptive.getMaxInterval() : maxDetectionLatency(monitorProperties.getCron(), 1, now);
+            var tieredLatency = maxDetectionLatency(settings.getColdCron(), 1, now).plus(cycleLatency);
+            latency = slices > 1 && latency.compareTo(tieredLatency) < 0 ? latency : tieredLatency;
+        }
+        this.maxDetectionLatency = latency;
+        if (isPartial()) {
+            logger.info("Partial scans: {} slices, tiering {}; changes in cold buckets are detected within {}",
+                    slices, tiering ? "enabled" : "disabled", maxDetectionLatency);
+        }
+    }
+
+    @Override
+    public boolean isPartial() {
+        return slices > 1 || tiering;
+    }
+
+    /**
+     * Picks the primary key ranges to read in this cycle and advances the sweep.
+     *
+     * @param tableName      the name of the monitored table
+     * @param primaryKeyName the name of its primary key column
+     * @return bucket-aligned, sorted and non-overlapping ranges, or null if the whole table should be read (partial
+     * scans disabled, the table is empty, or a cold scan is due). Ranges reaching the lowest or highest bucket extend
+     * to the lowest or highest possible key, so buckets outside of the current key bounds are still visited.
+     */
+    @Override
+    public List<PkRange> plan(String tableName, String primaryKeyName) {
+        if (!isPartial()) {
+            return null;
+        }
+
+        var state = tables.computeIfAbsent(tableName, name -> new TableState(LocalDateTime.now(clock)));
+        synchronized (state) {
+            if (tiering && !coldCron.next(state.lastFullScan).isAfter(LocalDateTime.now(clock))) {
+                logger.info("Table: {}. Cold scan due, reading the whole table", tableName);
+                return null;
+            }
+
+            var bounds = monitorRepository.findKeyBounds(tableName, primaryKeyName);
+            if (bounds == null) {
+                return null;
+            }
+            var firstBucket = Math.floorDiv(bounds.start(), bucketSize);
+            var lastBucket = Math.floorDiv(bounds.end(), bucketSize);
+
+            List<PkRange> ranges = new ArrayList<>();
+            if (slices > 1) {
+                ranges.add(nextSlice(state, firstBucket, lastBucket));
+                for (var bucket : state.recent.keySet()) {
+                    ranges.add(new PkRange(bucket * bucketSize, bucket * bucketSize + bucketSize - 1));
+                }
+            }
+            if (tiering) {
+                ranges.addAll(hotTier(state, firstBucket, lastBucket));
+            }
+            return merge(ranges);
+        }
+    }
+
+    /**
+     * Counts a change in the bucket of a row: the bucket becomes one of the most recently changed, and a cold bucket
+     * is promoted to the hot tier right away.
+     */
+    @Override
+    public void recordChange(String tableName, long primaryKey) {
+        var bucket = Math.floorDiv(primaryKey, bucketSize);
+        var state = isPartial() ? tables.computeIfAbsent(tableName, name -> new TableState(LocalDateTime.now(clock))) : tables.get(tableName);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.clean.remove(bucket);
+            if (!isPartial()) {
+                return;
+            }
+            if (hotBuckets > 0) {
+                state.recent.put(bucket, Boolean.TRUE);
+                if (state.recent.size() > hotBuckets) {
+                    state.recent.remove(state.recent.keySet().iterator().next());
+                }
+            }
+            if (tiering) {
+                state.changes.merge(bucket, 1, Integer::sum);
+                var stats = state.buckets.get(bucket);
+                if (stats != null && stats.cold) {
+                    stats.cold = false;
+                    stats.rate = 1.0;
+                    logger.info("Table: {}. Promoted bucket {} to the hot tier", tableName, bucket * bucketSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Folds the changes of a finished cycle into the statistics of the buckets it read, and moves the buckets whose
+     * change rate fell below the cold rate to the cold tier.
+     *
+     * @param tableName the name of the monitored table
+     * @param scanned   the ranges read by the cycle, or null if it read the whole table
+     */
+    @Override
+    public void completeCycle(String tableName, List<PkRange> scanned) {
+        if (!tiering) {
+            return;
+        }
+        var state = tables.computeIfAbsent(tableName, name -> new TableState(LocalDateTime.now(clock)));
+        synchronized (state) {
+            for (var bucket : state.changes.keySet()) {
+                state.buckets.computeIfAbsent(bucket, key -> new Stats());
+            }
+            var cooled = 0;
+            for (var entry : state.buckets.entrySet()) {
+                var rangeStart = entry.getKey() * bucketSize;
+                if (scanned != null && scanned.stream().noneMatch(range -> range.contains(rangeStart))) {
+                    continue;
+                }
+                var stats = entry.getValue();
+                stats.rate += smoothing * (state.changes.getOrDefault(entry.getKey(), 0) - stats.rate);
+                if (!stats.cold && stats.rate < coldRate) {
+                    stats.cold = true;
+                    cooled++;
+                }
+            }
+            state.changes.clear();
+            if (scanned == null) {
+                state.lastFullScan = LocalDateTime.now(clock);
+            }
+            if (cooled > 0) {
+                logger.info("Table: {}. Moved {} buckets to the cold tier", tableName, cooled);
+            }
+        }
+    }
+
+    /**
+     * Picks the buckets whose aggregate checksum differs from the one seen by the last completed light cycle, or that
+     * appeared or disappeared since. The new aggregates are only kept once {@link #completeLightCycle(String)} is
+     * called, so the buckets of a cycle that did not complete are read again.
+     *
+     * @param tableName      the name of the monitored table
+     * @param primaryKeyName the name of its primary key column
+     * @param columns        the columns to hash, or null for every column
+     * @param filter         the scope filter, or null
+     * @return sorted and non-overlapping ranges, possibly empty if nothing changed, or null if the whole table should
+     * be read because there are no aggregates to compare with yet
+     */
+    @Override
+    public List<PkRange> planChangedBuckets(String tableName, String primaryKeyName, List<String> columns, String filter) {
+        var checksums = monitorRepository.findBucketChecksums(tableName, primaryKeyName, bucketSize, columns, filter);
+        var state = tables.computeIfAbsent(tableName, name -> new TableState(LocalDateTime.now(clock)));
+        synchronized (state) {
+            state.pendingChecksums = checksums;
+            if (state.bucketChecksums == null) {
+                logger.info("Table: {}. No bucket checksums to compare with yet, reading the whole table", tableName);
+                return null;
+            }
+
+            var previous = new HashMap<>(state.bucketChecksums);
+            var ranges = new ArrayList<PkRange>();
+            for (var checksum : checksums) {
+                if (!checksum.equals(previous.remove(checksum.rangeStart()))) {
+                    ranges.add(new PkRange(checksum.rangeStart(), checksum.rangeStart() + bucketSize - 1));
+                }
+            }
+            // Buckets that no longer hold any row: their rows were all deleted
+            for (var rangeStart : previous.keySet()) {
+                ranges.add(new PkRange(rangeStart, rangeStart + bucketSize - 1));
+            }
+            logger.debug("Table: {}. {} of {} buckets changed", tableName, ranges.size(), checksums.size() + previous.size());
+            return merge(ranges);
+        }
+    }
+
+    /**
+     * Keeps the aggregates read by the light cycle that just completed, for the next one to compare with. Every
+     * bucket in them is now in line with the baseline, and reported clean until a change is recorded in it.
+     */
+    @Override
+    public void completeLightCycle(String tableName) {
+        var state = tables.get(tableName);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (state.pendingChecksums == null) {
+                return;
+            }
+            var checksums = new HashMap<Long, BucketChecksum>(state.pendingChecksums.size() * 2);
+            state.clean.clear();
+            for (var checksum : state.pendingChecksums) {
+                checksums.put(checksum.rangeStart(), checksum);
+                state.clean.add(Math.floorDiv(checksum.rangeStart(), bucketSize));
+            }
+            state.bucketChecksums = checksums;
+            state.pendingChecksums = null;
+        }
+    }
+
+    /**
+     * Tells whether the last completed light cycle reported the bucket of a row clean and no change was recorded in
+     * it since. A change found there by a deep cycle is one the light cycles missed.
+     */
+    @Override
+    public boolean isReportedClean(String tableName, long primaryKey) {
+        var state = tables.get(tableName);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            return state.clean.contains(Math.floorDiv(primaryKey, bucketSize));
+        }
+    }
+
+    @Override
+    public List<BucketStats> getBucketStats(String tableName) {
+        var state = tables.get(tableName);
+        if (state == null) {
+            return List.of();
+        }
+        synchronized (state) {
+            var result = new ArrayList<BucketStats>(state.buckets.size());
+            for (var entry : state.buckets.entrySet()) {
+                result.add(new BucketStats(entry.getKey() * bucketSize, entry.getValue().rate, entry.getValue().cold));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The longest time a change in a cold bucket can go undetected. For slices, the longest span of N consecutive
+     * cycles of the cron expression over a week of fire times; with tiering, the longest gap of the cold cron plus
+     * the longest gap between cycles, or the slice bound if that is shorter.
+     */
+    @Override
+    public Duration getMaxDetectionLatency() {
+        return maxDetectionLatency;
+    }
+
+    static Duration maxDetectionLatency(String cron, int slices, LocalDateTime from) {
+        if (cron == null || cron.isBlank()) {
+            return null;
+        }
+        var expression = CronExpression.parse(cron);
+        var fireTimes = new ArrayList<LocalDateTime>();
+        var until = from.plusWeeks(1);
+        var next = expression.next(from);
+        while (next != null && fireTimes.size() < MAX_FIRE_TIMES && (next.isBefore(until) || fireTimes.size() < slices + 1)) {
+            fireTimes.add(next);
+            next = expression.next(next);
+        }
+
+        var longest = Duration.ZERO;
+        for (int i = 0; i + slices < fireTimes.size(); i++) {
+            var span = Duration.between(fireTimes.get(i), fireTimes.get(i + slices));
+            if (span.compareTo(longest) > 0) {
+                longest = span;
+            }
+        }
+        return longest;
+    }
+
+    private PkRange nextSlice(TableState state, long firstBucket, long lastBucket) {
+        var bucketsPerSlice = Math.max(1, (lastBucket - firstBucket + slices) / slices);
+        var from = state.cursor == null || state.cursor <= firstBucket || state.cursor > lastBucket ? firstBucket : state.cursor;
+        var to = Math.min(lastBucket, from + bucketsPerSlice - 1);
+        state.cursor = to + 1;
+        return new PkRange(from == firstBucket ? Long.MIN_VALUE : from * bucketSize,
+                to == lastBucket ? Long.MAX_VALUE : (to + 1) * bucketSize - 1);
+    }
+
+    /**
+     * Every bucket that is not cold, as ranges. Buckets seen for the first time start hot, so new key ranges are read
+     * from the first cycle on.
+     */
+    private List<PkRange> hotTier(TableState state, long firstBucket, long lastBucket) {
+        for (var bucket = firstBucket; bucket <= lastBucket; bucket++) {
+            state.buckets.computeIfAbsent(bucket, key -> new Stats());
+        }
+        var ranges = new ArrayList<PkRange>();
+        var start = Long.MIN_VALUE;
+        for (var entry : state.buckets.subMap(firstBucket, true, lastBucket, true).entrySet()) {
+            if (!entry.getValue().cold) {
+                continue;
+            }
+            var bucket = entry.getKey();
+            if (bucket * bucketSize > start) {
+                ranges.add(new PkRange(start, bucket * bucketSize - 1));
+            }
+            start = (bucket + 1) * bucketSize;
+        }
+        ranges.add(new PkRange(start, Long.MAX_VALUE));
+        return ranges;
+    }
+
+    // Sorts ranges and joins the ones that touch, so the scan has as few seeks as possible
+    private static List<PkRange> merge(List<PkRange> ranges) {
+        ranges.sort((a, b) -> Long.compare(a.start(), b.start()));
+        var merged = new ArrayList<PkRange>(ranges.size());
+        for (var range : ranges) {
+            if (!merged.isEmpty()) {
+                var last = merged.get(merged.size() - 1);
+                if (last.end() == Long.MAX_VALUE || range.start() <= last.end() + 1) {
+                    merged.set(merged.size() - 1, new PkRange(last.start(), Math.max(last.end(), range.end())));
+                    continue;
+                }
+            }
+            merged.add(range);
+        }
+        return merged;
+    }
+
+    private static final class Stats {
+
+        // Starts hot: a bucket has to prove quiet before it is left out of regular cycles
+        private double rate = 1.0;
+        private boolean cold;
+    }
+
+    private static final class TableState {
+
+        private Long cursor;
+        // Buckets with recent changes, least recently changed first
+        private final Map<Long, Boolean> recent = new LinkedHashMap<>(16, 0.75f, true);
+        private final TreeMap<Long, Stats> buckets = new TreeMap<>();
+        private final Map<Long, Integer> changes = new HashMap<>();
+        private LocalDateTime lastFullScan;
+        private Map<Long, BucketChecksum> bucketChecksums;
+        private List<BucketChecksum> pendingChecksums;
+        // Buckets the last light cycle reported clean, without a change recorded since
+        private final Set<Long> clean = new HashSet<>();
+
+        private TableState(LocalDateTime created) {
+            this.lastFullScan = created;
+        }
+    }
+}
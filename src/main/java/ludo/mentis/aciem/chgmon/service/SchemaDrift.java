@@ -0,0 +1,132 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import ludo.mentis.aciem.chgmon.model.TableSchema;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A change in the columns of a monitored table between the schema the baseline was hashed with and the current one.
+ * <p>
+ * After such a change every row checksum differs, because column names are part of the hash. This class tells the
+ * rows whose values really changed apart from the ones that only need a new checksum, in one of two ways:
+ * <ul>
+ *     <li>when every previous column is still there with the same type, by hashing the current values of the
+ *     previous columns only, which gives back the stored checksum if nothing changed;</li>
+ *     <li>otherwise, by comparing the stored column hash vector with the current one, column by column, for the
+ *     columns present on both sides with the same type.</li>
+ * </ul>
+ * Added, dropped and retyped columns are not compared in either case.
+ */
+public class SchemaDrift {
+
+    private final TableSchema previous;
+    private final TableSchema current;
+    private final int[] previousIndexes;
+    private final boolean previousColumnsRetained;
+
+    public SchemaDrift(TableSchema previous, TableSchema current) {
+        this.previous = previous;
+        this.current = current;
+
+        var previousPositions = new HashMap<TableColumn, Integer>();
+        for (int i = 0; i < previous.getColumns().size(); i++) {
+            previousPositions.put(normalize(previous.getColumns().get(i)), i);
+        }
+        this.previousIndexes = new int[current.getColumns().size()];
+        var retained = 0;
+        for (int i = 0; i < previousIndexes.length; i++) {
+            var index = previousPositions.get(normalize(current.getColumns().get(i)));
+            previousIndexes[i] = index != null ? index : -1;
+            if (index != null) {
+                retained++;
+            }
+        }
+        this.previousColumnsRetained = retained == previous.getColumns().size();
+    }
+
+    public TableSchema getPrevious() {
+        return previous;
+    }
+
+    public TableSchema getCurrent() {
+        return current;
+    }
+
+    /**
+     * Tells whether every previous column still exists with the same type, so that {@link #project(Map)} can
+     * rebuild the row as it was hashed before the change.
+     */
+    public boolean isPreviousColumnsRetained() {
+        return previousColumnsRetained;
+    }
+
+    /**
+     * Rebuilds a row with the previous columns only, in their previous order, with their current values.
+     */
+    public Map<String, Object> project(Map<String, Object> row) {
+        var projected = new LinkedHashMap<String, Object>(previous.getColumns().size() * 2);
+        for (var column : previous.getColumns()) {
+            projected.put(column.name(), row.get(column.name()));
+        }
+        return projected;
+    }
+
+    /**
+     * Compares the values of the columns present before and after the change.
+     *
+     * @param stored       the column hash vector stored before the change
+     * @param columnHashes the column hashes of the current row
+     * @param count        the number of columns in the current row
+     * @return true if any column present on both sides changed its value
+     */
+    public boolean valuesChanged(byte[] stored, int[] columnHashes, int count) {
+        var storedCount = stored.length / 2;
+        for (int i = 0; i < count && i < previousIndexes.length; i++) {
+            var index = previousIndexes[i];
+            if (index >= 0 && index < storedCount && storedHash(stored, index) != (short) columnHashes[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Builds the changed-columns bitmask of a row that did change, in current column positions. Columns that did not
+     * exist (or had another type) before the change are reported as changed, as {@link ColumnHashes} does.
+     *
+     * @return the bitmask, or null if there is no stored vector to compare with
+     */
+    public byte[] changedColumns(byte[] stored, int[] columnHashes, int count) {
+        if (stored == null) {
+            return null;
+        }
+
+        var storedCount = stored.length / 2;
+        var mask = new byte[(count + 7) / 8];
+        for (int i = 0; i < count; i++) {
+            var index = i < previousIndexes.length ? previousIndexes[i] : -1;
+            if (index < 0 || index >= storedCount || storedHash(stored, index) != (short) columnHashes[i]) {
+                mask[i / 8] |= (byte) (1 << (i % 8));
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return previous.getColumns().stream().map(TableColumn::name).toList()
+                + " -> " + current.getColumns().stream().map(TableColumn::name).toList();
+    }
+
+    private static short storedHash(byte[] stored, int index) {
+        return (short) (((stored[index * 2] & 0xFF) << 8) | (stored[index * 2 + 1] & 0xFF));
+    }
+
+    // Column labels of a row are case-insensitive, so a change of case alone is not a new column
+    private static TableColumn normalize(TableColumn column) {
+        return new TableColumn(column.name().toLowerCase(), column.type().toLowerCase());
+    }
+}
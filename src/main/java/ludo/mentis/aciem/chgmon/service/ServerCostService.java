@@ -0,0 +1,12 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.ServerCost;
+
+public interface ServerCostService {
+
+    boolean isEnabled();
+
+    void begin();
+
+    ServerCost end();
+}
@@ -0,0 +1,100 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.ServerCost;
+import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+/**
+ * Measures what a cycle costs the monitored server. For the length of the cycle, one connection of the monitored
+ * database is bound to the cycle thread, the way a transaction would bind it, so every query of the cycle runs in the
+ * same session; the counters of that session are read when the cycle begins and when it ends. Statements of other
+ * threads (audit writer, parallel scan workers, watchlist) use other sessions and are not counted, nor are those sent to a central store.
+ * <p>
+ * A server that does not expose {@code sys.dm_exec_sessions} disables the measurement with a warning.
+ */
+@Service
+public class ServerCostServiceImpl implements ServerCostService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServerCostServiceImpl.class);
+
+    private final MonitorRepository monitorRepository;
+    private final DataSource dataSource;
+    private volatile boolean enabled;
+    // Used by the cycle thread only, between begin and end
+    private ConnectionHolder connectionHolder;
+    private ServerCost start;
+
+    public ServerCostServiceImpl(MonitorProperties monitorProperties, MonitorRepository monitorRepository, JdbcTemplate jdbcTemplate) {
+        this.monitorRepository = monitorRepository;
+        this.dataSource = jdbcTemplate.getDataSource();
+        this.enabled = monitorProperties.getServerCost().isEnabled() && dataSource != null;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Binds a connection to the current thread and reads the counters of its session. Does nothing if a connection
+     * is already bound, since the cycle would not own it.
+     */
+    @Override
+    public void begin() {
+        if (!enabled || TransactionSynchronizationManager.hasResource(dataSource)) {
+            return;
+        }
+        try {
+            connectionHolder = new ConnectionHolder(DataSourceUtils.getConnection(dataSource));
+        } catch (DataAccessException e) {
+            // The cycle will fail on its first query with the same error
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(dataSource, connectionHolder);
+        try {
+            start = monitorRepository.findSessionCost();
+        } catch (DataAccessException e) {
+            enabled = false;
+            logger.warn("Could not read the session counters of the monitored server, server cost disabled: {}", e.getMessage());
+            release();
+        }
+    }
+
+    /**
+     * Reads the counters of the session again and gives the connection back to the pool.
+     *
+     * @return the cost of the queries run since {@link #begin()}, or null if it was not measured
+     */
+    @Override
+    public ServerCost end() {
+        if (connectionHolder == null) {
+            return null;
+        }
+        try {
+            return monitorRepository.findSessionCost().minus(start);
+        } catch (DataAccessException e) {
+            // The session may have died with the cycle
+            logger.debug("Could not read the session counters at the end of the cycle: {}", e.getMessage());
+            return null;
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        TransactionSynchronizationManager.unbindResource(dataSource);
+        DataSourceUtils.releaseConnection(connectionHolder.getConnection(), null);
+        connectionHolder = null;
+        start = null;
+    }
+}
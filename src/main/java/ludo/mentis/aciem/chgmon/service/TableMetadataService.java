@@ -0,0 +1,19 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TableMetadataService {
+
+    SchemaDrift detectDrift(String tableName);
+
+    void accept(SchemaDrift schemaDrift);
+
+    boolean isModified(String tableName);
+
+    List<String> getProjection(String tableName);
+
+    LocalDateTime findModifyDate(String tableName);
+
+    void refresh(String tableName);
+}
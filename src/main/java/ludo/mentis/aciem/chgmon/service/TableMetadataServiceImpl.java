@@ -0,0 +1,164 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.config.SourceCondition;
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import ludo.mentis.aciem.chgmon.model.TableSchema;
+import ludo.mentis.aciem.chgmon.repos.TableMetadataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the columns of the monitored tables so that a DDL change can be told apart from data changes.
+ * <p>
+ * The schema the baseline was hashed with is kept in tb_table_schema and cached in memory. Each cycle only reads
+ * {@code sys.objects.modify_date}; the column list is read again only when that date moves, which also happens
+ * for changes that leave the columns alone (indexes, constraints), in which case the stored date is just refreshed.
+ * <p>
+ * With {@code monitor.columns.include} or {@code monitor.columns.exclude}, only the selected columns are tracked:
+ * they are what the scan reads and the checksums cover, so changes to the other columns are not drift.
+ */
+@Service
+@Conditional(SourceCondition.class)
+public class TableMetadataServiceImpl implements TableMetadataService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableMetadataServiceImpl.class);
+
+    private final TableMetadataRepository tableMetadataRepository;
+    private final Map<String, TableSchema> schemas = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> projections = new ConcurrentHashMap<>();
+    private final String tableName;
+    private final ColumnSelection columnSelection;
+
+    public TableMetadataServiceImpl(MonitorProperties monitorProperties, TableMetadataRepository tableMetadataRepository) {
+        this.tableMetadataRepository = tableMetadataRepository;
+        this.tableName = monitorProperties.getTableName();
+        this.columnSelection = new ColumnSelection(monitorProperties.getPrimaryKeyName(),
+                monitorProperties.getColumns().getInclude(), monitorProperties.getColumns().getExclude());
+    }
+
+    /**
+     * Checks the configured column lists against the monitored table once the application is up, so that a typo
+     * stops the application instead of failing every cycle. Nothing is read when no list is configured.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void validateColumns() {
+        if (columnSelection.isConfigured()) {
+            columnSelection.validate(tableMetadataRepository.findColumns(tableName));
+            logger.info("Table: {}. Monitoring columns {}", tableName, getProjection(tableName));
+        }
+    }
+
+    /**
+     * Checks whether the columns of a table changed since its baseline was hashed.
+     *
+     * @param tableName the name of the monitored table
+     * @return the change to reconcile the baseline with, or null if the columns are the same. The change stays
+     * pending, and is reported again by later calls, until it is passed to {@link #accept(SchemaDrift)}.
+     */
+    @Override
+    public SchemaDrift detectDrift(String tableName) {
+        var modifyDate = tableMetadataRepository.findModifyDate(tableName);
+        if (modifyDate == null) {
+            return null;
+        }
+
+        var known = schemas.get(tableName);
+        if (known != null && modifyDate.equals(known.getModifyDate())) {
+            return null;
+        }
+
+        var current = new TableSchema(tableName, modifyDate, findSelectedColumns(tableName));
+        var previous = known != null ? known : tableMetadataRepository.findStored(tableName);
+        if (previous == null || previous.getColumns().equals(current.getColumns())) {
+            // First sight of the table, or a DDL change that did not touch the columns
+            tableMetadataRepository.save(current);
+            schemas.put(tableName, current);
+            return null;
+        }
+
+        var schemaDrift = new SchemaDrift(previous, current);
+        logger.warn("Table: {}. Columns changed: {}", tableName, schemaDrift);
+        return schemaDrift;
+    }
+
+    /**
+     * Returns the columns a scan should read, as of the last time they were read from the catalog (which includes
+     * a pending drift), or null if every column is monitored.
+     *
+     * @param tableName the name of the monitored table
+     * @return the selected column names in table order, primary key included, or null for {@code SELECT *}
+     */
+    @Override
+    public List<String> getProjection(String tableName) {
+        if (!columnSelection.isConfigured()) {
+            return null;
+        }
+        var projection = projections.get(tableName);
+        if (projection == null) {
+            findSelectedColumns(tableName);
+            projection = projections.get(tableName);
+        }
+        return projection;
+    }
+
+    private List<TableColumn> findSelectedColumns(String tableName) {
+        var columns = columnSelection.apply(tableMetadataRepository.findColumns(tableName));
+        var names = new ArrayList<String>(columns.size());
+        for (var column : columns) {
+            names.add(column.name());
+        }
+        projections.put(tableName, List.copyOf(names));
+        return columns;
+    }
+
+    /**
+     * Records that the baseline was rehashed with the current schema of a drift.
+     */
+    @Override
+    public void accept(SchemaDrift schemaDrift) {
+        var current = schemaDrift.getCurrent();
+        tableMetadataRepository.save(current);
+        schemas.put(current.getTableName(), current);
+    }
+
+    /**
+     * Tells whether a table was altered since its columns were last checked by {@link #detectDrift(String)}, without
+     * reading the columns. Any DDL change counts, even one that left the columns alone, and so does a table that was
+     * never checked.
+     */
+    @Override
+    public boolean isModified(String tableName) {
+        var known = schemas.get(tableName);
+        return known == null || !Objects.equals(tableMetadataRepository.findModifyDate(tableName), known.getModifyDate());
+    }
+
+    /**
+     * Reads the last DDL change date of a table from the catalog, without touching what is cached.
+     */
+    @Override
+    public LocalDateTime findModifyDate(String tableName) {
+        return tableMetadataRepository.findModifyDate(tableName);
+    }
+
+    /**
+     * Forgets the cached schema of a table, so that the next {@link #detectDrift(String)} compares the catalog with
+     * the schema stored in tb_table_schema. Used when another node reconciled the baseline with a change.
+     */
+    @Override
+    public void refresh(String tableName) {
+        schemas.remove(tableName);
+        projections.remove(tableName);
+    }
+}
@@ -0,0 +1,105 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Plans the next cycle from the previous ones instead of a cron expression. The delay between the end of a cycle and
+ * the start of the next is halved after a cycle that found changes and stretched by half after a quiet one, within
+ * {@code monitor.adaptive.min-interval} and {@code monitor.adaptive.max-interval}.
+ * <p>
+ * The delay is then raised, if needed, so that scanning takes at most {@code monitor.adaptive.max-duty-cycle} of the
+ * wall-clock time: a cycle that took {@code C} is followed by at least {@code C * (1 - f) / f} of rest. This bound
+ * wins over the max interval, so an expensive table is never scanned back to back.
+ * <p>
+ * When {@code monitor.adaptive.max-server-cpu} is set, the delay is also raised so that the queries of the cycles use
+ * at most that share of one CPU of the monitored server: a cycle that used {@code S} of server CPU and took {@code C}
+ * is followed by at least {@code S / f - C} of rest.
+ */
+public class AdaptiveTrigger implements Trigger {
+
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final double maxDutyCycle;
+    private final double maxServerCpu;
+    // Guarded by this
+    private Duration interval;
+    private Duration delay;
+    private long lastChanges;
+    private Duration lastServerCpu = Duration.ZERO;
+
+    public AdaptiveTrigger(MonitorProperties.Adaptive settings) {
+        if (settings.getMinInterval() == null || settings.getMinInterval().isNegative() || settings.getMinInterval().isZero()) {
+            throw new IllegalArgumentException("Adaptive min interval must be positive");
+        }
+        if (settings.getMaxInterval() == null || settings.getMaxInterval().compareTo(settings.getMinInterval()) < 0) {
+            throw new IllegalArgumentException("Adaptive max interval cannot be shorter than the min interval");
+        }
+        if (settings.getMaxDutyCycle() <= 0 || settings.getMaxDutyCycle() > 1) {
+            throw new IllegalArgumentException("Adaptive max duty cycle must be in (0, 1]");
+        }
+        if (settings.getMaxServerCpu() < 0) {
+            throw new IllegalArgumentException("Adaptive max server CPU cannot be negative");
+        }
+        this.minInterval = settings.getMinInterval();
+        this.maxInterval = settings.getMaxInterval();
+        this.maxDutyCycle = settings.getMaxDutyCycle();
+        this.maxServerCpu = settings.getMaxServerCpu();
+        this.interval = minInterval;
+        this.delay = minInterval;
+    }
+
+    /**
+     * Records the number of changes the cycle that just ended found, before the next one is planned.
+     */
+    public synchronized void recordChanges(long changes) {
+        this.lastChanges = changes;
+    }
+
+    /**
+     * Records the CPU time the cycle that just ended used on the monitored server, or zero if it was not measured.
+     */
+    public synchronized void recordServerCpu(Duration serverCpu) {
+        this.lastServerCpu = serverCpu;
+    }
+
+    /**
+     * @return the delay planned after the last cycle
+     */
+    public synchronized Duration getDelay() {
+        return delay;
+    }
+
+    @Override
+    public synchronized Instant nextExecution(TriggerContext triggerContext) {
+        var lastCompletion = triggerContext.lastCompletion();
+        if (lastCompletion == null) {
+            return triggerContext.getClock().instant().plus(minInterval);
+        }
+
+        interval = lastChanges > 0 ? max(minInterval, interval.dividedBy(2)) : min(maxInterval, interval.multipliedBy(3).dividedBy(2));
+        delay = interval;
+        var lastStart = triggerContext.lastActualExecution();
+        if (lastStart != null && maxDutyCycle < 1) {
+            var cost = Duration.between(lastStart, lastCompletion);
+            delay = max(delay, Duration.ofNanos((long) (cost.toNanos() * (1 - maxDutyCycle) / maxDutyCycle)));
+        }
+        if (lastStart != null && maxServerCpu > 0) {
+            var cost = Duration.between(lastStart, lastCompletion);
+            delay = max(delay, Duration.ofNanos((long) (lastServerCpu.toNanos() / maxServerCpu)).minus(cost));
+        }
+        return lastCompletion.plus(delay);
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+}
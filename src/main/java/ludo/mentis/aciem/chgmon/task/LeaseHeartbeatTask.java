@@ -0,0 +1,39 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import ludo.mentis.aciem.chgmon.config.SourceCondition;
+import ludo.mentis.aciem.chgmon.service.LeaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renews the shard leases of this node and rebalances the shards between the live nodes every
+ * {@code monitor.cluster.heartbeat-interval}.
+ */
+@Component
+@Conditional(SourceCondition.class)
+@ConditionalOnProperty(prefix = "monitor.cluster", name = "enabled", havingValue = "true")
+public class LeaseHeartbeatTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaseHeartbeatTask.class);
+
+    private final LeaseService leaseService;
+
+    public LeaseHeartbeatTask(LeaseService leaseService) {
+        this.leaseService = leaseService;
+    }
+
+    @Scheduled(fixedDelayString = "${monitor.cluster.heartbeat-interval:10s}")
+    public void heartbeat() {
+        try {
+            leaseService.heartbeat();
+        } catch (DataAccessException e) {
+            // The leases run out unless renewed: cycles stop at their next checkpoint, other nodes take over
+            logger.error("Node {}. Could not renew shard leases", leaseService.getNodeId(), e);
+        }
+    }
+}
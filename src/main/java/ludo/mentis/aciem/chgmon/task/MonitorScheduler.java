@@ -0,0 +1,261 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.config.SourceCondition;
+import ludo.mentis.aciem.chgmon.config.ThreadFactories;
+import ludo.mentis.aciem.chgmon.model.CycleStats;
+import ludo.mentis.aciem.chgmon.service.MonitorMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires the cycles of the monitored table on {@code monitor.cron}. Cycles run on their own thread, so the scheduler
+ * threads stay free for the watchlist, and the table is leased to one cycle at a time: a trigger that fires while
+ * the previous cycle still runs is handled by {@code monitor.cycle.overrun-policy} and counted in
+ * {@link #getCycleStats()}, instead of being dropped silently.
+ * <p>
+ * With {@code monitor.profiles}, each profile fires on its own cron expression with its own strategy, throttle and
+ * parallelism, for instance light cycles during business hours and a deep reconciliation at night. The profiles
+ * share the lease, so a cycle of one profile that fires during a cycle of another is handled by the overrun policy.
+ * <p>
+ * With {@code monitor.adaptive.enabled}, {@link AdaptiveTrigger} replaces the cron expression. The next cycle is then
+ * planned from the end of the previous one, which runs on the scheduler thread: cycles cannot overlap and the
+ * overrun policy does not apply.
+ * <p>
+ * With {@code monitor.virtual-threads.enabled}, the cycle thread is a virtual thread.
+ * <p>
+ * The cycle counters, the lag of each cycle behind its trigger and the adaptive delay are exposed through
+ * {@link MonitorMetrics}.
+ */
+@Component
+@Conditional(SourceCondition.class)
+public class MonitorScheduler implements SchedulingConfigurer, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonitorScheduler.class);
+    private static final String DEFAULT_PROFILE = "default";
+
+    private final MonitorTask monitorTask;
+    private final Executor executor;
+    private final String tableName;
+    private final String cron;
+    private final Map<String, MonitorProperties.Profile> profiles;
+    private final MonitorProperties.OverrunPolicy overrunPolicy;
+    private final int maxQueued;
+    private final AdaptiveTrigger adaptiveTrigger;
+    private final MonitorMetrics monitorMetrics;
+    // Guarded by this: the lease of the table, and the cycles to run once it is released
+    private boolean leased;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private long completed;
+    private long cancelled;
+    private long failed;
+    private long skipped;
+    private long queued;
+    private long coalesced;
+
+    @Autowired
+    public MonitorScheduler(MonitorProperties monitorProperties, MonitorTask monitorTask, MonitorMetrics monitorMetrics) {
+        this(monitorProperties, monitorTask, monitorMetrics,
+                Executors.newSingleThreadExecutor(ThreadFactories.create(monitorProperties, "monitor-cycle")));
+    }
+
+    MonitorScheduler(MonitorProperties monitorProperties, MonitorTask monitorTask, MonitorMetrics monitorMetrics, Executor executor) {
+        var settings = monitorProperties.getCycle();
+        if (settings.getMaxQueued() < 1) {
+            throw new IllegalArgumentException("Max queued cycles must be positive");
+        }
+        if (monitorProperties.getAdaptive().isEnabled() && !monitorProperties.getProfiles().isEmpty()) {
+            throw new IllegalArgumentException("Adaptive schedule and schedule profiles cannot be combined");
+        }
+        this.monitorTask = monitorTask;
+        this.executor = executor;
+        this.tableName = monitorProperties.getTableName();
+        this.cron = monitorProperties.getCron();
+        this.profiles = profiles(monitorProperties);
+        this.overrunPolicy = settings.getOverrunPolicy();
+        this.maxQueued = settings.getMaxQueued();
+        this.adaptiveTrigger = monitorProperties.getAdaptive().isEnabled() ? new AdaptiveTrigger(monitorProperties.getAdaptive()) : null;
+        this.monitorMetrics = monitorMetrics;
+        monitorMetrics.bindCycleStats(this::getCycleStats);
+        if (adaptiveTrigger != null) {
+            monitorMetrics.bindScheduleDelay(adaptiveTrigger::getDelay);
+        }
+    }
+
+    private static Map<String, MonitorProperties.Profile> profiles(MonitorProperties monitorProperties) {
+        for (var entry : monitorProperties.getProfiles().entrySet()) {
+            var profile = entry.getValue();
+            if (profile.getCron() == null || profile.getCron().isBlank()) {
+                throw new IllegalArgumentException("Cron expression of profile " + entry.getKey() + " cannot be null or empty");
+            }
+            if (profile.getStrategy() == null) {
+                throw new IllegalArgumentException("Strategy of profile " + entry.getKey() + " cannot be null");
+            }
+            if (profile.getThrottle() < 0 || profile.getParallelism() < 0) {
+                throw new IllegalArgumentException("Throttle and parallelism of profile " + entry.getKey() + " cannot be negative");
+            }
+        }
+        return new LinkedHashMap<>(monitorProperties.getProfiles());
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        if (adaptiveTrigger != null) {
+            registrar.addTriggerTask(this::runAdaptive, adaptiveTrigger);
+        } else if (profiles.isEmpty()) {
+            registrar.addTriggerTask(this::fire, new CronTrigger(cron));
+        }
+        for (var entry : profiles.entrySet()) {
+            var profileName = entry.getKey();
+            registrar.addTriggerTask(() -> fire(profileName), new CronTrigger(entry.getValue().getCron()));
+        }
+    }
+
+    /**
+     * Starts a cycle on {@code monitor.cron}, or applies the overrun policy if the previous one is still running.
+     * Returns at once.
+     */
+    public void fire() {
+        fire(DEFAULT_PROFILE);
+    }
+
+    /**
+     * Starts a cycle of a profile, or applies the overrun policy if a cycle is still running. Returns at once.
+     *
+     * @param profileName the name of the profile to run
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    public synchronized void fire(String profileName) {
+        if (!DEFAULT_PROFILE.equals(profileName) && !profiles.containsKey(profileName)) {
+            throw new IllegalArgumentException("Unknown profile: " + profileName);
+        }
+        var firedAt = System.nanoTime();
+        if (!leased) {
+            leased = true;
+            executor.execute(() -> run(new Pending(profileName, firedAt)));
+            return;
+        }
+
+        switch (overrunPolicy) {
+            case SKIP -> {
+                skipped++;
+                logger.warn("Table: {}. Previous cycle still running, skipping this one", tableName);
+            }
+            case QUEUE -> {
+                if (pending.size() < maxQueued) {
+                    pending.add(new Pending(profileName, firedAt));
+                    queued++;
+                    logger.warn("Table: {}. Previous cycle still running, {} cycles queued", tableName, pending.size());
+                } else {
+                    skipped++;
+                    logger.warn("Table: {}. Previous cycle still running and {} cycles already queued, skipping this one", tableName, pending.size());
+                }
+            }
+            case COALESCE -> {
+                // One pending cycle per profile, so that a busy light profile cannot crowd out the deep one
+                if (pending.stream().noneMatch(cycle -> cycle.profileName().equals(profileName))) {
+                    pending.add(new Pending(profileName, firedAt));
+                }
+                coalesced++;
+                logger.warn("Table: {}. Previous cycle still running, another one will follow it", tableName);
+            }
+        }
+    }
+
+    public synchronized CycleStats getCycleStats() {
+        return new CycleStats(completed, cancelled, failed, skipped, queued, coalesced);
+    }
+
+    /**
+     * Runs a cycle in adaptive mode and feeds its outcome to the trigger, which plans the next one once this returns.
+     */
+    void runAdaptive() {
+        synchronized (this) {
+            leased = true;
+        }
+        try {
+            runCycle(DEFAULT_PROFILE);
+        } finally {
+            synchronized (this) {
+                leased = false;
+            }
+        }
+        var changes = monitorTask.getLastCycleChanges();
+        adaptiveTrigger.recordChanges(changes);
+        var serverCost = monitorTask.getLastServerCost();
+        adaptiveTrigger.recordServerCpu(serverCost != null ? Duration.ofMillis(serverCost.cpuMillis()) : Duration.ZERO);
+        logger.debug("Table: {}. {} changes found by the last cycle", tableName, changes);
+    }
+
+    private void run(Pending cycle) {
+        while (cycle != null) {
+            monitorMetrics.recordLag(System.nanoTime() - cycle.firedAt());
+            runCycle(cycle.profileName());
+            cycle = next();
+        }
+    }
+
+    private void runCycle(String profileName) {
+        try {
+            var profile = profiles.get(profileName);
+            var done = profile != null ? monitorTask.execute(profileName, profile) : monitorTask.execute();
+            synchronized (this) {
+                if (done) {
+                    completed++;
+                } else {
+                    cancelled++;
+                }
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                failed++;
+            }
+            logger.error("Table: {}. Cycle failed", tableName, e);
+        }
+    }
+
+    private synchronized Pending next() {
+        var cycle = pending.poll();
+        if (cycle == null) {
+            leased = false;
+        }
+        return cycle;
+    }
+
+    /**
+     * A cycle waiting for the lease, and when its trigger fired; coalesced triggers keep the time of the first one.
+     */
+    private record Pending(String profileName, long firedAt) {
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        synchronized (this) {
+            pending.clear();
+        }
+        monitorTask.cancel();
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+            if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Table: {}. Cycle did not stop within 30 seconds of shutdown", tableName);
+            }
+        }
+    }
+}
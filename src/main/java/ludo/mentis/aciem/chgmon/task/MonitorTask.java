@@ -1,107 +1,1061 @@
 package ludo.mentis.aciem.chgmon.task;
 
 import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.config.SourceCondition;
 import ludo.mentis.aciem.chgmon.model.Audit;
+import ludo.mentis.aciem.chgmon.model.CycleRun;
 import ludo.mentis.aciem.chgmon.model.ChangeType;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import ludo.mentis.aciem.chgmon.model.ServerCost;
 import ludo.mentis.aciem.chgmon.model.TableChecksum;
-import ludo.mentis.aciem.chgmon.repos.AuditRepository;
 import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
 import ludo.mentis.aciem.chgmon.repos.TableChecksumRepository;
+import ludo.mentis.aciem.chgmon.service.AuditWriter;
+import ludo.mentis.aciem.chgmon.service.BlockBaseline;
+import ludo.mentis.aciem.chgmon.service.BlockBaselineService;
 import ludo.mentis.aciem.chgmon.service.ChecksumService;
+import ludo.mentis.aciem.chgmon.service.ChunkEvent;
+import ludo.mentis.aciem.chgmon.service.ColumnHashes;
+import ludo.mentis.aciem.chgmon.service.CycleCancelledException;
+import ludo.mentis.aciem.chgmon.service.CycleContext;
+import ludo.mentis.aciem.chgmon.service.CycleEvent;
+import ludo.mentis.aciem.chgmon.service.CycleRunService;
+import ludo.mentis.aciem.chgmon.service.HashColumnService;
+import ludo.mentis.aciem.chgmon.service.LeaseService;
+import ludo.mentis.aciem.chgmon.service.MonitorMetrics;
+import ludo.mentis.aciem.chgmon.service.RowImageCodec;
+import ludo.mentis.aciem.chgmon.service.RowImageStore;
+import ludo.mentis.aciem.chgmon.service.ScanPlanner;
+import ludo.mentis.aciem.chgmon.service.ServerCostService;
+import ludo.mentis.aciem.chgmon.service.SchemaDrift;
+import ludo.mentis.aciem.chgmon.service.TableMetadataService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Component
+@Conditional(SourceCondition.class)
 public class MonitorTask {
 
     private final ChecksumService checksumService;
-    private final AuditRepository auditRepository;
+    private final AuditWriter auditWriter;
     private final MonitorRepository monitorRepository;
     private final TableChecksumRepository tableChecksumRepository;
+    private final BlockBaselineService blockBaselineService;
+    private final RowImageStore rowImageStore;
+    private final TableMetadataService tableMetadataService;
+    private final HashColumnService hashColumnService;
+    private final ScanPlanner scanPlanner;
+    private final MonitorMetrics monitorMetrics;
+    private final CycleRunService cycleRunService;
+    private final ServerCostService serverCostService;
+    private final LeaseService leaseService;
     private final String tableName;
     private final String primaryKeyName;
+    private final String filter;
+    private final MonitorProperties.BaselineStore baselineStore;
+    private final boolean columnHashesEnabled;
+    private final String hashColumnName;
+    private final Duration cycleDeadline;
+    private final Duration queryTimeout;
+    // The baseline is in another database than the table, so deletes cannot be found with a join
+    private final boolean centralStore;
+    private final String sourceName;
+    private int[] columnHashes = new int[64];
+    private final List<TableChecksum> pendingRehashes = new ArrayList<>();
+    private SchemaDrift schemaDrift;
+    private boolean hashFunctionChanged;
+    private List<PkRange> scanPlan;
+    private List<String> projection;
+    private MonitorProperties.Strategy strategy = MonitorProperties.Strategy.STANDARD;
+    // Primary keys returned by the scan of a deep cycle in the ROW store, in ascending order
+    private long[] scannedKeys;
+    private int scannedKeyCount;
+    // Shards leased for the running cycle, or null when the table is not shared with other nodes
+    private Set<Integer> shards;
+    private long rehashedRows;
+    // Time spent in each phase and rows read by the running cycle, recorded when it ends
+    private final long[] phaseNanos = new long[MonitorMetrics.Phase.values().length];
+    private long scannedRows;
+    private final long[] changeCounts = new long[ChangeType.values().length];
+    // The rows compared since the last checkpoint, recorded as a Flight Recorder event
+    private ChunkEvent chunk;
+    private long unverifiedRows;
+    private long cycleChanges;
+    // Changes found by a deep cycle in buckets that a light cycle had reported unchanged since
+    private long missedChanges;
+    private volatile long lastCycleChanges;
+    private volatile ServerCost lastServerCost;
+    // Held for the whole cycle; watchlist lookups only run when they can take it without waiting
+    private final ReentrantLock cycleLock = new ReentrantLock();
+    private volatile boolean cycleCompleted;
+    private volatile CycleContext cycle;
+    private static final int REHASH_BATCH_SIZE = 500;
+    // Keys per existence check, below the SQL Server limit of 2100 parameters
+    private static final int KEY_BATCH_SIZE = 2000;
+    // Rows processed between two checks of the cycle deadline, minus one
+    private static final int CHECKPOINT_MASK = 1023;
     private static final Logger logger = LoggerFactory.getLogger(MonitorTask.class);
 
     public MonitorTask(MonitorProperties monitorConfig,
                        ChecksumService checksumService,
-                       AuditRepository auditRepository,
+                       AuditWriter auditWriter,
                        MonitorRepository monitorRepository,
-                       TableChecksumRepository tableChecksumRepository) {
+                       TableChecksumRepository tableChecksumRepository,
+                       BlockBaselineService blockBaselineService,
+                       RowImageStore rowImageStore,
+                       TableMetadataService tableMetadataService,
+                       HashColumnService hashColumnService,
+                       ScanPlanner scanPlanner,
+                       LeaseService leaseService,
+                       MonitorMetrics monitorMetrics,
+                       CycleRunService cycleRunService,
+                       ServerCostService serverCostService) {
         this.tableName = monitorConfig.getTableName();
         this.primaryKeyName = monitorConfig.getPrimaryKeyName();
+        this.filter = monitorConfig.getFilter() == null || monitorConfig.getFilter().trim().isEmpty() ? null : monitorConfig.getFilter();
+        this.baselineStore = monitorConfig.getBaseline().getStore();
+        // In hash column mode the scan only returns the primary key and the hash, so there are no columns to hash
+        this.hashColumnName = hashColumnService.isEnabled() ? hashColumnService.getColumnName() : null;
+        this.columnHashesEnabled = monitorConfig.isColumnHashes() && hashColumnName == null;
+        this.cycleDeadline = monitorConfig.getCycle().getDeadline();
+        this.queryTimeout = monitorConfig.getCycle().getQueryTimeout();
+        this.centralStore = monitorConfig.getCentralStore().isEnabled();
+        this.sourceName = monitorConfig.getSourceName();
         this.checksumService = checksumService;
-        this.auditRepository = auditRepository;
+        this.auditWriter = auditWriter;
         this.monitorRepository = monitorRepository;
         this.tableChecksumRepository = tableChecksumRepository;
+        this.blockBaselineService = blockBaselineService;
+        this.rowImageStore = rowImageStore;
+        this.tableMetadataService = tableMetadataService;
+        this.hashColumnService = hashColumnService;
+        this.scanPlanner = scanPlanner;
+        this.leaseService = leaseService;
+        this.monitorMetrics = monitorMetrics;
+        this.cycleRunService = cycleRunService;
+        this.serverCostService = serverCostService;
     }
 
-    @Scheduled(cron = "${monitor.cron}")
-    public void execute() {
-        logger.debug("Executing monitor task for table: {}", tableName);
-        processDeletedRows();
-        processNewAndUpdatedRows();
-        System.gc();
+    /**
+     * Runs one cycle. Once {@code monitor.cycle.deadline} has passed or {@link #cancel()} was called, the cycle stops
+     * at its next checkpoint and keeps the work done until then: in the ROW store the rows compared so far are up to
+     * date, and in the BLOCK store the blocks visited so far are saved while the others are left as they were. The
+     * scan planner does not move on, so the next cycle reads the same ranges again.
+     *
+     * @return true if the cycle completed, false if it was cancelled or a query timed out
+     */
+    public boolean execute() {
+        return execute("default", new MonitorProperties.Profile());
     }
 
-    protected void processDeletedRows() {
-        var deletedRows = monitorRepository.findDeletedRows(tableName, primaryKeyName);
-        if (deletedRows != null) {
-            if (auditRepository.isAlreadyDeleted(tableName, deletedRows.getPrimaryKey())) {
-                logger.debug("Table: {}. Already deleted row: {}", tableName, deletedRows.getPrimaryKey());
-                return;
+    /**
+     * Runs one cycle with the strategy, throttle and parallelism of a schedule profile, as {@link #execute()} does.
+     *
+     * @param profileName the name of the profile, for the logs
+     * @param profile     the profile settings
+     * @return true if the cycle completed, false if it was cancelled or a query timed out
+     */
+    public boolean execute(String profileName, MonitorProperties.Profile profile) {
+        logger.debug("Executing monitor task for table: {}, profile: {}", tableName, profileName);
+        var completed = false;
+        var outcome = "failed";
+        String error = null;
+        CycleContext context = null;
+        var serverCostStarted = false;
+        ServerCost serverCost = null;
+        RuntimeException failure = null;
+        var event = new CycleEvent();
+        cycleLock.lock();
+        var started = System.nanoTime();
+        var startedAt = LocalDateTime.now();
+        var hashedBytes = checksumService.getHashedBytes();
+        cycleChanges = 0;
+        missedChanges = 0;
+        Arrays.fill(phaseNanos, 0);
+        scannedRows = 0;
+        Arrays.fill(changeCounts, 0);
+        strategy = profile.getStrategy();
+        // Everything that can fail comes after the lock and inside the try, so that a failed start releases the lock
+        // and whatever was opened before it
+        try {
+            event.begin();
+            serverCostService.begin();
+            serverCostStarted = true;
+            context = CycleContext.open(tableName, cycleDeadline, queryTimeout, profile.getThrottle(), profile.getParallelism());
+            cycle = context;
+            shards = leaseService.isEnabled() ? leaseService.beginCycle() : null;
+            runCycle();
+            completed = true;
+            outcome = "completed";
+        } catch (CycleCancelledException e) {
+            outcome = "cancelled";
+            error = e.getMessage();
+            logger.warn("Table: {}. {}, stopped after the rows compared so far", tableName, e.getMessage());
+        } catch (QueryTimeoutException e) {
+            outcome = "timeout";
+            error = e.getMessage();
+            logger.warn("Table: {}. Cycle stopped by a query timeout: {}", tableName, e.getMessage());
+        } catch (RuntimeException e) {
+            error = e.toString();
+            failure = e;
+            throw e;
+        } finally {
+            try {
+                // A failure while wrapping up must neither hide the failure of the cycle nor skip the steps after it
+                RuntimeException endFailure = null;
+                try {
+                    if (shards != null) {
+                        leaseService.endCycle();
+                    }
+                } catch (RuntimeException e) {
+                    endFailure = e;
+                } finally {
+                    shards = null;
+                }
+                lastCycleChanges = cycleChanges;
+                cycle = null;
+                if (context != null) {
+                    context.close();
+                }
+                try {
+                    if (serverCostStarted) {
+                        serverCost = serverCostService.end();
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Table: {}. Could not measure the server cost of the cycle: {}", tableName, e.toString());
+                }
+                lastServerCost = serverCost;
+                var flushStarted = System.nanoTime();
+                try {
+                    if (rowImages()) {
+                        rowImageStore.flush();
+                    }
+                    auditWriter.flush();
+                } catch (RuntimeException e) {
+                    endFailure = endFailure != null ? endFailure : e;
+                }
+                phaseNanos[MonitorMetrics.Phase.AUDIT_WRITE.ordinal()] += System.nanoTime() - flushStarted;
+                if (endFailure != null && failure == null) {
+                    completed = false;
+                    outcome = "failed";
+                    error = endFailure.toString();
+                }
+
+                var statements = context != null ? context.getStatements() : 0;
+                var peakHeap = 0L;
+                if (context != null) {
+                    context.sampleHeap();
+                    peakHeap = context.getPeakHeap();
+                }
+                var bytesHashed = checksumService.getHashedBytes() - hashedBytes;
+                try {
+                    monitorMetrics.recordCycle(outcome, System.nanoTime() - started, phaseNanos, scannedRows, statements);
+                    if (serverCost != null) {
+                        monitorMetrics.recordServerCost(strategy, serverCost);
+                    }
+                    commit(event, profileName, outcome, bytesHashed, statements, serverCost);
+                } catch (RuntimeException e) {
+                    logger.warn("Table: {}. Could not report the cycle to the metrics: {}", tableName, e.toString());
+                }
+                try {
+                    record(profileName, outcome, error, startedAt, bytesHashed, statements, peakHeap, serverCost);
+                } catch (RuntimeException e) {
+                    logger.warn("Table: {}. Could not record the cycle in tb_cycle_run: {}", tableName, e.toString());
+                }
+
+                if (endFailure != null) {
+                    if (failure != null) {
+                        failure.addSuppressed(endFailure);
+                    } else {
+                        throw endFailure;
+                    }
+                }
+            } finally {
+                chunk = null;
+                cycleLock.unlock();
+            }
+        }
+        return completed;
+    }
+
+    private void commit(CycleEvent event, String profileName, String outcome, long bytesHashed, long statements, ServerCost serverCost) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.table = tableName;
+        event.source = sourceName;
+        event.profile = profileName;
+        event.strategy = strategy.name();
+        event.outcome = outcome;
+        event.rowsScanned = scannedRows;
+        event.inserts = changeCounts[ChangeType.INSERT.ordinal()];
+        event.updates = changeCounts[ChangeType.UPDATE.ordinal()];
+        event.deletes = changeCounts[ChangeType.DELETE.ordinal()];
+        event.bytesHashed = bytesHashed;
+        event.statements = statements;
+        event.scanTime = phaseNanos[MonitorMetrics.Phase.SCAN.ordinal()];
+        event.hashTime = phaseNanos[MonitorMetrics.Phase.HASH.ordinal()];
+        event.baselineLookupTime = phaseNanos[MonitorMetrics.Phase.BASELINE_LOOKUP.ordinal()];
+        event.auditWriteTime = phaseNanos[MonitorMetrics.Phase.AUDIT_WRITE.ordinal()];
+        event.deleteDetectionTime = phaseNanos[MonitorMetrics.Phase.DELETE_DETECTION.ordinal()];
+        if (serverCost != null) {
+            event.serverCpuTime = serverCost.cpuMillis() * 1_000_000;
+            event.logicalReads = serverCost.logicalReads();
+            event.physicalReads = serverCost.physicalReads();
+        }
+        event.commit();
+    }
+
+    private void record(String profileName, String outcome, String error, LocalDateTime startedAt, long bytesHashed, long statements,
+                        long peakHeap, ServerCost serverCost) {
+        if (!cycleRunService.isEnabled()) {
+            return;
+        }
+        var cycleRun = new CycleRun();
+        cycleRun.setTableName(tableName);
+        cycleRun.setSourceName(sourceName);
+        cycleRun.setProfile(profileName);
+        cycleRun.setStrategy(strategy.name());
+        cycleRun.setOutcome(outcome);
+        cycleRun.setStartedAt(startedAt);
+        cycleRun.setEndedAt(LocalDateTime.now());
+        cycleRun.setRowsScanned(scannedRows);
+        cycleRun.setBytesHashed(bytesHashed);
+        cycleRun.setInserts(changeCounts[ChangeType.INSERT.ordinal()]);
+        cycleRun.setUpdates(changeCounts[ChangeType.UPDATE.ordinal()]);
+        cycleRun.setDeletes(changeCounts[ChangeType.DELETE.ordinal()]);
+        cycleRun.setStatements(statements);
+        cycleRun.setPeakHeap(peakHeap);
+        cycleRun.setError(error);
+        if (serverCost != null) {
+            cycleRun.setServerCpuMillis(serverCost.cpuMillis());
+            cycleRun.setServerScheduledMillis(serverCost.scheduledMillis());
+            cycleRun.setLogicalReads(serverCost.logicalReads());
+            cycleRun.setPhysicalReads(serverCost.physicalReads());
+            cycleRun.setWrites(serverCost.writes());
+        }
+        cycleRunService.record(cycleRun);
+    }
+
+    /**
+     * @return the number of rows the last cycle found inserted, updated or deleted, whether it completed or not
+     */
+    public long getLastCycleChanges() {
+        return lastCycleChanges;
+    }
+
+    /**
+     * @return what the last cycle cost the monitored server, or null if it was not measured
+     */
+    public ServerCost getLastServerCost() {
+        return lastServerCost;
+    }
+
+    /**
+     * Asks the running cycle, if any, to stop at its next checkpoint.
+     */
+    public void cancel() {
+        var context = cycle;
+        if (context != null) {
+            context.cancel();
+        }
+    }
+
+    private void runCycle() {
+        if (shards != null && !prepareShards()) {
+            return;
+        }
+        // Work on the whole table is left to the node holding shard 0
+        hashFunctionChanged = (shards == null || shards.contains(0)) && hashColumnService.prepare(tableName, primaryKeyName);
+        var modifyDate = shards != null && shards.contains(0) ? tableMetadataService.findModifyDate(tableName) : null;
+        schemaDrift = tableMetadataService.detectDrift(tableName);
+        if (schemaDrift != null && shards != null && !shards.contains(0)) {
+            logger.info("Table: {}. Altered, waiting for the node holding shard 0 to rehash the baseline", tableName);
+            schemaDrift = null;
+            return;
+        }
+        projection = hashColumnName == null ? tableMetadataService.getProjection(tableName) : null;
+        rehashedRows = 0;
+        unverifiedRows = 0;
+        try {
+            // A rehash must cover the whole baseline, or the rows outside of the slice would look changed later
+            scanPlan = switch (strategy) {
+                case STANDARD -> rehashing() ? null : scanPlanner.plan(tableName, primaryKeyName);
+                case LIGHT -> lightPlan();
+                case DEEP -> null;
+            };
+            // The other nodes wait for a rehash, which covers their shards too
+            if (shards != null && !rehashing()) {
+                scanPlan = leaseService.restrict(shards, scanPlan);
+            }
+            if (scanPlan != null) {
+                logger.debug("Table: {}. Scanning ranges: {}", tableName, scanPlan);
+            }
+            checkpoint();
+            if (scanPlan != null && scanPlan.isEmpty()) {
+                logger.debug("Table: {}. Nothing to scan in this cycle", tableName);
+            } else if (baselineStore == MonitorProperties.BaselineStore.BLOCK) {
+                processBlockBaseline();
+            } else if (strategy == MonitorProperties.Strategy.DEEP || shards != null || centralStore) {
+                // Shared tables only look for deletes in the ranges they scanned
+                scannedKeys = new long[1024];
+                scannedKeyCount = 0;
+                processNewAndUpdatedRows();
+                var deletesStarted = System.nanoTime();
+                reconcileDeletedRows();
+                phaseNanos[MonitorMetrics.Phase.DELETE_DETECTION.ordinal()] += System.nanoTime() - deletesStarted;
+            } else {
+                var deletesStarted = System.nanoTime();
+                processDeletedRows();
+                phaseNanos[MonitorMetrics.Phase.DELETE_DETECTION.ordinal()] += System.nanoTime() - deletesStarted;
+                processNewAndUpdatedRows();
+            }
+            if (strategy == MonitorProperties.Strategy.LIGHT) {
+                scanPlanner.completeLightCycle(tableName);
+            } else {
+                scanPlanner.completeCycle(tableName, scanPlan);
+            }
+            if (strategy == MonitorProperties.Strategy.DEEP) {
+                reportReconciliation();
+            }
+            if (schemaDrift != null) {
+                tableMetadataService.accept(schemaDrift);
+            }
+            if (hashFunctionChanged) {
+                logger.info("Table: {}. Rehashed {} rows after a hash column change", tableName, rehashedRows);
+            } else if (schemaDrift != null) {
+                logger.info("Table: {}. Rehashed {} rows after a schema change", tableName, rehashedRows);
+                if (unverifiedRows > 0) {
+                    logger.warn("Table: {}. {} of them could not be compared with their previous values; enable monitor.column-hashes to compare dropped or retyped columns", tableName, unverifiedRows);
+                }
+            }
+            if (modifyDate != null) {
+                leaseService.saveVerifiedDate(modifyDate);
+            }
+            cycleCompleted = true;
+        } finally {
+            schemaDrift = null;
+            hashFunctionChanged = false;
+            scanPlan = null;
+            projection = null;
+            scannedKeys = null;
+        }
+    }
+
+    /**
+     * Checks that this node can run a cycle on its shards. Nodes other than the one holding shard 0 wait until that
+     * node has reconciled the baseline with the current table definition, then pick up the schema it stored.
+     *
+     * @return true if the cycle can go on
+     */
+    private boolean prepareShards() {
+        if (shards.isEmpty()) {
+            logger.debug("Table: {}. No shard leased by this node", tableName);
+            return false;
+        }
+        if (shards.contains(0)) {
+            return true;
+        }
+        if (!Objects.equals(tableMetadataService.findModifyDate(tableName), leaseService.getVerifiedDate())) {
+            logger.info("Table: {}. Waiting for the node holding shard 0 to reconcile the baseline with the table definition", tableName);
+            return false;
+        }
+        if (tableMetadataService.isModified(tableName)) {
+            tableMetadataService.refresh(tableName);
+        }
+        return true;
+    }
+
+    /**
+     * Ranges of the buckets whose server-side aggregate changed. The aggregates are always read, so that those of a
+     * rehash cycle are kept for the next light cycle, but a rehash still reads the whole table.
+     */
+    private List<PkRange> lightPlan() {
+        var columns = hashColumnName != null ? List.of(hashColumnName) : projection;
+        var started = System.nanoTime();
+        var changed = scanPlanner.planChangedBuckets(tableName, primaryKeyName, columns, filter);
+        phaseNanos[MonitorMetrics.Phase.SCAN.ordinal()] += System.nanoTime() - started;
+        return rehashing() ? null : changed;
+    }
+
+    /**
+     * Deep reconciliation of the ROW store: merges the baseline with the keys of the scan, so that every row deleted
+     * since it was baselined is found, not only those the light and standard cycles saw go. Baseline rows of deleted
+     * keys are removed, and a key that comes back later is reported as an insert. Only the baseline rows in the
+     * scanned ranges are considered.
+     */
+    private void reconcileDeletedRows() {
+        var missingKeys = new ArrayList<Long>();
+        tableChecksumRepository.forEachByTableName(tableName, tableChecksum -> {
+            var primaryKey = tableChecksum.getPrimaryKey();
+            if (inScanPlan(primaryKey) && Arrays.binarySearch(scannedKeys, 0, scannedKeyCount, primaryKey) < 0) {
+                missingKeys.add(primaryKey);
             }
+        });
+        checkpoint();
 
-            var audit = new Audit();
-            audit.setTableName(tableName);
-            audit.setPrimaryKey(deletedRows.getPrimaryKey());
-            audit.setChangeType(ChangeType.DELETE);
-            audit.setChangeDate(LocalDateTime.now());
-            auditRepository.insert(audit);
-            logger.info("Table: {}. Deleted row: {}", tableName, deletedRows.getPrimaryKey());
+        var deletedKeys = deletedOnly(missingKeys);
+        for (var primaryKey : deletedKeys) {
+            onDeleted(primaryKey);
+        }
+        removeFromBaseline(deletedKeys);
+        if (!deletedKeys.isEmpty()) {
+            logger.info("Table: {}. Removed {} deleted rows from the baseline", tableName, deletedKeys.size());
+        }
+    }
+
+    // The plan is sorted and non-overlapping: find the last range starting at or before the key
+    private boolean inScanPlan(long primaryKey) {
+        if (scanPlan == null) {
+            return true;
+        }
+        int low = 0;
+        int high = scanPlan.size() - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            if (scanPlan.get(middle).start() <= primaryKey) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= 0 && scanPlan.get(high).contains(primaryKey);
+    }
+
+    /**
+     * Only the changes in buckets that a light cycle had reported unchanged were missed: the others may have been
+     * made since the last cycle, or lie in buckets no light cycle has compared yet.
+     */
+    private void reportReconciliation() {
+        if (missedChanges > 0) {
+            logger.warn("Table: {}. Deep reconciliation found {} changes, {} of them missed by the light cycles", tableName, cycleChanges, missedChanges);
+        } else {
+            logger.info("Table: {}. Deep reconciliation found {} changes", tableName, cycleChanges);
+        }
+    }
+
+    /**
+     * Checks a batch of rows by primary key against the same baseline as the cycle, for the watchlist. Changes are
+     * audited exactly as the cycle would audit them, and the baseline is updated so that the cycle does not report
+     * them again.
+     * <p>
+     * Nothing is checked while a cycle is running, since the cycle reads these rows anyway, nor before the first
+     * cycle since startup or after the table was altered, since only the cycle provisions the hash column and
+     * rehashes the baseline.
+     *
+     * @param primaryKeys the primary keys to check, in ascending order and without duplicates
+     * @return true if the rows were checked
+     */
+    public boolean processKeys(List<Long> primaryKeys) {
+        if (!cycleCompleted || !cycleLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (tableMetadataService.isModified(tableName)) {
+                logger.debug("Table: {}. Altered since the last cycle, skipping watchlist lookups", tableName);
+                return false;
+            }
+            if (leaseService.isEnabled()) {
+                // Rows of shards leased by other nodes are theirs to check
+                primaryKeys = primaryKeys.stream().filter(leaseService::owns).toList();
+                if (primaryKeys.isEmpty()) {
+                    return true;
+                }
+            }
+            var rows = hashColumnName != null
+                    ? monitorRepository.findHashesByPrimaryKeys(tableName, primaryKeyName, hashColumnName, filter, primaryKeys)
+                    : monitorRepository.findByPrimaryKeys(tableName, primaryKeyName, tableMetadataService.getProjection(tableName), filter, primaryKeys);
+            if (baselineStore == MonitorProperties.BaselineStore.BLOCK) {
+                processBlockKeys(primaryKeys, rows);
+            } else {
+                processRowKeys(primaryKeys, rows);
+            }
+        } finally {
+            cycleLock.unlock();
+        }
+        if (rowImages()) {
+            rowImageStore.flush();
+        }
+        auditWriter.flush();
+        return true;
+    }
+
+    /**
+     * Audits the rows of the baseline whose key is gone from the table, then removes them from the baseline so that
+     * the next cycles do not find them again and a key that comes back is reported as an insert.
+     */
+    protected void processDeletedRows() {
+        var deletedKeys = new ArrayList<Long>();
+        for (var deletedRow : monitorRepository.findDeletedRows(tableName, primaryKeyName)) {
+            deletedKeys.add(deletedRow.getPrimaryKey());
+            onDeleted(deletedRow.getPrimaryKey());
+        }
+        removeFromBaseline(deletedKeys);
+    }
+
+    // In batches below the SQL Server parameter limit
+    private void removeFromBaseline(List<Long> deletedKeys) {
+        for (int i = 0; i < deletedKeys.size(); i += KEY_BATCH_SIZE) {
+            tableChecksumRepository.deleteByTableNameAndPrimaryKeys(tableName, deletedKeys.subList(i, Math.min(deletedKeys.size(), i + KEY_BATCH_SIZE)));
         }
     }
 
     protected void processNewAndUpdatedRows() {
-        var table = monitorRepository.findAll(tableName, primaryKeyName);
+        var table = scan();
+        checkpoint();
 
-        for (var row : table) {
-            var checksum = checksumService.calculate(row);
+        try {
+            var count = 0;
+            beginChunk(0);
+            for (var row : table) {
+                if ((++count & CHECKPOINT_MASK) == 0) {
+                    checkpoint(count);
+                }
+                var primaryKey = (Long) row.get(primaryKeyName);
+                if (scannedKeys != null) {
+                    addScannedKey(primaryKey);
+                }
+                var started = System.nanoTime();
+                var stored = tableChecksumRepository.findByTableNameAndPrimaryKey(tableName, primaryKey);
+                phaseNanos[MonitorMetrics.Phase.BASELINE_LOOKUP.ordinal()] += System.nanoTime() - started;
+                processRow(row, stored);
+            }
+            endChunk(count);
+        } catch (CycleCancelledException e) {
+            flushRehashes();
+            throw e;
+        }
+        flushRehashes();
+    }
 
-            var tableChecksum = tableChecksumRepository.findByTableNameAndPrimaryKey(tableName, (Long) row.get(primaryKeyName));
-            if (tableChecksum == null) {
-                tableChecksum = new TableChecksum();
-                tableChecksum.setTableName(tableName);
-                tableChecksum.setPrimaryKey((Long) row.get(primaryKeyName));
-                tableChecksum.setCrc32(checksum);
-                tableChecksumRepository.insert(tableChecksum);
+    private void processRowKeys(List<Long> primaryKeys, List<Map<String, Object>> rows) {
+        var stored = new HashMap<Long, TableChecksum>();
+        for (var tableChecksum : tableChecksumRepository.findByTableNameAndPrimaryKeys(tableName, primaryKeys)) {
+            stored.put(tableChecksum.getPrimaryKey(), tableChecksum);
+        }
 
-                var audit = new Audit();
-                audit.setTableName(tableName);
-                audit.setPrimaryKey((Long) row.get(primaryKeyName));
-                audit.setChangeType(ChangeType.INSERT);
-                audit.setChangeDate(LocalDateTime.now());
-                auditRepository.insert(audit);
+        for (var row : rows) {
+            processRow(row, stored.remove((Long) row.get(primaryKeyName)));
+        }
 
-                logger.info("Table: {}. Inserted row: {}", tableName, row.get(primaryKeyName));
-            } else if (tableChecksum.getCrc32() != checksum) {
+        // Whatever is left is in the baseline but no longer in the table, or no longer in scope
+        var missingKeys = new ArrayList<Long>();
+        for (var primaryKey : primaryKeys) {
+            if (stored.containsKey(primaryKey)) {
+                missingKeys.add(primaryKey);
+            }
+        }
+        var deletedKeys = deletedOnly(missingKeys);
+        for (var primaryKey : deletedKeys) {
+            onDeleted(primaryKey);
+        }
+        removeFromBaseline(deletedKeys);
+    }
+
+    private void processRow(Map<String, Object> row, TableChecksum tableChecksum) {
+        var checksum = calculate(row);
+        if (tableChecksum == null) {
+            tableChecksum = new TableChecksum();
+            tableChecksum.setTableName(tableName);
+            tableChecksum.setPrimaryKey((Long) row.get(primaryKeyName));
+            tableChecksum.setCrc32(checksum);
+            tableChecksum.setColumnHashes(encodeColumnHashes(row));
+            tableChecksumRepository.insert(tableChecksum);
+
+            onInserted(row);
+        } else if (tableChecksum.getCrc32() != checksum) {
+            var stored = columnHashesEnabled ? tableChecksumRepository.findColumnHashes(tableChecksum.getId()) : null;
+            if (rehashing() && !changedAcrossRehash(row, tableChecksum.getCrc32(), stored)) {
                 tableChecksum.setCrc32(checksum);
-                tableChecksumRepository.update(tableChecksum);
+                tableChecksum.setColumnHashes(encodeColumnHashes(row));
+                pendingRehashes.add(tableChecksum);
+                if (pendingRehashes.size() >= REHASH_BATCH_SIZE) {
+                    flushRehashes();
+                }
+                onRehashed(row);
+                return;
+            }
+            var changedColumns = changedColumns(stored, row);
+            tableChecksum.setCrc32(checksum);
+            tableChecksum.setColumnHashes(encodeColumnHashes(row));
+            tableChecksumRepository.update(tableChecksum);
+
+            onUpdated(row, changedColumns);
+        } else {
+            onUnchanged(row);
+        }
+    }
+
+    /**
+     * Single-pass cycle against the packed baseline: the ordered scan is merged with the blocks, so inserts,
+     * updates and deletes all come out of one read of the table and one read of the baseline.
+     */
+    protected void processBlockBaseline() {
+        var started = System.nanoTime();
+        var baseline = blockBaselineService.load(tableName);
+        phaseNanos[MonitorMetrics.Phase.BASELINE_LOOKUP.ordinal()] += System.nanoTime() - started;
+        baseline.setScope(scanPlan);
+        var table = scan();
+        checkpoint();
+
+        try {
+            var count = 0;
+            beginChunk(0);
+            for (var row : table) {
+                if ((++count & CHECKPOINT_MASK) == 0) {
+                    checkpoint(count);
+                }
+                processRow(baseline, row);
+            }
+            endChunk(count);
+        } catch (CycleCancelledException e) {
+            // Rows of the current block and beyond may still come later in the scan: keep them as they were
+            baseline.setRetainUnvisited(true);
+            finishBlockBaseline(baseline);
+            throw e;
+        }
+        finishBlockBaseline(baseline);
+    }
+
+    private void finishBlockBaseline(BlockBaseline baseline) {
+        var started = System.nanoTime();
+        var deletedKeys = deletedOnly(baseline.finish());
+        phaseNanos[MonitorMetrics.Phase.DELETE_DETECTION.ordinal()] += System.nanoTime() - started;
+        blockBaselineService.save(baseline);
+        for (var primaryKey : deletedKeys) {
+            onDeleted(primaryKey);
+        }
+    }
+
+    private void processBlockKeys(List<Long> primaryKeys, List<Map<String, Object>> rows) {
+        var baseline = blockBaselineService.loadRanges(tableName, primaryKeys);
+        var rowsByKey = new HashMap<Long, Map<String, Object>>();
+        for (var row : rows) {
+            rowsByKey.put((Long) row.get(primaryKeyName), row);
+        }
+
+        var missingKeys = new ArrayList<Long>();
+        for (var primaryKey : primaryKeys) {
+            var row = rowsByKey.get(primaryKey);
+            if (row != null) {
+                processRow(baseline, row);
+            } else if (baseline.remove(primaryKey)) {
+                missingKeys.add(primaryKey);
+            }
+        }
 
-                var audit = new Audit();
-                audit.setTableName(tableName);
-                audit.setPrimaryKey((Long) row.get(primaryKeyName));
-                audit.setChangeType(ChangeType.UPDATE);
-                audit.setChangeDate(LocalDateTime.now());
-                auditRepository.insert(audit);
+        baseline.finish();
+        blockBaselineService.save(baseline);
+        for (var primaryKey : deletedOnly(missingKeys)) {
+            onDeleted(primaryKey);
+        }
+    }
 
-                logger.info("Table: {}. Updated row: {}", tableName, row.get(primaryKeyName));
+    private void processRow(BlockBaseline baseline, Map<String, Object> row) {
+        var primaryKey = (Long) row.get(primaryKeyName);
+        var checksum = calculate(row);
+
+        var stored = baseline.find(primaryKey);
+        // Read once, from the block already decoded for the lookup
+        var storedColumnHashes = stored != null && columnHashesEnabled ? baseline.findColumnHashes(primaryKey) : null;
+        if (stored == null) {
+            baseline.put(primaryKey, checksum, encodeColumnHashes(row));
+            onInserted(row);
+        } else if (stored != checksum) {
+            var changed = !rehashing() || changedAcrossRehash(row, stored, storedColumnHashes);
+            baseline.put(primaryKey, checksum, encodeColumnHashes(row));
+            if (changed) {
+                onUpdated(row, changedColumns(storedColumnHashes, row));
             } else {
-                logger.debug("Table: {}. No changes for row: {}", tableName, row.get(primaryKeyName));
+                onRehashed(row);
+            }
+        } else {
+            if (columnHashesEnabled && storedColumnHashes == null) {
+                // Rows baselined before column hashes were enabled get their vector on the next pass
+                baseline.put(primaryKey, checksum, encodeColumnHashes(row));
+            }
+            onUnchanged(row);
+        }
+    }
+
+    /**
+     * With a scope filter, a row missing from the scan may only have left the scope. Such rows are already out of
+     * the in-memory baseline; only the ones that no longer exist at all are deletes.
+     */
+    private List<Long> deletedOnly(List<Long> missingKeys) {
+        if (filter == null || missingKeys.isEmpty()) {
+            return missingKeys;
+        }
+
+        var existing = new HashSet<Long>();
+        for (int i = 0; i < missingKeys.size(); i += KEY_BATCH_SIZE) {
+            var batch = missingKeys.subList(i, Math.min(missingKeys.size(), i + KEY_BATCH_SIZE));
+            existing.addAll(monitorRepository.findExistingKeys(tableName, primaryKeyName, batch));
+        }
+        if (existing.isEmpty()) {
+            return missingKeys;
+        }
+
+        logger.debug("Table: {}. {} rows left the scope", tableName, existing.size());
+        var deletedKeys = new ArrayList<Long>(missingKeys.size() - existing.size());
+        for (var primaryKey : missingKeys) {
+            if (!existing.contains(primaryKey)) {
+                deletedKeys.add(primaryKey);
             }
         }
+        return deletedKeys;
+    }
+
+    private List<Map<String, Object>> scan() {
+        var started = System.nanoTime();
+        var rows = findRows();
+        phaseNanos[MonitorMetrics.Phase.SCAN.ordinal()] += System.nanoTime() - started;
+        scannedRows += rows.size();
+        return rows;
+    }
+
+    private List<Map<String, Object>> findRows() {
+        if (hashColumnName != null && filter != null) {
+            return monitorRepository.findHashes(tableName, primaryKeyName, hashColumnName, filter, scanPlan);
+        }
+        if (hashColumnName == null && (filter != null || projection != null)) {
+            return monitorRepository.findAll(tableName, primaryKeyName, projection, filter, scanPlan);
+        }
+        if (scanPlan != null) {
+            return hashColumnName != null
+                    ? monitorRepository.findHashes(tableName, primaryKeyName, hashColumnName, scanPlan)
+                    : monitorRepository.findAll(tableName, primaryKeyName, scanPlan);
+        }
+        return hashColumnName != null
+                ? monitorRepository.findHashes(tableName, primaryKeyName, hashColumnName)
+                : monitorRepository.findAll(tableName, primaryKeyName);
+    }
+
+    /**
+     * Row checksum, plus the per-column hashes into a reused buffer when column hashes are enabled. In hash column
+     * mode the checksum is the persisted hash, kept unsigned like a CRC32.
+     */
+    private long calculate(Map<String, Object> row) {
+        var started = System.nanoTime();
+        var checksum = checksum(row);
+        phaseNanos[MonitorMetrics.Phase.HASH.ordinal()] += System.nanoTime() - started;
+        return checksum;
+    }
+
+    private long checksum(Map<String, Object> row) {
+        if (hashColumnName != null) {
+            return Integer.toUnsignedLong(((Number) row.get(hashColumnName)).intValue());
+        }
+        if (!columnHashesEnabled) {
+            return checksumService.calculate(row);
+        }
+        if (columnHashes.length < row.size()) {
+            columnHashes = new int[row.size()];
+        }
+        return checksumService.calculate(row, columnHashes);
+    }
+
+    private byte[] encodeColumnHashes(Map<String, Object> row) {
+        return columnHashesEnabled ? ColumnHashes.encode(columnHashes, row.size()) : null;
+    }
+
+    private void checkpoint() {
+        var context = cycle;
+        if (context != null) {
+            context.checkpoint();
+        }
+        if (shards != null && !leaseService.holds(shards)) {
+            throw new CycleCancelledException("Lease of a shard of table " + tableName + " was lost");
+        }
+    }
+
+    // Also holds the scan back to the throttle of the profile, between two chunks
+    private void checkpoint(long rows) {
+        // The row at the checkpoint belongs to the next chunk
+        endChunk(rows - 1);
+        var context = cycle;
+        if (context != null) {
+            context.pace(rows);
+        }
+        checkpoint();
+        beginChunk(rows - 1);
+    }
+
+    private void beginChunk(long firstRow) {
+        var event = new ChunkEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.firstRow = firstRow;
+        // Counters at the start of the chunk, replaced by their increase when it ends
+        event.bytesHashed = checksumService.getHashedBytes();
+        event.statements = cycle != null ? cycle.getStatements() : 0;
+        event.begin();
+        chunk = event;
+    }
+
+    private void endChunk(long rows) {
+        var event = chunk;
+        if (event == null) {
+            return;
+        }
+        chunk = null;
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = tableName;
+            event.rows = rows - event.firstRow;
+            event.bytesHashed = checksumService.getHashedBytes() - event.bytesHashed;
+            event.statements = (cycle != null ? cycle.getStatements() : 0) - event.statements;
+            event.commit();
+        }
+    }
+
+    private void addScannedKey(long primaryKey) {
+        if (scannedKeyCount == scannedKeys.length) {
+            scannedKeys = Arrays.copyOf(scannedKeys, scannedKeyCount * 2);
+        }
+        scannedKeys[scannedKeyCount++] = primaryKey;
+    }
+
+    private boolean rehashing() {
+        return schemaDrift != null || hashFunctionChanged;
+    }
+
+    /**
+     * Tells whether a row whose checksum no longer matches after a schema or hash column change also changed its
+     * values. Rows that can be compared neither way (the hash function itself changed, or columns were dropped or
+     * retyped and there is no column hash vector) are counted and treated as unchanged, since auditing them would
+     * flag the whole table.
+     */
+    private boolean changedAcrossRehash(Map<String, Object> row, long storedChecksum, byte[] storedColumnHashes) {
+        if (hashFunctionChanged || hashColumnName != null) {
+            unverifiedRows++;
+            return false;
+        }
+        if (schemaDrift.isPreviousColumnsRetained()) {
+            return checksumService.calculate(schemaDrift.project(row)) != storedChecksum;
+        }
+        if (storedColumnHashes != null) {
+            return schemaDrift.valuesChanged(storedColumnHashes, columnHashes, row.size());
+        }
+        unverifiedRows++;
+        return false;
+    }
+
+    private byte[] changedColumns(byte[] storedColumnHashes, Map<String, Object> row) {
+        if (!columnHashesEnabled) {
+            return null;
+        }
+        return schemaDrift != null
+                ? schemaDrift.changedColumns(storedColumnHashes, columnHashes, row.size())
+                : ColumnHashes.changedColumns(storedColumnHashes, columnHashes, row.size());
+    }
+
+    private void flushRehashes() {
+        if (!pendingRehashes.isEmpty()) {
+            tableChecksumRepository.updateBatch(pendingRehashes);
+            pendingRehashes.clear();
+        }
+    }
+
+    // Scanned rows carry no column values in hash column mode, so there is nothing to keep an image of
+    private boolean rowImages() {
+        return hashColumnName == null && rowImageStore.isEnabled();
+    }
+
+    private void onRehashed(Map<String, Object> row) {
+        var primaryKey = (Long) row.get(primaryKeyName);
+        if (rowImages()) {
+            rowImageStore.put(tableName, primaryKey, RowImageCodec.encode(row));
+        }
+        rehashedRows++;
+        logger.debug("Table: {}. Rehashed row: {}", tableName, primaryKey);
+    }
+
+    private void onInserted(Map<String, Object> row) {
+        var primaryKey = (Long) row.get(primaryKeyName);
+        if (rowImages()) {
+            rowImageStore.put(tableName, primaryKey, RowImageCodec.encode(row));
+        }
+        write(newAudit(primaryKey, ChangeType.INSERT));
+        scanPlanner.recordChange(tableName, primaryKey);
+        logger.info("Table: {}. Inserted row: {}", tableName, primaryKey);
+    }
+
+    private void onUpdated(Map<String, Object> row, byte[] changedColumns) {
+        var primaryKey = (Long) row.get(primaryKeyName);
+        var audit = newAudit(primaryKey, ChangeType.UPDATE);
+        audit.setChangedColumns(changedColumns);
+        if (rowImages()) {
+            var oldImage = rowImageStore.get(tableName, primaryKey);
+            var newImage = RowImageCodec.encode(row);
+            rowImageStore.put(tableName, primaryKey, newImage);
+            audit.setOldImage(oldImage != null ? RowImageCodec.compress(oldImage) : null);
+            audit.setNewImage(RowImageCodec.compress(newImage));
+        }
+        write(audit);
+        scanPlanner.recordChange(tableName, primaryKey);
+        logger.info("Table: {}. Updated row: {}", tableName, primaryKey);
+        if (changedColumns != null) {
+            logger.debug("Table: {}. Changed columns of row {}: {}", tableName, primaryKey, ColumnHashes.columnNames(changedColumns, row.keySet()));
+        }
+    }
+
+    private void onUnchanged(Map<String, Object> row) {
+        var primaryKey = (Long) row.get(primaryKeyName);
+        if (rowImages() && !rowImageStore.isCovered(tableName, primaryKey)) {
+            // First sight of this range: keep the image so that the row's first update has a before image
+            rowImageStore.put(tableName, primaryKey, RowImageCodec.encode(row));
+        }
+        logger.debug("Table: {}. No changes for row: {}", tableName, primaryKey);
+    }
+
+    private void onDeleted(Long primaryKey) {
+        var audit = newAudit(primaryKey, ChangeType.DELETE);
+        if (rowImages()) {
+            var oldImage = rowImageStore.remove(tableName, primaryKey);
+            audit.setOldImage(oldImage != null ? RowImageCodec.compress(oldImage) : null);
+        }
+        write(audit);
+        scanPlanner.recordChange(tableName, primaryKey);
+        logger.info("Table: {}. Deleted row: {}", tableName, primaryKey);
+    }
+
+    private void write(Audit audit) {
+        // Checked before the change is recorded in the planner, which clears the bucket
+        if (strategy == MonitorProperties.Strategy.DEEP && cycle != null && scanPlanner.isReportedClean(tableName, audit.getPrimaryKey())) {
+            missedChanges++;
+        }
+        var started = System.nanoTime();
+        auditWriter.write(audit);
+        phaseNanos[MonitorMetrics.Phase.AUDIT_WRITE.ordinal()] += System.nanoTime() - started;
+        cycleChanges++;
+        changeCounts[audit.getChangeType().ordinal()]++;
+        monitorMetrics.recordChange(audit.getChangeType());
+    }
+
+    private Audit newAudit(Long primaryKey, ChangeType changeType) {
+        var audit = new Audit();
+        audit.setTableName(tableName);
+        audit.setPrimaryKey(primaryKey);
+        audit.setChangeType(changeType);
+        audit.setChangeDate(LocalDateTime.now());
+        return audit;
     }
 }
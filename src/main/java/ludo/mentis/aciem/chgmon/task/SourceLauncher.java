@@ -0,0 +1,202 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ludo.mentis.aciem.chgmon.ChgmonApplication;
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.service.ChangeLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Monitors every database listed in {@code monitor.sources} from this process. Each source gets a context of its
+ * own, started once the main context is ready: its own connection pool, bounded by
+ * {@code monitor.sources.<name>.max-pool-size}, its own scheduler and cycle thread, and its own in-memory state, so
+ * sources never wait on each other's connections or cycles. Every other setting is shared, which fits databases with
+ * the same schema; a source may still name its own table with {@code monitor.sources.<name>.table-name}.
+ * <p>
+ * Audits and baselines are kept in each source, or in {@code monitor.central-store} when one is configured. Sources
+ * sharing the central store must monitor distinct table names, usually by qualifying them with the database name.
+ * <p>
+ * The contexts of the sources record their metrics in the registry of the main context, so that
+ * {@code /actuator/prometheus} serves every source, told apart by the {@code source} tag. The change log of each
+ * source is served from the main context as well, through {@link #getChangeLog(String)}.
+ * <p>
+ * Nothing happens without sources: the main context then monitors {@code spring.datasource} as usual.
+ */
+@Component
+public class SourceLauncher implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceLauncher.class);
+
+    private final ConfigurableEnvironment environment;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final Map<String, MonitorProperties.Source> sources;
+    private final String tableName;
+    private final String rowImagesDirectory;
+    private final String changeLogDirectory;
+    private final boolean launching;
+    private final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+    // Read by the web threads of the main context while the sources start
+    private final Map<String, ChangeLog> changeLogs = new ConcurrentHashMap<>();
+
+    public SourceLauncher(MonitorProperties monitorProperties, ConfigurableEnvironment environment,
+                          ObjectProvider<MeterRegistry> meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.sources = monitorProperties.getSources();
+        this.tableName = monitorProperties.getTableName();
+        this.rowImagesDirectory = monitorProperties.getRowImages().getDirectory();
+        this.changeLogDirectory = monitorProperties.getChangeLog().getDirectory();
+        // The context of a source sees the same sources, but must not start them again
+        this.launching = monitorProperties.getSourceName() == null && !sources.isEmpty();
+        if (launching) {
+            validate(monitorProperties.getCentralStore().isEnabled());
+        }
+    }
+
+    private void validate(boolean centralStore) {
+        var owners = new HashMap<String, String>();
+        for (var entry : sources.entrySet()) {
+            var name = entry.getKey();
+            var source = entry.getValue();
+            if (source.getUrl() == null || source.getUrl().trim().isEmpty()) {
+                throw new IllegalArgumentException("Url of source " + name + " cannot be null or empty");
+            }
+            if (source.getMaxPoolSize() < 1) {
+                throw new IllegalArgumentException("Max pool size of source " + name + " must be positive");
+            }
+            var table = tableOf(source);
+            if (table == null || table.trim().isEmpty()) {
+                throw new IllegalArgumentException("Table name of source " + name + " cannot be null or empty");
+            }
+            var owner = owners.putIfAbsent(table.toLowerCase(), name);
+            if (centralStore && owner != null) {
+                throw new IllegalArgumentException("Sources " + owner + " and " + name + " share the central store "
+                        + "and must monitor distinct table names, such as database-qualified ones");
+            }
+        }
+    }
+
+    private String tableOf(MonitorProperties.Source source) {
+        return source.getTableName() != null ? source.getTableName() : tableName;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void launch(ApplicationReadyEvent event) {
+        if (!launching) {
+            return;
+        }
+        for (var entry : sources.entrySet()) {
+            var context = start(entry.getKey(), entry.getValue());
+            contexts.add(context);
+            changeLogs.put(entry.getKey(), context.getBean(ChangeLog.class));
+            // Lets the listeners of the source run their startup checks, as they do in the main context
+            context.publishEvent(new ApplicationReadyEvent(event.getSpringApplication(), event.getArgs(), context, null));
+            logger.info("Source: {}. Monitoring table {}", entry.getKey(), tableOf(entry.getValue()));
+        }
+    }
+
+    /**
+     * Tells whether the tables are monitored by the contexts of {@code monitor.sources} rather than by this one.
+     */
+    public boolean hasSources() {
+        return launching;
+    }
+
+    /**
+     * Finds the change log of a source, which its context writes in its own directory.
+     *
+     * @param name the name of the source
+     * @return the change log of the source, or null if there is no such source or it is not started yet
+     */
+    public ChangeLog getChangeLog(String name) {
+        return changeLogs.get(name);
+    }
+
+    private ConfigurableApplicationContext start(String name, MonitorProperties.Source source) {
+        var sourceEnvironment = new StandardEnvironment();
+        var propertySources = sourceEnvironment.getPropertySources();
+        propertySources.forEach(propertySource -> propertySources.remove(propertySource.getName()));
+        propertySources.addFirst(new MapPropertySource("monitor.sources." + name, overrides(name, source)));
+        for (var propertySource : environment.getPropertySources()) {
+            if (!ConfigurationPropertySources.isAttachedConfigurationPropertySource(propertySource)) {
+                propertySources.addLast(propertySource);
+            }
+        }
+        ConfigurationPropertySources.attach(sourceEnvironment);
+        sourceEnvironment.setActiveProfiles(environment.getActiveProfiles());
+        sourceEnvironment.setConversionService(new ApplicationConversionService());
+
+        var context = new AnnotationConfigApplicationContext();
+        context.setId(environment.getProperty("spring.application.name", "chgmon") + "-" + name);
+        context.setEnvironment(sourceEnvironment);
+        context.getBeanFactory().setConversionService(sourceEnvironment.getConversionService());
+        var registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            // Takes the place of the registry the context would create, which nothing would scrape
+            context.getBeanFactory().registerSingleton("meterRegistry", registry);
+        }
+        context.register(ChgmonApplication.class);
+        try {
+            context.refresh();
+        } catch (RuntimeException e) {
+            context.close();
+            throw e;
+        }
+        return context;
+    }
+
+    /**
+     * The settings that tell the context of a source apart from the main context. They take precedence over every
+     * other property source, including the command line.
+     */
+    Map<String, Object> overrides(String name, MonitorProperties.Source source) {
+        var overrides = new LinkedHashMap<String, Object>();
+        overrides.put("monitor.source-name", name);
+        overrides.put("spring.datasource.url", source.getUrl());
+        if (source.getUsername() != null) {
+            overrides.put("spring.datasource.username", source.getUsername());
+        }
+        if (source.getPassword() != null) {
+            overrides.put("spring.datasource.password", source.getPassword());
+        }
+        overrides.put("spring.datasource.hikari.maximum-pool-size", source.getMaxPoolSize());
+        overrides.put("spring.datasource.hikari.pool-name", name);
+        overrides.put("spring.task.scheduling.thread-name-prefix", name + "-scheduling-");
+        overrides.put("monitor.table-name", tableOf(source));
+        // Row images are files named after the table, which sources usually share
+        overrides.put("monitor.row-images.directory", Path.of(rowImagesDirectory, name).toString());
+        // A change log has a single writer
+        overrides.put("monitor.change-log.directory", Path.of(changeLogDirectory, name).toString());
+        return overrides;
+    }
+
+    @Override
+    public void destroy() {
+        changeLogs.clear();
+        for (int i = contexts.size() - 1; i >= 0; i--) {
+            contexts.get(i).close();
+        }
+        contexts.clear();
+    }
+}
@@ -0,0 +1,131 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.config.SourceCondition;
+import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Polls a short list of primary keys much more often than the cycle runs, for rows that need to be caught within
+ * seconds (open trades, today's settlements). The rows are read with batched {@code IN} lookups and checked by
+ * {@link MonitorTask#processKeys(List)} against the regular baseline; the cycle itself is left alone and still
+ * covers them.
+ * <p>
+ * Keys are either listed in {@code monitor.watchlist.keys} or selected by {@code monitor.watchlist.predicate},
+ * which is re-run every {@code monitor.watchlist.refresh-interval}. Rows that stop matching the predicate are checked
+ * one last time, so that the change that made them leave (a status update, a delete) is not left to the cycle.
+ * <p>
+ * Keys are not checked while a cycle is running. The keys of a skipped poll are kept and checked by the next one,
+ * so that rows leaving the predicate during a long cycle still get their last check.
+ */
+@Component
+@Conditional(SourceCondition.class)
+@ConditionalOnProperty(prefix = "monitor.watchlist", name = "enabled", havingValue = "true")
+public class WatchlistTask {
+
+    // SQL Server accepts at most 2100 parameters per statement
+    private static final int MAX_BATCH_SIZE = 2000;
+    private static final Logger logger = LoggerFactory.getLogger(WatchlistTask.class);
+
+    private final MonitorTask monitorTask;
+    private final MonitorRepository monitorRepository;
+    private final Clock clock;
+    private final String tableName;
+    private final String primaryKeyName;
+    private final List<Long> keys;
+    private final String predicate;
+    private final Duration refreshInterval;
+    private final int batchSize;
+    private final NavigableSet<Long> skipped = new TreeSet<>();
+    private NavigableSet<Long> watched;
+    private Instant refreshedAt;
+
+    @Autowired
+    public WatchlistTask(MonitorProperties monitorProperties, MonitorTask monitorTask, MonitorRepository monitorRepository) {
+        this(monitorProperties, monitorTask, monitorRepository, Clock.systemDefaultZone());
+    }
+
+    WatchlistTask(MonitorProperties monitorProperties, MonitorTask monitorTask, MonitorRepository monitorRepository, Clock clock) {
+        var settings = monitorProperties.getWatchlist();
+        if (settings.getBatchSize() < 1 || settings.getBatchSize() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Watchlist batch size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        if (settings.getKeys().isEmpty() && (settings.getPredicate() == null || settings.getPredicate().trim().isEmpty())) {
+            throw new IllegalArgumentException("Watchlist needs keys or a predicate");
+        }
+        this.monitorTask = monitorTask;
+        this.monitorRepository = monitorRepository;
+        this.clock = clock;
+        this.tableName = monitorProperties.getTableName();
+        this.primaryKeyName = monitorProperties.getPrimaryKeyName();
+        this.keys = settings.getKeys();
+        this.predicate = settings.getPredicate() == null || settings.getPredicate().trim().isEmpty() ? null : settings.getPredicate();
+        this.refreshInterval = settings.getRefreshInterval();
+        this.batchSize = settings.getBatchSize();
+        this.watched = new TreeSet<>(keys);
+    }
+
+    @Scheduled(fixedDelayString = "${monitor.watchlist.interval:5s}")
+    public void poll() {
+        var primaryKeys = new TreeSet<>(keysToPoll());
+        primaryKeys.addAll(skipped);
+        skipped.clear();
+        var batch = new ArrayList<Long>(Math.min(batchSize, primaryKeys.size()));
+        for (var primaryKey : primaryKeys) {
+            batch.add(primaryKey);
+            if (batch.size() == batchSize) {
+                if (!monitorTask.processKeys(batch)) {
+                    skip(primaryKeys, batch);
+                    return;
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty() && !monitorTask.processKeys(batch)) {
+            skip(primaryKeys, batch);
+        }
+    }
+
+    // Keeps the keys from the skipped batch on for the next poll
+    private void skip(NavigableSet<Long> primaryKeys, List<Long> batch) {
+        skipped.addAll(primaryKeys.tailSet(batch.get(0), true));
+        logger.debug("Table: {}. Watchlist poll skipped, the cycle is running or pending; {} keys kept for the next poll",
+                tableName, skipped.size());
+    }
+
+    private NavigableSet<Long> keysToPoll() {
+        if (predicate == null) {
+            return watched;
+        }
+
+        var now = clock.instant();
+        if (refreshedAt != null && now.isBefore(refreshedAt.plus(refreshInterval))) {
+            return watched;
+        }
+
+        var refreshed = new TreeSet<>(keys);
+        refreshed.addAll(monitorRepository.findPrimaryKeys(tableName, primaryKeyName, predicate));
+        var primaryKeys = new TreeSet<>(watched);
+        primaryKeys.addAll(refreshed);
+        if (refreshed.size() != watched.size() || !refreshed.containsAll(watched)) {
+            logger.debug("Table: {}. Watchlist refreshed, {} keys", tableName, refreshed.size());
+        }
+        watched = refreshed;
+        refreshedAt = now;
+        return primaryKeys;
+    }
+}
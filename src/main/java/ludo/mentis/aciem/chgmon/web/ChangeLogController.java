@@ -0,0 +1,117 @@
+package ludo.mentis.aciem.chgmon.web;
+
+import jakarta.servlet.http.HttpServletResponse;
+import ludo.mentis.aciem.chgmon.service.ChangeLog;
+import ludo.mentis.aciem.chgmon.task.SourceLauncher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lets consumers tail the change log over HTTP. A consumer asks for the offsets once, then reads from where it
+ * stopped: each response holds whole records in the format of {@code ChangeLogCodec}, and the next read starts at the
+ * offset plus the length of the body. An empty body means the consumer is at the end of the log.
+ * <p>
+ * With {@code monitor.sources}, each source keeps its own log, read by naming the source in the path, for instance
+ * {@code GET /api/change-log/eu/offsets}.
+ * <p>
+ * The records hold row images and there is no authentication, so the endpoint is only served with
+ * {@code monitor.change-log.http.enabled}, on a server bound to a trusted interface.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "monitor.change-log.http", name = "enabled", havingValue = "true")
+@RequestMapping("/api/change-log")
+public class ChangeLogController {
+
+    static final String END_OFFSET_HEADER = "Change-Log-End-Offset";
+
+    private final ChangeLog changeLog;
+    private final SourceLauncher sourceLauncher;
+
+    public ChangeLogController(ChangeLog changeLog, SourceLauncher sourceLauncher) {
+        this.changeLog = changeLog;
+        this.sourceLauncher = sourceLauncher;
+    }
+
+    /**
+     * Tells where the log starts and ends and, with a time, the offset of the first change logged since, for
+     * instance {@code GET /api/change-log/offsets?time=2024-05-01T10:00:00Z}.
+     */
+    @GetMapping({"/offsets", "/{source}/offsets"})
+    public Map<String, Long> offsets(@PathVariable(required = false) String source,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant time) {
+        var changeLog = changeLog(source);
+        var offsets = new LinkedHashMap<String, Long>();
+        offsets.put("start", changeLog.getStartOffset());
+        offsets.put("end", changeLog.getEndOffset());
+        if (time != null) {
+            offsets.put("offset", changeLog.offsetAt(time));
+        }
+        return offsets;
+    }
+
+    /**
+     * Streams the records from an offset, for instance {@code GET /api/change-log?offset=0&max-bytes=1048576}. The
+     * end offset of the log at the time of the read is sent in the {@value #END_OFFSET_HEADER} header.
+     */
+    @GetMapping({"", "/{source}"})
+    public void read(@PathVariable(required = false) String source,
+                     @RequestParam long offset,
+                     @RequestParam(name = "max-bytes", defaultValue = "1048576") long maxBytes,
+                     HttpServletResponse response) throws IOException {
+        var changeLog = changeLog(source);
+        var start = changeLog.getStartOffset();
+        var end = changeLog.getEndOffset();
+        // Checked before the response turns into a byte stream, so that errors can still be sent as JSON
+        if (offset < start || offset > end) {
+            throw new IllegalArgumentException("Offset " + offset + " is outside the change log, which runs from " + start + " to " + end);
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Max bytes must be positive");
+        }
+
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(END_OFFSET_HEADER, String.valueOf(end));
+        changeLog.transferTo(offset, maxBytes, Channels.newChannel(response.getOutputStream()));
+    }
+
+    private ChangeLog changeLog(String source) {
+        if (source == null) {
+            if (sourceLauncher.hasSources()) {
+                throw new IllegalArgumentException("Each source keeps its own change log: name it, as in /api/change-log/{source}");
+            }
+            return changeLog;
+        }
+        var sourceLog = sourceLauncher.getChangeLog(source);
+        if (sourceLog == null) {
+            throw new IllegalStateException("No source named " + source);
+        }
+        return sourceLog;
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> badRequest(IllegalArgumentException e) {
+        return Map.of("error", e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, String> notFound(IllegalStateException e) {
+        return Map.of("error", e.getMessage());
+    }
+}
@@ -0,0 +1,90 @@
+package ludo.mentis.aciem.chgmon.web;
+
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import ludo.mentis.aciem.chgmon.model.CycleTrend;
+import ludo.mentis.aciem.chgmon.service.CycleRunService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the cycle history kept in tb_cycle_run, for trend analysis and capacity planning. The period defaults to
+ * the last day for the cycles and to the last 30 days for the trends. Times are local times of the nodes that ran the
+ * cycles, as stored.
+ * <p>
+ * With {@code monitor.sources}, the main context serves the history of every source that shares its store, the
+ * central store when one is configured.
+ * <p>
+ * There is no authentication, so the history is only served with {@code monitor.cycle-history.http.enabled}, on a
+ * server bound to a trusted interface.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "monitor.cycle-history.http", name = "enabled", havingValue = "true")
+@RequestMapping("/api/cycles")
+public class CycleRunController {
+
+    private final CycleRunService cycleRunService;
+    private final Clock clock;
+
+    @Autowired
+    public CycleRunController(CycleRunService cycleRunService) {
+        this(cycleRunService, Clock.systemDefaultZone());
+    }
+
+    CycleRunController(CycleRunService cycleRunService, Clock clock) {
+        this.cycleRunService = cycleRunService;
+        this.clock = clock;
+    }
+
+    /**
+     * Lists the latest cycles, for instance {@code GET /api/cycles?table=dbo.tb_fx_trade&limit=20}.
+     */
+    @GetMapping
+    public List<CycleRun> find(@RequestParam(required = false) String table,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                               @RequestParam(defaultValue = "100") int limit) {
+        var end = to != null ? to : LocalDateTime.now(clock);
+        return cycleRunService.find(table, from != null ? from : end.minusDays(1), end, limit);
+    }
+
+    /**
+     * Adds up the cycles per table and per hour or day, for instance
+     * {@code GET /api/cycles/trend?table=dbo.tb_fx_trade&period=days}.
+     */
+    @GetMapping("/trend")
+    public List<CycleTrend> findTrend(@RequestParam(required = false) String table,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                      @RequestParam(defaultValue = "hours") String period) {
+        var end = to != null ? to : LocalDateTime.now(clock);
+        return cycleRunService.findTrend(table, from != null ? from : end.minusDays(30), end, period(period));
+    }
+
+    private static ChronoUnit period(String period) {
+        return switch (period.toLowerCase()) {
+            case "hours" -> ChronoUnit.HOURS;
+            case "days" -> ChronoUnit.DAYS;
+            default -> throw new IllegalArgumentException("Period must be hours or days");
+        };
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> badRequest(IllegalArgumentException e) {
+        return Map.of("error", e.getMessage());
+    }
+}
@@ -1,23 +1,91 @@
 /*
 DROP TABLE tb_audit;
 DROP TABLE tb_table_checksum;
+DROP TABLE tb_table_checksum_block;
+DROP TABLE tb_table_schema;
+DROP TABLE tb_monitor_lease;
+DROP TABLE tb_cycle_run;
 */
 CREATE TABLE tb_audit (
-    id_audit    INT          NOT NULL IDENTITY(1, 1),
-    primary_key BIGINT       NOT NULL,
-    table_name  VARCHAR(255) NOT NULL,
-    change_type CHAR(6)      NOT NULL,
-    change_date DATETIME     NOT NULL DEFAULT (GETDATE()),
+    id_audit        INT            NOT NULL IDENTITY(1, 1),
+    primary_key     BIGINT         NOT NULL,
+    table_name      VARCHAR(255)   NOT NULL,
+    change_type     CHAR(6)        NOT NULL,
+    change_date     DATETIME       NOT NULL DEFAULT (GETDATE()),
+    changed_columns VARBINARY(128) NULL,
+    old_image       VARBINARY(MAX) NULL,
+    new_image       VARBINARY(MAX) NULL,
 
     CONSTRAINT pk_audit PRIMARY KEY (id_audit),
     CONSTRAINT ck_audit_type CHECK (change_type IN ('INSERT', 'UPDATE', 'DELETE'))
 );
 
 CREATE TABLE tb_table_checksum (
-    id_table_checksum INT          NOT NULL IDENTITY(1, 1),
-    table_name        VARCHAR(255) NOT NULL,
-    primary_key       BIGINT       NOT NULL,
-    crc32             BIGINT       NOT NULL,
+    id_table_checksum INT            NOT NULL IDENTITY(1, 1),
+    table_name        VARCHAR(255)   NOT NULL,
+    primary_key       BIGINT         NOT NULL,
+    crc32             BIGINT         NOT NULL,
+    column_hashes     VARBINARY(MAX) NULL,
 
     CONSTRAINT pk_table_checksum PRIMARY KEY (id_table_checksum)
-);
\ No newline at end of file
+);
+
+CREATE TABLE tb_table_checksum_block (
+    id_table_checksum_block INT            NOT NULL IDENTITY(1, 1),
+    table_name              VARCHAR(255)   NOT NULL,
+    range_start             BIGINT         NOT NULL,
+    range_end               BIGINT         NOT NULL,
+    row_count               INT            NOT NULL,
+    payload                 VARBINARY(MAX) NOT NULL,
+
+    CONSTRAINT pk_table_checksum_block PRIMARY KEY (id_table_checksum_block),
+    CONSTRAINT uk_table_checksum_block UNIQUE (table_name, range_start)
+);
+
+CREATE TABLE tb_table_schema (
+    id_table_schema INT            NOT NULL IDENTITY(1, 1),
+    table_name      VARCHAR(255)   NOT NULL,
+    modify_date     DATETIME       NOT NULL,
+    columns         NVARCHAR(MAX)  NOT NULL,
+
+    CONSTRAINT pk_table_schema PRIMARY KEY (id_table_schema),
+    CONSTRAINT uk_table_schema UNIQUE (table_name)
+);
+
+CREATE TABLE tb_monitor_lease (
+    table_name    VARCHAR(255)   NOT NULL,
+    shard         INT            NOT NULL,
+    owner         VARCHAR(255)   NULL,
+    expires_at    DATETIME2      NOT NULL,
+    verified_date DATETIME       NULL,
+
+    CONSTRAINT pk_monitor_lease PRIMARY KEY (table_name, shard)
+);
+
+CREATE TABLE tb_cycle_run (
+    id_cycle_run  BIGINT         NOT NULL IDENTITY(1, 1),
+    table_name    VARCHAR(255)   NOT NULL,
+    source_name   VARCHAR(255)   NULL,
+    profile       VARCHAR(64)    NOT NULL,
+    strategy      VARCHAR(16)    NOT NULL,
+    outcome       VARCHAR(16)    NOT NULL,
+    started_at    DATETIME2      NOT NULL,
+    ended_at      DATETIME2      NOT NULL,
+    rows_scanned  BIGINT         NOT NULL,
+    bytes_hashed  BIGINT         NOT NULL,
+    inserts       BIGINT         NOT NULL,
+    updates       BIGINT         NOT NULL,
+    deletes       BIGINT         NOT NULL,
+    statements    BIGINT         NOT NULL,
+    peak_heap     BIGINT         NOT NULL,
+    error         NVARCHAR(2000) NULL,
+    server_cpu_ms       BIGINT   NULL,
+    server_scheduled_ms BIGINT   NULL,
+    logical_reads       BIGINT   NULL,
+    physical_reads      BIGINT   NULL,
+    writes              BIGINT   NULL,
+
+    CONSTRAINT pk_cycle_run PRIMARY KEY (id_cycle_run)
+);
+
+CREATE INDEX ix_cycle_run_table ON tb_cycle_run (table_name, started_at);
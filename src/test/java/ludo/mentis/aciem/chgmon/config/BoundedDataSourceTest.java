@@ -0,0 +1,86 @@
+package ludo.mentis.aciem.chgmon.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoundedDataSourceTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        when(dataSource.getConnection()).thenReturn(connection);
+    }
+
+    @Test
+    void getConnection_AllLent_WaitsUntilOneIsClosed() throws Exception {
+        // Arrange
+        BoundedDataSource bounded = new BoundedDataSource(dataSource, 1);
+        Connection first = bounded.getConnection();
+
+        // Act
+        CompletableFuture<Connection> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bounded.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // Assert
+        assertThrows(TimeoutException.class, () -> second.get(100, TimeUnit.MILLISECONDS));
+        first.close();
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        verify(connection).close();
+    }
+
+    @Test
+    void close_Twice_GivesOnePermitBack() throws SQLException {
+        // Arrange
+        BoundedDataSource bounded = new BoundedDataSource(dataSource, 2);
+        Connection lent = bounded.getConnection();
+
+        // Act
+        lent.close();
+        lent.close();
+
+        // Assert
+        assertEquals(2, bounded.getAvailableConnections());
+    }
+
+    @Test
+    void getConnection_TargetFails_GivesPermitBack() throws SQLException {
+        // Arrange
+        when(dataSource.getConnection()).thenThrow(new SQLException("Login failed"));
+        BoundedDataSource bounded = new BoundedDataSource(dataSource, 1);
+
+        // Act & Assert
+        assertThrows(SQLException.class, bounded::getConnection);
+        assertEquals(1, bounded.getAvailableConnections());
+    }
+
+    @Test
+    void constructor_NoConnections_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            new BoundedDataSource(dataSource, 0);
+        });
+        assertEquals("Max connections must be positive", exception.getMessage());
+    }
+}
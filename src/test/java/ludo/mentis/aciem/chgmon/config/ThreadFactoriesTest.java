@@ -0,0 +1,37 @@
+package ludo.mentis.aciem.chgmon.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreadFactoriesTest {
+
+    @Test
+    void create_PlatformThreads_AreNamedDaemonThreads() {
+        // Arrange
+        MonitorProperties properties = new MonitorProperties();
+
+        // Act
+        Thread thread = ThreadFactories.create(properties, "monitor-cycle").newThread(() -> { });
+
+        // Assert
+        assertEquals("monitor-cycle", thread.getName());
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    void create_VirtualThreads_AreNamedAndFallBackWhenUnavailable() throws InterruptedException {
+        // Arrange
+        MonitorProperties properties = new MonitorProperties();
+        properties.getVirtualThreads().setEnabled(true);
+
+        // Act
+        Thread thread = ThreadFactories.create(properties, "monitor-cycle").newThread(() -> { });
+        thread.start();
+        thread.join();
+
+        // Assert: virtual threads are always daemon threads, and so are the platform threads of the fallback
+        assertEquals("monitor-cycle", thread.getName());
+        assertTrue(thread.isDaemon());
+    }
+}
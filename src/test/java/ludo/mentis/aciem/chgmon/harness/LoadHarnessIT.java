@@ -0,0 +1,173 @@
+package ludo.mentis.aciem.chgmon.harness;
+
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import ludo.mentis.aciem.chgmon.service.CycleRunService;
+import ludo.mentis.aciem.chgmon.task.MonitorTask;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end cycles of the whole application against an embedded H2 database in MSSQLServer mode. A synthetic table
+ * is created and baselined, then changed before each of the following cycles. Every cycle must audit exactly the
+ * rows changed, and the cycles after the first (which only builds the baseline) must stay within the thresholds.
+ * <p>
+ * Run with {@code mvn -Pload-test verify}. Every setting is a system property: {@code harness.rows},
+ * {@code harness.columns}, {@code harness.churn} (UNIFORM, HOT or APPEND), {@code harness.churn-rate},
+ * {@code harness.cycles}, the thresholds {@code harness.min-rows-per-second}, {@code harness.max-statements-per-row}
+ * and {@code harness.max-peak-heap}, and {@code harness.baseline-store}, which the build passes on as
+ * {@code monitor.baseline.store}. It defaults to BLOCK: the ROW store looks the baseline up one row at a time, so it
+ * only stays within the statement threshold with a much looser {@code harness.max-statements-per-row}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:harness;MODE=MSSQLServer;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:db/h2-catalog.sql,classpath:db/tables.sql",
+        "logging.file.path=target",
+        // Per-row debug logs would dominate the measurements
+        "logging.level.ludo.mentis.aciem.chgmon=INFO",
+        "monitor.table-name=" + LoadHarnessIT.TABLE_NAME,
+        "monitor.primary-key-name=" + LoadHarnessIT.PRIMARY_KEY_NAME,
+        // Cycles are run by the harness only: February 31st never comes
+        "monitor.cron=0 0 0 31 2 *"
+})
+class LoadHarnessIT {
+
+    static final String TABLE_NAME = "tb_load_trade";
+    static final String PRIMARY_KEY_NAME = "id_load_trade";
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadHarnessIT.class);
+
+    @Autowired
+    private MonitorTask monitorTask;
+
+    @Autowired
+    private CycleRunService cycleRunService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${monitor.baseline.store}")
+    private String baselineStore;
+
+    @Value("${harness.rows:100000}")
+    private int rows;
+
+    @Value("${harness.columns:12}")
+    private int columns;
+
+    @Value("${harness.churn:UNIFORM}")
+    private SyntheticTable.Churn churn;
+
+    @Value("${harness.churn-rate:0.01}")
+    private double churnRate;
+
+    @Value("${harness.cycles:3}")
+    private int cycles;
+
+    @Value("${harness.min-rows-per-second:0}")
+    private double minRowsPerSecond;
+
+    @Value("${harness.max-statements-per-row:0}")
+    private double maxStatementsPerRow;
+
+    @Value("${harness.max-peak-heap:0B}")
+    private DataSize maxPeakHeap;
+
+    @Test
+    void cycles_SyntheticChurn_AuditEveryChangeWithinThresholds() {
+        // Arrange
+        var table = new SyntheticTable(jdbcTemplate, TABLE_NAME, PRIMARY_KEY_NAME, columns);
+        table.create(rows);
+        var keys = new HashSet<Long>();
+        for (long key = 1; key <= rows; key++) {
+            keys.add(key);
+        }
+        var runs = new ArrayList<CycleRun>();
+
+        // Act & Assert: the first cycle finds every row inserted
+        runs.add(cycle(new SyntheticTable.Changes(keys, Set.of(), Set.of())));
+        for (int i = 0; i < cycles; i++) {
+            runs.add(cycle(table.churn(churn, churnRate)));
+        }
+
+        report(runs);
+        for (var run : runs.subList(1, runs.size())) {
+            var rowsPerSecond = rowsPerSecond(run);
+            var statementsPerRow = (double) run.getStatements() / Math.max(1, run.getRowsScanned());
+            assertTrue(rowsPerSecond >= minRowsPerSecond,
+                    String.format("%.0f rows/s is below harness.min-rows-per-second=%.0f", rowsPerSecond, minRowsPerSecond));
+            assertTrue(maxStatementsPerRow <= 0 || statementsPerRow <= maxStatementsPerRow,
+                    String.format("%.3f statements per row is above harness.max-statements-per-row=%s", statementsPerRow, maxStatementsPerRow));
+            assertTrue(maxPeakHeap.toBytes() <= 0 || run.getPeakHeap() <= maxPeakHeap.toBytes(),
+                    String.format("Peak heap of %d MB is above harness.max-peak-heap=%s", run.getPeakHeap() >> 20, maxPeakHeap));
+        }
+    }
+
+    /**
+     * Runs a cycle and checks that it audited exactly the changes made since the last one.
+     */
+    private CycleRun cycle(SyntheticTable.Changes changes) {
+        jdbcTemplate.update("DELETE FROM tb_audit");
+        var startedAt = LocalDateTime.now();
+
+        assertTrue(monitorTask.execute(), "Cycle did not complete");
+
+        var inserted = new HashSet<Long>();
+        var updated = new HashSet<Long>();
+        var deleted = new HashSet<Long>();
+        jdbcTemplate.query("SELECT primary_key, change_type FROM tb_audit WHERE table_name = ?", rs -> {
+            var audits = switch (rs.getString("change_type")) {
+                case "INSERT" -> inserted;
+                case "UPDATE" -> updated;
+                default -> deleted;
+            };
+            assertTrue(audits.add(rs.getLong("primary_key")), "Row audited twice: " + rs.getLong("primary_key"));
+        }, TABLE_NAME);
+        assertEquals(changes.inserted(), inserted, "Inserts audited");
+        assertEquals(changes.updated(), updated, "Updates audited");
+        assertEquals(changes.deleted(), deleted, "Deletes audited");
+
+        List<CycleRun> cycleRuns = cycleRunService.find(TABLE_NAME, startedAt.minusSeconds(1), LocalDateTime.now().plusSeconds(1), 1);
+        assertEquals(1, cycleRuns.size(), "Cycle recorded in tb_cycle_run");
+        return cycleRuns.get(0);
+    }
+
+    private void report(List<CycleRun> runs) {
+        var report = new StringBuilder(String.format("%nLoad harness: %d rows, %d columns, %s churn of %s per cycle, %s baseline store%n",
+                rows, columns, churn, churnRate, baselineStore));
+        report.append(String.format("%5s %10s %10s %12s %12s %10s %8s %8s %8s%n",
+                "cycle", "rows", "ms", "rows/s", "statements", "heap MB", "inserts", "updates", "deletes"));
+        for (int i = 0; i < runs.size(); i++) {
+            var run = runs.get(i);
+            report.append(String.format("%5d %10d %10d %12.0f %12d %10d %8d %8d %8d%n", i, run.getRowsScanned(), millis(run),
+                    rowsPerSecond(run), run.getStatements(), run.getPeakHeap() >> 20, run.getInserts(), run.getUpdates(), run.getDeletes()));
+        }
+        logger.info("{}", report);
+    }
+
+    private static long millis(CycleRun run) {
+        return Duration.between(run.getStartedAt(), run.getEndedAt()).toMillis();
+    }
+
+    private static double rowsPerSecond(CycleRun run) {
+        return run.getRowsScanned() * 1000.0 / Math.max(1, millis(run));
+    }
+}
@@ -0,0 +1,185 @@
+package ludo.mentis.aciem.chgmon.harness;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * A generated table of a given size and width, modeled on tb_fx_trade, and the changes made to it between cycles.
+ * Column types cycle through decimals, codes, timestamps, integers, flags, dates and free text, the last of which
+ * is null for a third of the rows. Keys are assigned in ascending order, as an identity column would, and every run
+ * with the same settings makes the same changes.
+ */
+final class SyntheticTable {
+
+    /**
+     * Where the changes of a cycle fall.
+     */
+    enum Churn {
+        /** Inserts at the end, updates and deletes anywhere in the table. */
+        UNIFORM,
+        /** Inserts at the end, updates and deletes among the newest 5% of the rows, as recent trades get amended. */
+        HOT,
+        /** Inserts only. */
+        APPEND
+    }
+
+    /**
+     * The primary keys changed since the last cycle.
+     */
+    record Changes(Set<Long> inserted, Set<Long> updated, Set<Long> deleted) {
+    }
+
+    private static final String[] TYPES = {"DECIMAL(18, 2)", "VARCHAR(40)", "DATETIME2", "INT", "DECIMAL(18, 6)", "BIT",
+            "DATE", "VARCHAR(200)"};
+    private static final String[] CODES = {"EURUSD", "USDJPY", "GBPUSD", "USDCHF", "AUDUSD", "USDCAD", "EURGBP", "USDBRL"};
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+    private final String primaryKeyName;
+    private final int columns;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final BitSet live = new BitSet();
+    private long nextKey = 1;
+    private int size;
+
+    SyntheticTable(JdbcTemplate jdbcTemplate, String tableName, String primaryKeyName, int columns) {
+        if (columns < 1) {
+            throw new IllegalArgumentException("Columns must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.primaryKeyName = primaryKeyName;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates the table with its first rows.
+     */
+    void create(int rows) {
+        var ddl = new StringBuilder("CREATE TABLE ").append(tableName).append(" (").append(primaryKeyName).append(" BIGINT NOT NULL PRIMARY KEY");
+        for (int column = 1; column <= columns; column++) {
+            ddl.append(", c").append(column).append(' ').append(type(column)).append(column == 1 ? " NOT NULL" : " NULL");
+        }
+        jdbcTemplate.execute(ddl.append(')').toString());
+        insert(rows);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Inserts, updates and deletes a share of the rows. The changes are split evenly between the three kinds, except
+     * for {@link Churn#APPEND}.
+     *
+     * @param churn where the changes fall
+     * @param rate  the share of the rows to change
+     * @return the keys changed
+     */
+    Changes churn(Churn churn, double rate) {
+        var count = Math.max(3, (int) Math.round(size * rate));
+        if (churn == Churn.APPEND) {
+            return new Changes(insert(count), Set.of(), Set.of());
+        }
+
+        var lowestKey = churn == Churn.HOT ? Math.max(1, nextKey - Math.max(count, size / 20)) : 1;
+        var picked = pick(lowestKey, 2 * (count / 3));
+        var updated = new HashSet<>(picked.subList(0, picked.size() / 2));
+        var deleted = new HashSet<>(picked.subList(picked.size() / 2, picked.size()));
+        update(updated);
+        delete(deleted);
+        var inserted = insert(count - picked.size());
+        return new Changes(inserted, updated, deleted);
+    }
+
+    private List<Long> pick(long lowestKey, int count) {
+        var candidates = new ArrayList<Long>();
+        for (var key = live.nextSetBit((int) lowestKey); key >= 0; key = live.nextSetBit(key + 1)) {
+            candidates.add((long) key);
+        }
+        // Same seed, same order of draws: the same keys every run
+        Collections.shuffle(candidates, new Random(random.nextLong()));
+        return candidates.subList(0, Math.min(count, candidates.size()));
+    }
+
+    private Set<Long> insert(int rows) {
+        var keys = new HashSet<Long>();
+        var placeholders = "?" + ", ?".repeat(columns);
+        var sql = "INSERT INTO " + tableName + " VALUES (" + placeholders + ")";
+        var batch = new ArrayList<Object[]>(BATCH_SIZE);
+        for (int i = 0; i < rows; i++) {
+            var key = nextKey++;
+            var values = new Object[columns + 1];
+            values[0] = key;
+            for (int column = 1; column <= columns; column++) {
+                values[column] = value(column);
+            }
+            batch.add(values);
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+            live.set((int) key);
+            keys.add(key);
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+        size += rows;
+        return keys;
+    }
+
+    // Bumping c1 changes the row even when the last column draws the value it had
+    private void update(Set<Long> keys) {
+        var batch = new ArrayList<Object[]>();
+        for (var key : keys) {
+            batch.add(columns > 1 ? new Object[]{value(columns), key} : new Object[]{key});
+        }
+        var sql = "UPDATE " + tableName + " SET c1 = c1 + 1" + (columns > 1 ? ", c" + columns + " = ?" : "") + " WHERE " + primaryKeyName + " = ?";
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    private void delete(Set<Long> keys) {
+        var batch = new ArrayList<Object[]>();
+        for (var key : keys) {
+            batch.add(new Object[]{key});
+            live.clear(key.intValue());
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM " + tableName + " WHERE " + primaryKeyName + " = ?", batch);
+        size -= keys.size();
+    }
+
+    private static String type(int column) {
+        return TYPES[(column - 1) % TYPES.length];
+    }
+
+    private Object value(int column) {
+        var type = type(column);
+        if (column > 1 && type.startsWith("VARCHAR(200)") && random.nextInt(3) == 0) {
+            return null;
+        }
+        return switch (type) {
+            case "DECIMAL(18, 2)" -> BigDecimal.valueOf(random.nextLong(100_000, 5_000_000_000L), 2);
+            case "VARCHAR(40)" -> CODES[random.nextInt(CODES.length)];
+            case "DATETIME2" -> Timestamp.valueOf(LocalDateTime.of(2024, 1, 2, 7, 0).plusSeconds(random.nextLong(365L * 24 * 3600)));
+            case "INT" -> random.nextInt(100, 400);
+            case "DECIMAL(18, 6)" -> BigDecimal.valueOf(random.nextLong(500_000, 160_000_000), 6);
+            case "BIT" -> random.nextInt(50) == 0;
+            case "DATE" -> Date.valueOf(LocalDateTime.of(2024, 1, 4, 0, 0).plusDays(random.nextInt(365)).toLocalDate());
+            default -> "Booked by sales desk, ticket FXOPS-" + random.nextInt(100_000);
+        };
+    }
+}
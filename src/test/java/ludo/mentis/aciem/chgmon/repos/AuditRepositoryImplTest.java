@@ -1,5 +1,8 @@
 package ludo.mentis.aciem.chgmon.repos;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import ludo.mentis.aciem.chgmon.model.Audit;
 import ludo.mentis.aciem.chgmon.model.ChangeType;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,8 +14,11 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.PreparedStatement;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -247,4 +253,87 @@ class AuditRepositoryImplTest {
             primaryKey
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void insertBatch_ValidAudits_SendsOneBatch() {
+        // Arrange
+        Audit audit1 = new Audit();
+        audit1.setTableName("test_table");
+        audit1.setPrimaryKey(1L);
+        audit1.setChangeType(ChangeType.INSERT);
+        Audit audit2 = new Audit();
+        audit2.setTableName("test_table");
+        audit2.setPrimaryKey(2L);
+        audit2.setChangeType(ChangeType.UPDATE);
+        java.util.List<Audit> audits = java.util.List.of(audit1, audit2);
+
+        when(jdbcTemplate.batchUpdate(anyString(), eq(audits), eq(2), any(org.springframework.jdbc.core.ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[][]{{1, java.sql.Statement.SUCCESS_NO_INFO}});
+
+        // Act
+        int result = auditRepository.insertBatch(audits);
+
+        // Assert
+        assertEquals(2, result);
+    }
+
+    @Test
+    void insertBatch_FlightRecording_RecordsTheRowsAndBytesWritten() throws Exception {
+        // Arrange
+        Audit insert = new Audit();
+        insert.setTableName("test_table");
+        insert.setPrimaryKey(1L);
+        insert.setChangeType(ChangeType.INSERT);
+        insert.setNewImage(new byte[100]);
+        Audit update = new Audit();
+        update.setTableName("test_table");
+        update.setPrimaryKey(2L);
+        update.setChangeType(ChangeType.UPDATE);
+        update.setChangedColumns(new byte[2]);
+        update.setOldImage(new byte[50]);
+        update.setNewImage(new byte[60]);
+        java.util.List<Audit> audits = java.util.List.of(insert, update);
+        when(jdbcTemplate.batchUpdate(anyString(), eq(audits), eq(2), any(org.springframework.jdbc.core.ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[][]{{1, 1}});
+        Path file = Files.createTempFile("chgmon", ".jfr");
+
+        // Act
+        try (Recording recording = new Recording()) {
+            recording.enable("chgmon.DatabaseCall").withThreshold(Duration.ZERO);
+            recording.start();
+            auditRepository.insertBatch(audits);
+            recording.stop();
+            recording.dump(file);
+        }
+        java.util.List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("chgmon.DatabaseCall")).toList();
+        Files.delete(file);
+
+        // Assert: a key, a date, the table name and the change type of each audit, then its columns and images
+        assertEquals(1, events.size());
+        assertEquals("insertAudits", events.get(0).getString("operation"));
+        assertEquals(2, events.get(0).getLong("rows"));
+        assertEquals(2 * (8 + 8 + 10 + 6) + 100 + 2 + 50 + 60, events.get(0).getLong("bytes"));
+    }
+
+    @Test
+    void insertBatch_EmptyList_DoesNothing() {
+        assertEquals(0, auditRepository.insertBatch(java.util.List.of()));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void insertBatch_AuditWithoutChangeType_ThrowsIllegalArgumentException() {
+        // Arrange
+        Audit audit = new Audit();
+        audit.setTableName("test_table");
+        audit.setPrimaryKey(1L);
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            auditRepository.insertBatch(java.util.List.of(audit));
+        });
+        assertEquals("Change type cannot be null", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
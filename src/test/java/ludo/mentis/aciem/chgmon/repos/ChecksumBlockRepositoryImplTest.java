@@ -0,0 +1,125 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.ChecksumBlock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChecksumBlockRepositoryImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ChecksumBlockRepositoryImpl checksumBlockRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        checksumBlockRepository = new ChecksumBlockRepositoryImpl(jdbcTemplate);
+    }
+
+    private ChecksumBlock validBlock() {
+        ChecksumBlock checksumBlock = new ChecksumBlock();
+        checksumBlock.setTableName("test_table");
+        checksumBlock.setRangeStart(0L);
+        checksumBlock.setRangeEnd(65535L);
+        checksumBlock.setRowCount(2);
+        checksumBlock.setPayload(new byte[]{1, 4, 2});
+        return checksumBlock;
+    }
+
+    @Test
+    void findByTableName_ValidTableName_QueriesBlocksInRangeOrder() {
+        // Arrange
+        ChecksumBlock block = validBlock();
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("test_table"))).thenReturn(List.of(block));
+
+        // Act
+        List<ChecksumBlock> result = checksumBlockRepository.findByTableName("test_table");
+
+        // Assert
+        assertEquals(List.of(block), result);
+        verify(jdbcTemplate).query(contains("ORDER BY range_start"), any(RowMapper.class), eq("test_table"));
+    }
+
+    @Test
+    void findByTableName_EmptyTableName_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            checksumBlockRepository.findByTableName(" ");
+        });
+        assertEquals("Table name cannot be null or empty", exception.getMessage());
+    }
+
+    @Test
+    void insert_ValidBlock_ReturnsId() {
+        // Arrange
+        when(jdbcTemplate.update(any(), any(GeneratedKeyHolder.class))).thenAnswer(invocation -> {
+            KeyHolder keyHolder = invocation.getArgument(1);
+            java.lang.reflect.Field keyField = GeneratedKeyHolder.class.getDeclaredField("keyList");
+            keyField.setAccessible(true);
+            keyField.set(keyHolder, java.util.Collections.singletonList(java.util.Collections.singletonMap("", 7)));
+            return 1;
+        });
+
+        // Act
+        Integer result = checksumBlockRepository.insert(validBlock());
+
+        // Assert
+        assertEquals(7, result);
+    }
+
+    @Test
+    void insert_NullPayload_ThrowsIllegalArgumentException() {
+        ChecksumBlock checksumBlock = validBlock();
+        checksumBlock.setPayload(null);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            checksumBlockRepository.insert(checksumBlock);
+        });
+        assertEquals("Payload cannot be null", exception.getMessage());
+        verify(jdbcTemplate, never()).update(any(), any(GeneratedKeyHolder.class));
+    }
+
+    @Test
+    void update_ValidBlock_RewritesPayload() {
+        // Arrange
+        ChecksumBlock checksumBlock = validBlock();
+        checksumBlock.setId(3);
+        when(jdbcTemplate.update(anyString(), any(), any(), any())).thenReturn(1);
+
+        // Act
+        boolean result = checksumBlockRepository.update(checksumBlock);
+
+        // Assert
+        assertTrue(result);
+        verify(jdbcTemplate).update(
+                "UPDATE tb_table_checksum_block SET row_count = ?, payload = ? WHERE id_table_checksum_block = ?",
+                2, checksumBlock.getPayload(), 3);
+    }
+
+    @Test
+    void update_NullId_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            checksumBlockRepository.update(validBlock());
+        });
+        assertEquals("ChecksumBlock ID cannot be null", exception.getMessage());
+    }
+
+    @Test
+    void delete_ExistingBlock_ReturnsTrue() {
+        when(jdbcTemplate.update(anyString(), eq(3))).thenReturn(1);
+
+        assertTrue(checksumBlockRepository.delete(3));
+    }
+}
@@ -0,0 +1,85 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CycleRunRepositoryImplTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 5, 1, 0, 0);
+    private static final LocalDateTime TO = LocalDateTime.of(2024, 5, 2, 0, 0);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private CycleRunRepositoryImpl cycleRunRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cycleRunRepository = new CycleRunRepositoryImpl(jdbcTemplate);
+    }
+
+    @Test
+    void find_Table_ReadsLatestCyclesOfTheTableInThePeriod() {
+        // Act
+        cycleRunRepository.find("test_table", FROM, TO, 20);
+
+        // Assert
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class),
+                eq(20), eq(Timestamp.valueOf(FROM)), eq(Timestamp.valueOf(TO)), eq("test_table"));
+        assertTrue(sql.getValue().startsWith("SELECT TOP (?) id_cycle_run, table_name"));
+        assertTrue(sql.getValue().endsWith("FROM tb_cycle_run WHERE started_at >= ? AND started_at < ? AND table_name = ? ORDER BY started_at DESC"));
+    }
+
+    @Test
+    void findTrend_Days_GroupsByTableAndDay() {
+        // Act
+        cycleRunRepository.findTrend(null, FROM, TO, ChronoUnit.DAYS);
+
+        // Assert
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class), eq(Timestamp.valueOf(FROM)), eq(Timestamp.valueOf(TO)));
+        assertTrue(sql.getValue().endsWith("WHERE started_at >= ? AND started_at < ? " +
+                "GROUP BY table_name, DATEADD(day, DATEDIFF(day, 0, started_at), 0) ORDER BY table_name, period"));
+    }
+
+    @Test
+    void findTrend_Minutes_ThrowsIllegalArgumentException() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> cycleRunRepository.findTrend("test_table", FROM, TO, ChronoUnit.MINUTES));
+        assertEquals("Period must be hours or days", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void insert_MissingOutcome_ThrowsIllegalArgumentException() {
+        // Arrange
+        CycleRun cycleRun = new CycleRun();
+        cycleRun.setTableName("test_table");
+        cycleRun.setProfile("default");
+        cycleRun.setStrategy("STANDARD");
+        cycleRun.setStartedAt(FROM);
+        cycleRun.setEndedAt(TO);
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> cycleRunRepository.insert(cycleRun));
+        assertEquals("Profile, strategy and outcome cannot be null", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,63 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HashColumnRepositoryImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private HashColumnRepositoryImpl hashColumnRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        hashColumnRepository = new HashColumnRepositoryImpl(jdbcTemplate);
+    }
+
+    @Test
+    void addHashColumn_ValidColumns_AddsPersistedBinaryChecksum() {
+        // Act
+        hashColumnRepository.addHashColumn("test_table", "chgmon_hash", List.of("name", "odd]name"));
+
+        // Assert
+        verify(jdbcTemplate).execute("ALTER TABLE test_table ADD [chgmon_hash] AS BINARY_CHECKSUM([name], [odd]]name]) PERSISTED");
+    }
+
+    @Test
+    void addHashColumn_NoColumns_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            hashColumnRepository.addHashColumn("test_table", "chgmon_hash", List.of());
+        });
+        assertEquals("Hashed columns cannot be null or empty", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void createIndex_ValidNames_IndexesKeyAndHash() {
+        // Act
+        hashColumnRepository.createIndex("test_table", "ix_chgmon_hash", "id", "chgmon_hash");
+
+        // Assert
+        verify(jdbcTemplate).execute("CREATE NONCLUSTERED INDEX [ix_chgmon_hash] ON test_table ([id], [chgmon_hash])");
+    }
+
+    @Test
+    void indexExists_CountsMatchingIndexes() {
+        // Arrange
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sys.indexes WHERE object_id = OBJECT_ID(?) AND name = ?",
+                Integer.class, "test_table", "ix_chgmon_hash")).thenReturn(1);
+
+        // Act & Assert
+        assertTrue(hashColumnRepository.indexExists("test_table", "ix_chgmon_hash"));
+    }
+}
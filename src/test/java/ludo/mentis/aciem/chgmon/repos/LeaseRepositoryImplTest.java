@@ -0,0 +1,74 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LeaseRepositoryImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private LeaseRepositoryImpl leaseRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        leaseRepository = new LeaseRepositoryImpl(jdbcTemplate);
+    }
+
+    @Test
+    void claim_FreeOrExpiredLease_TakesItInOneStatement() {
+        // Arrange
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+
+        // Act
+        boolean claimed = leaseRepository.claim("test_table", 2, "node-a", Duration.ofSeconds(30));
+
+        // Assert
+        assertTrue(claimed);
+        verify(jdbcTemplate).update("UPDATE tb_monitor_lease SET owner = ?, expires_at = DATEADD(millisecond, ?, SYSUTCDATETIME()) " +
+                        "WHERE table_name = ? AND shard = ? AND (owner IS NULL OR owner = ? OR expires_at <= SYSUTCDATETIME())",
+                "node-a", 30000L, "test_table", 2, "node-a");
+    }
+
+    @Test
+    void claim_HeldByAnotherNode_ReturnsFalse() {
+        // Arrange
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(0);
+
+        // Act & Assert
+        assertFalse(leaseRepository.claim("test_table", 2, "node-a", Duration.ofSeconds(30)));
+    }
+
+    @Test
+    void createMissing_RowCreatedByAnotherNode_IsLeftAsIs() {
+        // Arrange
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1).thenThrow(new DuplicateKeyException("pk_monitor_lease"));
+
+        // Act
+        int created = leaseRepository.createMissing("test_table", 2);
+
+        // Assert
+        assertEquals(1, created);
+        verify(jdbcTemplate, times(2)).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void renew_NullOwner_ThrowsIllegalArgumentException() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> leaseRepository.renew("test_table", 0, null, Duration.ofSeconds(30)));
+        assertEquals("Owner cannot be null or empty", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
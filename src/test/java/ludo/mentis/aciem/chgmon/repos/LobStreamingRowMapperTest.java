@@ -0,0 +1,192 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.LobDigest;
+import ludo.mentis.aciem.chgmon.service.ChecksumServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LobStreamingRowMapperTest {
+
+    private static final String DOCUMENT = "São Paulo 💱 ".repeat(3000);
+    private static final byte[] PAYLOAD = new byte[20000];
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Mock
+    private ResultSetMetaData metaData;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        for (int i = 0; i < PAYLOAD.length; i++) {
+            PAYLOAD[i] = (byte) (i * 31);
+        }
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(4);
+        column(1, "id", Types.BIGINT, 19);
+        column(2, "document", Types.NVARCHAR, Integer.MAX_VALUE);
+        column(3, "payload", Types.VARBINARY, Integer.MAX_VALUE);
+        column(4, "ccy", Types.NVARCHAR, 3);
+        when(resultSet.getObject(1)).thenReturn(7L);
+        when(resultSet.getCharacterStream(2)).thenReturn(new StringReader(DOCUMENT));
+        when(resultSet.getBinaryStream(3)).thenReturn(new ByteArrayInputStream(PAYLOAD));
+        when(resultSet.getObject(4)).thenReturn("EUR");
+    }
+
+    private void column(int index, String name, int type, int precision) throws SQLException {
+        when(metaData.getColumnLabel(index)).thenReturn(name);
+        when(metaData.getColumnType(index)).thenReturn(type);
+        when(metaData.getPrecision(index)).thenReturn(precision);
+    }
+
+    @Test
+    void mapRow_LobColumns_StreamsThemIntoDigests() throws SQLException {
+        // Arrange
+        LobStreamingRowMapper mapper = new LobStreamingRowMapper(jdbcTemplate, "test_table", "id", 1024 * 1024);
+
+        // Act
+        Map<String, Object> row = mapper.mapRow(resultSet, 0);
+
+        // Assert
+        byte[] encoded = DOCUMENT.getBytes();
+        assertEquals(new LobDigest(crc(encoded), encoded.length, false), row.get("document"));
+        assertEquals(new LobDigest(crc(PAYLOAD), PAYLOAD.length, false), row.get("payload"));
+        assertEquals("EUR", row.get("ccy"));
+        verify(resultSet, never()).getObject(2);
+        verify(resultSet, never()).getObject(3);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void mapRow_LobColumns_KeepsRowChecksumOfMaterializedValues() throws SQLException {
+        // Arrange
+        LobStreamingRowMapper mapper = new LobStreamingRowMapper(jdbcTemplate, "test_table", "id", 1024 * 1024);
+        ChecksumServiceImpl checksumService = new ChecksumServiceImpl();
+        Map<String, Object> materialized = new LinkedHashMap<>();
+        materialized.put("id", 7L);
+        materialized.put("document", DOCUMENT);
+        materialized.put("payload", PAYLOAD);
+        materialized.put("ccy", "EUR");
+
+        // Act
+        Map<String, Object> row = mapper.mapRow(resultSet, 0);
+
+        // Assert
+        assertEquals(checksumService.calculate(materialized), checksumService.calculate(row));
+    }
+
+    @Test
+    void mapRow_LobAboveMaxSize_HashesOnServerAfterTheScan() throws SQLException {
+        // Arrange
+        LobStreamingRowMapper mapper = new LobStreamingRowMapper(jdbcTemplate, "test_table", "id", 10000);
+        byte[] hash = new byte[32];
+        serverHashes(Map.of(7L, hash, 8L, hash));
+
+        // Act: the second row has the same values under another key
+        Map<String, Object> first = mapper.mapRow(resultSet, 0);
+        when(resultSet.getObject(1)).thenReturn(8L);
+        when(resultSet.getCharacterStream(2)).thenReturn(new StringReader(DOCUMENT));
+        when(resultSet.getBinaryStream(3)).thenReturn(new ByteArrayInputStream(PAYLOAD));
+        Map<String, Object> second = mapper.mapRow(resultSet, 1);
+
+        // Assert: nothing is sent while the scan is open, then one query per column
+        verifyNoInteractions(jdbcTemplate);
+        assertNull(first.get("document"));
+        mapper.hashOversized();
+        assertEquals(new LobDigest(crc(hash), 32, true), first.get("document"));
+        assertEquals(new LobDigest(crc(hash), 32, true), first.get("payload"));
+        assertEquals(new LobDigest(crc(hash), 32, true), second.get("payload"));
+        verify(jdbcTemplate).query(eq("SELECT id, HASHBYTES('SHA2_256', [document]) FROM test_table WHERE id IN (?, ?)"),
+                any(RowCallbackHandler.class), eq(7L), eq(8L));
+        verify(jdbcTemplate).query(eq("SELECT id, HASHBYTES('SHA2_256', [payload]) FROM test_table WHERE id IN (?, ?)"),
+                any(RowCallbackHandler.class), eq(7L), eq(8L));
+    }
+
+    @Test
+    void mapRow_XmlAboveMaxSize_ConvertsBeforeHashing() throws SQLException {
+        // Arrange
+        when(metaData.getColumnTypeName(2)).thenReturn("xml");
+        LobStreamingRowMapper mapper = new LobStreamingRowMapper(jdbcTemplate, "test_table", "id", 10000);
+        serverHashes(Map.of(7L, new byte[32]));
+
+        // Act
+        mapper.mapRow(resultSet, 0);
+        mapper.hashOversized();
+
+        // Assert
+        verify(jdbcTemplate).query(eq("SELECT id, HASHBYTES('SHA2_256', CONVERT(nvarchar(max), [document])) FROM test_table WHERE id IN (?)"),
+                any(RowCallbackHandler.class), eq(7L));
+    }
+
+    @Test
+    void hashExpression_LegacyTypes_AreConverted() {
+        assertEquals("[payload]", LobStreamingRowMapper.hashExpression("payload", "varbinary"));
+        assertEquals("CONVERT(varchar(max), [notes])", LobStreamingRowMapper.hashExpression("notes", "text"));
+        assertEquals("CONVERT(varbinary(max), [scan])", LobStreamingRowMapper.hashExpression("scan", "image"));
+    }
+
+    // Answers the HASHBYTES queries with the given hash per key
+    private void serverHashes(Map<Long, byte[]> hashes) throws SQLException {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (int i = 2; i < invocation.getArguments().length; i++) {
+                Object primaryKey = invocation.getArguments()[i];
+                ResultSet row = mock(ResultSet.class);
+                when(row.getObject(1)).thenReturn(primaryKey);
+                when(row.getBytes(2)).thenReturn(hashes.get(primaryKey));
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    @Test
+    void mapRow_NullLob_MapsToNull() throws SQLException {
+        // Arrange
+        when(resultSet.getCharacterStream(2)).thenReturn(null);
+        LobStreamingRowMapper mapper = new LobStreamingRowMapper(jdbcTemplate, "test_table", "id", 1024 * 1024);
+
+        // Act
+        Map<String, Object> row = mapper.mapRow(resultSet, 0);
+
+        // Assert
+        assertTrue(row.containsKey("document"));
+        assertNull(row.get("document"));
+    }
+
+    @Test
+    void isLob_BoundedTypes_AreReadAsUsual() {
+        assertFalse(LobStreamingRowMapper.isCharacterLob(Types.NVARCHAR, 4000));
+        assertFalse(LobStreamingRowMapper.isBinaryLob(Types.VARBINARY, 8000));
+        assertTrue(LobStreamingRowMapper.isCharacterLob(Types.LONGNVARCHAR, 0));
+        assertTrue(LobStreamingRowMapper.isBinaryLob(Types.LONGVARBINARY, 0));
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return crc32.getValue();
+    }
+}
@@ -1,14 +1,22 @@
 package ludo.mentis.aciem.chgmon.repos;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import ludo.mentis.aciem.chgmon.model.BucketChecksum;
 import ludo.mentis.aciem.chgmon.model.TableChecksum;
+import ludo.mentis.aciem.chgmon.service.CycleContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -28,7 +36,22 @@ class MonitorRepositoryImplTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        monitorRepository = new MonitorRepositoryImpl(jdbcTemplate);
+        monitorRepository = new MonitorRepositoryImpl(jdbcTemplate, 1024);
+    }
+
+    // Records every repository call, whatever its duration
+    private static List<RecordedEvent> recordDatabaseCalls(Runnable calls) throws Exception {
+        Path file = Files.createTempFile("chgmon", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("chgmon.DatabaseCall").withThreshold(Duration.ZERO);
+            recording.start();
+            calls.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        return events.stream().filter(e -> e.getEventType().getName().equals("chgmon.DatabaseCall")).toList();
     }
 
     @Test
@@ -47,7 +70,7 @@ class MonitorRepositoryImplTest {
         row2.put("name", "Test 2");
         expectedRows.add(row2);
         
-        when(jdbcTemplate.queryForList(anyString())).thenReturn(expectedRows);
+        when(jdbcTemplate.query(anyString(), any(LobStreamingRowMapper.class))).thenReturn(expectedRows);
 
         // Act
         List<Map<String, Object>> result = monitorRepository.findAll(tableName, primaryKeyName);
@@ -56,7 +79,7 @@ class MonitorRepositoryImplTest {
         assertNotNull(result);
         assertEquals(2, result.size());
         assertEquals(expectedRows, result);
-        verify(jdbcTemplate).queryForList("SELECT * FROM test_table ORDER BY id");
+        verify(jdbcTemplate).query(eq("SELECT * FROM test_table ORDER BY id"), any(LobStreamingRowMapper.class));
     }
 
     @Test
@@ -70,7 +93,7 @@ class MonitorRepositoryImplTest {
             monitorRepository.findAll(tableName, primaryKeyName);
         });
         assertEquals("Table name cannot be null or empty", exception.getMessage());
-        verify(jdbcTemplate, never()).queryForList(anyString());
+        verifyNoInteractions(jdbcTemplate);
     }
 
     @Test
@@ -84,7 +107,7 @@ class MonitorRepositoryImplTest {
             monitorRepository.findAll(tableName, primaryKeyName);
         });
         assertEquals("Table name cannot be null or empty", exception.getMessage());
-        verify(jdbcTemplate, never()).queryForList(anyString());
+        verifyNoInteractions(jdbcTemplate);
     }
 
     @Test
@@ -98,7 +121,7 @@ class MonitorRepositoryImplTest {
             monitorRepository.findAll(tableName, primaryKeyName);
         });
         assertEquals("Primary key name cannot be null or empty", exception.getMessage());
-        verify(jdbcTemplate, never()).queryForList(anyString());
+        verifyNoInteractions(jdbcTemplate);
     }
 
     @Test
@@ -112,67 +135,297 @@ class MonitorRepositoryImplTest {
             monitorRepository.findAll(tableName, primaryKeyName);
         });
         assertEquals("Primary key name cannot be null or empty", exception.getMessage());
-        verify(jdbcTemplate, never()).queryForList(anyString());
+        verifyNoInteractions(jdbcTemplate);
     }
 
     @Test
-    void findDeletedRows_RecordExists_ReturnsTableChecksum() {
-        // Arrange
+    @SuppressWarnings("unchecked")
+    void findDeletedRows_SeveralRowsDeleted_ReturnsEachOfThem() throws Exception {
+        // Arrange: two baseline rows whose keys are gone from the table
         String tableName = "test_table";
         String primaryKeyName = "id";
-        
-        // Create expected TableChecksum
-        TableChecksum expectedTableChecksum = new TableChecksum();
-        expectedTableChecksum.setId(1);
-        expectedTableChecksum.setTableName(tableName);
-        expectedTableChecksum.setPrimaryKey(123L);
-        expectedTableChecksum.setCrc32(456L);
-        
-        // Mock the queryForObject method to return the expected TableChecksum
-        when(jdbcTemplate.queryForObject(
-                anyString(),
-                any(RowMapper.class)
-        )).thenReturn(expectedTableChecksum);
-        
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getInt("id_table_checksum")).thenReturn(1, 2);
+        when(resultSet.getString("table_name")).thenReturn(tableName);
+        when(resultSet.getLong("primary_key")).thenReturn(123L, 124L);
+        when(resultSet.getLong("crc32")).thenReturn(456L, 457L);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenAnswer(invocation -> {
+            RowMapper<TableChecksum> rowMapper = invocation.getArgument(1);
+            return List.of(rowMapper.mapRow(resultSet, 0), rowMapper.mapRow(resultSet, 1));
+        });
+
         // Act
-        TableChecksum result = monitorRepository.findDeletedRows(tableName, primaryKeyName);
-        
+        List<TableChecksum> result = monitorRepository.findDeletedRows(tableName, primaryKeyName);
+
         // Assert
-        assertNotNull(result);
-        assertEquals(expectedTableChecksum.getId(), result.getId());
-        assertEquals(expectedTableChecksum.getTableName(), result.getTableName());
-        assertEquals(expectedTableChecksum.getPrimaryKey(), result.getPrimaryKey());
-        assertEquals(expectedTableChecksum.getCrc32(), result.getCrc32());
-        
-        // Verify the SQL query format
-        verify(jdbcTemplate).queryForObject(
-                contains("SELECT * FROM tb_table_checksum WHERE table_name = '" + tableName + "' AND primary_key NOT IN (SELECT " + primaryKeyName + " FROM " + tableName + ")"),
+        assertEquals(2, result.size());
+        assertEquals(123L, result.get(0).getPrimaryKey());
+        assertEquals(456L, result.get(0).getCrc32());
+        assertEquals(tableName, result.get(0).getTableName());
+        assertEquals(2, result.get(1).getId());
+        assertEquals(124L, result.get(1).getPrimaryKey());
+        verify(jdbcTemplate).query(
+                eq("SELECT * FROM tb_table_checksum WHERE table_name = '" + tableName + "' AND primary_key NOT IN (SELECT " + primaryKeyName + " FROM " + tableName + ")"),
                 any(RowMapper.class)
         );
     }
-    
+
     @Test
-    void findDeletedRows_NoRecordFound_ReturnsNull() {
+    @SuppressWarnings("unchecked")
+    void findDeletedRows_NoRowDeleted_ReturnsEmptyList() {
         // Arrange
-        String tableName = "test_table";
-        String primaryKeyName = "id";
-        
-        // Mock the queryForObject method to throw EmptyResultDataAccessException
-        when(jdbcTemplate.queryForObject(
-                anyString(),
-                any(RowMapper.class)
-        )).thenThrow(new EmptyResultDataAccessException(1));
-        
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of());
+
         // Act
-        TableChecksum result = monitorRepository.findDeletedRows(tableName, primaryKeyName);
-        
+        List<TableChecksum> result = monitorRepository.findDeletedRows("test_table", "id");
+
         // Assert
-        assertNull(result);
-        
-        // Verify the SQL query format
-        verify(jdbcTemplate).queryForObject(
-                contains("SELECT * FROM tb_table_checksum WHERE table_name = '" + tableName + "' AND primary_key NOT IN (SELECT " + primaryKeyName + " FROM " + tableName + ")"),
-                any(RowMapper.class)
-        );
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void findHashes_ValidParameters_SelectsOnlyKeyAndHash() {
+        // Arrange
+        List<Map<String, Object>> expectedRows = List.of(Map.of("id", 1L, "chgmon_hash", 42));
+        when(jdbcTemplate.queryForList(anyString())).thenReturn(expectedRows);
+
+        // Act
+        List<Map<String, Object>> result = monitorRepository.findHashes("test_table", "id", "chgmon_hash");
+
+        // Assert
+        assertEquals(expectedRows, result);
+        verify(jdbcTemplate).queryForList("SELECT id, chgmon_hash FROM test_table ORDER BY id");
+    }
+
+    @Test
+    void findHashes_EmptyHashColumnName_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            monitorRepository.findHashes("test_table", "id", " ");
+        });
+        assertEquals("Hash column name cannot be null or empty", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void findAll_WithRanges_FiltersByPrimaryKeyRanges() {
+        // Arrange
+        List<ludo.mentis.aciem.chgmon.model.PkRange> ranges = List.of(
+                new ludo.mentis.aciem.chgmon.model.PkRange(0, 99), new ludo.mentis.aciem.chgmon.model.PkRange(500, 599));
+        when(jdbcTemplate.query(anyString(), any(LobStreamingRowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        // Act
+        monitorRepository.findAll("test_table", "id", ranges);
+
+        // Assert
+        verify(jdbcTemplate).query(eq("SELECT * FROM test_table WHERE (id BETWEEN ? AND ?) OR (id BETWEEN ? AND ?) ORDER BY id"),
+                any(LobStreamingRowMapper.class), eq(0L), eq(99L), eq(500L), eq(599L));
+    }
+
+    @Test
+    void findHashes_ThousandsOfRanges_SplitsUnderParameterLimit() {
+        // Arrange: 2500 disjoint buckets, as a light cycle may plan on a large table
+        List<ludo.mentis.aciem.chgmon.model.PkRange> ranges = new ArrayList<>();
+        for (long i = 2499; i >= 0; i--) {
+            ranges.add(new ludo.mentis.aciem.chgmon.model.PkRange(i * 10, i * 10 + 4));
+        }
+        List<Object[]> arguments = new ArrayList<>();
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] batch = java.util.Arrays.copyOfRange(invocation.getArguments(), 1, invocation.getArguments().length);
+            arguments.add(batch);
+            return List.of(Map.<String, Object>of("id", batch[0]));
+        });
+
+        // Act
+        List<Map<String, Object>> result = monitorRepository.findHashes("test_table", "id", "row_hash", ranges);
+
+        // Assert
+        assertEquals(5, arguments.size());
+        assertTrue(arguments.stream().allMatch(batch -> batch.length <= 2 * MonitorRepositoryImpl.MAX_RANGES_PER_QUERY));
+        assertEquals(List.of(0L, 5000L, 10000L, 15000L, 20000L), result.stream().map(row -> row.get("id")).toList());
+    }
+
+    @Test
+    void rangeBatches_OverlappingAndAdjacentRanges_AreJoined() {
+        List<List<ludo.mentis.aciem.chgmon.model.PkRange>> batches = MonitorRepositoryImpl.rangeBatches(List.of(
+                new ludo.mentis.aciem.chgmon.model.PkRange(50, 60),
+                new ludo.mentis.aciem.chgmon.model.PkRange(0, 9),
+                new ludo.mentis.aciem.chgmon.model.PkRange(10, 20),
+                new ludo.mentis.aciem.chgmon.model.PkRange(55, 58)));
+
+        assertEquals(List.of(List.of(new ludo.mentis.aciem.chgmon.model.PkRange(0, 20), new ludo.mentis.aciem.chgmon.model.PkRange(50, 60))), batches);
+    }
+
+    @Test
+    void findAll_EmptyRanges_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            monitorRepository.findAll("test_table", "id", List.of());
+        });
+        assertEquals("Primary key ranges cannot be null or empty", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void findKeyBounds_ValidParameters_ReadsMinAndMax() {
+        // Arrange
+        ludo.mentis.aciem.chgmon.model.PkRange bounds = new ludo.mentis.aciem.chgmon.model.PkRange(1, 10);
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class))).thenReturn(bounds);
+
+        // Act
+        ludo.mentis.aciem.chgmon.model.PkRange result = monitorRepository.findKeyBounds("test_table", "id");
+
+        // Assert
+        assertEquals(bounds, result);
+        verify(jdbcTemplate).queryForObject(eq("SELECT MIN(id) AS min_key, MAX(id) AS max_key FROM test_table"), any(RowMapper.class));
+    }
+
+    @Test
+    void findByPrimaryKeys_ValidParameters_ReadsKeysWithOneInList() {
+        // Arrange
+        when(jdbcTemplate.query(anyString(), any(LobStreamingRowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        // Act
+        monitorRepository.findByPrimaryKeys("test_table", "id", null, null, List.of(3L, 7L, 9L));
+
+        // Assert
+        verify(jdbcTemplate).query(eq("SELECT * FROM test_table WHERE id IN (?, ?, ?) ORDER BY id"),
+                any(LobStreamingRowMapper.class), eq(3L), eq(7L), eq(9L));
+    }
+
+    @Test
+    void findByPrimaryKeys_EmptyKeys_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            monitorRepository.findByPrimaryKeys("test_table", "id", null, null, List.of());
+        });
+        assertEquals("Primary keys cannot be null or empty", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void findPrimaryKeys_ValidParameters_InlinesPredicate() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class))).thenReturn(List.of(1L, 2L));
+
+        // Act
+        List<Long> result = monitorRepository.findPrimaryKeys("test_table", "id", "status = 'OPEN'");
+
+        // Assert
+        assertEquals(List.of(1L, 2L), result);
+        verify(jdbcTemplate).queryForList("SELECT id FROM test_table WHERE status = 'OPEN' ORDER BY id", Long.class);
+    }
+
+    @Test
+    void findAll_WithFilterAndRanges_PushesBothDown() {
+        // Arrange
+        List<ludo.mentis.aciem.chgmon.model.PkRange> ranges = List.of(new ludo.mentis.aciem.chgmon.model.PkRange(0, 99));
+        when(jdbcTemplate.query(anyString(), any(LobStreamingRowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        // Act
+        monitorRepository.findAll("test_table", "id", null, "trade_date >= '2024-01-01'", ranges);
+
+        // Assert
+        verify(jdbcTemplate).query(eq("SELECT * FROM test_table WHERE (trade_date >= '2024-01-01') AND ((id BETWEEN ? AND ?)) ORDER BY id"),
+                any(LobStreamingRowMapper.class), eq(0L), eq(99L));
+    }
+
+    @Test
+    void findAll_WithFilterOnly_ReadsWholeScope() {
+        // Arrange
+        when(jdbcTemplate.query(anyString(), any(LobStreamingRowMapper.class))).thenReturn(List.of());
+
+        // Act
+        monitorRepository.findAll("test_table", "id", null, "status = 'OPEN'", null);
+
+        // Assert
+        verify(jdbcTemplate).query(eq("SELECT * FROM test_table WHERE status = 'OPEN' ORDER BY id"), any(LobStreamingRowMapper.class));
+    }
+
+    @Test
+    void findExistingKeys_ValidParameters_IgnoresScope() {
+        // Arrange
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class))).thenReturn(List.of(2L));
+
+        // Act
+        List<Long> result = monitorRepository.findExistingKeys("test_table", "id", List.of(2L, 3L));
+
+        // Assert
+        assertEquals(List.of(2L), result);
+        verify(jdbcTemplate).queryForList("SELECT id FROM test_table WHERE id IN (?, ?) ORDER BY id", Long.class, 2L, 3L);
+    }
+
+    @Test
+    void findAll_WithColumns_SelectsOnlyThem() {
+        // Arrange
+        when(jdbcTemplate.query(anyString(), any(LobStreamingRowMapper.class))).thenReturn(List.of());
+
+        // Act
+        monitorRepository.findAll("test_table", "id", List.of("id", "amount", "odd]name"), null, null);
+
+        // Assert
+        verify(jdbcTemplate).query(eq("SELECT [id], [amount], [odd]]name] FROM test_table ORDER BY id"), any(LobStreamingRowMapper.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findBucketChecksums_ValidParameters_AggregatesOnTheServer() {
+        // Arrange
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of());
+
+        // Act
+        monitorRepository.findBucketChecksums("test_table", "id", 1000, List.of("id", "amount"), "status = 'OPEN'");
+
+        // Assert
+        verify(jdbcTemplate).query(eq("SELECT bucket, CHECKSUM_AGG(row_checksum) AS bucket_checksum, COUNT_BIG(*) AS row_count "
+                + "FROM (SELECT CASE WHEN id >= 0 THEN id / 1000 ELSE (id + 1) / 1000 - 1 END AS bucket, "
+                + "BINARY_CHECKSUM([id], [amount]) AS row_checksum FROM test_table WHERE status = 'OPEN') AS row_checksums "
+                + "GROUP BY bucket ORDER BY bucket"), any(RowMapper.class));
+    }
+
+    @Test
+    void findAll_CycleWithParallelism_AddsMaxdopHint() {
+        // Arrange
+        when(jdbcTemplate.query(anyString(), any(LobStreamingRowMapper.class))).thenReturn(List.of());
+
+        // Act
+        try (CycleContext ignored = CycleContext.open("test_table", null, null, 0, 2)) {
+            monitorRepository.findAll("test_table", "id");
+        }
+
+        // Assert
+        verify(jdbcTemplate).query(eq("SELECT * FROM test_table ORDER BY id OPTION (MAXDOP 2)"), any(LobStreamingRowMapper.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flightRecording_EveryRead_RecordsItsRowsAndBytes() throws Exception {
+        // Arrange
+        Map<String, Object> row3 = new HashMap<>();
+        row3.put("id", 3L);
+        row3.put("name", "abcd");
+        row3.put("payload", new byte[10]);
+        Map<String, Object> row7 = new HashMap<>();
+        row7.put("id", 7L);
+        row7.put("name", null);
+        when(jdbcTemplate.query(anyString(), any(LobStreamingRowMapper.class), any(Object[].class))).thenReturn(List.of(row3, row7));
+        when(jdbcTemplate.queryForList(anyString(), any(Object[].class))).thenReturn(List.of(Map.of("id", 3L, "chgmon_hash", 42)));
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class)))
+                .thenReturn(List.of(new TableChecksum(), new TableChecksum()))
+                .thenReturn(List.of(new BucketChecksum(0, 1, 2)));
+
+        // Act
+        List<RecordedEvent> events = recordDatabaseCalls(() -> {
+            monitorRepository.findByPrimaryKeys("test_table", "id", null, null, List.of(3L, 7L));
+            monitorRepository.findHashesByPrimaryKeys("test_table", "id", "chgmon_hash", null, List.of(3L));
+            monitorRepository.findDeletedRows("test_table", "id");
+            monitorRepository.findBucketChecksums("test_table", "id", 1000, null, null);
+        });
+
+        // Assert
+        assertEquals(List.of("findByPrimaryKeys", "findHashesByPrimaryKeys", "findDeletedRows", "findBucketChecksums"),
+                events.stream().map(e -> e.getString("operation")).toList());
+        assertEquals(List.of(2L, 1L, 2L, 1L), events.stream().map(e -> e.getLong("rows")).toList());
+        // Two bigint keys, four characters and ten bytes; a bigint and an int; two records of an int, a bigint,
+        // a bigint and ten characters; a bigint, an int and a bigint
+        assertEquals(List.of(30L, 12L, 60L, 20L), events.stream().map(e -> e.getLong("bytes")).toList());
+        events.forEach(e -> assertEquals("test_table", e.getString("table")));
     }
-}
\ No newline at end of file
+}
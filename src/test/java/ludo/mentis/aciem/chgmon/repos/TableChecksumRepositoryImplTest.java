@@ -12,6 +12,8 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -204,6 +206,22 @@ class TableChecksumRepositoryImplTest {
         verify(jdbcTemplate, never()).queryForObject(anyString(), any(RowMapper.class), any(), any());
     }
 
+    @Test
+    void findByTableNameAndPrimaryKeys_ValidKeys_ReadsThemWithOneInList() {
+        // Arrange
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        // Act
+        tableChecksumRepository.findByTableNameAndPrimaryKeys("test_table", List.of(1L, 2L));
+
+        // Assert
+        verify(jdbcTemplate).query(
+                eq("SELECT id_table_checksum, table_name, primary_key, crc32 FROM tb_table_checksum WHERE table_name = ? AND primary_key IN (?, ?) ORDER BY primary_key"),
+                any(RowMapper.class),
+                eq("test_table"), eq(1L), eq(2L)
+        );
+    }
+
     @Test
     void update_ValidTableChecksum_ReturnsTrue() {
         // Arrange
@@ -360,4 +378,54 @@ class TableChecksumRepositoryImplTest {
         assertEquals("CRC32 cannot be null", exception.getMessage());
         verify(jdbcTemplate, never()).update(anyString(), any(), any(), any(), any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateBatch_ValidChecksums_SendsOneBatch() {
+        // Arrange
+        TableChecksum tableChecksum1 = new TableChecksum();
+        tableChecksum1.setId(1);
+        tableChecksum1.setCrc32(111L);
+        TableChecksum tableChecksum2 = new TableChecksum();
+        tableChecksum2.setId(2);
+        tableChecksum2.setCrc32(222L);
+        java.util.List<TableChecksum> tableChecksums = java.util.List.of(tableChecksum1, tableChecksum2);
+
+        when(jdbcTemplate.batchUpdate(anyString(), eq(tableChecksums), eq(2), any(org.springframework.jdbc.core.ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[][]{{1, java.sql.Statement.SUCCESS_NO_INFO}});
+
+        // Act
+        int result = tableChecksumRepository.updateBatch(tableChecksums);
+
+        // Assert
+        assertEquals(2, result);
+        verify(jdbcTemplate).batchUpdate(eq("UPDATE tb_table_checksum SET crc32 = ?, column_hashes = ? WHERE id_table_checksum = ?"),
+                eq(tableChecksums), eq(2), any(org.springframework.jdbc.core.ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void updateBatch_ChecksumWithoutId_ThrowsIllegalArgumentException() {
+        // Arrange
+        TableChecksum tableChecksum = new TableChecksum();
+        tableChecksum.setCrc32(111L);
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            tableChecksumRepository.updateBatch(java.util.List.of(tableChecksum));
+        });
+        assertEquals("TableChecksum ID cannot be null", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void deleteByTableNameAndPrimaryKeys_ValidKeys_DeletesThemWithOneInList() {
+        // Arrange
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(2);
+
+        // Act
+        int result = tableChecksumRepository.deleteByTableNameAndPrimaryKeys("test_table", List.of(1L, 2L));
+
+        // Assert
+        assertEquals(2, result);
+        verify(jdbcTemplate).update("DELETE FROM tb_table_checksum WHERE table_name = ? AND primary_key IN (?, ?)", "test_table", 1L, 2L);
+    }
+}
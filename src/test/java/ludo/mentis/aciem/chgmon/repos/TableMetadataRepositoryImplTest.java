@@ -0,0 +1,112 @@
+package ludo.mentis.aciem.chgmon.repos;
+
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import ludo.mentis.aciem.chgmon.model.TableSchema;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TableMetadataRepositoryImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private TableMetadataRepositoryImpl tableMetadataRepository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tableMetadataRepository = new TableMetadataRepositoryImpl(jdbcTemplate);
+    }
+
+    private static TableSchema schema() {
+        return new TableSchema("test_table", LocalDateTime.of(2024, 1, 1, 9, 0),
+                List.of(new TableColumn("id", "bigint"), new TableColumn("name", "nvarchar(50)")));
+    }
+
+    @Test
+    void findModifyDate_UnknownTable_ReturnsNull() {
+        // Arrange
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("test_table"))).thenReturn(List.of());
+
+        // Act & Assert
+        assertNull(tableMetadataRepository.findModifyDate("test_table"));
+        verify(jdbcTemplate).query(eq("SELECT modify_date FROM sys.objects WHERE object_id = OBJECT_ID(?)"), any(RowMapper.class), eq("test_table"));
+    }
+
+    @Test
+    void findColumns_EmptyTableName_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            tableMetadataRepository.findColumns("");
+        });
+        assertEquals("Table name cannot be null or empty", exception.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void save_ExistingSchema_UpdatesInPlace() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("UPDATE tb_table_schema"), any(), any(), any())).thenReturn(1);
+
+        // Act
+        tableMetadataRepository.save(schema());
+
+        // Assert
+        verify(jdbcTemplate).update(startsWith("UPDATE tb_table_schema"), any(), eq("id\tbigint\nname\tnvarchar(50)\n"), eq("test_table"));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT"), any(), any(), any());
+    }
+
+    @Test
+    void save_NewSchema_Inserts() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("UPDATE tb_table_schema"), any(), any(), any())).thenReturn(0);
+
+        // Act
+        tableMetadataRepository.save(schema());
+
+        // Assert
+        verify(jdbcTemplate).update(startsWith("INSERT INTO tb_table_schema"), eq("test_table"), any(), eq("id\tbigint\nname\tnvarchar(50)\n"));
+    }
+
+    @Test
+    void save_CentralStore_WritesSchemaToStoreAndReadsCatalogFromSource() {
+        // Arrange
+        JdbcTemplate storeJdbcTemplate = mock(JdbcTemplate.class);
+        TableMetadataRepositoryImpl repository = new TableMetadataRepositoryImpl(jdbcTemplate, storeJdbcTemplate);
+        when(storeJdbcTemplate.update(startsWith("UPDATE tb_table_schema"), any(), any(), any())).thenReturn(1);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("test_table"))).thenReturn(List.of());
+
+        // Act
+        repository.save(schema());
+        repository.findModifyDate("test_table");
+
+        // Assert
+        verify(storeJdbcTemplate).update(startsWith("UPDATE tb_table_schema"), any(), any(), eq("test_table"));
+        verify(jdbcTemplate, never()).update(anyString(), any(), any(), any());
+        verify(jdbcTemplate).query(eq("SELECT modify_date FROM sys.objects WHERE object_id = OBJECT_ID(?)"), any(RowMapper.class), eq("test_table"));
+        verify(storeJdbcTemplate, never()).query(anyString(), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void save_NullColumns_ThrowsIllegalArgumentException() {
+        // Arrange
+        TableSchema schema = schema();
+        schema.setColumns(null);
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+            tableMetadataRepository.save(schema);
+        });
+        assertEquals("Columns cannot be null", exception.getMessage());
+    }
+}
@@ -0,0 +1,199 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.Audit;
+import ludo.mentis.aciem.chgmon.model.ChangeType;
+import ludo.mentis.aciem.chgmon.repos.AuditRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AuditWriterImplTest {
+
+    @Mock
+    private AuditRepository auditRepository;
+
+    @Mock
+    private ChangeLog changeLog;
+
+    private MonitorProperties monitorProperties;
+
+    private AuditWriterImpl auditWriter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        monitorProperties = new MonitorProperties();
+        monitorProperties.getAuditWriter().setBatchSize(3);
+        monitorProperties.getAuditWriter().setQueueCapacity(4);
+        monitorProperties.getAuditWriter().setFlushInterval(Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (auditWriter != null) {
+            auditWriter.close();
+        }
+    }
+
+    private static Audit audit(long primaryKey) {
+        Audit audit = new Audit();
+        audit.setTableName("test_table");
+        audit.setPrimaryKey(primaryKey);
+        audit.setChangeType(ChangeType.UPDATE);
+        audit.setChangeDate(LocalDateTime.now());
+        return audit;
+    }
+
+    @Test
+    void write_Synchronous_InsertsInline() {
+        // Arrange
+        monitorProperties.getAuditWriter().setAsync(false);
+        auditWriter = new AuditWriterImpl(auditRepository, changeLog, monitorProperties);
+        Audit audit = audit(1L);
+
+        // Act
+        auditWriter.write(audit);
+
+        // Assert
+        verify(auditRepository).insert(audit);
+        verify(auditRepository, never()).insertBatch(anyList());
+        assertEquals(1, auditWriter.getWrittenCount());
+    }
+
+    @Test
+    void flush_Asynchronous_WritesQueuedAuditsInBatches() {
+        // Arrange
+        List<Integer> batchSizes = new ArrayList<>();
+        when(auditRepository.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<Audit> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            return batch.size();
+        });
+        auditWriter = new AuditWriterImpl(auditRepository, changeLog, monitorProperties);
+
+        // Act
+        for (long i = 1; i <= 7; i++) {
+            auditWriter.write(audit(i));
+        }
+        auditWriter.flush();
+
+        // Assert
+        assertEquals(7, auditWriter.getWrittenCount());
+        assertEquals(7, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 3), "Batches must not exceed the batch size");
+        assertEquals(0, auditWriter.getQueueDepth());
+        assertTrue(auditWriter.getFlushCount() >= 3);
+        verify(auditRepository, never()).insert(any());
+    }
+
+    @Test
+    void write_QueueFull_BlocksUntilTheFlusherCatchesUp() throws Exception {
+        // Arrange: the first batch hangs until released, so the queue fills up behind it
+        CountDownLatch release = new CountDownLatch(1);
+        when(auditRepository.insertBatch(anyList())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return ((List<?>) invocation.getArgument(0)).size();
+        });
+        auditWriter = new AuditWriterImpl(auditRepository, changeLog, monitorProperties);
+
+        // Act
+        Thread producer = new Thread(() -> {
+            for (long i = 1; i <= 10; i++) {
+                auditWriter.write(audit(i));
+            }
+        });
+        producer.start();
+        producer.join(300);
+
+        // Assert
+        assertTrue(producer.isAlive(), "Producer should be held back by the full queue");
+        assertTrue(auditWriter.getQueueDepth() <= 4);
+        assertTrue(auditWriter.getBackpressureCount() > 0);
+
+        release.countDown();
+        producer.join(5000);
+        auditWriter.flush();
+        assertFalse(producer.isAlive());
+        assertEquals(10, auditWriter.getWrittenCount());
+    }
+
+    @Test
+    void write_BatchFails_RetriesOneByOne() {
+        // Arrange
+        when(auditRepository.insertBatch(anyList())).thenThrow(new IllegalStateException("boom"));
+        when(auditRepository.insert(argThat(a -> a.getPrimaryKey() == 2L))).thenThrow(new IllegalStateException("bad row"));
+        auditWriter = new AuditWriterImpl(auditRepository, changeLog, monitorProperties);
+
+        // Act
+        auditWriter.write(audit(1L));
+        auditWriter.write(audit(2L));
+        auditWriter.flush();
+
+        // Assert
+        assertEquals(1, auditWriter.getWrittenCount());
+        assertEquals(1, auditWriter.getFailedCount());
+    }
+
+    @Test
+    void write_ChangeLogEnabled_AppendsTheAuditsWritten() {
+        // Arrange
+        when(changeLog.isEnabled()).thenReturn(true);
+        when(auditRepository.insertBatch(anyList())).thenThrow(new IllegalStateException("boom"));
+        when(auditRepository.insert(argThat(a -> a.getPrimaryKey() == 2L))).thenThrow(new IllegalStateException("bad row"));
+        monitorProperties.getAuditWriter().setBatchSize(100);
+        monitorProperties.getAuditWriter().setQueueCapacity(100);
+        auditWriter = new AuditWriterImpl(auditRepository, changeLog, monitorProperties);
+        List<Long> appended = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<Audit> audits = invocation.getArgument(0);
+            audits.forEach(audit -> appended.add(audit.getPrimaryKey()));
+            return null;
+        }).when(changeLog).append(anyList());
+
+        // Act
+        auditWriter.write(audit(1L));
+        auditWriter.write(audit(2L));
+        auditWriter.write(audit(3L));
+        auditWriter.flush();
+
+        // Assert: the audit that failed is not in the log
+        assertEquals(List.of(1L, 3L), appended);
+        verify(changeLog).flush();
+    }
+
+    @Test
+    void close_PendingAudits_AreWrittenBeforeShutdown() {
+        // Arrange
+        when(auditRepository.insertBatch(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        monitorProperties.getAuditWriter().setFlushInterval(Duration.ofSeconds(30));
+        monitorProperties.getAuditWriter().setBatchSize(100);
+        monitorProperties.getAuditWriter().setQueueCapacity(100);
+        auditWriter = new AuditWriterImpl(auditRepository, changeLog, monitorProperties);
+        auditWriter.write(audit(1L));
+        auditWriter.write(audit(2L));
+
+        // Act
+        auditWriter.close();
+
+        // Assert
+        assertEquals(2, auditWriter.getWrittenCount());
+
+        // After shutdown, audits are written inline
+        auditWriter.write(audit(3L));
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 3L));
+    }
+}
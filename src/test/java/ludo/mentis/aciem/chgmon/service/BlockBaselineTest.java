@@ -0,0 +1,158 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.ChecksumBlock;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockBaselineTest {
+
+    private static final String TABLE_NAME = "test_table";
+
+    private static List<ChecksumBlock> blocksOf(long rangeSize, long... keysAndChecksums) {
+        BlockBaseline seed = new BlockBaseline(TABLE_NAME, rangeSize, List.of());
+        for (int i = 0; i < keysAndChecksums.length; i += 2) {
+            seed.put(keysAndChecksums[i], keysAndChecksums[i + 1]);
+        }
+        seed.finish();
+        return seed.getChangedBlocks();
+    }
+
+    @Test
+    void put_NewRows_PacksOneBlockPerRange() {
+        List<ChecksumBlock> blocks = blocksOf(10, 1, 11, 2, 12, 15, 25);
+
+        assertEquals(2, blocks.size());
+        assertEquals(0L, blocks.get(0).getRangeStart());
+        assertEquals(9L, blocks.get(0).getRangeEnd());
+        assertEquals(2, blocks.get(0).getRowCount());
+        assertEquals(10L, blocks.get(1).getRangeStart());
+        assertEquals(1, blocks.get(1).getRowCount());
+    }
+
+    @Test
+    void find_UnchangedRows_DoesNotRewriteBlocks() {
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 10, blocksOf(10, 1, 11, 15, 25));
+
+        assertEquals(11L, baseline.find(1));
+        assertEquals(25L, baseline.find(15));
+        baseline.put(15, 25);
+
+        assertTrue(baseline.finish().isEmpty());
+        assertTrue(baseline.getChangedBlocks().isEmpty());
+    }
+
+    @Test
+    void finish_UnvisitedRows_ReportsDeletes() {
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 10, blocksOf(10, 1, 11, 2, 12, 15, 25, 31, 41));
+
+        assertEquals(11L, baseline.find(1));
+        // row 2 is skipped, the block [10, 19] is reached, block [30, 39] is never reached
+        assertEquals(25L, baseline.find(15));
+
+        List<Long> deleted = baseline.finish();
+
+        assertEquals(List.of(2L, 31L), deleted);
+        assertEquals(2, baseline.getChangedBlocks().size());
+        assertEquals(1, baseline.getChangedBlocks().get(0).getRowCount());
+        assertEquals(0, baseline.getChangedBlocks().get(1).getRowCount());
+    }
+
+    @Test
+    void put_ChangedRow_RewritesOnlyItsBlock() {
+        List<ChecksumBlock> blocks = blocksOf(10, 1, 11, 15, 25);
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 10, blocks);
+
+        baseline.find(1);
+        baseline.put(15, 26);
+        baseline.finish();
+
+        assertEquals(1, baseline.getChangedBlocks().size());
+        assertEquals(10L, baseline.getChangedBlocks().get(0).getRangeStart());
+
+        BlockBaseline reloaded = new BlockBaseline(TABLE_NAME, 10, blocks);
+        reloaded.find(1);
+        assertEquals(26L, reloaded.find(15));
+    }
+
+    @Test
+    void put_GapInsideRange_KeepsKeysSorted() {
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 100, blocksOf(100, 1, 11, 50, 60));
+
+        baseline.find(1);
+        baseline.put(20, 30);
+        baseline.find(50);
+        baseline.finish();
+
+        BlockBaseline reloaded = new BlockBaseline(TABLE_NAME, 100, baseline.getChangedBlocks());
+        assertEquals(11L, reloaded.find(1));
+        assertEquals(30L, reloaded.find(20));
+        assertEquals(60L, reloaded.find(50));
+        assertTrue(reloaded.finish().isEmpty());
+    }
+
+    @Test
+    void find_DescendingOrder_ThrowsIllegalStateException() {
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 10, blocksOf(10, 1, 11, 15, 25));
+
+        baseline.find(15);
+
+        assertThrows(IllegalStateException.class, () -> baseline.find(1));
+    }
+
+    @Test
+    void setScope_UnscannedBlocksAreNotReportedAsDeleted() {
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 100, blocksOf(100, 5, 50, 150, 150, 250, 250));
+        baseline.setScope(List.of(new PkRange(100, 199)));
+
+        List<Long> deleted = baseline.finish();
+
+        assertEquals(List.of(150L), deleted);
+        assertEquals(1, baseline.getChangedBlocks().size());
+        assertEquals(100L, baseline.getChangedBlocks().get(0).getRangeStart());
+    }
+
+    @Test
+    void retainUnvisited_KeepsRowsNotLookedUpAndDropsRemovedOnes() {
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 100, blocksOf(100, 1, 11, 2, 12, 3, 13, 150, 160));
+        baseline.setRetainUnvisited(true);
+
+        baseline.put(2, 22);
+        assertTrue(baseline.remove(3));
+        assertFalse(baseline.remove(4));
+        List<Long> deleted = baseline.finish();
+
+        // row 1 and the block [100, 199] were never visited
+        assertTrue(deleted.isEmpty());
+        assertEquals(1, baseline.getChangedBlocks().size());
+        assertEquals(2, baseline.getChangedBlocks().get(0).getRowCount());
+    }
+
+    @Test
+    void findColumnHashes_AfterRowsMoveInsideRange_ReadsVectorOfTheRightRow() {
+        BlockBaseline seed = new BlockBaseline(TABLE_NAME, 100, List.of());
+        seed.put(2, 12, new byte[]{2});
+        seed.put(4, 14, new byte[]{4});
+        seed.finish();
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 100, seed.getChangedBlocks());
+        baseline.setRetainUnvisited(true);
+
+        assertEquals(14L, baseline.find(4));
+        assertArrayEquals(new byte[]{4}, baseline.findColumnHashes(4));
+        // An insert before row 4 moves it one slot up
+        baseline.put(3, 13, new byte[]{3});
+        assertArrayEquals(new byte[]{4}, baseline.findColumnHashes(4));
+        assertTrue(baseline.remove(2));
+        baseline.put(4, 24, new byte[]{5});
+        baseline.finish();
+
+        BlockBaseline reread = new BlockBaseline(TABLE_NAME, 100, baseline.getChangedBlocks());
+        assertNull(reread.find(2));
+        assertEquals(13L, reread.find(3));
+        assertEquals(24L, reread.find(4));
+        assertArrayEquals(new byte[]{5}, reread.findColumnHashes(4));
+    }
+}
@@ -0,0 +1,65 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.Audit;
+import ludo.mentis.aciem.chgmon.model.ChangeType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeLogCodecTest {
+
+    private static Audit audit() {
+        Audit audit = new Audit();
+        audit.setTableName("dbo.tb_fx_trade");
+        audit.setPrimaryKey(42L);
+        audit.setChangeType(ChangeType.UPDATE);
+        audit.setChangeDate(LocalDateTime.of(2024, 2, 29, 13, 45, 1, 123_000_000));
+        audit.setChangedColumns(new byte[]{5});
+        audit.setNewImage(new byte[]{1, 2, 3});
+        return audit;
+    }
+
+    @Test
+    void encode_Decode_RoundTripsAudit() {
+        Audit audit = audit();
+        ByteBuffer buffer = ByteBuffer.allocate(ChangeLogCodec.size(audit));
+
+        ChangeLogCodec.encode(audit, 1_700_000_000_000L, buffer);
+        buffer.flip();
+        Audit decoded = ChangeLogCodec.decode(buffer);
+
+        assertFalse(buffer.hasRemaining(), "Size must match the encoded record");
+        assertEquals(1_700_000_000_000L, ChangeLogCodec.timestamp(buffer, 0));
+        assertEquals("dbo.tb_fx_trade", decoded.getTableName());
+        assertEquals(42L, decoded.getPrimaryKey());
+        assertEquals(ChangeType.UPDATE, decoded.getChangeType());
+        assertEquals(audit.getChangeDate(), decoded.getChangeDate());
+        assertArrayEquals(new byte[]{5}, decoded.getChangedColumns());
+        assertNull(decoded.getOldImage());
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.getNewImage());
+    }
+
+    @Test
+    void decode_CorruptRecord_Throws() {
+        Audit audit = audit();
+        ByteBuffer buffer = ByteBuffer.allocate(ChangeLogCodec.size(audit));
+        ChangeLogCodec.encode(audit, 0L, buffer);
+        buffer.put(buffer.position() - 1, (byte) 9);
+        buffer.flip();
+
+        assertThrows(IllegalStateException.class, () -> ChangeLogCodec.decode(buffer));
+    }
+
+    @Test
+    void decode_TruncatedRecord_Throws() {
+        Audit audit = audit();
+        ByteBuffer buffer = ByteBuffer.allocate(ChangeLogCodec.size(audit));
+        ChangeLogCodec.encode(audit, 0L, buffer);
+        buffer.flip().limit(buffer.limit() - 1);
+
+        assertThrows(IllegalStateException.class, () -> ChangeLogCodec.decode(buffer));
+    }
+}
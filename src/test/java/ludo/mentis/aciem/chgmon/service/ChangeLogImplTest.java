@@ -0,0 +1,238 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.Audit;
+import ludo.mentis.aciem.chgmon.model.ChangeType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeLogImplTest {
+
+    private static final String TABLE_NAME = "dbo.test_table";
+
+    @TempDir
+    Path directory;
+
+    private final MutableClock clock = new MutableClock();
+    private final List<ChangeLogImpl> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(ChangeLogImpl::close);
+    }
+
+    private ChangeLogImpl newLog(DataSize segmentSize, DataSize retentionSize) {
+        MonitorProperties properties = new MonitorProperties();
+        properties.getChangeLog().setEnabled(true);
+        properties.getChangeLog().setDirectory(directory.toString());
+        properties.getChangeLog().setSegmentSize(segmentSize);
+        properties.getChangeLog().setIndexInterval(DataSize.ofBytes(100));
+        properties.getChangeLog().setRetentionSize(retentionSize);
+        properties.getChangeLog().setRetentionAge(Duration.ofDays(1));
+        ChangeLogImpl changeLog = new ChangeLogImpl(properties, clock);
+        opened.add(changeLog);
+        return changeLog;
+    }
+
+    private static List<Audit> audits(long from, long to) {
+        return LongStream.rangeClosed(from, to).mapToObj(primaryKey -> {
+            Audit audit = new Audit();
+            audit.setTableName(TABLE_NAME);
+            audit.setPrimaryKey(primaryKey);
+            audit.setChangeType(ChangeType.INSERT);
+            audit.setChangeDate(LocalDateTime.of(2024, 1, 1, 12, 0));
+            return audit;
+        }).toList();
+    }
+
+    // Reads from an offset to the end of the log, the way a consumer tails it
+    private static List<Long> readFrom(ChangeLogImpl changeLog, long offset, long maxBytes) {
+        List<Long> primaryKeys = new ArrayList<>();
+        while (offset < changeLog.getEndOffset()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long transferred = changeLog.transferTo(offset, maxBytes, Channels.newChannel(out));
+            assertTrue(transferred > 0);
+            ByteBuffer records = ByteBuffer.wrap(out.toByteArray());
+            while (records.hasRemaining()) {
+                primaryKeys.add(ChangeLogCodec.decode(records).getPrimaryKey());
+            }
+            offset += transferred;
+        }
+        return primaryKeys;
+    }
+
+    private long logFiles() throws Exception {
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    void append_TransferTo_ReadsRecordsBackInOrder() {
+        // Arrange
+        ChangeLogImpl changeLog = newLog(DataSize.ofMegabytes(1), DataSize.ofMegabytes(10));
+
+        // Act
+        changeLog.append(audits(1, 3));
+        changeLog.append(audits(4, 5));
+
+        // Assert
+        assertEquals(0, changeLog.getStartOffset());
+        assertEquals(5L * ChangeLogCodec.size(audits(1, 1).get(0)), changeLog.getEndOffset());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), readFrom(changeLog, 0, 1 << 20));
+        assertEquals(0, changeLog.transferTo(changeLog.getEndOffset(), 1 << 20, Channels.newChannel(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    void constructor_MainContextWithSources_KeepsNoLog() {
+        // Arrange: each source keeps its own log below the directory
+        MonitorProperties properties = new MonitorProperties();
+        properties.getChangeLog().setEnabled(true);
+        properties.getChangeLog().setDirectory(directory.resolve("main").toString());
+        properties.getSources().put("eu", new MonitorProperties.Source());
+
+        // Act
+        ChangeLogImpl changeLog = new ChangeLogImpl(properties, clock);
+
+        // Assert
+        assertFalse(changeLog.isEnabled());
+        assertFalse(Files.exists(directory.resolve("main")));
+        assertThrows(IllegalStateException.class, changeLog::getEndOffset);
+    }
+
+    @Test
+    void append_SegmentFull_RollsAndOffsetsRunOn() throws Exception {
+        // Arrange
+        ChangeLogImpl changeLog = newLog(DataSize.ofBytes(300), DataSize.ofMegabytes(10));
+
+        // Act
+        changeLog.append(audits(1, 20));
+
+        // Assert
+        assertTrue(logFiles() > 3, "Segments should roll by size");
+        assertEquals(LongStream.rangeClosed(1, 20).boxed().toList(), readFrom(changeLog, 0, 1 << 20));
+    }
+
+    @Test
+    void transferTo_MaxBytes_StopsAtRecordBoundary() {
+        // Arrange
+        ChangeLogImpl changeLog = newLog(DataSize.ofMegabytes(1), DataSize.ofMegabytes(10));
+        changeLog.append(audits(1, 10));
+        int recordSize = ChangeLogCodec.size(audits(1, 1).get(0));
+
+        // Act
+        long partial = changeLog.transferTo(0, recordSize * 5 / 2, Channels.newChannel(new ByteArrayOutputStream()));
+        long tooSmall = changeLog.transferTo(recordSize, 10, Channels.newChannel(new ByteArrayOutputStream()));
+
+        // Assert: whole records only, but at least one
+        assertEquals(2L * recordSize, partial);
+        assertEquals(recordSize, tooSmall);
+        assertEquals(LongStream.rangeClosed(1, 10).boxed().toList(), readFrom(changeLog, 0, recordSize * 3 / 2));
+    }
+
+    @Test
+    void offsetAt_FindsFirstRecordAppendedAtOrAfterTime() {
+        // Arrange
+        ChangeLogImpl changeLog = newLog(DataSize.ofBytes(300), DataSize.ofMegabytes(10));
+        Instant first = clock.instant();
+        changeLog.append(audits(1, 10));
+        clock.instant = clock.instant.plusSeconds(60);
+        long secondOffset = changeLog.getEndOffset();
+        changeLog.append(audits(11, 20));
+
+        // Act & Assert
+        assertEquals(0, changeLog.offsetAt(first.minusSeconds(1)));
+        assertEquals(secondOffset, changeLog.offsetAt(first.plusSeconds(30)));
+        assertEquals(LongStream.rangeClosed(11, 20).boxed().toList(), readFrom(changeLog, changeLog.offsetAt(first.plusSeconds(30)), 1 << 20));
+        assertEquals(changeLog.getEndOffset(), changeLog.offsetAt(first.plusSeconds(61)));
+    }
+
+    @Test
+    void flush_OverRetention_DeletesOldestSegments() throws Exception {
+        // Arrange
+        ChangeLogImpl changeLog = newLog(DataSize.ofBytes(300), DataSize.ofBytes(1000));
+
+        // Act
+        changeLog.append(audits(1, 100));
+        changeLog.flush();
+
+        // Assert
+        assertTrue(changeLog.getStartOffset() > 0);
+        assertTrue(changeLog.getDiskBytes() <= 1000 + 300);
+        assertThrows(IllegalArgumentException.class,
+                () -> changeLog.transferTo(0, 100, Channels.newChannel(new ByteArrayOutputStream())));
+        List<Long> retained = readFrom(changeLog, changeLog.getStartOffset(), 1 << 20);
+        assertEquals(100L, retained.get(retained.size() - 1));
+
+        // Sealed segments also go once they are older than the retention age
+        clock.instant = clock.instant.plus(Duration.ofDays(2));
+        changeLog.flush();
+        assertEquals(1, logFiles());
+    }
+
+    @Test
+    void open_TornLastRecord_IsCutAndAppendsResume() throws Exception {
+        // Arrange
+        ChangeLogImpl changeLog = newLog(DataSize.ofMegabytes(1), DataSize.ofMegabytes(10));
+        changeLog.append(audits(1, 3));
+        long endOffset = changeLog.getEndOffset();
+        changeLog.close();
+        Files.write(directory.resolve(String.format("%020d.log", 0)), new byte[]{0, 0, 0, 90, 1, 2}, StandardOpenOption.APPEND);
+
+        // Act
+        ChangeLogImpl reopened = newLog(DataSize.ofMegabytes(1), DataSize.ofMegabytes(10));
+        reopened.append(audits(4, 4));
+
+        // Assert
+        assertTrue(reopened.getEndOffset() > endOffset);
+        assertEquals(List.of(1L, 2L, 3L, 4L), readFrom(reopened, 0, 1 << 20));
+    }
+
+    @Test
+    void newLog_Disabled_RejectsReads() {
+        ChangeLogImpl changeLog = new ChangeLogImpl(new MonitorProperties());
+
+        assertFalse(changeLog.isEnabled());
+        assertThrows(IllegalStateException.class, changeLog::getEndOffset);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant = LocalDateTime.of(2024, 1, 1, 12, 0).atZone(ZoneOffset.UTC).toInstant();
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChecksumBlockCodecTest {
+
+    @Test
+    void encode_Crc32Checksums_RoundTrips() {
+        // Arrange
+        long rangeStart = 65536;
+        long[] primaryKeys = {65536, 65537, 65600, 131071};
+        long[] checksums = {0L, 1L, 0xFFFFFFFFL, 123456789L};
+
+        // Act
+        byte[] payload = ChecksumBlockCodec.encode(rangeStart, primaryKeys, checksums, primaryKeys.length);
+        ChecksumBlockCodec.Entries entries = ChecksumBlockCodec.decode(rangeStart, payload);
+
+        // Assert
+        assertArrayEquals(primaryKeys, entries.primaryKeys());
+        assertArrayEquals(checksums, entries.checksums());
+    }
+
+    @Test
+    void encode_WideChecksums_RoundTrips() {
+        // Arrange
+        long[] primaryKeys = {-10, -3, 7};
+        long[] checksums = {-1L, Long.MAX_VALUE, 1L << 40};
+
+        // Act
+        byte[] payload = ChecksumBlockCodec.encode(-16, primaryKeys, checksums, primaryKeys.length);
+        ChecksumBlockCodec.Entries entries = ChecksumBlockCodec.decode(-16, payload);
+
+        // Assert
+        assertArrayEquals(primaryKeys, entries.primaryKeys());
+        assertArrayEquals(checksums, entries.checksums());
+    }
+
+    @Test
+    void encode_EmptyBlock_RoundTrips() {
+        byte[] payload = ChecksumBlockCodec.encode(0, new long[0], new long[0], 0);
+        ChecksumBlockCodec.Entries entries = ChecksumBlockCodec.decode(0, payload);
+
+        assertEquals(0, entries.primaryKeys().length);
+    }
+
+    @Test
+    void encode_DenseRange_IsSmallerThanRowStorage() {
+        // Arrange
+        int count = 65536;
+        long[] primaryKeys = new long[count];
+        long[] checksums = new long[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            primaryKeys[i] = i;
+            checksums[i] = Integer.toUnsignedLong(random.nextInt());
+        }
+
+        // Act
+        byte[] payload = ChecksumBlockCodec.encode(0, primaryKeys, checksums, count);
+
+        // Assert: one byte per key delta plus four bytes per CRC32, before compression
+        assertTrue(payload.length <= count * 5 + 64, "Packed block should not exceed five bytes per row");
+    }
+
+    @Test
+    void decode_UnknownVersion_ThrowsIllegalStateException() {
+        assertThrows(IllegalStateException.class, () -> ChecksumBlockCodec.decode(0, new byte[]{9, 4, 0}));
+    }
+
+    @Test
+    void encode_WithColumnHashes_RoundTrips() {
+        // Arrange
+        long[] primaryKeys = {1, 2, 3};
+        long[] checksums = {10, 20, 30};
+        byte[][] columnHashes = {{1, 2, 3, 4}, null, {5, 6}};
+
+        // Act
+        byte[] payload = ChecksumBlockCodec.encode(0, primaryKeys, checksums, columnHashes, 3);
+        ChecksumBlockCodec.Entries entries = ChecksumBlockCodec.decode(0, payload);
+
+        // Assert
+        assertArrayEquals(primaryKeys, entries.primaryKeys());
+        assertArrayEquals(checksums, entries.checksums());
+        assertArrayEquals(columnHashes[0], entries.columnHashes()[0]);
+        assertNull(entries.columnHashes()[1]);
+        assertArrayEquals(columnHashes[2], entries.columnHashes()[2]);
+    }
+
+    @Test
+    void decode_WithoutColumnHashes_HasNoVectors() {
+        byte[] payload = ChecksumBlockCodec.encode(0, new long[]{1}, new long[]{1}, 1);
+
+        assertNull(ChecksumBlockCodec.decode(0, payload).columnHashes());
+    }
+}
@@ -1,11 +1,13 @@
 package ludo.mentis.aciem.chgmon.service;
 
+import ludo.mentis.aciem.chgmon.model.LobDigest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.zip.CRC32;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -159,4 +161,179 @@ class ChecksumServiceImplTest {
         // Assert
         assertNotEquals(0, result, "Large map should produce a non-zero checksum");
     }
-}
\ No newline at end of file
+
+    private static long referenceChecksum(Map<String, Object> row) {
+        java.util.zip.CRC32 crc32 = new java.util.zip.CRC32();
+        for (Map.Entry<String, Object> column : row.entrySet()) {
+            crc32.update(column.getKey().getBytes());
+            if (column.getValue() != null) {
+                crc32.update(column.getValue().toString().getBytes());
+            }
+        }
+        return crc32.getValue();
+    }
+
+    @Test
+    void calculate_MixedTypes_MatchesToStringEncoding() {
+        // Arrange
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id_fx_trade", 123456789L);
+        row.put("negative", -42);
+        row.put("min", Long.MIN_VALUE);
+        row.put("small", (short) 7);
+        row.put("flag", true);
+        row.put("amount", new java.math.BigDecimal("1234.5600"));
+        row.put("trade_date", java.sql.Timestamp.valueOf("2025-07-22 10:15:30.123"));
+        row.put("ccy", "EUR");
+        row.put("long_text", "x".repeat(2000));
+        row.put("accented", "S\u00e3o Paulo");
+        row.put("empty", "");
+        row.put("missing", null);
+
+        // Act
+        long result = checksumService.calculate(row);
+
+        // Assert
+        assertEquals(referenceChecksum(row), result, "Checksums must not change for rows already in the baseline");
+    }
+
+    @Test
+    void calculate_WithColumnHashes_ReturnsSameRowChecksum() {
+        // Arrange
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1L);
+        row.put("name", "value");
+        row.put("missing", null);
+        int[] columnHashes = new int[4];
+
+        // Act
+        long result = checksumService.calculate(row, columnHashes);
+
+        // Assert
+        assertEquals(checksumService.calculate(row), result);
+        assertNotEquals(0, columnHashes[0]);
+        assertNotEquals(0, columnHashes[1]);
+        assertEquals(0, columnHashes[2], "Null values hash to 0");
+    }
+
+    @Test
+    void calculate_WithColumnHashes_OnlyChangedColumnDiffers() {
+        // Arrange
+        Map<String, Object> before = new LinkedHashMap<>();
+        before.put("id", 1L);
+        before.put("amount", 100);
+        before.put("ccy", "EUR");
+        Map<String, Object> after = new LinkedHashMap<>(before);
+        after.put("amount", 200);
+        int[] hashesBefore = new int[3];
+        int[] hashesAfter = new int[3];
+
+        // Act
+        checksumService.calculate(before, hashesBefore);
+        checksumService.calculate(after, hashesAfter);
+
+        // Assert
+        assertEquals(hashesBefore[0], hashesAfter[0]);
+        assertNotEquals(hashesBefore[1], hashesAfter[1]);
+        assertEquals(hashesBefore[2], hashesAfter[2]);
+    }
+
+    @Test
+    void calculate_WithColumnHashes_EmptyStringDiffersFromNull() {
+        // Arrange
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("a", "");
+        row.put("b", null);
+        int[] columnHashes = new int[2];
+
+        // Act
+        checksumService.calculate(row, columnHashes);
+
+        // Assert
+        assertNotEquals(columnHashes[0], columnHashes[1]);
+    }
+
+    @Test
+    void calculate_WithColumnHashes_BufferTooSmall_ThrowsIllegalArgumentException() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("a", 1);
+        row.put("b", 2);
+
+        assertThrows(IllegalArgumentException.class, () -> checksumService.calculate(row, new int[1]));
+    }
+
+    @Test
+    void combine_TwoSequences_MatchesCrcOfConcatenation() {
+        // Arrange
+        byte[] first = "The quick brown fox ".getBytes();
+        byte[] second = "jumps over the lazy dog".repeat(100).getBytes();
+        byte[] both = new byte[first.length + second.length];
+        System.arraycopy(first, 0, both, 0, first.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+
+        // Act
+        long result = ChecksumServiceImpl.combine(crc(first), crc(second), second.length);
+
+        // Assert
+        assertEquals(crc(both), result);
+        assertEquals(crc(second), ChecksumServiceImpl.combine(0, crc(second), second.length));
+    }
+
+    @Test
+    void calculate_LobDigest_MatchesMaterializedValue() {
+        // Arrange
+        String document = "S\u00e3o Paulo ".repeat(5000);
+        byte[] bytes = document.getBytes();
+        Map<String, Object> materialized = new LinkedHashMap<>();
+        materialized.put("id", 1L);
+        materialized.put("document", document);
+        materialized.put("ccy", "EUR");
+        Map<String, Object> streamed = new LinkedHashMap<>(materialized);
+        streamed.put("document", new LobDigest(crc(bytes), bytes.length, false));
+        int[] materializedHashes = new int[3];
+        int[] streamedHashes = new int[3];
+
+        // Act
+        long expected = checksumService.calculate(materialized, materializedHashes);
+        long result = checksumService.calculate(streamed, streamedHashes);
+
+        // Assert
+        assertEquals(expected, result, "Streamed large objects must not change the row checksum");
+        assertEquals(expected, checksumService.calculate(streamed));
+        assertArrayEquals(materializedHashes, streamedHashes);
+    }
+
+    @Test
+    void calculate_BinaryValue_HashesContentNotIdentity() {
+        // Arrange
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("payload", new byte[]{1, 2, 3});
+        Map<String, Object> copy = new LinkedHashMap<>();
+        copy.put("payload", new byte[]{1, 2, 3});
+
+        // Act & Assert
+        assertEquals(checksumService.calculate(row), checksumService.calculate(copy));
+    }
+
+    @Test
+    void calculate_NonNullValues_NeverStoreZeroInTheVector() {
+        // Arrange: about one value in 65536 has a CRC32 whose low 16 bits, the ones a vector keeps, are 0
+        Map<String, Object> row = new LinkedHashMap<>();
+        int[] columnHashes = new int[1];
+
+        for (int i = 0; i < 1 << 18; i++) {
+            // Act
+            row.put("ccy", "value-" + i);
+            checksumService.calculate(row, columnHashes);
+
+            // Assert
+            assertNotEquals(0, columnHashes[0] & 0xFFFF, "value-" + i);
+        }
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return crc32.getValue();
+    }
+}
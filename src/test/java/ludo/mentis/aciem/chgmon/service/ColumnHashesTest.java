@@ -0,0 +1,49 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnHashesTest {
+
+    @Test
+    void encode_TwoBytesPerColumn() {
+        byte[] vector = ColumnHashes.encode(new int[]{0x12345678, 0, -1, 99}, 3);
+
+        assertArrayEquals(new byte[]{0x56, 0x78, 0, 0, (byte) 0xFF, (byte) 0xFF}, vector);
+    }
+
+    @Test
+    void changedColumns_OneColumnChanged_SetsItsBit() {
+        int[] before = {11, 22, 33, 44, 55, 66, 77, 88, 99};
+        int[] after = {11, 22, 33, 44, 55, 66, 77, 88, 100};
+        byte[] stored = ColumnHashes.encode(before, before.length);
+
+        byte[] mask = ColumnHashes.changedColumns(stored, after, after.length);
+
+        assertArrayEquals(new byte[]{0, 1}, mask);
+    }
+
+    @Test
+    void changedColumns_ColumnAdded_ReportsNewColumn() {
+        byte[] stored = ColumnHashes.encode(new int[]{1, 2}, 2);
+
+        byte[] mask = ColumnHashes.changedColumns(stored, new int[]{1, 2, 3}, 3);
+
+        assertArrayEquals(new byte[]{4}, mask);
+    }
+
+    @Test
+    void changedColumns_NoStoredVector_ReturnsNull() {
+        assertNull(ColumnHashes.changedColumns(null, new int[]{1}, 1));
+    }
+
+    @Test
+    void columnNames_ResolvesMaskAgainstColumnOrder() {
+        byte[] mask = {5};
+
+        assertEquals(List.of("id", "amount"), ColumnHashes.columnNames(mask, List.of("id", "ccy", "amount")));
+    }
+}
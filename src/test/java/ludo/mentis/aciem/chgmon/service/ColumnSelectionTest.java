@@ -0,0 +1,62 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnSelectionTest {
+
+    private static final List<TableColumn> COLUMNS = List.of(
+            new TableColumn("id", "bigint"),
+            new TableColumn("amount", "decimal(18,2)"),
+            new TableColumn("last_viewed", "datetime"),
+            new TableColumn("notes", "nvarchar(max)"));
+
+    @Test
+    void apply_NoLists_KeepsEveryColumn() {
+        ColumnSelection selection = new ColumnSelection("id", List.of(), List.of());
+
+        assertFalse(selection.isConfigured());
+        assertSame(COLUMNS, selection.apply(COLUMNS));
+    }
+
+    @Test
+    void apply_Include_KeepsPrimaryKeyAndListedColumnsInTableOrder() {
+        ColumnSelection selection = new ColumnSelection("id", List.of("NOTES", "amount"), List.of());
+
+        assertEquals(List.of(COLUMNS.get(0), COLUMNS.get(1), COLUMNS.get(3)), selection.apply(COLUMNS));
+    }
+
+    @Test
+    void apply_Exclude_DropsListedColumns() {
+        ColumnSelection selection = new ColumnSelection("id", List.of(), List.of("last_viewed", "notes"));
+
+        assertEquals(List.of(COLUMNS.get(0), COLUMNS.get(1)), selection.apply(COLUMNS));
+    }
+
+    @Test
+    void validate_ExcludedPrimaryKey_ThrowsIllegalArgumentException() {
+        ColumnSelection selection = new ColumnSelection("id", List.of(), List.of("ID"));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> selection.validate(COLUMNS));
+        assertEquals("Primary key cannot be excluded: id", exception.getMessage());
+    }
+
+    @Test
+    void validate_OnlyPrimaryKeyLeft_ThrowsIllegalArgumentException() {
+        ColumnSelection selection = new ColumnSelection("id", List.of("id"), List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> selection.validate(COLUMNS));
+    }
+
+    @Test
+    void validate_UnknownExcludedColumn_ThrowsIllegalArgumentException() {
+        ColumnSelection selection = new ColumnSelection("id", List.of(), List.of("typo"));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> selection.validate(COLUMNS));
+        assertEquals("Unknown column in monitor.columns.exclude: typo", exception.getMessage());
+    }
+}
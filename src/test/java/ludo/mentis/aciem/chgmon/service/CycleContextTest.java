@@ -0,0 +1,94 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CycleContextTest {
+
+    @Test
+    void checkpoint_Cancelled_ThrowsCycleCancelledException() {
+        try (CycleContext context = CycleContext.open("test_table", null, null)) {
+            // Act & Assert
+            context.checkpoint();
+            context.cancel();
+            CycleCancelledException exception = assertThrows(CycleCancelledException.class, context::checkpoint);
+            assertEquals("Cycle of table test_table was cancelled", exception.getMessage());
+        }
+        assertNull(CycleContext.current());
+    }
+
+    @Test
+    void checkpoint_DeadlinePassed_ThrowsCycleCancelledException() {
+        try (CycleContext context = CycleContext.open("test_table", Duration.ZERO, null)) {
+            assertTrue(context.isExpired());
+            assertThrows(CycleCancelledException.class, context::checkpoint);
+        }
+    }
+
+    @Test
+    void checkpoint_OtherCycleRunning_KeepsTheHighestHeapSampled() throws Exception {
+        try (CycleContext context = CycleContext.open("test_table", null, null)) {
+            // Arrange
+            byte[] block = new byte[32 << 20];
+
+            // Act
+            context.checkpoint();
+            long peak = context.getPeakHeap();
+            Thread other = new Thread(() -> {
+                try (CycleContext otherContext = CycleContext.open("other_table", null, null)) {
+                    otherContext.checkpoint();
+                }
+            });
+            other.start();
+            other.join();
+            context.checkpoint();
+
+            // Assert: the block counted, and the cycle of the other table did not reset the peak
+            assertTrue(peak >= block.length, "Peak heap was " + peak);
+            assertTrue(context.getPeakHeap() >= peak);
+        }
+    }
+
+    @Test
+    void queryTimeoutSeconds_CappedByTimeLeft() {
+        try (CycleContext context = CycleContext.open("test_table", Duration.ofSeconds(30), Duration.ofMinutes(5))) {
+            int timeout = context.queryTimeoutSeconds();
+            assertTrue(timeout > 0 && timeout <= 30, "Timeout was " + timeout);
+        }
+        try (CycleContext context = CycleContext.open("test_table", null, Duration.ofMinutes(5))) {
+            assertEquals(300, context.queryTimeoutSeconds());
+        }
+        try (CycleContext context = CycleContext.open("test_table", null, null)) {
+            assertEquals(0, context.queryTimeoutSeconds());
+        }
+    }
+
+    @Test
+    void open_CycleAlreadyRunning_ThrowsIllegalStateException() {
+        try (CycleContext ignored = CycleContext.open("test_table", null, null)) {
+            assertThrows(IllegalStateException.class, () -> CycleContext.open("test_table", null, null));
+        }
+    }
+
+    @Test
+    void pace_Throttled_WaitsUntilRowsFitTheRate() {
+        try (CycleContext context = CycleContext.open("test_table", null, null, 1000, 0)) {
+            long started = System.nanoTime();
+            context.pace(100);
+            assertTrue(System.nanoTime() - started >= Duration.ofMillis(90).toNanos());
+        }
+    }
+
+    @Test
+    void pace_Throttled_NeverWaitsPastDeadline() {
+        try (CycleContext context = CycleContext.open("test_table", Duration.ofMillis(50), null, 1, 0)) {
+            long started = System.nanoTime();
+            context.pace(1000);
+            assertTrue(System.nanoTime() - started < Duration.ofSeconds(5).toNanos());
+            assertThrows(CycleCancelledException.class, context::checkpoint);
+        }
+    }
+}
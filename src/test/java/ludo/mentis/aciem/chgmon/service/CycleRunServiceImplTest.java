@@ -0,0 +1,94 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import ludo.mentis.aciem.chgmon.repos.CycleRunRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CycleRunServiceImplTest {
+
+    private static final LocalDateTime ENDED_AT = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+    @Mock
+    private CycleRunRepository cycleRunRepository;
+
+    private MonitorProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new MonitorProperties();
+    }
+
+    private static CycleRun cycleRun(LocalDateTime endedAt) {
+        CycleRun cycleRun = new CycleRun();
+        cycleRun.setTableName("test_table");
+        cycleRun.setStartedAt(endedAt.minusMinutes(1));
+        cycleRun.setEndedAt(endedAt);
+        return cycleRun;
+    }
+
+    @Test
+    void record_FirstAndNextCycles_PurgesExpiredRecordsOncePerDay() {
+        // Arrange
+        CycleRunServiceImpl service = new CycleRunServiceImpl(properties, cycleRunRepository);
+
+        // Act
+        service.record(cycleRun(ENDED_AT));
+        service.record(cycleRun(ENDED_AT.plusHours(2)));
+        service.record(cycleRun(ENDED_AT.plusDays(1)));
+
+        // Assert
+        verify(cycleRunRepository, times(3)).insert(any(CycleRun.class));
+        verify(cycleRunRepository).deleteBefore(ENDED_AT.minusDays(90));
+        verify(cycleRunRepository).deleteBefore(ENDED_AT.plusDays(1).minusDays(90));
+        verifyNoMoreInteractions(cycleRunRepository);
+    }
+
+    @Test
+    void record_LongErrorAndUnreachableStore_TruncatesAndDoesNotThrow() {
+        // Arrange
+        CycleRunServiceImpl service = new CycleRunServiceImpl(properties, cycleRunRepository);
+        CycleRun cycleRun = cycleRun(ENDED_AT);
+        cycleRun.setError("x".repeat(5000));
+        when(cycleRunRepository.insert(any(CycleRun.class))).thenThrow(new DataAccessResourceFailureException("down"));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> service.record(cycleRun));
+        assertEquals(2000, cycleRun.getError().length());
+    }
+
+    @Test
+    void record_Disabled_WritesNothing() {
+        // Arrange
+        properties.getCycleHistory().setEnabled(false);
+        CycleRunServiceImpl service = new CycleRunServiceImpl(properties, cycleRunRepository);
+
+        // Act
+        service.record(cycleRun(ENDED_AT));
+
+        // Assert
+        verifyNoInteractions(cycleRunRepository);
+    }
+
+    @Test
+    void find_ReversedPeriod_ThrowsIllegalArgumentException() {
+        // Arrange
+        CycleRunServiceImpl service = new CycleRunServiceImpl(properties, cycleRunRepository);
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> service.find("test_table", ENDED_AT, ENDED_AT.minusDays(1), 10));
+        assertEquals("Start of the period must be before its end", exception.getMessage());
+    }
+}
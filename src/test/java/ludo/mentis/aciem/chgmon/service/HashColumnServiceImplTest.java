@@ -0,0 +1,139 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.ComputedColumn;
+import ludo.mentis.aciem.chgmon.repos.HashColumnRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HashColumnServiceImplTest {
+
+    private static final String TABLE_NAME = "test_table";
+    private static final String PRIMARY_KEY_NAME = "id";
+    private static final List<String> COLUMNS = List.of("name", "amount");
+
+    @Mock
+    private HashColumnRepository hashColumnRepository;
+
+    private MonitorProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new MonitorProperties();
+        when(hashColumnRepository.findHashableColumns(TABLE_NAME, PRIMARY_KEY_NAME, "chgmon_hash")).thenReturn(COLUMNS);
+    }
+
+    private HashColumnServiceImpl enabledService() {
+        properties.getHashColumn().setEnabled(true);
+        return new HashColumnServiceImpl(properties, hashColumnRepository);
+    }
+
+    @Test
+    void prepare_ColumnMissing_ProvisionsColumnAndIndex() {
+        // Act
+        boolean changed = enabledService().prepare(TABLE_NAME, PRIMARY_KEY_NAME);
+
+        // Assert
+        assertTrue(changed);
+        verify(hashColumnRepository).addHashColumn(TABLE_NAME, "chgmon_hash", COLUMNS);
+        verify(hashColumnRepository).createIndex(TABLE_NAME, "ix_chgmon_hash", PRIMARY_KEY_NAME, "chgmon_hash");
+        verify(hashColumnRepository, never()).dropColumn(anyString(), anyString());
+    }
+
+    @Test
+    void prepare_ValidColumnAndIndex_DoesNothing() {
+        // Arrange
+        when(hashColumnRepository.findComputedColumn(TABLE_NAME, "chgmon_hash"))
+                .thenReturn(new ComputedColumn("chgmon_hash", "(binary_checksum([Name],[amount]))", true));
+        when(hashColumnRepository.indexExists(TABLE_NAME, "ix_chgmon_hash")).thenReturn(true);
+
+        // Act
+        boolean changed = enabledService().prepare(TABLE_NAME, PRIMARY_KEY_NAME);
+
+        // Assert
+        assertFalse(changed);
+        verify(hashColumnRepository, never()).addHashColumn(anyString(), anyString(), anyList());
+        verify(hashColumnRepository, never()).createIndex(anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void prepare_IndexMissing_RecreatesIndexOnly() {
+        // Arrange
+        when(hashColumnRepository.findComputedColumn(TABLE_NAME, "chgmon_hash"))
+                .thenReturn(new ComputedColumn("chgmon_hash", "(binary_checksum([name],[amount]))", true));
+
+        // Act
+        boolean changed = enabledService().prepare(TABLE_NAME, PRIMARY_KEY_NAME);
+
+        // Assert
+        assertFalse(changed);
+        verify(hashColumnRepository).createIndex(TABLE_NAME, "ix_chgmon_hash", PRIMARY_KEY_NAME, "chgmon_hash");
+        verify(hashColumnRepository, never()).addHashColumn(anyString(), anyString(), anyList());
+    }
+
+    @Test
+    void prepare_ColumnAddedToTable_RebuildsHashColumn() {
+        // Arrange
+        when(hashColumnRepository.findComputedColumn(TABLE_NAME, "chgmon_hash"))
+                .thenReturn(new ComputedColumn("chgmon_hash", "(binary_checksum([name]))", true));
+        when(hashColumnRepository.indexExists(TABLE_NAME, "ix_chgmon_hash")).thenReturn(true);
+
+        // Act
+        boolean changed = enabledService().prepare(TABLE_NAME, PRIMARY_KEY_NAME);
+
+        // Assert
+        assertTrue(changed);
+        verify(hashColumnRepository).dropIndex(TABLE_NAME, "ix_chgmon_hash");
+        verify(hashColumnRepository).dropColumn(TABLE_NAME, "chgmon_hash");
+        verify(hashColumnRepository).addHashColumn(TABLE_NAME, "chgmon_hash", COLUMNS);
+    }
+
+    @Test
+    void prepare_DisabledWithTeardown_DropsColumnAndIndex() {
+        // Arrange
+        properties.getHashColumn().setTeardown(true);
+        HashColumnServiceImpl service = new HashColumnServiceImpl(properties, hashColumnRepository);
+        when(hashColumnRepository.indexExists(TABLE_NAME, "ix_chgmon_hash")).thenReturn(true);
+        when(hashColumnRepository.findComputedColumn(TABLE_NAME, "chgmon_hash"))
+                .thenReturn(new ComputedColumn("chgmon_hash", "(binary_checksum([name],[amount]))", true));
+
+        // Act
+        boolean changed = service.prepare(TABLE_NAME, PRIMARY_KEY_NAME);
+
+        // Assert
+        assertTrue(changed);
+        verify(hashColumnRepository).dropIndex(TABLE_NAME, "ix_chgmon_hash");
+        verify(hashColumnRepository).dropColumn(TABLE_NAME, "chgmon_hash");
+    }
+
+    @Test
+    void prepare_Disabled_DoesNotTouchTable() {
+        // Act
+        boolean changed = new HashColumnServiceImpl(properties, hashColumnRepository).prepare(TABLE_NAME, PRIMARY_KEY_NAME);
+
+        // Assert
+        assertFalse(changed);
+        verifyNoInteractions(hashColumnRepository);
+    }
+
+    @Test
+    void prepare_ExcludedColumn_IsLeftOutOfTheHash() {
+        // Arrange
+        properties.getColumns().setExclude(List.of("AMOUNT"));
+
+        // Act
+        enabledService().prepare(TABLE_NAME, PRIMARY_KEY_NAME);
+
+        // Assert
+        verify(hashColumnRepository).addHashColumn(TABLE_NAME, "chgmon_hash", List.of("name"));
+    }
+}
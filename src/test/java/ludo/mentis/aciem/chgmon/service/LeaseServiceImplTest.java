@@ -0,0 +1,139 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import ludo.mentis.aciem.chgmon.model.ShardLease;
+import ludo.mentis.aciem.chgmon.repos.LeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LeaseServiceImplTest {
+
+    private static final String TABLE_NAME = "test_table";
+    private static final String NODE = "node-a";
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    @Mock
+    private LeaseRepository leaseRepository;
+
+    private MonitorProperties properties;
+
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new MonitorProperties();
+        properties.setTableName(TABLE_NAME);
+        properties.getBaseline().setRangeSize(100);
+        properties.getCluster().setEnabled(true);
+        properties.getCluster().setNodeId(NODE);
+        properties.getCluster().setShards(4);
+        properties.getCluster().setShardSize(1000);
+        when(leaseRepository.claim(eq(TABLE_NAME), anyInt(), eq(NODE), eq(LEASE))).thenReturn(true);
+        when(leaseRepository.renew(eq(TABLE_NAME), anyInt(), eq(NODE), eq(LEASE))).thenReturn(true);
+    }
+
+    private LeaseServiceImpl service() {
+        return new LeaseServiceImpl(properties, leaseRepository, () -> now);
+    }
+
+    @Test
+    void heartbeat_OtherLiveNode_ClaimsFreeShardsUpToFairShare() {
+        // Arrange
+        when(leaseRepository.findByTableName(TABLE_NAME)).thenReturn(List.of(
+                new ShardLease(0, "node-b", false), new ShardLease(1, null, true),
+                new ShardLease(2, null, true), new ShardLease(3, null, true)));
+        LeaseServiceImpl service = service();
+
+        // Act
+        service.heartbeat();
+
+        // Assert
+        verify(leaseRepository).createMissing(TABLE_NAME, 4);
+        verify(leaseRepository).claim(TABLE_NAME, 1, NODE, LEASE);
+        verify(leaseRepository).claim(TABLE_NAME, 2, NODE, LEASE);
+        verify(leaseRepository, never()).claim(TABLE_NAME, 3, NODE, LEASE);
+        assertEquals(Set.of(1, 2), service.beginCycle());
+    }
+
+    @Test
+    void heartbeat_DeadNode_TakesOverItsShards() {
+        // Arrange
+        when(leaseRepository.findByTableName(TABLE_NAME)).thenReturn(List.of(
+                new ShardLease(0, "node-b", true), new ShardLease(1, "node-b", true),
+                new ShardLease(2, NODE, false), new ShardLease(3, NODE, false)));
+        LeaseServiceImpl service = service();
+
+        // Act
+        service.heartbeat();
+
+        // Assert
+        assertEquals(Set.of(0, 1, 2, 3), service.beginCycle());
+    }
+
+    @Test
+    void heartbeat_NodeJoined_GivesBackShardsNotInUse() {
+        // Arrange
+        when(leaseRepository.findByTableName(TABLE_NAME)).thenReturn(
+                List.of(new ShardLease(0, null, true), new ShardLease(1, null, true), new ShardLease(2, null, true), new ShardLease(3, null, true)),
+                List.of(new ShardLease(0, NODE, false), new ShardLease(1, NODE, false), new ShardLease(2, NODE, false), new ShardLease(3, "node-b", false)));
+        LeaseServiceImpl service = service();
+        service.heartbeat();
+
+        // Act
+        service.heartbeat();
+
+        // Assert: shard 0 stays, the highest shard goes
+        verify(leaseRepository).release(TABLE_NAME, 3, NODE);
+        verify(leaseRepository, never()).release(TABLE_NAME, 0, NODE);
+        assertEquals(Set.of(0, 1), service.beginCycle());
+    }
+
+    @Test
+    void holds_LeaseLostOrRunOut_ReturnsFalse() {
+        // Arrange
+        when(leaseRepository.findByTableName(TABLE_NAME)).thenReturn(
+                List.of(new ShardLease(0, null, true), new ShardLease(1, "node-b", false), new ShardLease(2, "node-b", false), new ShardLease(3, "node-b", false)),
+                List.of(new ShardLease(0, "node-b", false), new ShardLease(1, "node-b", false), new ShardLease(2, "node-b", false), new ShardLease(3, "node-b", false)));
+        LeaseServiceImpl service = service();
+        service.heartbeat();
+        Set<Integer> shards = service.beginCycle();
+
+        // Act & Assert
+        assertTrue(service.holds(shards));
+        now += LEASE.toNanos();
+        assertFalse(service.holds(shards));
+        when(leaseRepository.renew(TABLE_NAME, 0, NODE, LEASE)).thenReturn(false);
+        service.heartbeat();
+        assertFalse(service.owns(5));
+    }
+
+    @Test
+    void restrict_ShardsAndPlan_KeepsTheirIntersection() {
+        LeaseServiceImpl service = service();
+
+        assertEquals(List.of(new PkRange(1000, 2999)), service.restrict(Set.of(1, 2), null));
+        assertEquals(List.of(new PkRange(Long.MIN_VALUE, 999), new PkRange(3000, Long.MAX_VALUE)), service.restrict(Set.of(0, 3), null));
+        assertNull(service.restrict(Set.of(0, 1, 2, 3), null));
+        assertEquals(List.of(new PkRange(1500, 1999), new PkRange(2500, 2999)),
+                service.restrict(Set.of(1, 2), List.of(new PkRange(0, 99), new PkRange(1500, 1999), new PkRange(2500, 3500))));
+    }
+
+    @Test
+    void constructor_ShardSizeNotMultipleOfRangeSize_ThrowsIllegalArgumentException() {
+        properties.getCluster().setShardSize(150);
+
+        assertThrows(IllegalArgumentException.class, this::service);
+    }
+}
@@ -0,0 +1,58 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowImageCodecTest {
+
+    @Test
+    void encode_Decode_RoundTripsSupportedTypes() {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", -42L);
+        row.put("name", "Zoë");
+        row.put("amount", new BigDecimal("-1234.5600"));
+        row.put("created", Timestamp.valueOf("2024-02-29 13:45:01.123456789"));
+        row.put("birthday", Date.valueOf("1970-01-01"));
+        row.put("active", true);
+        row.put("rate", 0.25d);
+        row.put("blob", new byte[]{1, 2, 3});
+        row.put("note", null);
+
+        Map<String, Object> decoded = RowImageCodec.decode(RowImageCodec.encode(row));
+
+        assertEquals(row.keySet().stream().toList(), decoded.keySet().stream().toList());
+        assertEquals(-42L, decoded.get("id"));
+        assertEquals("Zoë", decoded.get("name"));
+        assertEquals(new BigDecimal("-1234.5600"), decoded.get("amount"));
+        assertEquals(row.get("created"), decoded.get("created"));
+        assertEquals(row.get("birthday"), decoded.get("birthday"));
+        assertEquals(true, decoded.get("active"));
+        assertEquals(0.25d, decoded.get("rate"));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) decoded.get("blob"));
+        assertNull(decoded.get("note"));
+    }
+
+    @Test
+    void encode_IntegerColumn_DecodesAsLong() {
+        Map<String, Object> decoded = RowImageCodec.decode(RowImageCodec.encode(Map.of("qty", 7)));
+
+        assertEquals(7L, decoded.get("qty"));
+    }
+
+    @Test
+    void compress_Decompress_RoundTrips() {
+        byte[] raw = RowImageCodec.encode(Map.of("text", "a".repeat(1000)));
+
+        byte[] compressed = RowImageCodec.compress(raw);
+
+        assertTrue(compressed.length < raw.length);
+        assertArrayEquals(raw, RowImageCodec.decompress(compressed));
+    }
+}
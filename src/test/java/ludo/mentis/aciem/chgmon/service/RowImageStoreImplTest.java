@@ -0,0 +1,97 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowImageStoreImplTest {
+
+    private static final String TABLE_NAME = "dbo.test_table";
+
+    @TempDir
+    Path directory;
+
+    private RowImageStoreImpl newStore(DataSize maxDiskSize, int cachedBlocks) {
+        MonitorProperties properties = new MonitorProperties();
+        properties.getRowImages().setEnabled(true);
+        properties.getRowImages().setDirectory(directory.toString());
+        properties.getRowImages().setRangeSize(100);
+        properties.getRowImages().setMaxDiskSize(maxDiskSize);
+        properties.getRowImages().setCachedBlocks(cachedBlocks);
+        return new RowImageStoreImpl(properties);
+    }
+
+    @Test
+    void put_Get_Remove_WithinOneCycle() {
+        RowImageStoreImpl store = newStore(DataSize.ofMegabytes(1), 4);
+
+        store.put(TABLE_NAME, 1L, new byte[]{1});
+
+        assertArrayEquals(new byte[]{1}, store.get(TABLE_NAME, 1L));
+        assertArrayEquals(new byte[]{1}, store.remove(TABLE_NAME, 1L));
+        assertNull(store.get(TABLE_NAME, 1L));
+    }
+
+    @Test
+    void flush_PersistsImagesAcrossInstances() {
+        RowImageStoreImpl store = newStore(DataSize.ofMegabytes(1), 4);
+        store.put(TABLE_NAME, 1L, new byte[]{1});
+        store.put(TABLE_NAME, 250L, new byte[]{2});
+
+        store.flush();
+        RowImageStoreImpl reopened = newStore(DataSize.ofMegabytes(1), 4);
+
+        assertArrayEquals(new byte[]{1}, reopened.get(TABLE_NAME, 1L));
+        assertArrayEquals(new byte[]{2}, reopened.get(TABLE_NAME, 250L));
+        assertTrue(reopened.getDiskBytes() > 0);
+    }
+
+    @Test
+    void isCovered_NewRangeBecomesCoveredAfterFlush() {
+        RowImageStoreImpl store = newStore(DataSize.ofMegabytes(1), 4);
+
+        assertFalse(store.isCovered(TABLE_NAME, 5L));
+        store.put(TABLE_NAME, 5L, new byte[]{5});
+        assertFalse(store.isCovered(TABLE_NAME, 6L));
+
+        store.flush();
+
+        assertTrue(store.isCovered(TABLE_NAME, 6L));
+        assertFalse(store.isCovered(TABLE_NAME, 105L));
+    }
+
+    @Test
+    void flush_OverDiskBudget_EvictsLeastRecentlyWrittenBlocks() {
+        RowImageStoreImpl store = newStore(DataSize.ofBytes(3000), 1);
+        Random random = new Random(42);
+        for (long primaryKey = 0; primaryKey < 1000; primaryKey += 10) {
+            byte[] image = new byte[100];
+            random.nextBytes(image);
+            store.put(TABLE_NAME, primaryKey, image);
+        }
+
+        store.flush();
+
+        assertTrue(store.getDiskBytes() <= 3000);
+        assertNull(store.get(TABLE_NAME, 0L));
+        assertNotNull(store.get(TABLE_NAME, 990L));
+        // Evicted ranges stay covered so that their unchanged rows are not rewritten
+        assertTrue(store.isCovered(TABLE_NAME, 110L));
+    }
+
+    @Test
+    void put_Disabled_Throws() {
+        MonitorProperties properties = new MonitorProperties();
+        properties.getRowImages().setDirectory(directory.toString());
+        RowImageStoreImpl store = new RowImageStoreImpl(properties);
+
+        assertFalse(store.isEnabled());
+        assertThrows(IllegalStateException.class, () -> store.put(TABLE_NAME, 1L, new byte[]{1}));
+    }
+}
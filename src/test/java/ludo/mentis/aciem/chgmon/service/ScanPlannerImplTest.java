@@ -0,0 +1,215 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.BucketChecksum;
+import ludo.mentis.aciem.chgmon.model.BucketStats;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ScanPlannerImplTest {
+
+    private static final String TABLE_NAME = "test_table";
+    private static final String PRIMARY_KEY_NAME = "id";
+
+    @Mock
+    private MonitorRepository monitorRepository;
+
+    private MonitorProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new MonitorProperties();
+        properties.setCron("0 */2 * * * *");
+        properties.getBaseline().setRangeSize(100);
+        properties.getPartialScan().setSlices(3);
+        // Keys 0..599: six buckets, two per slice
+        when(monitorRepository.findKeyBounds(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(new PkRange(0, 599));
+    }
+
+    @Test
+    void plan_SweepsAllBucketsRoundRobin() {
+        ScanPlannerImpl planner = new ScanPlannerImpl(properties, monitorRepository);
+
+        assertEquals(List.of(new PkRange(Long.MIN_VALUE, 199)), planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+        assertEquals(List.of(new PkRange(200, 399)), planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+        assertEquals(List.of(new PkRange(400, Long.MAX_VALUE)), planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+        assertEquals(List.of(new PkRange(Long.MIN_VALUE, 199)), planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+    }
+
+    @Test
+    void plan_RecentlyChangedBucketsAreAlwaysIncluded() {
+        ScanPlannerImpl planner = new ScanPlannerImpl(properties, monitorRepository);
+        planner.recordChange(TABLE_NAME, 450);
+
+        assertEquals(List.of(new PkRange(Long.MIN_VALUE, 199), new PkRange(400, 499)), planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+        // Adjacent to the slice: merged into one range
+        planner.recordChange(TABLE_NAME, 199);
+        assertEquals(List.of(new PkRange(100, 499)), planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+    }
+
+    @Test
+    void recordChange_KeepsOnlyTheMostRecentBuckets() {
+        properties.getPartialScan().setHotBuckets(1);
+        ScanPlannerImpl planner = new ScanPlannerImpl(properties, monitorRepository);
+        planner.recordChange(TABLE_NAME, 250);
+        planner.recordChange(TABLE_NAME, 550);
+
+        assertEquals(List.of(new PkRange(Long.MIN_VALUE, 199), new PkRange(500, 599)), planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+    }
+
+    @Test
+    void plan_SingleSlice_ScansWholeTable() {
+        properties.getPartialScan().setSlices(1);
+        ScanPlannerImpl planner = new ScanPlannerImpl(properties, monitorRepository);
+
+        assertFalse(planner.isPartial());
+        assertNull(planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+        verifyNoInteractions(monitorRepository);
+    }
+
+    @Test
+    void maxDetectionLatency_IsTheLongestSpanOfNCycles() {
+        LocalDateTime monday = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        assertEquals(Duration.ofMinutes(6), ScanPlannerImpl.maxDetectionLatency("0 */2 * * * *", 3, monday));
+        // Business hours only: the worst case spans the weekend
+        assertEquals(Duration.ofHours(57).plusMinutes(6),
+                ScanPlannerImpl.maxDetectionLatency("0 */2 7-21 * * 1-5", 3, monday));
+        assertNull(ScanPlannerImpl.maxDetectionLatency(null, 3, monday));
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant = LocalDateTime.of(2024, 1, 1, 12, 0).atZone(ZoneOffset.UTC).toInstant();
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    private ScanPlannerImpl tieredPlanner(MutableClock clock) {
+        properties.getPartialScan().setSlices(1);
+        properties.getTiering().setEnabled(true);
+        properties.getTiering().setWindow(1);
+        properties.getTiering().setColdRate(0.5);
+        return new ScanPlannerImpl(properties, monitorRepository, clock);
+    }
+
+    @Test
+    void tiering_QuietBucketsMoveToTheColdTier() {
+        ScanPlannerImpl planner = tieredPlanner(new MutableClock());
+
+        List<PkRange> first = planner.plan(TABLE_NAME, PRIMARY_KEY_NAME);
+        planner.recordChange(TABLE_NAME, 450);
+        planner.completeCycle(TABLE_NAME, first);
+
+        assertEquals(List.of(new PkRange(Long.MIN_VALUE, Long.MAX_VALUE)), first);
+        assertEquals(List.of(new PkRange(Long.MIN_VALUE, -1), new PkRange(400, 499), new PkRange(600, Long.MAX_VALUE)),
+                planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+        assertEquals(5, planner.getBucketStats(TABLE_NAME).stream().filter(BucketStats::cold).count());
+    }
+
+    @Test
+    void tiering_ChangeInColdBucketPromotesItImmediately() {
+        ScanPlannerImpl planner = tieredPlanner(new MutableClock());
+        planner.completeCycle(TABLE_NAME, planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+
+        planner.recordChange(TABLE_NAME, 150);
+
+        assertEquals(List.of(new PkRange(Long.MIN_VALUE, -1), new PkRange(100, 199), new PkRange(600, Long.MAX_VALUE)),
+                planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+    }
+
+    @Test
+    void tiering_ColdScanDue_ReadsWholeTable() {
+        MutableClock clock = new MutableClock();
+        ScanPlannerImpl planner = tieredPlanner(clock);
+        planner.completeCycle(TABLE_NAME, planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+
+        // The default cold cron runs at 01:00
+        clock.instant = clock.instant.plus(Duration.ofHours(13));
+        assertNull(planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+        planner.completeCycle(TABLE_NAME, null);
+
+        assertNotNull(planner.plan(TABLE_NAME, PRIMARY_KEY_NAME));
+    }
+
+    @Test
+    void planChangedBuckets_ReadsOnlyBucketsWhoseAggregateChanged() {
+        ScanPlannerImpl planner = new ScanPlannerImpl(properties, monitorRepository);
+        when(monitorRepository.findBucketChecksums(TABLE_NAME, PRIMARY_KEY_NAME, 100, null, null)).thenReturn(
+                List.of(new BucketChecksum(0, 11, 100), new BucketChecksum(100, 22, 100), new BucketChecksum(300, 44, 100)),
+                List.of(new BucketChecksum(0, 11, 100), new BucketChecksum(100, 23, 100), new BucketChecksum(200, 33, 1)));
+
+        // Nothing to compare with yet
+        assertNull(planner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null));
+        planner.completeLightCycle(TABLE_NAME);
+
+        // Bucket 100 changed, 200 appeared and 300 lost all its rows
+        assertEquals(List.of(new PkRange(100, 399)), planner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null));
+    }
+
+    @Test
+    void planChangedBuckets_CycleNotCompleted_KeepsPreviousAggregates() {
+        ScanPlannerImpl planner = new ScanPlannerImpl(properties, monitorRepository);
+        when(monitorRepository.findBucketChecksums(TABLE_NAME, PRIMARY_KEY_NAME, 100, null, null)).thenReturn(
+                List.of(new BucketChecksum(0, 11, 100)),
+                List.of(new BucketChecksum(0, 12, 100)));
+        planner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null);
+        planner.completeLightCycle(TABLE_NAME);
+
+        assertEquals(List.of(new PkRange(0, 99)), planner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null));
+        assertEquals(List.of(new PkRange(0, 99)), planner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null));
+        planner.completeLightCycle(TABLE_NAME);
+        assertEquals(List.of(), planner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null));
+    }
+
+    @Test
+    void isReportedClean_BucketsOfCompletedLightCycleUntilChangeRecorded() {
+        properties.getPartialScan().setSlices(1);
+        ScanPlannerImpl planner = new ScanPlannerImpl(properties, monitorRepository);
+        when(monitorRepository.findBucketChecksums(TABLE_NAME, PRIMARY_KEY_NAME, 100, null, null)).thenReturn(
+                List.of(new BucketChecksum(0, 11, 100), new BucketChecksum(100, 22, 100)));
+
+        // No light cycle has compared anything yet
+        planner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null);
+        assertFalse(planner.isReportedClean(TABLE_NAME, 42));
+
+        planner.completeLightCycle(TABLE_NAME);
+        assertTrue(planner.isReportedClean(TABLE_NAME, 42));
+        assertTrue(planner.isReportedClean(TABLE_NAME, 142));
+        assertFalse(planner.isReportedClean(TABLE_NAME, 242));
+
+        // A change audited since then: the bucket is no longer known to be clean
+        planner.recordChange(TABLE_NAME, 7);
+        assertFalse(planner.isReportedClean(TABLE_NAME, 42));
+        assertTrue(planner.isReportedClean(TABLE_NAME, 142));
+    }
+}
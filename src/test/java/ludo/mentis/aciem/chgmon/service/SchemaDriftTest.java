@@ -0,0 +1,67 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import ludo.mentis.aciem.chgmon.model.TableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaDriftTest {
+
+    private static final TableColumn ID = new TableColumn("id", "bigint");
+    private static final TableColumn NAME = new TableColumn("name", "varchar(50)");
+    private static final TableColumn AMOUNT = new TableColumn("amount", "decimal(18,2)");
+
+    private static SchemaDrift drift(List<TableColumn> previous, List<TableColumn> current) {
+        return new SchemaDrift(new TableSchema("t", LocalDateTime.MIN, previous), new TableSchema("t", LocalDateTime.MAX, current));
+    }
+
+    @Test
+    void project_ColumnAdded_RestoresPreviousChecksum() {
+        ChecksumServiceImpl checksumService = new ChecksumServiceImpl();
+        Map<String, Object> before = new LinkedHashMap<>();
+        before.put("id", 1L);
+        before.put("name", "a");
+        Map<String, Object> after = new LinkedHashMap<>(before);
+        after.put("amount", null);
+
+        SchemaDrift drift = drift(List.of(ID, NAME), List.of(ID, NAME, AMOUNT));
+
+        assertTrue(drift.isPreviousColumnsRetained());
+        assertNotEquals(checksumService.calculate(before), checksumService.calculate(after));
+        assertEquals(checksumService.calculate(before), checksumService.calculate(drift.project(after)));
+    }
+
+    @Test
+    void isPreviousColumnsRetained_ColumnRetyped_ReturnsFalse() {
+        SchemaDrift drift = drift(List.of(ID, AMOUNT), List.of(ID, new TableColumn("amount", "decimal(18,4)")));
+
+        assertFalse(drift.isPreviousColumnsRetained());
+    }
+
+    @Test
+    void valuesChanged_ColumnDropped_ComparesRemainingColumnsByName() {
+        // Previous: id, name, amount. Current: id, amount
+        byte[] stored = ColumnHashes.encode(new int[]{10, 20, 30}, 3);
+        SchemaDrift drift = drift(List.of(ID, NAME, AMOUNT), List.of(ID, AMOUNT));
+
+        assertFalse(drift.valuesChanged(stored, new int[]{10, 30}, 2));
+        assertTrue(drift.valuesChanged(stored, new int[]{10, 31}, 2));
+    }
+
+    @Test
+    void changedColumns_ColumnDroppedAndAdded_ReportsNewColumnAndChangedValues() {
+        // Previous: id, name. Current: id, amount, name
+        byte[] stored = ColumnHashes.encode(new int[]{10, 20}, 2);
+        SchemaDrift drift = drift(List.of(ID, NAME), List.of(ID, AMOUNT, NAME));
+
+        assertArrayEquals(new byte[]{2}, drift.changedColumns(stored, new int[]{10, 99, 20}, 3));
+        assertArrayEquals(new byte[]{6}, drift.changedColumns(stored, new int[]{10, 99, 21}, 3));
+        assertNull(drift.changedColumns(null, new int[]{10, 99, 20}, 3));
+    }
+}
@@ -0,0 +1,91 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.ServerCost;
+import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ServerCostServiceImplTest {
+
+    @Mock
+    private MonitorRepository monitorRepository;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    private ServerCostServiceImpl serverCostService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(dataSource.getConnection()).thenReturn(connection);
+        serverCostService = new ServerCostServiceImpl(new MonitorProperties(), monitorRepository, new JdbcTemplate(dataSource));
+    }
+
+    @Test
+    void end_AfterBegin_ReturnsDeltaAndReleasesConnection() throws Exception {
+        // Arrange
+        when(monitorRepository.findSessionCost()).thenReturn(new ServerCost(10, 20, 100, 5, 1), new ServerCost(60, 90, 1100, 7, 1));
+
+        // Act
+        serverCostService.begin();
+        boolean bound = TransactionSynchronizationManager.hasResource(dataSource);
+        ServerCost serverCost = serverCostService.end();
+
+        // Assert
+        assertTrue(bound);
+        assertEquals(new ServerCost(50, 70, 1000, 2, 0), serverCost);
+        assertFalse(TransactionSynchronizationManager.hasResource(dataSource));
+        verify(dataSource, times(1)).getConnection();
+        verify(connection).close();
+    }
+
+    @Test
+    void begin_CountersUnavailable_DisablesMeasurement() throws Exception {
+        // Arrange
+        when(monitorRepository.findSessionCost()).thenThrow(new InvalidDataAccessResourceUsageException("no view"));
+
+        // Act
+        serverCostService.begin();
+        ServerCost serverCost = serverCostService.end();
+        serverCostService.begin();
+
+        // Assert
+        assertNull(serverCost);
+        assertFalse(serverCostService.isEnabled());
+        assertFalse(TransactionSynchronizationManager.hasResource(dataSource));
+        verify(monitorRepository, times(1)).findSessionCost();
+        verify(connection).close();
+    }
+
+    @Test
+    void begin_Disabled_DoesNotBindConnection() throws Exception {
+        // Arrange
+        MonitorProperties properties = new MonitorProperties();
+        properties.getServerCost().setEnabled(false);
+        serverCostService = new ServerCostServiceImpl(properties, monitorRepository, new JdbcTemplate(dataSource));
+
+        // Act
+        serverCostService.begin();
+
+        // Assert
+        assertNull(serverCostService.end());
+        verify(dataSource, never()).getConnection();
+        verifyNoInteractions(monitorRepository);
+    }
+}
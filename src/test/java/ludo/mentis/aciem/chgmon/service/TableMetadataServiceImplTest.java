@@ -0,0 +1,182 @@
+package ludo.mentis.aciem.chgmon.service;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import ludo.mentis.aciem.chgmon.model.TableSchema;
+import ludo.mentis.aciem.chgmon.repos.TableMetadataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TableMetadataServiceImplTest {
+
+    private static final String TABLE_NAME = "test_table";
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2024, 1, 1, 9, 0);
+    private static final LocalDateTime TUESDAY = LocalDateTime.of(2024, 1, 2, 9, 0);
+    private static final List<TableColumn> COLUMNS = List.of(new TableColumn("id", "bigint"));
+    private static final List<TableColumn> MORE_COLUMNS = List.of(new TableColumn("id", "bigint"), new TableColumn("note", "varchar(50)"));
+
+    @Mock
+    private TableMetadataRepository tableMetadataRepository;
+
+    private MonitorProperties properties;
+
+    private TableMetadataServiceImpl tableMetadataService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new MonitorProperties();
+        properties.setTableName(TABLE_NAME);
+        properties.setPrimaryKeyName("id");
+        tableMetadataService = new TableMetadataServiceImpl(properties, tableMetadataRepository);
+    }
+
+    @Test
+    void detectDrift_FirstSight_StoresSchemaWithoutDrift() {
+        // Arrange
+        when(tableMetadataRepository.findModifyDate(TABLE_NAME)).thenReturn(MONDAY);
+        when(tableMetadataRepository.findColumns(TABLE_NAME)).thenReturn(COLUMNS);
+
+        // Act
+        SchemaDrift result = tableMetadataService.detectDrift(TABLE_NAME);
+
+        // Assert
+        assertNull(result);
+        verify(tableMetadataRepository).save(argThat(schema -> schema.getColumns().equals(COLUMNS)));
+    }
+
+    @Test
+    void detectDrift_SameModifyDate_DoesNotReadColumnsAgain() {
+        // Arrange
+        when(tableMetadataRepository.findModifyDate(TABLE_NAME)).thenReturn(MONDAY);
+        when(tableMetadataRepository.findColumns(TABLE_NAME)).thenReturn(COLUMNS);
+        tableMetadataService.detectDrift(TABLE_NAME);
+
+        // Act
+        SchemaDrift result = tableMetadataService.detectDrift(TABLE_NAME);
+
+        // Assert
+        assertNull(result);
+        verify(tableMetadataRepository, times(1)).findColumns(TABLE_NAME);
+    }
+
+    @Test
+    void detectDrift_ColumnAdded_ReportsDriftUntilAccepted() {
+        // Arrange
+        when(tableMetadataRepository.findStored(TABLE_NAME)).thenReturn(new TableSchema(TABLE_NAME, MONDAY, COLUMNS));
+        when(tableMetadataRepository.findModifyDate(TABLE_NAME)).thenReturn(TUESDAY);
+        when(tableMetadataRepository.findColumns(TABLE_NAME)).thenReturn(MORE_COLUMNS);
+
+        // Act
+        SchemaDrift drift = tableMetadataService.detectDrift(TABLE_NAME);
+        SchemaDrift pending = tableMetadataService.detectDrift(TABLE_NAME);
+        tableMetadataService.accept(drift);
+        SchemaDrift accepted = tableMetadataService.detectDrift(TABLE_NAME);
+
+        // Assert
+        assertNotNull(drift);
+        assertEquals(COLUMNS, drift.getPrevious().getColumns());
+        assertEquals(MORE_COLUMNS, drift.getCurrent().getColumns());
+        assertNotNull(pending);
+        assertNull(accepted);
+        verify(tableMetadataRepository).save(drift.getCurrent());
+    }
+
+    @Test
+    void detectDrift_ModifyDateMovedWithoutColumnChange_RefreshesStoredDate() {
+        // Arrange
+        when(tableMetadataRepository.findStored(TABLE_NAME)).thenReturn(new TableSchema(TABLE_NAME, MONDAY, COLUMNS));
+        when(tableMetadataRepository.findModifyDate(TABLE_NAME)).thenReturn(TUESDAY);
+        when(tableMetadataRepository.findColumns(TABLE_NAME)).thenReturn(COLUMNS);
+
+        // Act
+        SchemaDrift result = tableMetadataService.detectDrift(TABLE_NAME);
+
+        // Assert
+        assertNull(result);
+        verify(tableMetadataRepository).save(argThat(schema -> schema.getModifyDate().equals(TUESDAY)));
+    }
+
+    @Test
+    void detectDrift_TableMissing_ReturnsNull() {
+        assertNull(tableMetadataService.detectDrift(TABLE_NAME));
+        verify(tableMetadataRepository, never()).findColumns(anyString());
+    }
+
+    @Test
+    void isModified_SameModifyDate_ReturnsFalse() {
+        // Arrange
+        when(tableMetadataRepository.findModifyDate(TABLE_NAME)).thenReturn(MONDAY);
+        when(tableMetadataRepository.findColumns(TABLE_NAME)).thenReturn(COLUMNS);
+        tableMetadataService.detectDrift(TABLE_NAME);
+
+        // Act & Assert
+        assertFalse(tableMetadataService.isModified(TABLE_NAME));
+        verify(tableMetadataRepository, times(1)).findColumns(TABLE_NAME);
+    }
+
+    @Test
+    void isModified_ModifyDateMoved_ReturnsTrue() {
+        // Arrange
+        when(tableMetadataRepository.findModifyDate(TABLE_NAME)).thenReturn(MONDAY, TUESDAY);
+        when(tableMetadataRepository.findColumns(TABLE_NAME)).thenReturn(COLUMNS);
+        tableMetadataService.detectDrift(TABLE_NAME);
+
+        // Act & Assert
+        assertTrue(tableMetadataService.isModified(TABLE_NAME));
+    }
+
+    @Test
+    void detectDrift_ColumnSelection_TracksOnlySelectedColumns() {
+        // Arrange: a column outside of the selection was added
+        properties.getColumns().setExclude(List.of("last_viewed"));
+        tableMetadataService = new TableMetadataServiceImpl(properties, tableMetadataRepository);
+        List<TableColumn> stored = List.of(new TableColumn("id", "bigint"), new TableColumn("note", "varchar(50)"));
+        List<TableColumn> current = List.of(new TableColumn("id", "bigint"), new TableColumn("note", "varchar(50)"), new TableColumn("last_viewed", "datetime"));
+        when(tableMetadataRepository.findModifyDate(TABLE_NAME)).thenReturn(TUESDAY);
+        when(tableMetadataRepository.findStored(TABLE_NAME)).thenReturn(new TableSchema(TABLE_NAME, MONDAY, stored));
+        when(tableMetadataRepository.findColumns(TABLE_NAME)).thenReturn(current);
+
+        // Act
+        SchemaDrift result = tableMetadataService.detectDrift(TABLE_NAME);
+
+        // Assert
+        assertNull(result);
+        assertEquals(List.of("id", "note"), tableMetadataService.getProjection(TABLE_NAME));
+        verify(tableMetadataRepository, times(1)).findColumns(TABLE_NAME);
+    }
+
+    @Test
+    void getProjection_NoColumnSelection_ReturnsNull() {
+        assertNull(tableMetadataService.getProjection(TABLE_NAME));
+        verifyNoInteractions(tableMetadataRepository);
+    }
+
+    @Test
+    void validateColumns_UnknownColumn_ThrowsIllegalArgumentException() {
+        // Arrange
+        properties.getColumns().setInclude(List.of("note", "typo"));
+        tableMetadataService = new TableMetadataServiceImpl(properties, tableMetadataRepository);
+        when(tableMetadataRepository.findColumns(TABLE_NAME)).thenReturn(MORE_COLUMNS);
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> tableMetadataService.validateColumns());
+        assertEquals("Unknown column in monitor.columns.include: typo", exception.getMessage());
+    }
+
+    @Test
+    void validateColumns_NoColumnSelection_ReadsNothing() {
+        tableMetadataService.validateColumns();
+
+        verifyNoInteractions(tableMetadataRepository);
+    }
+}
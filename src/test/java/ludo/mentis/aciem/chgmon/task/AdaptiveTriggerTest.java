@@ -0,0 +1,105 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveTriggerTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T12:00:00Z");
+
+    private MonitorProperties.Adaptive settings;
+
+    @BeforeEach
+    void setUp() {
+        settings = new MonitorProperties.Adaptive();
+        settings.setMinInterval(Duration.ofSeconds(10));
+        settings.setMaxInterval(Duration.ofSeconds(60));
+        settings.setMaxDutyCycle(0.5);
+    }
+
+    // Plans the delay after a cycle that ran from START for the given cost
+    private static Duration next(AdaptiveTrigger trigger, long changes, Duration cost) {
+        trigger.recordChanges(changes);
+        Instant completion = START.plus(cost);
+        return Duration.between(completion, trigger.nextExecution(new SimpleTriggerContext(START, START, completion)));
+    }
+
+    @Test
+    void nextExecution_QuietCycles_StretchUpToMaxInterval() {
+        // Arrange
+        AdaptiveTrigger trigger = new AdaptiveTrigger(settings);
+
+        // Act & Assert
+        assertEquals(Duration.ofSeconds(15), next(trigger, 0, Duration.ofSeconds(1)));
+        assertEquals(Duration.ofMillis(22500), next(trigger, 0, Duration.ofSeconds(1)));
+        for (int i = 0; i < 10; i++) {
+            next(trigger, 0, Duration.ofSeconds(1));
+        }
+        assertEquals(Duration.ofSeconds(60), next(trigger, 0, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void nextExecution_ChangesFound_HalveDownToMinInterval() {
+        // Arrange
+        settings.setMinInterval(Duration.ofSeconds(10));
+        AdaptiveTrigger trigger = new AdaptiveTrigger(settings);
+        for (int i = 0; i < 10; i++) {
+            next(trigger, 0, Duration.ofSeconds(1));
+        }
+
+        // Act & Assert
+        assertEquals(Duration.ofSeconds(30), next(trigger, 5, Duration.ofSeconds(1)));
+        assertEquals(Duration.ofSeconds(15), next(trigger, 5, Duration.ofSeconds(1)));
+        assertEquals(Duration.ofSeconds(10), next(trigger, 5, Duration.ofSeconds(1)));
+        assertEquals(Duration.ofSeconds(10), next(trigger, 5, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void nextExecution_ExpensiveCycle_RestsToKeepDutyCycle() {
+        // Arrange: at most half of the time scanning, so a 90s cycle needs 90s of rest, beyond the max interval
+        AdaptiveTrigger trigger = new AdaptiveTrigger(settings);
+
+        // Act
+        Duration delay = next(trigger, 5, Duration.ofSeconds(90));
+
+        // Assert
+        assertEquals(Duration.ofSeconds(90), delay);
+    }
+
+    @Test
+    void nextExecution_ServerCpuHeavyCycle_RestsToKeepServerCpuShare() {
+        // Arrange: at most a tenth of a server CPU, so 20s of server CPU in a 40s cycle needs 160s of rest
+        settings.setMaxServerCpu(0.1);
+        AdaptiveTrigger trigger = new AdaptiveTrigger(settings);
+        trigger.recordServerCpu(Duration.ofSeconds(20));
+
+        // Act
+        Duration delay = next(trigger, 5, Duration.ofSeconds(40));
+
+        // Assert
+        assertEquals(Duration.ofSeconds(160), delay);
+    }
+
+    @Test
+    void nextExecution_FirstCycle_StartsAfterMinInterval() {
+        AdaptiveTrigger trigger = new AdaptiveTrigger(settings);
+        SimpleTriggerContext context = new SimpleTriggerContext(java.time.Clock.fixed(START, java.time.ZoneOffset.UTC));
+
+        assertEquals(START.plusSeconds(10), trigger.nextExecution(context));
+    }
+
+    @Test
+    void constructor_MaxBelowMin_ThrowsIllegalArgumentException() {
+        settings.setMaxInterval(Duration.ofSeconds(5));
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> new AdaptiveTrigger(settings));
+        assertEquals("Adaptive max interval cannot be shorter than the min interval", exception.getMessage());
+    }
+}
@@ -0,0 +1,190 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.model.CycleStats;
+import ludo.mentis.aciem.chgmon.service.AuditWriter;
+import ludo.mentis.aciem.chgmon.service.ChecksumService;
+import ludo.mentis.aciem.chgmon.service.MonitorMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MonitorSchedulerTest {
+
+    @Mock
+    private MonitorTask monitorTask;
+
+    private MonitorProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    // Holds the cycles handed to the cycle thread until the test runs them
+    private final List<Runnable> submitted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new MonitorProperties();
+        properties.setTableName("test_table");
+        properties.setCron("0 */2 * * * *");
+        when(monitorTask.execute()).thenReturn(true);
+    }
+
+    private MonitorScheduler scheduler(MonitorProperties.OverrunPolicy policy) {
+        properties.getCycle().setOverrunPolicy(policy);
+        meterRegistry = new SimpleMeterRegistry();
+        var monitorMetrics = new MonitorMetrics(meterRegistry, properties, mock(ChecksumService.class), mock(AuditWriter.class));
+        return new MonitorScheduler(properties, monitorTask, monitorMetrics, submitted::add);
+    }
+
+    @Test
+    void fire_Skip_DropsTriggersDuringCycle() {
+        // Arrange
+        MonitorScheduler scheduler = scheduler(MonitorProperties.OverrunPolicy.SKIP);
+
+        // Act
+        scheduler.fire();
+        scheduler.fire();
+        scheduler.fire();
+        submitted.get(0).run();
+
+        // Assert
+        assertEquals(1, submitted.size());
+        verify(monitorTask, times(1)).execute();
+        assertEquals(new CycleStats(1, 0, 0, 2, 0, 0), scheduler.getCycleStats());
+    }
+
+    @Test
+    void fire_Queue_ExposesLagAndCycleCounters() {
+        // Arrange
+        MonitorScheduler scheduler = scheduler(MonitorProperties.OverrunPolicy.QUEUE);
+
+        // Act
+        scheduler.fire();
+        scheduler.fire();
+        submitted.get(0).run();
+
+        // Assert
+        assertEquals(2, meterRegistry.get("chgmon.cycle.lag").timer().count());
+        assertEquals(2.0, meterRegistry.get("chgmon.cycles").tag("outcome", "completed").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("chgmon.cycles").tag("outcome", "queued").functionCounter().count());
+    }
+
+    @Test
+    void fire_Queue_RunsMissedTriggersUpToLimit() {
+        // Arrange
+        properties.getCycle().setMaxQueued(2);
+        MonitorScheduler scheduler = scheduler(MonitorProperties.OverrunPolicy.QUEUE);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            scheduler.fire();
+        }
+        submitted.get(0).run();
+
+        // Assert
+        verify(monitorTask, times(3)).execute();
+        assertEquals(new CycleStats(3, 0, 0, 1, 2, 0), scheduler.getCycleStats());
+    }
+
+    @Test
+    void fire_Coalesce_RunsOneMoreCycle() {
+        // Arrange
+        MonitorScheduler scheduler = scheduler(MonitorProperties.OverrunPolicy.COALESCE);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            scheduler.fire();
+        }
+        submitted.get(0).run();
+
+        // Assert
+        verify(monitorTask, times(2)).execute();
+        assertEquals(new CycleStats(2, 0, 0, 0, 0, 3), scheduler.getCycleStats());
+    }
+
+    @Test
+    void fire_AfterCycleEnded_StartsNewCycle() {
+        // Arrange
+        when(monitorTask.execute()).thenReturn(false).thenThrow(new IllegalStateException("boom"));
+        MonitorScheduler scheduler = scheduler(MonitorProperties.OverrunPolicy.SKIP);
+
+        // Act
+        scheduler.fire();
+        submitted.get(0).run();
+        scheduler.fire();
+        submitted.get(1).run();
+
+        // Assert: a cancelled or failed cycle releases the table
+        assertEquals(2, submitted.size());
+        assertEquals(new CycleStats(0, 1, 1, 0, 0, 0), scheduler.getCycleStats());
+    }
+
+    @Test
+    void runAdaptive_FeedsChangesToTrigger() {
+        // Arrange
+        properties.getAdaptive().setEnabled(true);
+        when(monitorTask.getLastCycleChanges()).thenReturn(3L);
+        MonitorScheduler scheduler = scheduler(MonitorProperties.OverrunPolicy.SKIP);
+
+        // Act
+        scheduler.runAdaptive();
+
+        // Assert: runs on the calling thread, no overrun handling involved
+        verify(monitorTask).execute();
+        verify(monitorTask).getLastCycleChanges();
+        assertTrue(submitted.isEmpty());
+        assertEquals(new CycleStats(1, 0, 0, 0, 0, 0), scheduler.getCycleStats());
+    }
+
+    @Test
+    void fire_Profiles_RunEachWithItsSettingsAndShareTheLease() {
+        // Arrange
+        MonitorProperties.Profile light = profile("0 */5 8-18 * * MON-FRI", MonitorProperties.Strategy.LIGHT);
+        MonitorProperties.Profile deep = profile("0 0 2 * * *", MonitorProperties.Strategy.DEEP);
+        properties.getProfiles().put("business-hours", light);
+        properties.getProfiles().put("nightly", deep);
+        when(monitorTask.execute(anyString(), any())).thenReturn(true);
+        MonitorScheduler scheduler = scheduler(MonitorProperties.OverrunPolicy.COALESCE);
+
+        // Act
+        scheduler.fire("nightly");
+        scheduler.fire("business-hours");
+        scheduler.fire("business-hours");
+        scheduler.fire("nightly");
+        submitted.get(0).run();
+
+        // Assert: one pending cycle per profile
+        assertEquals(1, submitted.size());
+        verify(monitorTask, times(2)).execute("nightly", deep);
+        verify(monitorTask, times(1)).execute("business-hours", light);
+        verify(monitorTask, never()).execute();
+        assertEquals(new CycleStats(3, 0, 0, 0, 0, 3), scheduler.getCycleStats());
+    }
+
+    @Test
+    void constructor_InvalidProfiles_ThrowsIllegalArgumentException() {
+        properties.getProfiles().put("nightly", profile(null, MonitorProperties.Strategy.DEEP));
+        assertThrows(IllegalArgumentException.class, () -> scheduler(MonitorProperties.OverrunPolicy.SKIP));
+
+        properties.getProfiles().put("nightly", profile("0 0 2 * * *", MonitorProperties.Strategy.DEEP));
+        properties.getAdaptive().setEnabled(true);
+        assertThrows(IllegalArgumentException.class, () -> scheduler(MonitorProperties.OverrunPolicy.SKIP));
+    }
+
+    private static MonitorProperties.Profile profile(String cron, MonitorProperties.Strategy strategy) {
+        MonitorProperties.Profile profile = new MonitorProperties.Profile();
+        profile.setCron(cron);
+        profile.setStrategy(strategy);
+        return profile;
+    }
+}
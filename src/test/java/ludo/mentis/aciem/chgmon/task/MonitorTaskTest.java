@@ -1,24 +1,59 @@
 package ludo.mentis.aciem.chgmon.task;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import ludo.mentis.aciem.chgmon.config.MonitorProperties;
 import ludo.mentis.aciem.chgmon.model.Audit;
 import ludo.mentis.aciem.chgmon.model.ChangeType;
+import ludo.mentis.aciem.chgmon.model.CycleRun;
+import ludo.mentis.aciem.chgmon.model.PkRange;
+import ludo.mentis.aciem.chgmon.model.ServerCost;
+import ludo.mentis.aciem.chgmon.model.TableColumn;
+import ludo.mentis.aciem.chgmon.model.TableSchema;
 import ludo.mentis.aciem.chgmon.model.TableChecksum;
 import ludo.mentis.aciem.chgmon.repos.AuditRepository;
 import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
 import ludo.mentis.aciem.chgmon.repos.TableChecksumRepository;
+import ludo.mentis.aciem.chgmon.service.AuditWriter;
+import ludo.mentis.aciem.chgmon.service.AuditWriterImpl;
+import ludo.mentis.aciem.chgmon.service.BlockBaseline;
+import ludo.mentis.aciem.chgmon.service.BlockBaselineService;
+import ludo.mentis.aciem.chgmon.service.ChangeLog;
 import ludo.mentis.aciem.chgmon.service.ChecksumService;
+import ludo.mentis.aciem.chgmon.service.CycleContext;
+import ludo.mentis.aciem.chgmon.service.CycleRunService;
+import ludo.mentis.aciem.chgmon.service.HashColumnService;
+import ludo.mentis.aciem.chgmon.service.LeaseService;
+import ludo.mentis.aciem.chgmon.service.MonitorMetrics;
+import ludo.mentis.aciem.chgmon.service.RowImageCodec;
+import ludo.mentis.aciem.chgmon.service.RowImageStore;
+import ludo.mentis.aciem.chgmon.service.ScanPlanner;
+import ludo.mentis.aciem.chgmon.service.SchemaDrift;
+import ludo.mentis.aciem.chgmon.service.ServerCostService;
+import ludo.mentis.aciem.chgmon.service.TableMetadataService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -32,15 +67,46 @@ class MonitorTaskTest {
     @Mock
     private AuditRepository auditRepository;
 
+    @Mock
+    private ChangeLog changeLog;
+
     @Mock
     private MonitorRepository monitorRepository;
 
     @Mock
     private TableChecksumRepository tableChecksumRepository;
 
+    @Mock
+    private BlockBaselineService blockBaselineService;
+
+    @Mock
+    private RowImageStore rowImageStore;
+
+    @Mock
+    private TableMetadataService tableMetadataService;
+
+    @Mock
+    private HashColumnService hashColumnService;
+
+    @Mock
+    private ScanPlanner scanPlanner;
+
+    @Mock
+    private LeaseService leaseService;
+
+    @Mock
+    private CycleRunService cycleRunService;
+
+    @Mock
+    private ServerCostService serverCostService;
+
     @Mock
     private MonitorProperties monitorProperties;
 
+    private SimpleMeterRegistry meterRegistry;
+
+    private MonitorMetrics monitorMetrics;
+
     private MonitorTask monitorTask;
 
     private static final String TABLE_NAME = "test_table";
@@ -54,17 +120,41 @@ class MonitorTaskTest {
         // Configure MonitorProperties mock
         when(monitorProperties.getTableName()).thenReturn(TABLE_NAME);
         when(monitorProperties.getPrimaryKeyName()).thenReturn(PRIMARY_KEY_NAME);
+        when(monitorProperties.getBaseline()).thenReturn(new MonitorProperties.Baseline());
+        when(monitorProperties.getCycle()).thenReturn(new MonitorProperties.Cycle());
+        when(monitorProperties.getCentralStore()).thenReturn(new MonitorProperties.CentralStore());
+        // Full scans unless a test plans a partial one
+        when(scanPlanner.plan(anyString(), anyString())).thenReturn(null);
+        // Every column unless a test selects some
+        when(tableMetadataService.getProjection(anyString())).thenReturn(null);
+        meterRegistry = new SimpleMeterRegistry();
+        monitorMetrics = new MonitorMetrics(meterRegistry, monitorProperties, checksumService, mock(AuditWriter.class));
         
         // Create MonitorTask instance with mocked dependencies
         monitorTask = new MonitorTask(
                 monitorProperties,
                 checksumService,
-                auditRepository,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()),
                 monitorRepository,
-                tableChecksumRepository
+                tableChecksumRepository,
+                blockBaselineService,
+                rowImageStore,
+                tableMetadataService,
+                hashColumnService,
+                scanPlanner,
+                leaseService,
+                monitorMetrics,
+                cycleRunService,
+                serverCostService
         );
     }
 
+    private static MonitorProperties synchronousAudits() {
+        MonitorProperties properties = new MonitorProperties();
+        properties.getAuditWriter().setAsync(false);
+        return properties;
+    }
+
     @Test
     void execute_CallsProcessDeletedRowsAndProcessNewAndUpdatedRows() {
         // Create a spy of the monitorTask to verify protected method calls
@@ -80,33 +170,63 @@ class MonitorTaskTest {
 
     @Test
     void processDeletedRows_NoDeletedRows_DoesNothing() {
-        // Configure monitorRepository to return null (no deleted rows)
-        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(null);
+        // Configure monitorRepository to return no deleted rows
+        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of());
         
         // Execute the method under test
         monitorTask.processDeletedRows();
         
         // Verify that auditRepository.insert is not called
         verify(auditRepository, never()).insert(any(Audit.class));
+        verify(tableChecksumRepository, never()).deleteByTableNameAndPrimaryKeys(anyString(), anyList());
     }
 
     @Test
-    void processDeletedRows_DeletedRowAlreadyProcessed_DoesNothing() {
-        // Create a TableChecksum for a deleted row
+    void processDeletedRows_DeletedReinsertedAndDeletedAgain_AuditsBothDeletes() {
+        // Arrange: the row is deleted, comes back, then is deleted again
         TableChecksum deletedRow = new TableChecksum();
         deletedRow.setPrimaryKey(PRIMARY_KEY_VALUE);
-        
-        // Configure monitorRepository to return the deleted row
-        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(deletedRow);
-        
-        // Configure auditRepository to indicate the row is already deleted
-        when(auditRepository.isAlreadyDeleted(TABLE_NAME, PRIMARY_KEY_VALUE)).thenReturn(true);
-        
-        // Execute the method under test
+        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(deletedRow));
+        Map<String, Object> row = Map.of(PRIMARY_KEY_NAME, PRIMARY_KEY_VALUE);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(row));
+        when(checksumService.calculate(row)).thenReturn(12345L);
+        when(tableChecksumRepository.findByTableNameAndPrimaryKey(TABLE_NAME, PRIMARY_KEY_VALUE)).thenReturn(null);
+
+        // Act
         monitorTask.processDeletedRows();
-        
-        // Verify that auditRepository.insert is not called
-        verify(auditRepository, never()).insert(any(Audit.class));
+        monitorTask.processNewAndUpdatedRows();
+        monitorTask.processDeletedRows();
+
+        // Assert
+        InOrder inOrder = inOrder(auditRepository);
+        inOrder.verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == PRIMARY_KEY_VALUE && a.getChangeType() == ChangeType.DELETE));
+        inOrder.verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == PRIMARY_KEY_VALUE && a.getChangeType() == ChangeType.INSERT));
+        inOrder.verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == PRIMARY_KEY_VALUE && a.getChangeType() == ChangeType.DELETE));
+        verify(auditRepository, times(2)).insert(argThat(a -> a.getChangeType() == ChangeType.DELETE));
+        verify(tableChecksumRepository, times(2)).deleteByTableNameAndPrimaryKeys(TABLE_NAME, List.of(PRIMARY_KEY_VALUE));
+    }
+
+    @Test
+    void processDeletedRows_SeveralDeletedRows_AuditsEachOne() {
+        // Arrange: rows 1, 2 and 3 were deleted
+        List<TableChecksum> deletedRows = new ArrayList<>();
+        for (long primaryKey = 1; primaryKey <= 3; primaryKey++) {
+            TableChecksum deletedRow = new TableChecksum();
+            deletedRow.setPrimaryKey(primaryKey);
+            deletedRows.add(deletedRow);
+        }
+        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(deletedRows);
+
+        // Act
+        monitorTask.processDeletedRows();
+
+        // Assert
+        for (long primaryKey = 1; primaryKey <= 3; primaryKey++) {
+            long expected = primaryKey;
+            verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == expected && a.getChangeType() == ChangeType.DELETE));
+        }
+        verify(auditRepository, never()).isAlreadyDeleted(anyString(), anyLong());
+        verify(tableChecksumRepository).deleteByTableNameAndPrimaryKeys(TABLE_NAME, List.of(1L, 2L, 3L));
     }
 
     @Test
@@ -116,10 +236,7 @@ class MonitorTaskTest {
         deletedRow.setPrimaryKey(PRIMARY_KEY_VALUE);
         
         // Configure monitorRepository to return the deleted row
-        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(deletedRow);
-        
-        // Configure auditRepository to indicate the row is not already deleted
-        when(auditRepository.isAlreadyDeleted(TABLE_NAME, PRIMARY_KEY_VALUE)).thenReturn(false);
+        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(deletedRow));
         
         // Execute the method under test
         monitorTask.processDeletedRows();
@@ -324,4 +441,852 @@ class MonitorTaskTest {
         verify(tableChecksumRepository, never()).update(argThat(tc -> tc.getPrimaryKey() == 3L));
         verify(auditRepository, never()).insert(argThat(a -> a.getPrimaryKey() == 3L));
     }
-}
\ No newline at end of file
+
+    @Test
+    void processBlockBaseline_MergesScanWithBlocks_RecordsInsertUpdateAndDelete() {
+        // Baseline holds rows 1, 2 and 3; the table now holds 1 (unchanged), 2 (changed) and 4 (new)
+        BlockBaseline baseline = new BlockBaseline(TABLE_NAME, 1024, List.of());
+        baseline.put(1L, 100L);
+        baseline.put(2L, 200L);
+        baseline.put(3L, 300L);
+        baseline.finish();
+        BlockBaseline loaded = new BlockBaseline(TABLE_NAME, 1024, baseline.getChangedBlocks());
+        when(blockBaselineService.load(TABLE_NAME)).thenReturn(loaded);
+
+        Map<String, Object> row1 = Map.of(PRIMARY_KEY_NAME, 1L);
+        Map<String, Object> row2 = Map.of(PRIMARY_KEY_NAME, 2L);
+        Map<String, Object> row4 = Map.of(PRIMARY_KEY_NAME, 4L);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(row1, row2, row4));
+        when(checksumService.calculate(row1)).thenReturn(100L);
+        when(checksumService.calculate(row2)).thenReturn(201L);
+        when(checksumService.calculate(row4)).thenReturn(400L);
+
+        monitorTask.processBlockBaseline();
+
+        verify(blockBaselineService).save(loaded);
+        assertEquals(1, loaded.getChangedBlocks().size());
+        assertEquals(3, loaded.getChangedBlocks().get(0).getRowCount());
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 2L && a.getChangeType() == ChangeType.UPDATE));
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 3L && a.getChangeType() == ChangeType.DELETE));
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 4L && a.getChangeType() == ChangeType.INSERT));
+        verify(auditRepository, never()).insert(argThat(a -> a.getPrimaryKey() == 1L));
+        verify(tableChecksumRepository, never()).findByTableNameAndPrimaryKey(anyString(), anyLong());
+    }
+
+    @Test
+    void processBlockBaseline_ColumnHashesEnabled_RecordsChangedColumns() {
+        // Arrange
+        MonitorProperties properties = new MonitorProperties();
+        properties.setTableName(TABLE_NAME);
+        properties.setPrimaryKeyName(PRIMARY_KEY_NAME);
+        properties.setColumnHashes(true);
+        ludo.mentis.aciem.chgmon.service.ChecksumServiceImpl realChecksumService = new ludo.mentis.aciem.chgmon.service.ChecksumServiceImpl();
+        MonitorTask task = new MonitorTask(properties, realChecksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository, blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+
+        Map<String, Object> before = new java.util.LinkedHashMap<>();
+        before.put(PRIMARY_KEY_NAME, 1L);
+        before.put("amount", 100);
+        before.put("ccy", "EUR");
+        int[] hashes = new int[3];
+        long checksumBefore = realChecksumService.calculate(before, hashes);
+        BlockBaseline seed = new BlockBaseline(TABLE_NAME, 1024, List.of());
+        seed.put(1L, checksumBefore, ludo.mentis.aciem.chgmon.service.ColumnHashes.encode(hashes, 3));
+        seed.finish();
+        when(blockBaselineService.load(TABLE_NAME)).thenReturn(new BlockBaseline(TABLE_NAME, 1024, seed.getChangedBlocks()));
+
+        Map<String, Object> after = new java.util.LinkedHashMap<>(before);
+        after.put("ccy", "USD");
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(after));
+
+        // Act
+        task.processBlockBaseline();
+
+        // Assert: only the third column (bit 2) changed
+        ArgumentCaptor<Audit> auditCaptor = ArgumentCaptor.forClass(Audit.class);
+        verify(auditRepository).insert(auditCaptor.capture());
+        assertEquals(ChangeType.UPDATE, auditCaptor.getValue().getChangeType());
+        assertArrayEquals(new byte[]{4}, auditCaptor.getValue().getChangedColumns());
+    }
+
+    @Test
+    void processNewAndUpdatedRows_RowImagesEnabled_AttachesBeforeAndAfterImages() {
+        // Arrange
+        Map<String, Object> before = new java.util.LinkedHashMap<>();
+        before.put(PRIMARY_KEY_NAME, PRIMARY_KEY_VALUE);
+        before.put("name", "old");
+        Map<String, Object> after = new java.util.LinkedHashMap<>(before);
+        after.put("name", "new");
+        byte[] oldImage = RowImageCodec.encode(before);
+
+        TableChecksum tableChecksum = new TableChecksum();
+        tableChecksum.setId(1);
+        tableChecksum.setCrc32(100L);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(after));
+        when(checksumService.calculate(after)).thenReturn(200L);
+        when(tableChecksumRepository.findByTableNameAndPrimaryKey(TABLE_NAME, PRIMARY_KEY_VALUE)).thenReturn(tableChecksum);
+        when(rowImageStore.isEnabled()).thenReturn(true);
+        when(rowImageStore.get(TABLE_NAME, PRIMARY_KEY_VALUE)).thenReturn(oldImage);
+
+        // Act
+        monitorTask.processNewAndUpdatedRows();
+
+        // Assert
+        ArgumentCaptor<Audit> auditCaptor = ArgumentCaptor.forClass(Audit.class);
+        verify(auditRepository).insert(auditCaptor.capture());
+        Audit audit = auditCaptor.getValue();
+        assertEquals(before, RowImageCodec.decode(RowImageCodec.decompress(audit.getOldImage())));
+        assertEquals(after, RowImageCodec.decode(RowImageCodec.decompress(audit.getNewImage())));
+        verify(rowImageStore).put(eq(TABLE_NAME), eq(PRIMARY_KEY_VALUE), argThat(image -> RowImageCodec.decode(image).equals(after)));
+    }
+
+    @Test
+    void processDeletedRows_RowImagesEnabled_AttachesLastKnownImage() {
+        // Arrange
+        Map<String, Object> last = Map.of(PRIMARY_KEY_NAME, PRIMARY_KEY_VALUE);
+        byte[] oldImage = RowImageCodec.encode(last);
+        TableChecksum deleted = new TableChecksum();
+        deleted.setPrimaryKey(PRIMARY_KEY_VALUE);
+        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(deleted));
+        when(rowImageStore.isEnabled()).thenReturn(true);
+        when(rowImageStore.remove(TABLE_NAME, PRIMARY_KEY_VALUE)).thenReturn(oldImage);
+
+        // Act
+        monitorTask.processDeletedRows();
+
+        // Assert
+        ArgumentCaptor<Audit> auditCaptor = ArgumentCaptor.forClass(Audit.class);
+        verify(auditRepository).insert(auditCaptor.capture());
+        assertEquals(ChangeType.DELETE, auditCaptor.getValue().getChangeType());
+        assertEquals(last, RowImageCodec.decode(RowImageCodec.decompress(auditCaptor.getValue().getOldImage())));
+        assertNull(auditCaptor.getValue().getNewImage());
+    }
+
+    private static SchemaDrift columnAdded() {
+        TableSchema previous = new TableSchema(TABLE_NAME, LocalDateTime.of(2024, 1, 1, 0, 0),
+                List.of(new TableColumn(PRIMARY_KEY_NAME, "bigint"), new TableColumn("name", "varchar(50)")));
+        TableSchema current = new TableSchema(TABLE_NAME, LocalDateTime.of(2024, 1, 2, 0, 0),
+                List.of(new TableColumn(PRIMARY_KEY_NAME, "bigint"), new TableColumn("name", "varchar(50)"), new TableColumn("note", "varchar(50)")));
+        return new SchemaDrift(previous, current);
+    }
+
+    @Test
+    void execute_ColumnAdded_RehashesUnchangedRowsWithoutAuditing() {
+        // Arrange: row 1 kept its values, row 2 changed its name in the same window as the column was added
+        ludo.mentis.aciem.chgmon.service.ChecksumServiceImpl realChecksumService = new ludo.mentis.aciem.chgmon.service.ChecksumServiceImpl();
+        MonitorTask task = new MonitorTask(monitorProperties, realChecksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository,
+                blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+        SchemaDrift drift = columnAdded();
+        when(tableMetadataService.detectDrift(TABLE_NAME)).thenReturn(drift);
+
+        Map<String, Object> row1Before = new java.util.LinkedHashMap<>();
+        row1Before.put(PRIMARY_KEY_NAME, 1L);
+        row1Before.put("name", "a");
+        Map<String, Object> row2Before = new java.util.LinkedHashMap<>();
+        row2Before.put(PRIMARY_KEY_NAME, 2L);
+        row2Before.put("name", "b");
+        Map<String, Object> row1 = new java.util.LinkedHashMap<>(row1Before);
+        row1.put("note", null);
+        Map<String, Object> row2 = new java.util.LinkedHashMap<>(row2Before);
+        row2.put("name", "changed");
+        row2.put("note", null);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(row1, row2));
+        when(tableChecksumRepository.findByTableNameAndPrimaryKey(TABLE_NAME, 1L)).thenReturn(storedChecksum(1, 1L, realChecksumService.calculate(row1Before)));
+        when(tableChecksumRepository.findByTableNameAndPrimaryKey(TABLE_NAME, 2L)).thenReturn(storedChecksum(2, 2L, realChecksumService.calculate(row2Before)));
+        // The task reuses its batch list, so copy it when it is written
+        List<TableChecksum> rehashed = new ArrayList<>();
+        when(tableChecksumRepository.updateBatch(anyList())).thenAnswer(invocation -> {
+            List<TableChecksum> batch = invocation.getArgument(0);
+            rehashed.addAll(batch);
+            return batch.size();
+        });
+
+        // Act
+        task.execute();
+
+        // Assert
+        assertEquals(1, rehashed.size());
+        assertEquals(1L, rehashed.get(0).getPrimaryKey());
+        assertEquals(realChecksumService.calculate(row1), rehashed.get(0).getCrc32());
+        verify(tableChecksumRepository).update(argThat(tc -> tc.getPrimaryKey() == 2L));
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 2L && a.getChangeType() == ChangeType.UPDATE));
+        verify(auditRepository, never()).insert(argThat(a -> a.getPrimaryKey() == 1L));
+        verify(tableMetadataService).accept(drift);
+    }
+
+    @Test
+    void execute_NoDrift_DoesNotAcceptSchema() {
+        // Act
+        monitorTask.execute();
+
+        // Assert
+        verify(tableMetadataService).detectDrift(TABLE_NAME);
+        verify(tableMetadataService, never()).accept(any());
+        verify(tableChecksumRepository, never()).updateBatch(any());
+    }
+
+    private static TableChecksum storedChecksum(int id, long primaryKey, long crc32) {
+        TableChecksum tableChecksum = new TableChecksum();
+        tableChecksum.setId(id);
+        tableChecksum.setTableName(TABLE_NAME);
+        tableChecksum.setPrimaryKey(primaryKey);
+        tableChecksum.setCrc32(crc32);
+        return tableChecksum;
+    }
+
+    @Test
+    void execute_HashColumnMode_ScansHashesAndRehashesSilentlyAfterProvisioning() {
+        // Arrange
+        when(hashColumnService.isEnabled()).thenReturn(true);
+        when(hashColumnService.getColumnName()).thenReturn("chgmon_hash");
+        MonitorTask task = new MonitorTask(monitorProperties, checksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository,
+                blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+        when(hashColumnService.prepare(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(true, false);
+
+        Map<String, Object> row = new HashMap<>();
+        row.put(PRIMARY_KEY_NAME, PRIMARY_KEY_VALUE);
+        row.put("chgmon_hash", -1);
+        when(monitorRepository.findHashes(TABLE_NAME, PRIMARY_KEY_NAME, "chgmon_hash")).thenReturn(List.of(row));
+        TableChecksum crcBaseline = storedChecksum(1, PRIMARY_KEY_VALUE, 12345L);
+        when(tableChecksumRepository.findByTableNameAndPrimaryKey(TABLE_NAME, PRIMARY_KEY_VALUE)).thenReturn(crcBaseline);
+
+        // Act: the first cycle switches from CRC32 to the persisted hash
+        task.execute();
+
+        // Assert
+        verify(monitorRepository, never()).findAll(anyString(), anyString());
+        verify(checksumService, never()).calculate(any());
+        verify(tableChecksumRepository).updateBatch(anyList());
+        verify(auditRepository, never()).insert(any());
+        assertEquals(0xFFFFFFFFL, crcBaseline.getCrc32());
+
+        // Act: a later cycle sees the hash move and audits the row
+        row.put("chgmon_hash", 42);
+        task.execute();
+
+        // Assert
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey().equals(PRIMARY_KEY_VALUE) && a.getChangeType() == ChangeType.UPDATE));
+    }
+
+    @Test
+    void execute_PartialScan_BlockModeReadsSliceAndKeepsOtherBlocks() {
+        // Arrange: the baseline has rows in two ranges, the cycle only reads the first one
+        MonitorProperties.Baseline blockStore = new MonitorProperties.Baseline();
+        blockStore.setStore(MonitorProperties.BaselineStore.BLOCK);
+        when(monitorProperties.getBaseline()).thenReturn(blockStore);
+        MonitorTask task = new MonitorTask(monitorProperties, checksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository,
+                blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+
+        BlockBaseline seed = new BlockBaseline(TABLE_NAME, 1024, List.of());
+        seed.put(1L, 100L);
+        seed.put(2000L, 200L);
+        seed.finish();
+        BlockBaseline loaded = new BlockBaseline(TABLE_NAME, 1024, seed.getChangedBlocks());
+        when(blockBaselineService.load(TABLE_NAME)).thenReturn(loaded);
+
+        List<PkRange> slice = List.of(new PkRange(Long.MIN_VALUE, 1023L));
+        when(scanPlanner.plan(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(slice);
+        Map<String, Object> row1 = Map.of(PRIMARY_KEY_NAME, 1L);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME, slice)).thenReturn(List.of(row1));
+        when(checksumService.calculate(row1)).thenReturn(101L);
+
+        // Act
+        task.execute();
+
+        // Assert: row 2000 was not read, but it is not reported as deleted either
+        verify(monitorRepository, never()).findAll(TABLE_NAME, PRIMARY_KEY_NAME);
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 1L && a.getChangeType() == ChangeType.UPDATE));
+        verify(auditRepository, never()).insert(argThat(a -> a.getPrimaryKey() == 2000L));
+        verify(scanPlanner).recordChange(TABLE_NAME, 1L);
+        verify(scanPlanner).completeCycle(TABLE_NAME, slice);
+    }
+
+    @Test
+    void processKeys_BeforeFirstCycle_ChecksNothing() {
+        // Act
+        boolean checked = monitorTask.processKeys(List.of(1L));
+
+        // Assert
+        assertFalse(checked);
+        verifyNoInteractions(monitorRepository, tableChecksumRepository);
+    }
+
+    @Test
+    void processKeys_CycleInProgress_ChecksNothingUntilItEnds() throws Exception {
+        // Arrange: the next cycle stops in the middle of its scan
+        monitorTask.execute();
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenAnswer(invocation -> {
+            scanning.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return List.of();
+        });
+        CompletableFuture<Boolean> cycle = CompletableFuture.supplyAsync(monitorTask::execute);
+        assertTrue(scanning.await(5, TimeUnit.SECONDS));
+
+        // Act
+        boolean checkedDuringCycle = monitorTask.processKeys(List.of(1L));
+        release.countDown();
+        cycle.get(5, TimeUnit.SECONDS);
+        boolean checkedAfterCycle = monitorTask.processKeys(List.of(1L));
+
+        // Assert
+        assertFalse(checkedDuringCycle);
+        assertTrue(checkedAfterCycle);
+        verify(monitorRepository, times(1)).findByPrimaryKeys(TABLE_NAME, PRIMARY_KEY_NAME, null, null, List.of(1L));
+    }
+
+    @Test
+    void processKeys_TableAltered_ChecksNothing() {
+        // Arrange
+        monitorTask.execute();
+        when(tableMetadataService.isModified(TABLE_NAME)).thenReturn(true);
+
+        // Act
+        boolean checked = monitorTask.processKeys(List.of(1L));
+
+        // Assert
+        assertFalse(checked);
+        verify(monitorRepository, never()).findByPrimaryKeys(anyString(), anyString(), any(), any(), anyList());
+    }
+
+    @Test
+    void processKeys_RowMode_RecordsUpdateAndDeleteOfWatchedRows() {
+        // Arrange: rows 1 and 2 are watched; 1 changed and 2 is gone
+        monitorTask.execute();
+        Map<String, Object> row1 = Map.of(PRIMARY_KEY_NAME, 1L);
+        when(monitorRepository.findByPrimaryKeys(TABLE_NAME, PRIMARY_KEY_NAME, null, null, List.of(1L, 2L))).thenReturn(List.of(row1));
+        when(checksumService.calculate(row1)).thenReturn(101L);
+        TableChecksum stored1 = new TableChecksum();
+        stored1.setId(10);
+        stored1.setPrimaryKey(1L);
+        stored1.setCrc32(100L);
+        TableChecksum stored2 = new TableChecksum();
+        stored2.setId(20);
+        stored2.setPrimaryKey(2L);
+        stored2.setCrc32(200L);
+        when(tableChecksumRepository.findByTableNameAndPrimaryKeys(TABLE_NAME, List.of(1L, 2L))).thenReturn(List.of(stored1, stored2));
+
+        // Act
+        boolean checked = monitorTask.processKeys(List.of(1L, 2L));
+
+        // Assert
+        assertTrue(checked);
+        verify(tableChecksumRepository).update(argThat(tc -> tc.getPrimaryKey() == 1L && tc.getCrc32() == 101L));
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 1L && a.getChangeType() == ChangeType.UPDATE));
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 2L && a.getChangeType() == ChangeType.DELETE));
+        verify(tableChecksumRepository).deleteByTableNameAndPrimaryKeys(TABLE_NAME, List.of(2L));
+        verify(scanPlanner).recordChange(TABLE_NAME, 1L);
+    }
+
+    @Test
+    void processKeys_BlockMode_UpdatesWatchedRowsAndKeepsTheOthers() {
+        // Arrange: the block holds rows 1, 2 and 3; rows 1 and 3 are watched, 1 changed and 3 is gone
+        MonitorProperties.Baseline blockStore = new MonitorProperties.Baseline();
+        blockStore.setStore(MonitorProperties.BaselineStore.BLOCK);
+        when(monitorProperties.getBaseline()).thenReturn(blockStore);
+        MonitorTask task = new MonitorTask(monitorProperties, checksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository,
+                blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+        when(blockBaselineService.load(TABLE_NAME)).thenReturn(new BlockBaseline(TABLE_NAME, 1024, List.of()));
+        task.execute();
+
+        BlockBaseline seed = new BlockBaseline(TABLE_NAME, 1024, List.of());
+        seed.put(1L, 100L);
+        seed.put(2L, 200L);
+        seed.put(3L, 300L);
+        seed.finish();
+        BlockBaseline loaded = new BlockBaseline(TABLE_NAME, 1024, seed.getChangedBlocks());
+        loaded.setRetainUnvisited(true);
+        when(blockBaselineService.loadRanges(TABLE_NAME, List.of(1L, 3L))).thenReturn(loaded);
+        Map<String, Object> row1 = Map.of(PRIMARY_KEY_NAME, 1L);
+        when(monitorRepository.findByPrimaryKeys(TABLE_NAME, PRIMARY_KEY_NAME, null, null, List.of(1L, 3L))).thenReturn(List.of(row1));
+        when(checksumService.calculate(row1)).thenReturn(101L);
+
+        // Act
+        task.processKeys(List.of(1L, 3L));
+
+        // Assert: row 2 was not looked up and stays in the baseline
+        verify(blockBaselineService).save(loaded);
+        assertEquals(2, loaded.getChangedBlocks().get(0).getRowCount());
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 1L && a.getChangeType() == ChangeType.UPDATE));
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 3L && a.getChangeType() == ChangeType.DELETE));
+        verify(auditRepository, never()).insert(argThat(a -> a.getPrimaryKey() == 2L));
+    }
+
+    @Test
+    void processBlockBaseline_ScopeFilter_RowsLeavingScopeAreNotDeleted() {
+        // Arrange: rows 1, 2 and 3 are baselined; 2 left the scope and 3 was deleted
+        MonitorProperties.Baseline blockStore = new MonitorProperties.Baseline();
+        blockStore.setStore(MonitorProperties.BaselineStore.BLOCK);
+        when(monitorProperties.getBaseline()).thenReturn(blockStore);
+        when(monitorProperties.getFilter()).thenReturn("status = 'OPEN'");
+        MonitorTask task = new MonitorTask(monitorProperties, checksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository,
+                blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+
+        BlockBaseline seed = new BlockBaseline(TABLE_NAME, 1024, List.of());
+        seed.put(1L, 100L);
+        seed.put(2L, 200L);
+        seed.put(3L, 300L);
+        seed.finish();
+        BlockBaseline loaded = new BlockBaseline(TABLE_NAME, 1024, seed.getChangedBlocks());
+        when(blockBaselineService.load(TABLE_NAME)).thenReturn(loaded);
+        Map<String, Object> row1 = Map.of(PRIMARY_KEY_NAME, 1L);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME, null, "status = 'OPEN'", null)).thenReturn(List.of(row1));
+        when(checksumService.calculate(row1)).thenReturn(100L);
+        when(monitorRepository.findExistingKeys(TABLE_NAME, PRIMARY_KEY_NAME, List.of(2L, 3L))).thenReturn(List.of(2L));
+
+        // Act
+        task.processBlockBaseline();
+
+        // Assert: both leave the baseline, only row 3 is audited
+        verify(monitorRepository, never()).findAll(TABLE_NAME, PRIMARY_KEY_NAME);
+        assertEquals(1, loaded.getChangedBlocks().get(0).getRowCount());
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 3L && a.getChangeType() == ChangeType.DELETE));
+        verify(auditRepository, never()).insert(argThat(a -> a.getPrimaryKey() == 2L));
+    }
+
+    @Test
+    void execute_ColumnSelection_ReadsOnlySelectedColumns() {
+        // Arrange
+        List<String> projection = List.of(PRIMARY_KEY_NAME, "amount");
+        when(tableMetadataService.getProjection(TABLE_NAME)).thenReturn(projection);
+        Map<String, Object> row = Map.of(PRIMARY_KEY_NAME, PRIMARY_KEY_VALUE, "amount", 10);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME, projection, null, null)).thenReturn(List.of(row));
+        when(checksumService.calculate(row)).thenReturn(100L);
+
+        // Act
+        monitorTask.execute();
+
+        // Assert
+        verify(monitorRepository, never()).findAll(TABLE_NAME, PRIMARY_KEY_NAME);
+        verify(checksumService).calculate(row);
+        verify(tableChecksumRepository).insert(argThat(tc -> tc.getPrimaryKey().equals(PRIMARY_KEY_VALUE)));
+    }
+
+    @Test
+    void execute_DeadlinePassed_StopsBeforeScanning() {
+        // Arrange
+        MonitorProperties.Cycle cycle = new MonitorProperties.Cycle();
+        cycle.setDeadline(Duration.ZERO);
+        when(monitorProperties.getCycle()).thenReturn(cycle);
+        MonitorTask task = new MonitorTask(monitorProperties, checksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository,
+                blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+
+        // Act
+        boolean completed = task.execute();
+
+        // Assert
+        assertFalse(completed);
+        verify(monitorRepository, never()).findAll(anyString(), anyString());
+        verify(scanPlanner, never()).completeCycle(anyString(), any());
+        assertNull(CycleContext.current(), "The cycle context must not outlive the cycle");
+    }
+
+    @Test
+    void execute_CancelledDuringBlockScan_SavesBaselineAndKeepsRowsNotReached() {
+        // Arrange: two blocks of rows whose checksum is their key; row 1500 changed but is never reached
+        MonitorProperties.Baseline blockStore = new MonitorProperties.Baseline();
+        blockStore.setStore(MonitorProperties.BaselineStore.BLOCK);
+        when(monitorProperties.getBaseline()).thenReturn(blockStore);
+        MonitorTask task = new MonitorTask(monitorProperties, checksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository,
+                blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+
+        BlockBaseline seed = new BlockBaseline(TABLE_NAME, 1024, List.of());
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (long key = 0; key < 2048; key++) {
+            seed.put(key, key);
+            rows.add(Map.of(PRIMARY_KEY_NAME, key));
+        }
+        seed.finish();
+        BlockBaseline loaded = new BlockBaseline(TABLE_NAME, 1024, seed.getChangedBlocks());
+        when(blockBaselineService.load(TABLE_NAME)).thenReturn(loaded);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(rows);
+        when(checksumService.calculate(anyMap())).thenAnswer(invocation -> {
+            Long key = (Long) invocation.<Map<String, Object>>getArgument(0).get(PRIMARY_KEY_NAME);
+            if (key == 10L) {
+                task.cancel();
+            }
+            return key == 1500L ? 1L : key;
+        });
+
+        // Act
+        boolean completed = task.execute();
+
+        // Assert
+        assertFalse(completed);
+        verify(blockBaselineService).save(loaded);
+        assertTrue(loaded.getChangedBlocks().isEmpty(), "Rows the scan did not reach must not be dropped");
+        verify(auditRepository, never()).insert(any(Audit.class));
+        verify(scanPlanner, never()).completeCycle(anyString(), any());
+    }
+
+    @Test
+    void execute_QueryTimeout_ReturnsFalse() {
+        // Arrange
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenThrow(new QueryTimeoutException("timed out"));
+
+        // Act
+        boolean completed = monitorTask.execute();
+
+        // Assert
+        assertFalse(completed);
+        verify(scanPlanner, never()).completeCycle(anyString(), any());
+        assertEquals(1, meterRegistry.get("chgmon.cycle").tag("outcome", "timeout").timer().count());
+    }
+
+    @Test
+    void execute_NewRow_RecordsCycleMetrics() {
+        // Arrange
+        Map<String, Object> row = new HashMap<>();
+        row.put(PRIMARY_KEY_NAME, PRIMARY_KEY_VALUE);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(row));
+        when(checksumService.calculate(row)).thenReturn(12345L);
+
+        // Act
+        monitorTask.execute();
+
+        // Assert
+        assertEquals(1, meterRegistry.get("chgmon.cycle").tags("outcome", "completed", "table", TABLE_NAME).timer().count());
+        assertEquals(1.0, meterRegistry.get("chgmon.rows.scanned").counter().count());
+        assertEquals(1.0, meterRegistry.get("chgmon.changes").tag("type", "insert").counter().count());
+        assertEquals(0.0, meterRegistry.get("chgmon.changes").tag("type", "delete").counter().count());
+        assertEquals(1, meterRegistry.get("chgmon.cycle.phase").tag("phase", "hash").timer().count());
+        assertEquals(1, meterRegistry.get("chgmon.cycle.round.trips").summary().count());
+    }
+
+    @Test
+    void execute_CycleHistoryEnabled_RecordsCycleRun() {
+        // Arrange
+        Map<String, Object> row = new HashMap<>();
+        row.put(PRIMARY_KEY_NAME, PRIMARY_KEY_VALUE);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(row));
+        when(checksumService.calculate(row)).thenReturn(12345L);
+        when(cycleRunService.isEnabled()).thenReturn(true);
+
+        // Act
+        monitorTask.execute();
+
+        // Assert
+        ArgumentCaptor<CycleRun> captor = ArgumentCaptor.forClass(CycleRun.class);
+        verify(cycleRunService).record(captor.capture());
+        CycleRun cycleRun = captor.getValue();
+        assertEquals(TABLE_NAME, cycleRun.getTableName());
+        assertEquals("default", cycleRun.getProfile());
+        assertEquals("STANDARD", cycleRun.getStrategy());
+        assertEquals("completed", cycleRun.getOutcome());
+        assertEquals(1, cycleRun.getRowsScanned());
+        assertEquals(1, cycleRun.getInserts());
+        assertEquals(0, cycleRun.getDeletes());
+        assertFalse(cycleRun.getEndedAt().isBefore(cycleRun.getStartedAt()));
+        assertTrue(cycleRun.getPeakHeap() > 0);
+        assertNull(cycleRun.getError());
+    }
+
+    @Test
+    void execute_ServerCostMeasured_RecordsItPerStrategy() {
+        // Arrange
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of());
+        when(cycleRunService.isEnabled()).thenReturn(true);
+        when(serverCostService.end()).thenReturn(new ServerCost(120, 300, 4000, 25, 2));
+
+        // Act
+        monitorTask.execute();
+
+        // Assert
+        verify(serverCostService).begin();
+        ArgumentCaptor<CycleRun> captor = ArgumentCaptor.forClass(CycleRun.class);
+        verify(cycleRunService).record(captor.capture());
+        assertEquals(120L, captor.getValue().getServerCpuMillis());
+        assertEquals(4000L, captor.getValue().getLogicalReads());
+        assertEquals(25L, captor.getValue().getPhysicalReads());
+        assertEquals(new ServerCost(120, 300, 4000, 25, 2), monitorTask.getLastServerCost());
+        assertEquals(120, meterRegistry.get("chgmon.server.cpu").tag("strategy", "standard").timer()
+                .totalTime(java.util.concurrent.TimeUnit.MILLISECONDS));
+        assertEquals(4000.0, meterRegistry.get("chgmon.server.logical.reads").tag("strategy", "standard").counter().count());
+    }
+
+    @Test
+    void execute_CycleHistoryQueryTimeout_RecordsError() {
+        // Arrange
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenThrow(new QueryTimeoutException("timed out"));
+        when(cycleRunService.isEnabled()).thenReturn(true);
+
+        // Act
+        monitorTask.execute();
+
+        // Assert
+        ArgumentCaptor<CycleRun> captor = ArgumentCaptor.forClass(CycleRun.class);
+        verify(cycleRunService).record(captor.capture());
+        assertEquals("timeout", captor.getValue().getOutcome());
+        assertEquals("timed out", captor.getValue().getError());
+    }
+
+    @Test
+    void execute_FlightRecording_RecordsCycleAndChunkEvents() throws Exception {
+        // Arrange
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (long id = 1; id <= 1500; id++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put(PRIMARY_KEY_NAME, id);
+            rows.add(row);
+        }
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(rows);
+        when(checksumService.calculate(anyMap())).thenReturn(12345L);
+        Path file = Files.createTempFile("chgmon", ".jfr");
+
+        // Act
+        try (Recording recording = new Recording()) {
+            recording.enable("chgmon.Cycle");
+            recording.enable("chgmon.Chunk");
+            recording.start();
+            monitorTask.execute();
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        // Assert
+        List<RecordedEvent> cycles = events.stream().filter(e -> e.getEventType().getName().equals("chgmon.Cycle")).toList();
+        assertEquals(1, cycles.size());
+        assertEquals(TABLE_NAME, cycles.get(0).getString("table"));
+        assertEquals("completed", cycles.get(0).getString("outcome"));
+        assertEquals(1500, cycles.get(0).getLong("rowsScanned"));
+        assertEquals(1500, cycles.get(0).getLong("inserts"));
+        List<Long> chunkRows = events.stream().filter(e -> e.getEventType().getName().equals("chgmon.Chunk"))
+                .map(e -> e.getLong("rows")).toList();
+        assertEquals(List.of(1023L, 477L), chunkRows);
+    }
+
+    @Test
+    void execute_LightProfileNothingChanged_SkipsScan() {
+        // Arrange
+        when(scanPlanner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null)).thenReturn(List.of());
+
+        // Act
+        boolean completed = monitorTask.execute("business-hours", profile(MonitorProperties.Strategy.LIGHT));
+
+        // Assert
+        assertTrue(completed);
+        verify(monitorRepository, never()).findAll(anyString(), anyString());
+        verify(monitorRepository, never()).findDeletedRows(anyString(), anyString());
+        verify(scanPlanner).completeLightCycle(TABLE_NAME);
+        verify(scanPlanner, never()).completeCycle(anyString(), any());
+        verify(scanPlanner, never()).plan(anyString(), anyString());
+    }
+
+    @Test
+    void execute_LightProfile_ScansChangedBucketsOnly() {
+        // Arrange
+        List<PkRange> changed = List.of(new PkRange(100, 199));
+        when(scanPlanner.planChangedBuckets(TABLE_NAME, PRIMARY_KEY_NAME, null, null)).thenReturn(changed);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME, changed)).thenReturn(List.of());
+
+        // Act
+        monitorTask.execute("business-hours", profile(MonitorProperties.Strategy.LIGHT));
+
+        // Assert
+        verify(monitorRepository).findAll(TABLE_NAME, PRIMARY_KEY_NAME, changed);
+        verify(monitorRepository, never()).findAll(TABLE_NAME, PRIMARY_KEY_NAME);
+        verify(scanPlanner).completeLightCycle(TABLE_NAME);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void execute_DeepProfile_AuditsEveryDeletedRowAndRepairsBaseline() {
+        // Arrange: row 1 is still there, 2 and 3 were deleted unnoticed
+        Map<String, Object> row1 = Map.of(PRIMARY_KEY_NAME, 1L);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(row1));
+        when(checksumService.calculate(row1)).thenReturn(100L);
+        TableChecksum stored1 = new TableChecksum();
+        stored1.setPrimaryKey(1L);
+        stored1.setCrc32(100L);
+        when(tableChecksumRepository.findByTableNameAndPrimaryKey(TABLE_NAME, 1L)).thenReturn(stored1);
+        doAnswer(invocation -> {
+            Consumer<TableChecksum> consumer = invocation.getArgument(1);
+            for (long primaryKey = 1; primaryKey <= 3; primaryKey++) {
+                TableChecksum stored = new TableChecksum();
+                stored.setPrimaryKey(primaryKey);
+                consumer.accept(stored);
+            }
+            return null;
+        }).when(tableChecksumRepository).forEachByTableName(eq(TABLE_NAME), any(Consumer.class));
+
+        // Act
+        boolean completed = monitorTask.execute("nightly", profile(MonitorProperties.Strategy.DEEP));
+
+        // Assert
+        assertTrue(completed);
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 2L && a.getChangeType() == ChangeType.DELETE));
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 3L && a.getChangeType() == ChangeType.DELETE));
+        verify(tableChecksumRepository).deleteByTableNameAndPrimaryKeys(TABLE_NAME, List.of(2L, 3L));
+        verify(monitorRepository, never()).findDeletedRows(anyString(), anyString());
+        verify(scanPlanner, never()).plan(anyString(), anyString());
+        verify(scanPlanner).completeCycle(TABLE_NAME, null);
+        assertEquals(2, monitorTask.getLastCycleChanges());
+        // Whether the light cycles missed it is asked before the change clears its bucket
+        InOrder inOrder = inOrder(scanPlanner);
+        inOrder.verify(scanPlanner).isReportedClean(TABLE_NAME, 2L);
+        inOrder.verify(scanPlanner).recordChange(TABLE_NAME, 2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void execute_CentralStore_FindsDeletesFromTheScanInsteadOfAJoin() {
+        // Arrange: row 1 is still there, row 2 was deleted
+        MonitorProperties.CentralStore centralStore = new MonitorProperties.CentralStore();
+        centralStore.setUrl("jdbc:sqlserver://central");
+        when(monitorProperties.getCentralStore()).thenReturn(centralStore);
+        MonitorTask task = new MonitorTask(monitorProperties, checksumService,
+                new AuditWriterImpl(auditRepository, changeLog, synchronousAudits()), monitorRepository, tableChecksumRepository,
+                blockBaselineService, rowImageStore, tableMetadataService, hashColumnService, scanPlanner, leaseService, monitorMetrics, cycleRunService, serverCostService);
+        Map<String, Object> row1 = Map.of(PRIMARY_KEY_NAME, 1L);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME)).thenReturn(List.of(row1));
+        when(checksumService.calculate(row1)).thenReturn(100L);
+        TableChecksum stored1 = new TableChecksum();
+        stored1.setPrimaryKey(1L);
+        stored1.setCrc32(100L);
+        when(tableChecksumRepository.findByTableNameAndPrimaryKey(TABLE_NAME, 1L)).thenReturn(stored1);
+        doAnswer(invocation -> {
+            Consumer<TableChecksum> consumer = invocation.getArgument(1);
+            for (long primaryKey = 1; primaryKey <= 2; primaryKey++) {
+                TableChecksum stored = new TableChecksum();
+                stored.setPrimaryKey(primaryKey);
+                consumer.accept(stored);
+            }
+            return null;
+        }).when(tableChecksumRepository).forEachByTableName(eq(TABLE_NAME), any(Consumer.class));
+
+        // Act
+        boolean completed = task.execute();
+
+        // Assert
+        assertTrue(completed);
+        verify(monitorRepository, never()).findDeletedRows(anyString(), anyString());
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 2L && a.getChangeType() == ChangeType.DELETE));
+        verify(tableChecksumRepository).deleteByTableNameAndPrimaryKeys(TABLE_NAME, List.of(2L));
+    }
+
+    @Test
+    void execute_LeaseHeartbeatFails_ReleasesTheLockAndTheContext() throws Exception {
+        // Arrange
+        when(leaseService.isEnabled()).thenReturn(true);
+        when(leaseService.beginCycle()).thenThrow(new IllegalStateException("heartbeat failed")).thenReturn(Set.of());
+
+        // Act
+        assertThrows(IllegalStateException.class, () -> monitorTask.execute());
+
+        // Assert: the next cycle, on another thread, is neither blocked nor refused
+        assertNull(CycleContext.current());
+        assertDoesNotThrow(() -> CompletableFuture.supplyAsync(monitorTask::execute).get(5, TimeUnit.SECONDS));
+        verify(serverCostService, times(2)).end();
+        verify(leaseService, times(1)).endCycle();
+    }
+
+    @Test
+    void execute_CycleRunRecordFails_CompletesAndReleasesTheLock() throws Exception {
+        // Arrange
+        when(cycleRunService.isEnabled()).thenReturn(true);
+        doThrow(new IllegalStateException("tb_cycle_run is gone")).when(cycleRunService).record(any());
+
+        // Act
+        boolean completed = monitorTask.execute();
+
+        // Assert
+        assertTrue(completed);
+        assertTrue(CompletableFuture.supplyAsync(monitorTask::execute).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void execute_CycleAndFlushFail_ThrowsTheFailureOfTheCycle() throws Exception {
+        // Arrange
+        when(rowImageStore.isEnabled()).thenReturn(true);
+        doThrow(new java.io.UncheckedIOException(new java.io.IOException("disk full"))).when(rowImageStore).flush();
+        when(monitorRepository.findDeletedRows(TABLE_NAME, PRIMARY_KEY_NAME)).thenThrow(new IllegalStateException("scan failed"));
+
+        // Act
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> monitorTask.execute());
+
+        // Assert
+        assertEquals("scan failed", thrown.getMessage());
+        assertEquals(1, thrown.getSuppressed().length);
+        assertEquals("disk full", thrown.getSuppressed()[0].getCause().getMessage());
+        reset(monitorRepository);
+        doNothing().when(rowImageStore).flush();
+        assertTrue(CompletableFuture.supplyAsync(monitorTask::execute).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void execute_SharedTableNotReconciledByShardZero_Waits() {
+        // Arrange
+        when(leaseService.isEnabled()).thenReturn(true);
+        when(leaseService.beginCycle()).thenReturn(Set.of(1));
+        when(tableMetadataService.findModifyDate(TABLE_NAME)).thenReturn(LocalDateTime.of(2024, 5, 2, 10, 0));
+        when(leaseService.getVerifiedDate()).thenReturn(LocalDateTime.of(2024, 5, 1, 10, 0));
+
+        // Act
+        monitorTask.execute();
+
+        // Assert
+        verify(hashColumnService, never()).prepare(anyString(), anyString());
+        verify(tableMetadataService, never()).detectDrift(anyString());
+        verify(monitorRepository, never()).findAll(anyString(), anyString());
+        verify(leaseService).endCycle();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void execute_SharedTable_ScansAndDeletesWithinLeasedShardsOnly() {
+        // Arrange: shard 1 holds keys 1000..1999
+        LocalDateTime verified = LocalDateTime.of(2024, 5, 1, 10, 0);
+        List<PkRange> owned = List.of(new PkRange(1000, 1999));
+        when(leaseService.isEnabled()).thenReturn(true);
+        when(leaseService.beginCycle()).thenReturn(Set.of(1));
+        when(leaseService.holds(Set.of(1))).thenReturn(true);
+        when(leaseService.restrict(Set.of(1), null)).thenReturn(owned);
+        when(tableMetadataService.findModifyDate(TABLE_NAME)).thenReturn(verified);
+        when(leaseService.getVerifiedDate()).thenReturn(verified);
+        Map<String, Object> row = Map.of(PRIMARY_KEY_NAME, 1500L);
+        when(monitorRepository.findAll(TABLE_NAME, PRIMARY_KEY_NAME, owned)).thenReturn(List.of(row));
+        when(checksumService.calculate(row)).thenReturn(100L);
+        TableChecksum stored = new TableChecksum();
+        stored.setPrimaryKey(1500L);
+        stored.setCrc32(100L);
+        when(tableChecksumRepository.findByTableNameAndPrimaryKey(TABLE_NAME, 1500L)).thenReturn(stored);
+        doAnswer(invocation -> {
+            Consumer<TableChecksum> consumer = invocation.getArgument(1);
+            for (long primaryKey : new long[]{1500, 1600, 2500}) {
+                TableChecksum baselined = new TableChecksum();
+                baselined.setPrimaryKey(primaryKey);
+                consumer.accept(baselined);
+            }
+            return null;
+        }).when(tableChecksumRepository).forEachByTableName(eq(TABLE_NAME), any(Consumer.class));
+
+        // Act
+        boolean completed = monitorTask.execute();
+
+        // Assert: 2500 belongs to another node
+        assertTrue(completed);
+        verify(auditRepository).insert(argThat(a -> a.getPrimaryKey() == 1600L && a.getChangeType() == ChangeType.DELETE));
+        verify(auditRepository, never()).insert(argThat(a -> a.getPrimaryKey() == 2500L));
+        verify(tableChecksumRepository).deleteByTableNameAndPrimaryKeys(TABLE_NAME, List.of(1600L));
+        verify(monitorRepository, never()).findDeletedRows(anyString(), anyString());
+        verify(hashColumnService, never()).prepare(anyString(), anyString());
+        verify(leaseService, never()).saveVerifiedDate(any());
+    }
+
+    private static MonitorProperties.Profile profile(MonitorProperties.Strategy strategy) {
+        MonitorProperties.Profile profile = new MonitorProperties.Profile();
+        profile.setStrategy(strategy);
+        return profile;
+    }
+}
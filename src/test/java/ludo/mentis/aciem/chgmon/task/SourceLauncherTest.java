@@ -0,0 +1,119 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceLauncherTest {
+
+    private MonitorProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MonitorProperties();
+        properties.setTableName("tb_fx_trade");
+    }
+
+    private static SourceLauncher launcher(MonitorProperties properties) {
+        return new SourceLauncher(properties, new StandardEnvironment(), new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+    }
+
+    private MonitorProperties.Source source(String url) {
+        MonitorProperties.Source source = new MonitorProperties.Source();
+        source.setUrl(url);
+        return source;
+    }
+
+    @Test
+    void overrides_Source_PointsItsContextAtItsDatabase() {
+        // Arrange
+        MonitorProperties.Source source = source("jdbc:sqlserver://eu;databaseName=books_eu");
+        source.setUsername("chgmon_eu");
+        source.setMaxPoolSize(2);
+        properties.getSources().put("eu", source);
+        SourceLauncher launcher = launcher(properties);
+
+        // Act
+        Map<String, Object> overrides = launcher.overrides("eu", source);
+
+        // Assert
+        assertEquals("eu", overrides.get("monitor.source-name"));
+        assertEquals("jdbc:sqlserver://eu;databaseName=books_eu", overrides.get("spring.datasource.url"));
+        assertEquals("chgmon_eu", overrides.get("spring.datasource.username"));
+        assertFalse(overrides.containsKey("spring.datasource.password"), "The shared password is kept");
+        assertEquals(2, overrides.get("spring.datasource.hikari.maximum-pool-size"));
+        assertEquals("tb_fx_trade", overrides.get("monitor.table-name"));
+        assertEquals(Path.of("data/row-images", "eu").toString(), overrides.get("monitor.row-images.directory"));
+        assertEquals(Path.of("data/change-log", "eu").toString(), overrides.get("monitor.change-log.directory"));
+    }
+
+    @Test
+    void constructor_SourcesSharingCentralStoreWithSameTable_ThrowsIllegalArgumentException() {
+        // Arrange
+        properties.getCentralStore().setUrl("jdbc:sqlserver://central");
+        properties.getSources().put("eu", source("jdbc:sqlserver://eu"));
+        properties.getSources().put("us", source("jdbc:sqlserver://us"));
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> launcher(properties));
+        assertEquals("Sources eu and us share the central store and must monitor distinct table names, "
+                + "such as database-qualified ones", exception.getMessage());
+    }
+
+    @Test
+    void constructor_SourcesSharingCentralStoreWithQualifiedTables_Accepts() {
+        // Arrange
+        properties.getCentralStore().setUrl("jdbc:sqlserver://central");
+        MonitorProperties.Source eu = source("jdbc:sqlserver://eu");
+        eu.setTableName("books_eu.dbo.tb_fx_trade");
+        MonitorProperties.Source us = source("jdbc:sqlserver://us");
+        us.setTableName("books_us.dbo.tb_fx_trade");
+        properties.getSources().put("eu", eu);
+        properties.getSources().put("us", us);
+
+        // Act & Assert
+        assertDoesNotThrow(() -> launcher(properties));
+    }
+
+    @Test
+    void constructor_SourceWithoutUrl_ThrowsIllegalArgumentException() {
+        // Arrange
+        properties.getSources().put("eu", source(" "));
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> launcher(properties));
+        assertEquals("Url of source eu cannot be null or empty", exception.getMessage());
+    }
+
+    @Test
+    void constructor_ContextOfASource_DoesNotValidateOrLaunchAgain() {
+        // Arrange
+        properties.setSourceName("eu");
+        properties.getSources().put("eu", source(null));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> launcher(properties));
+    }
+
+    @Test
+    void getChangeLog_SourceNotStarted_ReturnsNull() {
+        // Arrange
+        properties.getSources().put("eu", source("jdbc:sqlserver://eu"));
+        SourceLauncher launcher = launcher(properties);
+
+        // Act & Assert
+        assertTrue(launcher.hasSources());
+        assertNull(launcher.getChangeLog("eu"));
+        assertNull(launcher.getChangeLog("us"));
+    }
+}
@@ -0,0 +1,161 @@
+package ludo.mentis.aciem.chgmon.task;
+
+import ludo.mentis.aciem.chgmon.config.MonitorProperties;
+import ludo.mentis.aciem.chgmon.repos.MonitorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WatchlistTaskTest {
+
+    private static final String TABLE_NAME = "test_table";
+    private static final String PRIMARY_KEY_NAME = "id";
+
+    @Mock
+    private MonitorTask monitorTask;
+
+    @Mock
+    private MonitorRepository monitorRepository;
+
+    private MonitorProperties properties;
+
+    private final MutableClock clock = new MutableClock();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new MonitorProperties();
+        properties.setTableName(TABLE_NAME);
+        properties.setPrimaryKeyName(PRIMARY_KEY_NAME);
+        properties.getWatchlist().setEnabled(true);
+        when(monitorTask.processKeys(anyList())).thenReturn(true);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant = Instant.parse("2024-01-01T12:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+
+    @Test
+    void poll_StaticKeys_ChecksThemInSortedBatches() {
+        // Arrange
+        properties.getWatchlist().setKeys(List.of(5L, 1L, 3L));
+        properties.getWatchlist().setBatchSize(2);
+        WatchlistTask task = new WatchlistTask(properties, monitorTask, monitorRepository, clock);
+
+        // Act
+        task.poll();
+
+        // Assert
+        verify(monitorTask).processKeys(List.of(1L, 3L));
+        verify(monitorTask).processKeys(List.of(5L));
+        verifyNoInteractions(monitorRepository);
+    }
+
+    @Test
+    void poll_CycleRunning_StopsAtFirstSkippedBatch() {
+        // Arrange
+        properties.getWatchlist().setKeys(List.of(1L, 2L, 3L));
+        properties.getWatchlist().setBatchSize(1);
+        when(monitorTask.processKeys(anyList())).thenReturn(false);
+        WatchlistTask task = new WatchlistTask(properties, monitorTask, monitorRepository, clock);
+
+        // Act
+        task.poll();
+
+        // Assert
+        verify(monitorTask, times(1)).processKeys(anyList());
+    }
+
+    @Test
+    void poll_Predicate_RefreshesKeysAndChecksLeavingRowsOnce() {
+        // Arrange
+        properties.getWatchlist().setPredicate("status = 'OPEN'");
+        properties.getWatchlist().setRefreshInterval(Duration.ofMinutes(1));
+        when(monitorRepository.findPrimaryKeys(TABLE_NAME, PRIMARY_KEY_NAME, "status = 'OPEN'"))
+                .thenReturn(List.of(1L, 2L), List.of(2L, 3L));
+        WatchlistTask task = new WatchlistTask(properties, monitorTask, monitorRepository, clock);
+
+        // Act & Assert: the predicate is only run again once the refresh interval has passed
+        task.poll();
+        verify(monitorTask).processKeys(List.of(1L, 2L));
+
+        clock.instant = clock.instant.plusSeconds(5);
+        task.poll();
+        verify(monitorTask, times(2)).processKeys(List.of(1L, 2L));
+
+        // Row 1 left the predicate: it is checked one last time along with the new row 3
+        clock.instant = clock.instant.plus(Duration.ofMinutes(1));
+        task.poll();
+        verify(monitorTask).processKeys(List.of(1L, 2L, 3L));
+
+        task.poll();
+        verify(monitorTask).processKeys(List.of(2L, 3L));
+        verify(monitorRepository, times(2)).findPrimaryKeys(TABLE_NAME, PRIMARY_KEY_NAME, "status = 'OPEN'");
+    }
+
+    @Test
+    void poll_CycleRunningWhenRowLeavesPredicate_ChecksItOnNextPoll() {
+        // Arrange
+        properties.getWatchlist().setPredicate("status = 'OPEN'");
+        properties.getWatchlist().setRefreshInterval(Duration.ofMinutes(1));
+        when(monitorRepository.findPrimaryKeys(TABLE_NAME, PRIMARY_KEY_NAME, "status = 'OPEN'"))
+                .thenReturn(List.of(1L, 2L), List.of(2L, 3L));
+        WatchlistTask task = new WatchlistTask(properties, monitorTask, monitorRepository, clock);
+        task.poll();
+
+        // Act: row 1 leaves the predicate while a cycle is running
+        clock.instant = clock.instant.plus(Duration.ofMinutes(1));
+        when(monitorTask.processKeys(anyList())).thenReturn(false);
+        task.poll();
+        when(monitorTask.processKeys(anyList())).thenReturn(true);
+        task.poll();
+        task.poll();
+
+        // Assert: its last check waits for the cycle instead of being dropped
+        verify(monitorTask, times(2)).processKeys(List.of(1L, 2L, 3L));
+        verify(monitorTask).processKeys(List.of(2L, 3L));
+    }
+
+    @Test
+    void constructor_NoKeysOrPredicate_ThrowsIllegalArgumentException() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> new WatchlistTask(properties, monitorTask, monitorRepository, clock));
+        assertEquals("Watchlist needs keys or a predicate", exception.getMessage());
+    }
+
+    @Test
+    void constructor_BatchSizeAboveParameterLimit_ThrowsIllegalArgumentException() {
+        properties.getWatchlist().setKeys(List.of(1L));
+        properties.getWatchlist().setBatchSize(5000);
+
+        assertThrows(IllegalArgumentException.class, () -> new WatchlistTask(properties, monitorTask, monitorRepository, clock));
+    }
+}
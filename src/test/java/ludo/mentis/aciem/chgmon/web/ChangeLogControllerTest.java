@@ -0,0 +1,153 @@
+package ludo.mentis.aciem.chgmon.web;
+
+import ludo.mentis.aciem.chgmon.service.ChangeLog;
+import ludo.mentis.aciem.chgmon.task.SourceLauncher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ChangeLogControllerTest {
+
+    @Mock
+    private ChangeLog changeLog;
+
+    @Mock
+    private ChangeLog euChangeLog;
+
+    @Mock
+    private SourceLauncher sourceLauncher;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ChangeLogController(changeLog, sourceLauncher)).build();
+        when(changeLog.getStartOffset()).thenReturn(100L);
+        when(changeLog.getEndOffset()).thenReturn(400L);
+    }
+
+    @Test
+    void offsets_Time_AddsTheOffsetOfThatTime() throws Exception {
+        // Arrange
+        when(changeLog.offsetAt(Instant.parse("2024-05-01T10:00:00Z"))).thenReturn(250L);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/change-log/offsets").param("time", "2024-05-01T10:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.start").value(100))
+                .andExpect(jsonPath("$.end").value(400))
+                .andExpect(jsonPath("$.offset").value(250));
+    }
+
+    @Test
+    void read_Offset_StreamsTheRecords() throws Exception {
+        // Arrange
+        when(changeLog.transferTo(eq(250L), eq(64L), any())).thenAnswer(invocation -> {
+            WritableByteChannel target = invocation.getArgument(2);
+            return (long) target.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        });
+
+        // Act & Assert
+        mockMvc.perform(get("/api/change-log").param("offset", "250").param("max-bytes", "64"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ChangeLogController.END_OFFSET_HEADER, "400"))
+                .andExpect(content().bytes(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void read_OffsetPastRetention_ReturnsBadRequest() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/change-log").param("offset", "50"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Offset 50 is outside the change log, which runs from 100 to 400"));
+        verify(changeLog, never()).transferTo(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void offsets_Source_ReadsTheLogOfThatSource() throws Exception {
+        // Arrange
+        when(sourceLauncher.hasSources()).thenReturn(true);
+        when(sourceLauncher.getChangeLog("eu")).thenReturn(euChangeLog);
+        when(euChangeLog.getStartOffset()).thenReturn(0L);
+        when(euChangeLog.getEndOffset()).thenReturn(900L);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/change-log/eu/offsets"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.start").value(0))
+                .andExpect(jsonPath("$.end").value(900));
+        verify(changeLog, never()).getEndOffset();
+    }
+
+    @Test
+    void read_Source_StreamsTheRecordsOfThatSource() throws Exception {
+        // Arrange
+        when(sourceLauncher.hasSources()).thenReturn(true);
+        when(sourceLauncher.getChangeLog("eu")).thenReturn(euChangeLog);
+        when(euChangeLog.getStartOffset()).thenReturn(0L);
+        when(euChangeLog.getEndOffset()).thenReturn(900L);
+        when(euChangeLog.transferTo(eq(300L), eq(64L), any())).thenAnswer(invocation -> {
+            WritableByteChannel target = invocation.getArgument(2);
+            return (long) target.write(ByteBuffer.wrap(new byte[]{4, 5}));
+        });
+
+        // Act & Assert
+        mockMvc.perform(get("/api/change-log/eu").param("offset", "300").param("max-bytes", "64"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ChangeLogController.END_OFFSET_HEADER, "900"))
+                .andExpect(content().bytes(new byte[]{4, 5}));
+        verify(changeLog, never()).transferTo(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void offsets_SourcesWithoutSource_ReturnsBadRequest() throws Exception {
+        // Arrange
+        when(sourceLauncher.hasSources()).thenReturn(true);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/change-log/offsets"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Each source keeps its own change log: name it, as in /api/change-log/{source}"));
+        verify(changeLog, never()).getEndOffset();
+    }
+
+    @Test
+    void read_UnknownSource_ReturnsNotFound() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/change-log/us").param("offset", "0"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("No source named us"));
+    }
+
+    @Test
+    void registration_ByDefault_ServesNoLog() {
+        // Arrange
+        ApplicationContextRunner runner = new ApplicationContextRunner()
+                .withBean(ChangeLog.class, () -> changeLog)
+                .withBean(SourceLauncher.class, () -> sourceLauncher)
+                .withUserConfiguration(ChangeLogController.class);
+
+        // Act & Assert
+        runner.run(context -> assertThat(context).doesNotHaveBean(ChangeLogController.class));
+        runner.withPropertyValues("monitor.change-log.http.enabled=true")
+                .run(context -> assertThat(context).hasSingleBean(ChangeLogController.class));
+    }
+}
@@ -0,0 +1,80 @@
+package ludo.mentis.aciem.chgmon.web;
+
+import ludo.mentis.aciem.chgmon.service.CycleRunService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CycleRunControllerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+    @Mock
+    private CycleRunService cycleRunService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Clock clock = Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        mockMvc = MockMvcBuilders.standaloneSetup(new CycleRunController(cycleRunService, clock)).build();
+    }
+
+    @Test
+    void find_NoPeriod_ReadsTheLastDay() throws Exception {
+        // Arrange
+        when(cycleRunService.find("test_table", NOW.minusDays(1), NOW, 20)).thenReturn(List.of());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/cycles").param("table", "test_table").param("limit", "20"))
+                .andExpect(status().isOk());
+        verify(cycleRunService).find("test_table", NOW.minusDays(1), NOW, 20);
+    }
+
+    @Test
+    void findTrend_Period_AddsUpPerDayOverTheGivenPeriod() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/cycles/trend").param("from", "2024-04-01T00:00:00").param("period", "days"))
+                .andExpect(status().isOk());
+        verify(cycleRunService).findTrend(null, LocalDateTime.of(2024, 4, 1, 0, 0), NOW, ChronoUnit.DAYS);
+    }
+
+    @Test
+    void findTrend_UnknownPeriod_ReturnsBadRequest() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/cycles/trend").param("period", "weeks"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Period must be hours or days"));
+        verifyNoInteractions(cycleRunService);
+    }
+
+    @Test
+    void registration_ByDefault_ServesNoHistory() {
+        // Arrange
+        ApplicationContextRunner runner = new ApplicationContextRunner()
+                .withBean(CycleRunService.class, () -> cycleRunService)
+                .withUserConfiguration(CycleRunController.class);
+
+        // Act & Assert
+        runner.run(context -> assertThat(context).doesNotHaveBean(CycleRunController.class));
+        runner.withPropertyValues("monitor.cycle-history.http.enabled=true")
+                .run(context -> assertThat(context).hasSingleBean(CycleRunController.class));
+    }
+}
@@ -0,0 +1,9 @@
+-- The parts of the SQL Server catalog that chgmon reads, for the load harness on H2 in MSSQLServer mode
+CREATE SCHEMA sys;
+
+CREATE TABLE sys.objects (
+    object_id   INT       NOT NULL,
+    modify_date DATETIME2 NOT NULL
+);
+
+CREATE ALIAS OBJECT_ID FOR 'ludo.mentis.aciem.chgmon.harness.H2Catalog.objectId';